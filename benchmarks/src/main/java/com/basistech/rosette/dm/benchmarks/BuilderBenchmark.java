@@ -0,0 +1,86 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of texts with {@link AnnotatedText.Builder}: from finished attributes, and
+ * from scratch, building each token and its analyses as an annotator would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class BuilderBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    int tokens;
+
+    private AnnotatedText text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.text(tokens, Corpus.SEED);
+    }
+
+    @Benchmark
+    public AnnotatedText fromAttributes() {
+        return new AnnotatedText.Builder().data(text.getData())
+                .tokens(text.getTokens())
+                .sentences(text.getSentences())
+                .entities(text.getEntities())
+                .build();
+    }
+
+    @Benchmark
+    public AnnotatedText copy() {
+        return new AnnotatedText.Builder(text).build();
+    }
+
+    @Benchmark
+    public AnnotatedText fromScratch() {
+        ListAttribute.Builder<Token> builder = new ListAttribute.Builder<>(Token.class);
+        for (Token token : text.getTokens()) {
+            Token.Builder tokenBuilder = new Token.Builder(token.getStartOffset(), token.getEndOffset(), token.getText());
+            for (MorphoAnalysis analysis : token.getAnalyses()) {
+                tokenBuilder.addAnalysis(new MorphoAnalysis.Builder()
+                        .partOfSpeech(analysis.getPartOfSpeech())
+                        .lemma(analysis.getLemma())
+                        .build());
+            }
+            builder.add(tokenBuilder.build());
+        }
+        return new AnnotatedText.Builder().data(text.getData()).tokens(builder.build()).build();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The cached compatibility lists of one text, shared by several threads.
+ * {@link #entityMentions()} and {@link #resolvedEntities()} read lists that are already computed;
+ * {@link #racingEntityMentions()} replaces the shared text every {@link #RACE_PERIOD} calls,
+ * so that the threads race to compute the list of each new text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@Threads(8)
+@SuppressWarnings("deprecation")
+public class CompatContentionBenchmark {
+    static final int RACE_PERIOD = 64;
+
+    @Param({"10", "1000", "100000"})
+    int tokens;
+
+    private AnnotatedText text;
+    private final AtomicReference<AnnotatedText> racing = new AtomicReference<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Setup
+    public void setup() {
+        text = Corpus.text(tokens, Corpus.SEED);
+        text.getEntityMentions();
+        text.getResolvedEntities();
+        racing.set(new AnnotatedText.Builder(text).build());
+    }
+
+    @Benchmark
+    public Object entityMentions() {
+        return text.getEntityMentions();
+    }
+
+    @Benchmark
+    public Object resolvedEntities() {
+        return text.getResolvedEntities();
+    }
+
+    @Benchmark
+    public Object racingEntityMentions() {
+        if (calls.incrementAndGet() % RACE_PERIOD == 0) {
+            racing.set(new AnnotatedText.Builder(text).build());
+        }
+        return racing.get().getEntityMentions();
+    }
+}
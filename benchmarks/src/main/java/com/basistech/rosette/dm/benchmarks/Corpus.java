@@ -0,0 +1,113 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+
+import java.util.Random;
+
+/**
+ * Synthetic documents for benchmarks. The same size and seed always give the same document.
+ * Words come from a fixed vocabulary, so that strings repeat as they do in real text; each token
+ * has an analysis, some have two; sentences run 10 to 30 tokens, and about one token
+ * in twenty is the mention of an entity.
+ */
+final class Corpus {
+    static final long SEED = 0x5EEDL;
+    private static final String[] TAGS = {"NOUN", "VERB", "ADJ", "ADV", "DET", "PREP", "PRON", "CONJ"};
+    private static final String[] TYPES = {"PERSON", "LOCATION", "ORGANIZATION", "PRODUCT"};
+    private static final int VOCABULARY = 5000;
+
+    private Corpus() {
+        //
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        StringBuilder word = new StringBuilder();
+        for (int x = 0; x < words.length; x++) {
+            word.setLength(0);
+            int length = 2 + random.nextInt(9);
+            for (int c = 0; c < length; c++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            if (random.nextInt(5) == 0) {
+                word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            }
+            words[x] = word.toString();
+        }
+        return words;
+    }
+
+    /**
+     * Generates a document.
+     *
+     * @param tokenCount the number of tokens
+     * @param seed the random seed
+     * @return the document
+     */
+    static AnnotatedText text(int tokenCount, long seed) {
+        Random random = new Random(seed);
+        String[] words = vocabulary(random);
+        StringBuilder data = new StringBuilder(tokenCount * 7);
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+        ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        int sentenceStart = 0;
+        int sentenceLength = 10 + random.nextInt(21);
+        int inSentence = 0;
+        for (int x = 0; x < tokenCount; x++) {
+            // skewed toward the front of the vocabulary, as word frequencies are.
+            String word = words[(int) (Math.abs(random.nextGaussian()) * VOCABULARY / 4) % VOCABULARY];
+            if (inSentence > 0) {
+                data.append(' ');
+            }
+            int start = data.length();
+            data.append(word);
+            Token.Builder token = new Token.Builder(start, data.length(), word);
+            String tag = TAGS[random.nextInt(TAGS.length)];
+            token.addAnalysis(new MorphoAnalysis.Builder().partOfSpeech(tag).lemma(word.toLowerCase()).build());
+            if (random.nextInt(10) == 0) {
+                token.addAnalysis(new MorphoAnalysis.Builder().partOfSpeech(TAGS[random.nextInt(TAGS.length)]).lemma(word).build());
+            }
+            tokens.add(token.build());
+            if (random.nextInt(20) == 0) {
+                entities.add(new Entity.Builder().type(TYPES[random.nextInt(TYPES.length)])
+                        .mention(new Mention.Builder(start, data.length()).source("synthetic").build())
+                        .build());
+            }
+            if (++inSentence == sentenceLength || x == tokenCount - 1) {
+                data.append('.');
+                sentences.add(new Sentence.Builder(sentenceStart, data.length()).build());
+                data.append(' ');
+                sentenceStart = data.length();
+                sentenceLength = 10 + random.nextInt(21);
+                inSentence = 0;
+            }
+        }
+        return new AnnotatedText.Builder().data(data.toString())
+                .tokens(tokens.build())
+                .sentences(sentences.build())
+                .entities(entities.build())
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.EmbeddingCollection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cosine similarity of one vector with every token embedding of a text. {@link #mapLoop()} is
+ * the loop applications wrote over {@link EmbeddingCollection#getEmbeddings()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class EmbeddingSimilarityBenchmark {
+    @Param({"1000", "100000"})
+    int tokens;
+
+    @Param({"100", "300"})
+    int dimension;
+
+    private EmbeddingCollection collection;
+    private FloatBuffer query;
+    private float[] scores;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Corpus.SEED);
+        float[] values = new float[tokens * dimension];
+        int[] indices = new int[tokens];
+        for (int x = 0; x < values.length; x++) {
+            values[x] = random.nextFloat() - 0.5f;
+        }
+        for (int x = 0; x < tokens; x++) {
+            indices[x] = x;
+        }
+        collection = new EmbeddingCollection.Builder().values(indices, dimension, FloatBuffer.wrap(values)).build();
+        query = collection.rowAt(tokens / 2);
+        scores = new float[tokens];
+    }
+
+    @Benchmark
+    public float[] cosines() {
+        collection.cosines(query, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public int[] nearest() {
+        return collection.nearest(tokens / 2, 10);
+    }
+
+    @Benchmark
+    public float[] mapLoop() {
+        float[] q = new float[dimension];
+        query.duplicate().get(q);
+        for (Map.Entry<Integer, float[]> me : collection.getEmbeddings().entrySet()) {
+            float[] row = me.getValue();
+            float dot = 0;
+            float norm = 0;
+            float queryNorm = 0;
+            for (int x = 0; x < row.length; x++) {
+                dot += row[x] * q[x];
+                norm += row[x] * row[x];
+                queryNorm += q[x] * q[x];
+            }
+            scores[me.getKey()] = dot / (float) Math.sqrt(norm * queryNorm);
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.ListAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of entities down to the ADM 1.0 entity mentions. A text caches the
+ * result, so each invocation converts a fresh copy; {@link #baseline()} measures the copy alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+@SuppressWarnings("deprecation")
+public class EntityMentionsBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    int tokens;
+
+    private AnnotatedText text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.text(tokens, Corpus.SEED);
+    }
+
+    @Benchmark
+    public AnnotatedText baseline() {
+        return new AnnotatedText.Builder(text).build();
+    }
+
+    @Benchmark
+    public ListAttribute<com.basistech.rosette.dm.EntityMention> entityMentions() {
+        return new AnnotatedText.Builder(text).build().getEntityMentions();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Token;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of token lists, which is dominated by their morphological analyses,
+ * read by {@code MorphoAnalysisListDeserializer} in the plain shape and
+ * {@code MorphoAnalysisListArrayDeserializer} in the array shape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class MorphoAnalysisBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    int tokens;
+
+    @Param({"plain", "array"})
+    String shape;
+
+    private ObjectReader reader;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = SerializationBenchmark.mapper(shape, new JsonFactory());
+        reader = mapper.readerFor(new TypeReference<ListAttribute<Token>>() { });
+        serialized = mapper.writeValueAsBytes(Corpus.text(tokens, Corpus.SEED).getTokens());
+    }
+
+    @Benchmark
+    public ListAttribute<Token> deserialize() throws IOException {
+        return reader.readValue(serialized);
+    }
+}
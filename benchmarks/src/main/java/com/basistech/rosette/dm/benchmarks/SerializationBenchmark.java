@@ -0,0 +1,102 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.benchmarks;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.jackson.AnnotatedDataModelModule;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of whole texts, for each combination of
+ * the plain and array shapes with the JSON, Smile, and CBOR formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class SerializationBenchmark {
+    @Param({"10", "1000", "100000", "1000000"})
+    int tokens;
+
+    @Param({"plain", "array"})
+    String shape;
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    private ObjectMapper mapper;
+    private AnnotatedText text;
+    private byte[] serialized;
+
+    static JsonFactory factory(String format) {
+        switch (format) {
+        case "json":
+            return new JsonFactory();
+        case "smile":
+            return new SmileFactory();
+        case "cbor":
+            return new CBORFactory();
+        default:
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    static ObjectMapper mapper(String shape, JsonFactory factory) {
+        if ("plain".equals(shape)) {
+            return AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper(factory));
+        } else if ("array".equals(shape)) {
+            return AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper(factory));
+        }
+        throw new IllegalArgumentException("Unknown shape " + shape);
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = mapper(shape, factory(format));
+        text = Corpus.text(tokens, Corpus.SEED);
+        serialized = mapper.writeValueAsBytes(text);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(text);
+    }
+
+    @Benchmark
+    public AnnotatedText deserialize() throws IOException {
+        return mapper.readValue(serialized, AnnotatedText.class);
+    }
+}
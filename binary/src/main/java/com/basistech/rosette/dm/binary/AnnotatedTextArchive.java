@@ -0,0 +1,273 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A file of encoded {@link AnnotatedText} records, with an index from id to record,
+ * read through memory-mapped buffers. Looking up a text reads only its own record, so
+ * an archive of any size opens quickly and costs only the memory of its index.
+ * <p>
+ * The file consists of a header with the name of the {@link RecordFormat}, the records,
+ * and an index of ids sorted in UTF-16 order, each with the position and length of its record.
+ * Write archives with {@link AnnotatedTextArchiveWriter}.
+ * <p>
+ * Archives are thread-safe; reads take no locks.
+ */
+public final class AnnotatedTextArchive implements Closeable {
+    static final int MAGIC = 0x41444d41; // ADMA
+    static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 12;
+    /* the fixed part of an index entry: id length, position and record length. */
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private final RecordFormat format;
+    private final RandomAccessFile file;
+    private final String[] ids;
+    private final long[] positions;
+    private final int[] lengths;
+    /* Each segment maps whole records; segment x starts at segmentStarts[x]. */
+    private final long[] segmentStarts;
+    private final ByteBuffer[] segments;
+
+    private AnnotatedTextArchive(RecordFormat format, RandomAccessFile file, String[] ids, long[] positions, int[] lengths,
+                                 long[] segmentStarts, ByteBuffer[] segments) {
+        this.format = format;
+        this.file = file;
+        this.ids = ids;
+        this.positions = positions;
+        this.lengths = lengths;
+        this.segmentStarts = segmentStarts;
+        this.segments = segments;
+    }
+
+    /**
+     * Opens an archive.
+     *
+     * @param file the file
+     * @param format the encoding of the records; its name must match the name in the archive
+     * @return the archive
+     * @throws IOException if the file cannot be read, is not an archive, or uses a different format
+     */
+    public static AnnotatedTextArchive open(File file, RecordFormat format) throws IOException {
+        return open(file, format, Integer.MAX_VALUE);
+    }
+
+    /* The maximum segment size is a parameter for testing. */
+    static AnnotatedTextArchive open(File file, RecordFormat format, int maxSegmentSize) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        boolean opened = false;
+        try {
+            AnnotatedTextArchive archive = read(file, raf, format, maxSegmentSize);
+            opened = true;
+            return archive;
+        } finally {
+            if (!opened) {
+                raf.close();
+            }
+        }
+    }
+
+    private static AnnotatedTextArchive read(File file, RandomAccessFile raf, RecordFormat format, int maxSegmentSize) throws IOException {
+        long fileLength = raf.length();
+        if (fileLength < 8 + TRAILER_SIZE) {
+            throw new IOException(file + " is not an archive");
+        }
+        raf.seek(0);
+        if (raf.readInt() != MAGIC) {
+            throw new IOException(file + " is not an archive");
+        }
+        int version = raf.readInt();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported archive version " + version);
+        }
+        String formatName = readString(raf);
+        if (!formatName.equals(format.name())) {
+            throw new IOException(file + " has records in format " + formatName + ", not " + format.name());
+        }
+        long dataStart = raf.getFilePointer();
+
+        raf.seek(fileLength - TRAILER_SIZE);
+        long indexPosition = raf.readLong();
+        if (raf.readInt() != MAGIC || indexPosition < dataStart || indexPosition > fileLength - TRAILER_SIZE) {
+            throw new IOException(file + " is truncated or was not closed by its writer");
+        }
+
+        FileChannel channel = raf.getChannel();
+        ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition, fileLength - TRAILER_SIZE - indexPosition);
+        if (index.remaining() < 4) {
+            throw new IOException(file + " has a damaged index");
+        }
+        int count = index.getInt();
+        // each entry has at least an id length, a position and a record length.
+        if (count < 0 || count > index.remaining() / INDEX_ENTRY_SIZE) {
+            throw new IOException(file + " has a damaged index: invalid record count " + count);
+        }
+        String[] ids = new String[count];
+        long[] positions = new long[count];
+        int[] lengths = new int[count];
+        for (int x = 0; x < count; x++) {
+            int idLength = index.getInt();
+            if (idLength < 0 || idLength > index.remaining() - (INDEX_ENTRY_SIZE - 4)) {
+                throw new IOException(file + " has a damaged index: invalid id length " + idLength);
+            }
+            byte[] bytes = new byte[idLength];
+            index.get(bytes);
+            ids[x] = new String(bytes, Charsets.UTF_8);
+            if (x > 0 && ids[x - 1].compareTo(ids[x]) >= 0) {
+                throw new IOException(file + " has a damaged index: ids are not sorted at " + ids[x]);
+            }
+            positions[x] = index.getLong();
+            lengths[x] = index.getInt();
+            if (lengths[x] < 0) {
+                throw new IOException(file + " has a damaged index: invalid length for " + ids[x]);
+            }
+            if (positions[x] < dataStart || positions[x] + lengths[x] > indexPosition) {
+                throw new IOException(file + " has a record outside of its data");
+            }
+        }
+
+        // Records are in file order, not id order; split the data between records.
+        long[] ends = new long[count];
+        for (int x = 0; x < count; x++) {
+            ends[x] = positions[x] + lengths[x];
+        }
+        Arrays.sort(ends);
+        List<Long> starts = Lists.newArrayList();
+        List<ByteBuffer> segments = Lists.newArrayList();
+        long segmentStart = dataStart;
+        long segmentEnd = dataStart;
+        for (long end : ends) {
+            if (end - segmentStart > maxSegmentSize && segmentEnd > segmentStart) {
+                starts.add(segmentStart);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+                segmentStart = segmentEnd;
+            }
+            segmentEnd = end;
+        }
+        if (segmentEnd > segmentStart) {
+            starts.add(segmentStart);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+        }
+        long[] segmentStarts = new long[starts.size()];
+        for (int x = 0; x < segmentStarts.length; x++) {
+            segmentStarts[x] = starts.get(x);
+        }
+        return new AnnotatedTextArchive(format, raf, ids, positions, lengths, segmentStarts, segments.toArray(new ByteBuffer[segments.size()]));
+    }
+
+    private static String readString(RandomAccessFile raf) throws IOException {
+        int length = raf.readInt();
+        if (length < 0 || length > 1024) {
+            throw new IOException("Invalid format name in archive");
+        }
+        byte[] bytes = new byte[length];
+        raf.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    /**
+     * @return the format of the records
+     */
+    public RecordFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the number of texts in the archive
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the ids of the texts, in UTF-16 order
+     */
+    public List<String> ids() {
+        return ImmutableList.copyOf(ids);
+    }
+
+    /**
+     * Returns whether the archive contains a text.
+     *
+     * @param id the id
+     * @return true if the archive contains a text with this id
+     */
+    public boolean contains(String id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * Returns the encoded form of a text. The buffer is read-only, and shares the mapped file;
+     * it is not valid after the archive is closed.
+     *
+     * @param id the id
+     * @return the record, or {@code null} if the archive does not contain the id
+     */
+    public ByteBuffer getRecord(String id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return null;
+        }
+        long position = positions[index];
+        int segment = Arrays.binarySearch(segmentStarts, position);
+        if (segment < 0) {
+            segment = -segment - 2;
+        }
+        // duplicate() gives each caller its own position and limit over the shared mapping.
+        ByteBuffer record = segments[segment].duplicate();
+        int offset = (int) (position - segmentStarts[segment]);
+        record.limit(offset + lengths[index]);
+        record.position(offset);
+        return record.slice();
+    }
+
+    /**
+     * Reads a text.
+     *
+     * @param id the id
+     * @return the text, or {@code null} if the archive does not contain the id
+     * @throws IOException if the record cannot be decoded
+     */
+    public AnnotatedText get(String id) throws IOException {
+        ByteBuffer record = getRecord(id);
+        return record == null ? null : format.decode(record);
+    }
+
+    /**
+     * Closes the file. The JVM releases the mapped memory when it is garbage-collected, not here;
+     * so do not use the buffers returned by {@link #getRecord(String)} after closing.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
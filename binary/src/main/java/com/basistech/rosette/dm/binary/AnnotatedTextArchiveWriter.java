@@ -0,0 +1,121 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Writes an {@link AnnotatedTextArchive}. Records are written as they are added; the index
+ * is written by {@link #close()}. An archive that is not closed cannot be opened.
+ * Not thread-safe.
+ */
+public final class AnnotatedTextArchiveWriter implements Closeable {
+    private final RecordFormat format;
+    private final DataOutputStream output;
+    private final SortedMap<String, long[]> index;
+    private long position;
+    private boolean closed;
+
+    /**
+     * Creates an archive, replacing any existing file.
+     *
+     * @param file the file
+     * @param format the encoding of the records
+     * @throws IOException if the file cannot be written
+     */
+    public AnnotatedTextArchiveWriter(File file, RecordFormat format) throws IOException {
+        this.format = format;
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        this.index = Maps.newTreeMap();
+        output.writeInt(AnnotatedTextArchive.MAGIC);
+        output.writeInt(AnnotatedTextArchive.VERSION);
+        writeString(format.name());
+        position = output.size();
+    }
+
+    /**
+     * Adds a text to the archive.
+     *
+     * @param id the id of the text, unique within the archive
+     * @param text the text
+     * @return this
+     * @throws IOException if the text cannot be encoded or written
+     * @throws IllegalArgumentException if the id is already in the archive
+     */
+    public AnnotatedTextArchiveWriter write(String id, AnnotatedText text) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Archive is closed");
+        }
+        if (index.containsKey(id)) {
+            throw new IllegalArgumentException("Duplicate id " + id);
+        }
+        byte[] record = format.encode(text);
+        output.write(record);
+        index.put(id, new long[] {position, record.length});
+        position += record.length;
+        return this;
+    }
+
+    /**
+     * @return the number of texts written so far
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Writes the index and closes the file.
+     *
+     * @throws IOException if the index cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long indexPosition = position;
+            output.writeInt(index.size());
+            for (Map.Entry<String, long[]> me : index.entrySet()) {
+                writeString(me.getKey());
+                output.writeLong(me.getValue()[0]);
+                output.writeInt((int) me.getValue()[1]);
+            }
+            output.writeLong(indexPosition);
+            output.writeInt(AnnotatedTextArchive.MAGIC);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.jackson.EmbeddingEncoding;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes {@link AnnotatedText} objects in a compact binary form, and decodes them.
+ * The encoding is meant for message queues and archives, where it is smaller and faster
+ * to decode than any of the JSON forms.
+ * <ul>
+ *     <li>Each distinct string (part-of-speech tags, entity types, lemmas, keys, and so on) is
+ *     stored once per document; later occurrences are references to the first.</li>
+ *     <li>The offsets of tokens, sentences, and the like are stored as variable-length deltas.</li>
+ *     <li>The text of a token is omitted when it matches the data at the token's offsets;
+ *     decoded tokens refer to the data, as with {@link com.basistech.rosette.dm.Token.Builder#textFrom(CharSequence)}.</li>
+ * </ul>
+ * Lists of tokens, sentences, base noun phrases, script regions, dependencies, entities,
+ * and categorizer results have their own encodings, decoded directly into the model builders.
+ * Any other attributes are stored together in the array-shaped JSON of
+ * {@link AnnotatedDataModelArrayModule}.
+ * <p>
+ * Codecs are immutable and thread-safe.
+ */
+public final class AnnotatedTextCodec {
+    private static final byte[] MAGIC = {'A', 'D', 'B'};
+    private static final int FORMAT_VERSION = 1;
+
+    private final ObjectMapper mapper;
+
+    /**
+     * Constructs a codec.
+     */
+    public AnnotatedTextCodec() {
+        // embeddings, often the bulk of what is left to Json, as base64 floats.
+        mapper = EmbeddingEncoding.BINARY.configure(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+    }
+
+    /**
+     * Encodes a text.
+     *
+     * @param text the text
+     * @return the encoding
+     * @throws IOException if an attribute cannot be serialized
+     */
+    public byte[] encode(AnnotatedText text) throws IOException {
+        return write(text).toByteArray();
+    }
+
+    /**
+     * Encodes a text to a stream. This does not close the stream.
+     *
+     * @param text the text
+     * @param output the stream
+     * @throws IOException for errors writing, or if an attribute cannot be serialized
+     */
+    public void encode(AnnotatedText text, OutputStream output) throws IOException {
+        write(text).writeTo(output);
+    }
+
+    /**
+     * Decodes a text.
+     *
+     * @param input the encoding
+     * @return the text
+     * @throws IOException if the input is not a valid encoding
+     */
+    public AnnotatedText decode(byte[] input) throws IOException {
+        return decode(ByteBuffer.wrap(input));
+    }
+
+    /**
+     * Decodes a text from a buffer, starting at its position. The position is left
+     * at the end of the text, so that a buffer can hold a series of texts.
+     *
+     * @param input the buffer
+     * @return the text
+     * @throws IOException if the input is not a valid encoding
+     */
+    public AnnotatedText decode(ByteBuffer input) throws IOException {
+        return read(new BinaryInput(mapper, input));
+    }
+
+    private BinaryOutput write(AnnotatedText text) throws IOException {
+        BinaryOutput out = new BinaryOutput(mapper);
+        for (byte b : MAGIC) {
+            out.writeByte(b);
+        }
+        out.writeByte(FORMAT_VERSION);
+        out.writeText(text.getData());
+        out.data(text.getData());
+
+        Map<String, List<String>> metadata = text.getDocumentMetadata();
+        out.writeVarint(metadata.size());
+        for (Map.Entry<String, List<String>> me : metadata.entrySet()) {
+            out.writeString(me.getKey());
+            out.writeStrings(me.getValue());
+        }
+
+        Map<String, ItemType> encoded = Maps.newLinkedHashMap();
+        AnnotatedText.Builder rest = null;
+        for (Map.Entry<String, BaseAttribute> me : text.getAttributes().entrySet()) {
+            ItemType type = ItemType.forList(me.getValue());
+            if (type != null) {
+                encoded.put(me.getKey(), type);
+            } else {
+                if (rest == null) {
+                    rest = new AnnotatedText.Builder();
+                }
+                rest.attributes().put(me.getKey(), me.getValue());
+            }
+        }
+
+        out.writeVarint(encoded.size());
+        for (Map.Entry<String, ItemType> me : encoded.entrySet()) {
+            ListAttribute<?> list = (ListAttribute<?>) text.getAttributes().get(me.getKey());
+            out.writeString(me.getKey());
+            out.writeByte(me.getValue().tag());
+            out.writeProperties(list.getExtendedProperties());
+            out.writeVarint(list.size());
+            me.getValue().write(out, list);
+        }
+        // empty when every attribute has its own encoding; the JSON of a text is never empty.
+        out.writeBytes(rest == null ? new byte[0] : mapper.writeValueAsBytes(rest.build()));
+        return out;
+    }
+
+    private AnnotatedText read(BinaryInput in) throws IOException {
+        for (byte b : MAGIC) {
+            if (in.readByte() != b) {
+                throw new IOException("Not ADM binary data");
+            }
+        }
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported version of ADM binary data: " + version);
+        }
+        String data = in.readText();
+        in.data(data);
+        AnnotatedText.Builder builder = new AnnotatedText.Builder().data(data);
+
+        int metadataCount = in.readCount();
+        for (int x = 0; x < metadataCount; x++) {
+            String key = in.readString();
+            builder.documentMetadata(key, in.readStrings());
+        }
+
+        int attributeCount = in.readCount();
+        for (int x = 0; x < attributeCount; x++) {
+            String key = in.readString();
+            int tag = in.readByte();
+            ItemType type = ItemType.forTag(tag);
+            if (type == null) {
+                throw new IOException("Unknown attribute type in ADM binary data: " + tag);
+            }
+            Map<String, Object> properties = in.readProperties();
+            List<BaseAttribute> items = type.read(in, in.readCount());
+            ListAttribute.Builder<BaseAttribute> list = new ListAttribute.Builder<>(type.itemClass());
+            list.setItems(items);
+            if (!properties.isEmpty()) {
+                list.extendedProperties(properties);
+            }
+            builder.attributes().put(key, list.build());
+        }
+
+        byte[] json = in.readBytes();
+        if (json.length > 0) {
+            builder.attributes().putAll(mapper.readValue(json, AnnotatedText.class).getAttributes());
+        }
+        return builder.build();
+    }
+}
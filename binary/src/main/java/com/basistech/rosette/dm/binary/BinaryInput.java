@@ -0,0 +1,233 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the encoding of one document; the counterpart of {@link BinaryOutput}.
+ * Malformed input results in {@link IOException}s.
+ */
+final class BinaryInput {
+    private final ObjectMapper mapper;
+    private final ByteBuffer buffer;
+    private final List<String> strings = Lists.newArrayList();
+    private CharSequence data;
+
+    BinaryInput(ObjectMapper mapper, ByteBuffer buffer) {
+        this.mapper = mapper;
+        this.buffer = buffer;
+    }
+
+    CharSequence data() {
+        return data;
+    }
+
+    void data(CharSequence documentData) {
+        this.data = documentData;
+    }
+
+    private void require(int count) throws IOException {
+        if (count < 0 || buffer.remaining() < count) {
+            throw new IOException("Truncated ADM binary data");
+        }
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xFF;
+    }
+
+    /* a capacity for a list of count items, not trusting the count further than the remaining input. */
+    int capacity(int count) {
+        return Math.min(count, buffer.remaining());
+    }
+
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in ADM binary data");
+    }
+
+    /* a varint that must fit in an int, such as a count or a length. */
+    int readCount() throws IOException {
+        long value = readVarint();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Count out of range in ADM binary data: " + value);
+        }
+        return (int) value;
+    }
+
+    long readSignedVarint() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readSignedInt() throws IOException {
+        return (int) readSignedVarint();
+    }
+
+    /* big-endian, as written, whatever the order of the caller's buffer. */
+    double readDouble() throws IOException {
+        require(8);
+        long bits = 0;
+        for (int x = 0; x < 8; x++) {
+            bits = (bits << 8) | (buffer.get() & 0xFF);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    byte[] readBytes() throws IOException {
+        int count = readCount();
+        require(count);
+        byte[] bytes = new byte[count];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private String readUtf8(int count) throws IOException {
+        require(count);
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), count, Charsets.UTF_8);
+            buffer.position(buffer.position() + count);
+        } else {
+            byte[] bytes = new byte[count];
+            buffer.get(bytes);
+            value = new String(bytes, Charsets.UTF_8);
+        }
+        return value;
+    }
+
+    String readText() throws IOException {
+        int count = readCount();
+        return count == 0 ? null : readUtf8(count - 1);
+    }
+
+    String readString() throws IOException {
+        int code = readCount();
+        if (code == 0) {
+            return null;
+        } else if (code == 1) {
+            String value = readUtf8(readCount());
+            strings.add(value);
+            return value;
+        }
+        int index = code - 2;
+        if (index >= strings.size()) {
+            throw new IOException("Undefined string reference in ADM binary data: " + index);
+        }
+        return strings.get(index);
+    }
+
+    List<String> readStrings() throws IOException {
+        int count = readCount();
+        List<String> values = Lists.newArrayListWithCapacity(capacity(count));
+        for (int x = 0; x < count; x++) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    List<String> readNullableStrings() throws IOException {
+        int count = readCount();
+        if (count == 0) {
+            return null;
+        }
+        List<String> values = Lists.newArrayListWithCapacity(capacity(count - 1));
+        for (int x = 0; x < count - 1; x++) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    Double readNullableDouble() throws IOException {
+        return readByte() == 0 ? null : readDouble();
+    }
+
+    Integer readNullableInt() throws IOException {
+        long value = readVarint();
+        if (value == 0) {
+            return null;
+        }
+        value--;
+        return (int) ((value >>> 1) ^ -(value & 1));
+    }
+
+    /* never null; an empty map when there are no properties. */
+    Map<String, Object> readProperties() throws IOException {
+        int count = readCount();
+        Map<String, Object> properties = Maps.newLinkedHashMap();
+        for (int x = 0; x < count; x++) {
+            String key = readString();
+            properties.put(key, readValue());
+        }
+        return properties;
+    }
+
+    Object readValue() throws IOException {
+        int type = readByte();
+        switch (type) {
+        case BinaryOutput.VALUE_NULL:
+            return null;
+        case BinaryOutput.VALUE_FALSE:
+            return Boolean.FALSE;
+        case BinaryOutput.VALUE_TRUE:
+            return Boolean.TRUE;
+        case BinaryOutput.VALUE_INT:
+            return readSignedInt();
+        case BinaryOutput.VALUE_LONG:
+            return readSignedVarint();
+        case BinaryOutput.VALUE_DOUBLE:
+            return readDouble();
+        case BinaryOutput.VALUE_STRING:
+            return readString();
+        case BinaryOutput.VALUE_LIST:
+            int size = readCount();
+            List<Object> list = Lists.newArrayListWithCapacity(capacity(size));
+            for (int x = 0; x < size; x++) {
+                list.add(readValue());
+            }
+            return list;
+        case BinaryOutput.VALUE_MAP:
+            int entries = readCount();
+            Map<String, Object> map = Maps.newLinkedHashMap();
+            for (int x = 0; x < entries; x++) {
+                String key = readString();
+                map.put(key, readValue());
+            }
+            return map;
+        case BinaryOutput.VALUE_JSON:
+            return mapper.readValue(readBytes(), Object.class);
+        default:
+            throw new IOException("Unknown value type in ADM binary data: " + type);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accumulates the encoding of one document. Strings pass through a dictionary, so that
+ * each distinct string is written once; later occurrences refer back to the first.
+ */
+final class BinaryOutput {
+    static final int VALUE_NULL = 0;
+    static final int VALUE_FALSE = 1;
+    static final int VALUE_TRUE = 2;
+    static final int VALUE_INT = 3;
+    static final int VALUE_LONG = 4;
+    static final int VALUE_DOUBLE = 5;
+    static final int VALUE_STRING = 6;
+    static final int VALUE_LIST = 7;
+    static final int VALUE_MAP = 8;
+    static final int VALUE_JSON = 9;
+
+    private final ObjectMapper mapper;
+    private final Map<String, Integer> strings = Maps.newHashMap();
+    private byte[] buffer = new byte[4096];
+    private int length;
+    private CharSequence data;
+
+    BinaryOutput(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /* the document data, which token texts are compared against. */
+    CharSequence data() {
+        return data;
+    }
+
+    void data(CharSequence documentData) {
+        this.data = documentData;
+    }
+
+    private void ensure(int more) {
+        if (length + more > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + more));
+        }
+    }
+
+    void writeByte(int value) {
+        ensure(1);
+        buffer[length++] = (byte) value;
+    }
+
+    /* unsigned LEB128. */
+    void writeVarint(long value) {
+        ensure(10);
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[length++] = (byte) v;
+    }
+
+    /* zigzag, so that small negative numbers are small too. */
+    void writeSignedVarint(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeDouble(double value) {
+        ensure(8);
+        long bits = Double.doubleToRawLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (bits >>> shift);
+        }
+    }
+
+    void writeBytes(byte[] bytes) {
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /* a string that is not worth a dictionary entry, such as the document data; null is allowed. */
+    void writeText(CharSequence text) {
+        if (text == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = text.toString().getBytes(Charsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /* 0 for null, 1 for a new string that follows, k + 2 for the k'th string. */
+    void writeString(String value) {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarint(index + 2L);
+        } else {
+            strings.put(value, strings.size());
+            writeVarint(1);
+            byte[] bytes = value.getBytes(Charsets.UTF_8);
+            writeBytes(bytes);
+        }
+    }
+
+    /* A list that the model stores as null when empty. */
+    void writeStrings(List<String> values) {
+        if (values == null) {
+            writeVarint(0);
+            return;
+        }
+        writeVarint(values.size());
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    /* A list for which null and empty differ. */
+    void writeNullableStrings(List<String> values) {
+        if (values == null) {
+            writeVarint(0);
+            return;
+        }
+        writeVarint(values.size() + 1L);
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    void writeNullableDouble(Double value) {
+        if (value == null) {
+            writeByte(0);
+        } else {
+            writeByte(1);
+            writeDouble(value);
+        }
+    }
+
+    void writeNullableInt(Integer value) {
+        if (value == null) {
+            writeVarint(0);
+        } else {
+            writeVarint(((value.longValue() << 1) ^ (value.longValue() >> 63)) + 1);
+        }
+    }
+
+    void writeProperties(Map<String, Object> properties) throws IOException {
+        if (properties == null) {
+            writeVarint(0);
+            return;
+        }
+        writeVarint(properties.size());
+        for (Map.Entry<String, Object> me : properties.entrySet()) {
+            writeString(me.getKey());
+            writeValue(me.getValue());
+        }
+    }
+
+    /* The values that JSON would give back as themselves are written directly; anything else goes through JSON. */
+    void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Integer) {
+            writeByte(VALUE_INT);
+            writeSignedVarint((Integer) value);
+        } else if (value instanceof Long) {
+            writeByte(VALUE_LONG);
+            writeSignedVarint((Long) value);
+        } else if (value instanceof Double) {
+            writeByte(VALUE_DOUBLE);
+            writeDouble((Double) value);
+        } else if (value instanceof String) {
+            writeByte(VALUE_STRING);
+            writeString((String) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            writeByte(VALUE_LIST);
+            writeVarint(list.size());
+            for (Object item : list) {
+                writeValue(item);
+            }
+        } else if (value instanceof Map && stringKeys((Map<?, ?>) value)) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeByte(VALUE_MAP);
+            writeVarint(map.size());
+            for (Map.Entry<?, ?> me : map.entrySet()) {
+                writeString((String) me.getKey());
+                writeValue(me.getValue());
+            }
+        } else {
+            writeByte(VALUE_JSON);
+            writeBytes(mapper.writeValueAsBytes(value));
+        }
+    }
+
+    private static boolean stringKeys(Map<?, ?> map) {
+        for (Object key : map.keySet()) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+}
@@ -0,0 +1,547 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.ArabicMorphoAnalysis;
+import com.basistech.rosette.dm.Attribute;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.BaseNounPhrase;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.HanMorphoAnalysis;
+import com.basistech.rosette.dm.KoreanMorphoAnalysis;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.ScriptRegion;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.KnownAttribute;
+import com.basistech.util.ISO15924;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The list attributes that have their own binary encoding, identified by a one-byte tag.
+ * Lists of anything else are stored as JSON.
+ * Offsets are stored as the difference from the start of the previous item, and the length.
+ */
+enum ItemType {
+    TOKEN(1, KnownAttribute.TOKEN) {
+        @Override
+        boolean accepts(BaseAttribute item) {
+            return acceptsToken(item);
+        }
+
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            writeTokens(out, items);
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            return readTokens(in, count);
+        }
+    },
+
+    SENTENCE(2, KnownAttribute.SENTENCE) {
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            int previousStart = 0;
+            for (BaseAttribute item : items) {
+                previousStart = writeSpan(out, (Attribute) item, previousStart);
+                out.writeProperties(item.getExtendedProperties());
+            }
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            List<BaseAttribute> items = Lists.newArrayListWithCapacity(in.capacity(count));
+            int start = 0;
+            for (int x = 0; x < count; x++) {
+                start += in.readSignedInt();
+                Sentence.Builder builder = new Sentence.Builder(start, start + in.readSignedInt());
+                readProperties(in, builder);
+                items.add(builder.build());
+            }
+            return items;
+        }
+    },
+
+    BASE_NOUN_PHRASE(3, KnownAttribute.BASE_NOUN_PHRASE) {
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            SENTENCE.write(out, items);
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            List<BaseAttribute> items = Lists.newArrayListWithCapacity(in.capacity(count));
+            int start = 0;
+            for (int x = 0; x < count; x++) {
+                start += in.readSignedInt();
+                BaseNounPhrase.Builder builder = new BaseNounPhrase.Builder(start, start + in.readSignedInt());
+                readProperties(in, builder);
+                items.add(builder.build());
+            }
+            return items;
+        }
+    },
+
+    SCRIPT_REGION(4, KnownAttribute.SCRIPT_REGION) {
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            int previousStart = 0;
+            for (BaseAttribute item : items) {
+                ScriptRegion region = (ScriptRegion) item;
+                previousStart = writeSpan(out, region, previousStart);
+                out.writeString(region.getScript() == null ? null : region.getScript().name());
+                out.writeProperties(region.getExtendedProperties());
+            }
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            List<BaseAttribute> items = Lists.newArrayListWithCapacity(in.capacity(count));
+            int start = 0;
+            for (int x = 0; x < count; x++) {
+                start += in.readSignedInt();
+                int end = start + in.readSignedInt();
+                String script = in.readString();
+                ScriptRegion.Builder builder = new ScriptRegion.Builder(start, end, script == null ? null : script(script));
+                readProperties(in, builder);
+                items.add(builder.build());
+            }
+            return items;
+        }
+    },
+
+    DEPENDENCY(5, KnownAttribute.DEPENDENCY) {
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            for (BaseAttribute item : items) {
+                Dependency dependency = (Dependency) item;
+                out.writeString(dependency.getRelationship());
+                out.writeSignedVarint(dependency.getGovernorTokenIndex());
+                out.writeSignedVarint(dependency.getDependencyTokenIndex());
+                out.writeProperties(dependency.getExtendedProperties());
+            }
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            List<BaseAttribute> items = Lists.newArrayListWithCapacity(in.capacity(count));
+            for (int x = 0; x < count; x++) {
+                String relationship = in.readString();
+                int governor = in.readSignedInt();
+                Dependency.Builder builder = new Dependency.Builder(relationship, governor, in.readSignedInt());
+                readProperties(in, builder);
+                items.add(builder.build());
+            }
+            return items;
+        }
+    },
+
+    ENTITY(6, KnownAttribute.ENTITY) {
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            for (BaseAttribute item : items) {
+                Entity entity = (Entity) item;
+                List<Mention> mentions = entity.getMentions();
+                out.writeVarint(mentions == null ? 0 : mentions.size());
+                if (mentions != null) {
+                    int previousStart = 0;
+                    for (Mention mention : mentions) {
+                        previousStart = writeSpan(out, mention, previousStart);
+                        out.writeNullableDouble(mention.getConfidence());
+                        out.writeString(mention.getSource());
+                        out.writeString(mention.getSubsource());
+                        out.writeString(mention.getNormalized());
+                        out.writeProperties(mention.getExtendedProperties());
+                    }
+                }
+                out.writeNullableInt(entity.getHeadMentionIndex());
+                out.writeString(entity.getType());
+                out.writeString(entity.getEntityId());
+                out.writeNullableDouble(entity.getConfidence());
+                List<CategorizerResult> sentiment = entity.getSentiment();
+                out.writeVarint(sentiment == null ? 0 : sentiment.size());
+                if (sentiment != null) {
+                    CATEGORIZER_RESULT.write(out, sentiment);
+                }
+                out.writeNullableDouble(entity.getSalience());
+                out.writeProperties(entity.getExtendedProperties());
+            }
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            List<BaseAttribute> items = Lists.newArrayListWithCapacity(in.capacity(count));
+            for (int x = 0; x < count; x++) {
+                Entity.Builder builder = new Entity.Builder();
+                int mentionCount = in.readCount();
+                int start = 0;
+                for (int m = 0; m < mentionCount; m++) {
+                    start += in.readSignedInt();
+                    Mention.Builder mention = new Mention.Builder(start, start + in.readSignedInt());
+                    mention.confidence(in.readNullableDouble());
+                    mention.source(in.readString());
+                    mention.subsource(in.readString());
+                    mention.normalized(in.readString());
+                    readProperties(in, mention);
+                    builder.mention(mention.build());
+                }
+                builder.headMentionIndex(in.readNullableInt());
+                builder.type(in.readString());
+                builder.entityId(in.readString());
+                builder.confidence(in.readNullableDouble());
+                for (BaseAttribute sentiment : CATEGORIZER_RESULT.read(in, in.readCount())) {
+                    builder.sentiment((CategorizerResult) sentiment);
+                }
+                builder.salience(in.readNullableDouble());
+                readProperties(in, builder);
+                items.add(builder.build());
+            }
+            return items;
+        }
+    },
+
+    CATEGORIZER_RESULT(7, KnownAttribute.CATEGORIZATION_RESULT) {
+        @Override
+        void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException {
+            for (BaseAttribute item : items) {
+                CategorizerResult result = (CategorizerResult) item;
+                out.writeString(result.getLabel());
+                out.writeNullableDouble(result.getScore());
+                out.writeNullableDouble(result.getConfidence());
+                out.writeNullableStrings(result.getExplanationSet());
+                Map<String, Double> scores = result.getPerFeatureScores();
+                out.writeVarint(scores == null ? 0 : scores.size() + 1L);
+                if (scores != null) {
+                    for (Map.Entry<String, Double> me : scores.entrySet()) {
+                        out.writeString(me.getKey());
+                        out.writeNullableDouble(me.getValue());
+                    }
+                }
+                out.writeProperties(result.getExtendedProperties());
+            }
+        }
+
+        @Override
+        List<BaseAttribute> read(BinaryInput in, int count) throws IOException {
+            List<BaseAttribute> items = Lists.newArrayListWithCapacity(in.capacity(count));
+            for (int x = 0; x < count; x++) {
+                String label = in.readString();
+                CategorizerResult.Builder builder = new CategorizerResult.Builder(label, in.readNullableDouble());
+                builder.confidence(in.readNullableDouble());
+                builder.explanationSet(in.readNullableStrings());
+                int scoreCount = in.readCount();
+                if (scoreCount > 0) {
+                    Map<String, Double> scores = Maps.newLinkedHashMap();
+                    for (int s = 0; s < scoreCount - 1; s++) {
+                        String feature = in.readString();
+                        scores.put(feature, in.readNullableDouble());
+                    }
+                    builder.perFeatureScores(scores);
+                }
+                readProperties(in, builder);
+                items.add(builder.build());
+            }
+            return items;
+        }
+    };
+
+    private static final int TOKEN_TEXT = 1;
+    private static final int TOKEN_NO_TEXT = 2;
+    private static final int TOKEN_NORMALIZED = 4;
+    private static final int TOKEN_SOURCE = 8;
+    private static final int TOKEN_ANALYSES = 16;
+    private static final int TOKEN_PROPERTIES = 32;
+
+    private static final int ANALYSIS_BASE = 0;
+    private static final int ANALYSIS_HAN = 1;
+    private static final int ANALYSIS_ARABIC = 2;
+    private static final int ANALYSIS_KOREAN = 3;
+
+    private final int tag;
+    private final KnownAttribute attribute;
+
+    ItemType(int tag, KnownAttribute attribute) {
+        this.tag = tag;
+        this.attribute = attribute;
+    }
+
+    int tag() {
+        return tag;
+    }
+
+    Class<? extends BaseAttribute> itemClass() {
+        return attribute.attributeClass();
+    }
+
+    /* whether this encoding can represent the item without loss. */
+    boolean accepts(BaseAttribute item) {
+        return item.getClass() == itemClass();
+    }
+
+    abstract void write(BinaryOutput out, List<? extends BaseAttribute> items) throws IOException;
+
+    abstract List<BaseAttribute> read(BinaryInput in, int count) throws IOException;
+
+    static ItemType forTag(int tag) {
+        for (ItemType type : values()) {
+            if (type.tag == tag) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the encoding for a list, or null if the list has to be stored as JSON.
+     */
+    static ItemType forList(BaseAttribute value) {
+        if (value.getClass() != ListAttribute.class) {
+            return null;
+        }
+        ListAttribute<?> list = (ListAttribute<?>) value;
+        for (ItemType type : values()) {
+            if (type.itemClass() == list.getItemClass()) {
+                for (BaseAttribute item : list) {
+                    if (item == null || !type.accepts(item)) {
+                        return null;
+                    }
+                }
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static ISO15924 script(String name) throws IOException {
+        try {
+            return ISO15924.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown script in ADM binary data: " + name, e);
+        }
+    }
+
+    private static int writeSpan(BinaryOutput out, Attribute item, int previousStart) {
+        out.writeSignedVarint((long) item.getStartOffset() - previousStart);
+        out.writeSignedVarint((long) item.getEndOffset() - item.getStartOffset());
+        return item.getStartOffset();
+    }
+
+    private static void readProperties(BinaryInput in, BaseAttribute.Builder<?, ?> builder) throws IOException {
+        Map<String, Object> properties = in.readProperties();
+        if (!properties.isEmpty()) {
+            builder.extendedProperties(properties);
+        }
+    }
+
+    private static boolean acceptsToken(BaseAttribute item) {
+        if (item.getClass() != Token.class) {
+            return false;
+        }
+        List<MorphoAnalysis> analyses = ((Token) item).getAnalyses();
+        if (analyses != null) {
+            for (MorphoAnalysis analysis : analyses) {
+                Class<?> analysisClass = analysis.getClass();
+                if (analysisClass != MorphoAnalysis.class && analysisClass != HanMorphoAnalysis.class
+                        && analysisClass != ArabicMorphoAnalysis.class && analysisClass != KoreanMorphoAnalysis.class) {
+                    return false;
+                }
+                if (analysis.getComponents() != null) {
+                    for (Token component : analysis.getComponents()) {
+                        if (!acceptsToken(component)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void writeTokens(BinaryOutput out, List<? extends BaseAttribute> tokens) throws IOException {
+        int previousStart = 0;
+        for (BaseAttribute item : tokens) {
+            Token token = (Token) item;
+            int start = token.getStartOffset();
+            int end = token.getEndOffset();
+            String text = token.getText();
+            int flags = 0;
+            if (text == null) {
+                flags |= TOKEN_NO_TEXT;
+            } else if (!Token.textMatches(text, out.data(), start, end)) {
+                flags |= TOKEN_TEXT;
+            }
+            flags |= token.getNormalized() != null ? TOKEN_NORMALIZED : 0;
+            flags |= token.getSource() != null ? TOKEN_SOURCE : 0;
+            flags |= token.getAnalyses() != null ? TOKEN_ANALYSES : 0;
+            flags |= token.getExtendedProperties().isEmpty() ? 0 : TOKEN_PROPERTIES;
+            out.writeByte(flags);
+            previousStart = writeSpan(out, token, previousStart);
+            if ((flags & TOKEN_TEXT) != 0) {
+                out.writeString(text);
+            }
+            if ((flags & TOKEN_NORMALIZED) != 0) {
+                out.writeStrings(token.getNormalized());
+            }
+            if ((flags & TOKEN_SOURCE) != 0) {
+                out.writeString(token.getSource());
+            }
+            if ((flags & TOKEN_ANALYSES) != 0) {
+                out.writeVarint(token.getAnalyses().size());
+                for (MorphoAnalysis analysis : token.getAnalyses()) {
+                    writeAnalysis(out, analysis);
+                }
+            }
+            if ((flags & TOKEN_PROPERTIES) != 0) {
+                out.writeProperties(token.getExtendedProperties());
+            }
+        }
+    }
+
+    private static List<BaseAttribute> readTokens(BinaryInput in, int count) throws IOException {
+        List<BaseAttribute> tokens = Lists.newArrayListWithCapacity(in.capacity(count));
+        int start = 0;
+        for (int x = 0; x < count; x++) {
+            int flags = in.readByte();
+            start += in.readSignedInt();
+            int end = start + in.readSignedInt();
+            Token.Builder builder = new Token.Builder(start, end, null);
+            if ((flags & TOKEN_TEXT) != 0) {
+                builder.text(in.readString());
+            } else if ((flags & TOKEN_NO_TEXT) == 0) {
+                builder.textFrom(in.data());
+            }
+            if ((flags & TOKEN_NORMALIZED) != 0) {
+                builder.normalized(in.readStrings());
+            }
+            if ((flags & TOKEN_SOURCE) != 0) {
+                builder.source(in.readString());
+            }
+            if ((flags & TOKEN_ANALYSES) != 0) {
+                int analysisCount = in.readCount();
+                List<MorphoAnalysis> analyses = Lists.newArrayListWithCapacity(in.capacity(analysisCount));
+                for (int a = 0; a < analysisCount; a++) {
+                    analyses.add(readAnalysis(in));
+                }
+                builder.analyses(analyses);
+            }
+            if ((flags & TOKEN_PROPERTIES) != 0) {
+                readProperties(in, builder);
+            }
+            tokens.add(builder.build());
+        }
+        return tokens;
+    }
+
+    private static void writeAnalysis(BinaryOutput out, MorphoAnalysis analysis) throws IOException {
+        if (analysis instanceof HanMorphoAnalysis) {
+            out.writeByte(ANALYSIS_HAN);
+        } else if (analysis instanceof ArabicMorphoAnalysis) {
+            out.writeByte(ANALYSIS_ARABIC);
+        } else if (analysis instanceof KoreanMorphoAnalysis) {
+            out.writeByte(ANALYSIS_KOREAN);
+        } else {
+            out.writeByte(ANALYSIS_BASE);
+        }
+        out.writeString(analysis.getPartOfSpeech());
+        out.writeString(analysis.getLemma());
+        out.writeString(analysis.getRaw());
+        List<Token> components = analysis.getComponents();
+        out.writeVarint(components == null ? 0 : components.size());
+        if (components != null) {
+            writeTokens(out, components);
+        }
+        if (analysis instanceof HanMorphoAnalysis) {
+            out.writeStrings(((HanMorphoAnalysis) analysis).getReadings());
+        } else if (analysis instanceof ArabicMorphoAnalysis) {
+            ArabicMorphoAnalysis arabic = (ArabicMorphoAnalysis) analysis;
+            out.writeSignedVarint(arabic.getPrefixLength());
+            out.writeSignedVarint(arabic.getStemLength());
+            out.writeString(arabic.getRoot());
+            out.writeByte((arabic.isDefiniteArticle() ? 1 : 0) | (arabic.isStrippablePrefix() ? 2 : 0));
+            out.writeStrings(arabic.getPrefixes());
+            out.writeStrings(arabic.getPrefixTags());
+            out.writeStrings(arabic.getStems());
+            out.writeStrings(arabic.getStemTags());
+            out.writeStrings(arabic.getSuffixes());
+            out.writeStrings(arabic.getSuffixTags());
+        } else if (analysis instanceof KoreanMorphoAnalysis) {
+            KoreanMorphoAnalysis korean = (KoreanMorphoAnalysis) analysis;
+            out.writeStrings(korean.getMorphemes());
+            out.writeStrings(korean.getMorphemeTags());
+        }
+        out.writeProperties(analysis.getExtendedProperties());
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static MorphoAnalysis readAnalysis(BinaryInput in) throws IOException {
+        int kind = in.readByte();
+        String partOfSpeech = in.readString();
+        String lemma = in.readString();
+        String raw = in.readString();
+        int componentCount = in.readCount();
+        List<BaseAttribute> components = componentCount == 0 ? null : readTokens(in, componentCount);
+        MorphoAnalysis.Builder builder;
+        switch (kind) {
+        case ANALYSIS_BASE:
+            builder = new MorphoAnalysis.Builder();
+            break;
+        case ANALYSIS_HAN:
+            builder = new HanMorphoAnalysis.Builder().readings(in.readStrings());
+            break;
+        case ANALYSIS_ARABIC:
+            ArabicMorphoAnalysis.Builder arabic = new ArabicMorphoAnalysis.Builder();
+            int prefixLength = in.readSignedInt();
+            arabic.lengths(prefixLength, in.readSignedInt());
+            arabic.root(in.readString());
+            int flags = in.readByte();
+            arabic.definiteArticle((flags & 1) != 0);
+            arabic.strippablePrefix((flags & 2) != 0);
+            List<String> prefixes = in.readStrings();
+            arabic.prefixes(prefixes, in.readStrings());
+            List<String> stems = in.readStrings();
+            arabic.stems(stems, in.readStrings());
+            List<String> suffixes = in.readStrings();
+            arabic.suffixes(suffixes, in.readStrings());
+            builder = arabic;
+            break;
+        case ANALYSIS_KOREAN:
+            List<String> morphemes = in.readStrings();
+            builder = new KoreanMorphoAnalysis.Builder().morphemes(morphemes, in.readStrings());
+            break;
+        default:
+            throw new IOException("Unknown analysis type in ADM binary data: " + kind);
+        }
+        builder.partOfSpeech(partOfSpeech);
+        builder.lemma(lemma);
+        builder.raw(raw);
+        if (components != null) {
+            builder.components((List) components);
+        }
+        readProperties(in, builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The encoding of the records in an {@link AnnotatedTextArchive}. The name of the format is
+ * stored in the archive, and must match when the archive is opened.
+ * Formats must be thread-safe.
+ */
+public abstract class RecordFormat {
+    private final String name;
+
+    /**
+     * Constructs a format.
+     *
+     * @param name the name stored in archives
+     */
+    protected RecordFormat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the format of {@link AnnotatedTextCodec}.
+     *
+     * @return the format
+     */
+    public static RecordFormat binary() {
+        return new RecordFormat("adm-binary") {
+            private final AnnotatedTextCodec codec = new AnnotatedTextCodec();
+
+            @Override
+            public byte[] encode(AnnotatedText text) throws IOException {
+                return codec.encode(text);
+            }
+
+            @Override
+            public AnnotatedText decode(ByteBuffer record) throws IOException {
+                return codec.decode(record);
+            }
+        };
+    }
+
+    /**
+     * Returns a format that uses an {@link ObjectMapper} configured for the data model, in any
+     * data format that the mapper's factory supports.
+     *
+     * @param name the name of the format, such as "json", "json-array" or "smile"
+     * @param mapper the mapper
+     * @return the format
+     */
+    public static RecordFormat jackson(String name, final ObjectMapper mapper) {
+        return new RecordFormat(name) {
+            @Override
+            public byte[] encode(AnnotatedText text) throws IOException {
+                return mapper.writeValueAsBytes(text);
+            }
+
+            @Override
+            public AnnotatedText decode(ByteBuffer record) throws IOException {
+                if (record.hasArray()) {
+                    return mapper.readValue(record.array(), record.arrayOffset() + record.position(), record.remaining(), AnnotatedText.class);
+                }
+                return mapper.readValue(new ByteBufferBackedInputStream(record), AnnotatedText.class);
+            }
+        };
+    }
+
+    /**
+     * @return the name of the format
+     */
+    public final String name() {
+        return name;
+    }
+
+    /**
+     * Encodes a text.
+     *
+     * @param text the text
+     * @return the record
+     * @throws IOException if the text cannot be encoded
+     */
+    public abstract byte[] encode(AnnotatedText text) throws IOException;
+
+    /**
+     * Decodes a text from the remaining bytes of a buffer.
+     *
+     * @param record the record
+     * @return the text
+     * @throws IOException if the record is not valid
+     */
+    public abstract AnnotatedText decode(ByteBuffer record) throws IOException;
+}
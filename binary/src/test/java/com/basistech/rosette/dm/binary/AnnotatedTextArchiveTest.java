@@ -0,0 +1,228 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.AnnotatedDataModelModule;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AnnotatedTextArchiveTest {
+    private static final int COUNT = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static AnnotatedText text(int number) {
+        String data = "Text number " + number + ".";
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        tokens.add(new Token.Builder(0, 4, "Text").build());
+        tokens.add(new Token.Builder(5, 11, "number").addNormalized("number").build());
+        int end = data.length() - 1;
+        tokens.add(new Token.Builder(12, end, data.substring(12, end)).build());
+        tokens.add(new Token.Builder(end, end + 1, ".").build());
+        return new AnnotatedText.Builder().data(data).tokens(tokens.build()).build();
+    }
+
+    private static String id(int number) {
+        return "doc-" + number;
+    }
+
+    /* Writes in reverse id order, so that file order and index order differ. */
+    private File write(RecordFormat format) throws IOException {
+        File file = folder.newFile();
+        try (AnnotatedTextArchiveWriter writer = new AnnotatedTextArchiveWriter(file, format)) {
+            for (int x = COUNT - 1; x >= 0; x--) {
+                writer.write(id(x), text(x));
+            }
+            assertEquals(COUNT, writer.size());
+        }
+        return file;
+    }
+
+    private void checkAll(AnnotatedTextArchive archive) throws IOException {
+        assertEquals(COUNT, archive.size());
+        for (int x = 0; x < COUNT; x++) {
+            assertTrue(archive.contains(id(x)));
+            assertEquals(text(x).getData(), archive.get(id(x)).getData());
+            assertEquals(text(x).getTokens(), archive.get(id(x)).getTokens());
+        }
+        assertFalse(archive.contains("missing"));
+        assertNull(archive.get("missing"));
+        assertNull(archive.getRecord("missing"));
+    }
+
+    @Test
+    public void binary() throws Exception {
+        File file = write(RecordFormat.binary());
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(file, RecordFormat.binary())) {
+            checkAll(archive);
+            List<String> ids = archive.ids();
+            assertEquals(COUNT, ids.size());
+            assertEquals(Lists.newArrayList(ids), Lists.newArrayList(new TreeSet<>(ids)));
+        }
+    }
+
+    @Test
+    public void jackson() throws Exception {
+        RecordFormat json = RecordFormat.jackson("json", AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper()));
+        RecordFormat jsonArray = RecordFormat.jackson("json-array", AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(write(json), json)) {
+            checkAll(archive);
+        }
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(write(jsonArray), jsonArray)) {
+            checkAll(archive);
+        }
+    }
+
+    @Test
+    public void segments() throws Exception {
+        File file = write(RecordFormat.binary());
+        // smaller than two records, so that every record has a segment of its own.
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(file, RecordFormat.binary(), 1)) {
+            checkAll(archive);
+        }
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(file, RecordFormat.binary(), 1000)) {
+            checkAll(archive);
+        }
+    }
+
+    @Test
+    public void records() throws Exception {
+        File file = write(RecordFormat.binary());
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(file, RecordFormat.binary())) {
+            ByteBuffer record = archive.getRecord(id(7));
+            assertTrue(record.isReadOnly());
+            assertEquals(0, record.position());
+            assertEquals(RecordFormat.binary().encode(text(7)).length, record.remaining());
+            assertEquals(text(7).getData(), new AnnotatedTextCodec().decode(record).getData());
+        }
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+        File file = write(RecordFormat.binary());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (final AnnotatedTextArchive archive = AnnotatedTextArchive.open(file, RecordFormat.binary())) {
+            List<Future<Void>> futures = Lists.newArrayList();
+            for (int t = 0; t < 8; t++) {
+                final int offset = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int x = 0; x < COUNT * 5; x++) {
+                            int number = (x * 7 + offset) % COUNT;
+                            assertEquals(text(number).getData(), archive.get(id(number)).getData());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void empty() throws Exception {
+        File file = folder.newFile();
+        new AnnotatedTextArchiveWriter(file, RecordFormat.binary()).close();
+        try (AnnotatedTextArchive archive = AnnotatedTextArchive.open(file, RecordFormat.binary())) {
+            assertEquals(0, archive.size());
+            assertNull(archive.get(id(0)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateId() throws Exception {
+        try (AnnotatedTextArchiveWriter writer = new AnnotatedTextArchiveWriter(folder.newFile(), RecordFormat.binary())) {
+            writer.write(id(0), text(0));
+            writer.write(id(0), text(1));
+        }
+    }
+
+    @Test
+    public void wrongFormat() throws Exception {
+        File file = write(RecordFormat.binary());
+        try {
+            AnnotatedTextArchive.open(file, RecordFormat.jackson("json", new ObjectMapper())).close();
+            fail("opened with the wrong format");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("adm-binary"));
+        }
+    }
+
+    /* Overwrites the index of an archive, at an offset from its start, and checks that opening it fails. */
+    private void checkDamagedIndex(int offset, byte[] bytes) throws Exception {
+        File file = write(RecordFormat.binary());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 12);
+            raf.seek(raf.readLong() + offset);
+            raf.write(bytes);
+        }
+        try {
+            AnnotatedTextArchive.open(file, RecordFormat.binary()).close();
+            fail("opened a damaged index");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("damaged index"));
+        }
+    }
+
+    @Test
+    public void damagedIndex() throws Exception {
+        byte[] minusOne = {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff};
+        // the count, then the first entry: the id length, "doc-0", the position and the record length.
+        checkDamagedIndex(0, minusOne);
+        checkDamagedIndex(4, minusOne);
+        checkDamagedIndex(4 + 4 + 5 + 8, minusOne);
+        checkDamagedIndex(4 + 4, "doc-9".getBytes("UTF-8"));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated() throws Exception {
+        File file = write(RecordFormat.binary());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        AnnotatedTextArchive.open(file, RecordFormat.binary()).close();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.binary;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.ArabicMorphoAnalysis;
+import com.basistech.rosette.dm.BaseNounPhrase;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.EmbeddingCollection;
+import com.basistech.rosette.dm.Embeddings;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.HanMorphoAnalysis;
+import com.basistech.rosette.dm.KoreanMorphoAnalysis;
+import com.basistech.rosette.dm.LanguageDetection;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.ScriptRegion;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.basistech.util.ISO15924;
+import com.basistech.util.LanguageCode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AnnotatedTextCodecTest {
+    //                                   0123456789012345678901234
+    private static final String DATA = "Dogs chase cats. Big dog.";
+    private AnnotatedText text;
+    private AnnotatedTextCodec codec;
+
+    @Before
+    public void before() {
+        codec = new AnnotatedTextCodec();
+        AnnotatedText.Builder builder = new AnnotatedText.Builder().data(DATA);
+        builder.documentMetadata("source", "test");
+
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        Token.Builder dogs = new Token.Builder(0, 4, "Dogs").addNormalized("dog").source("unit");
+        dogs.addAnalysis(new MorphoAnalysis.Builder().partOfSpeech("NOUN").lemma("dog")
+                .addComponent(new Token.Builder(0, 3, "Dog").build()).build());
+        dogs.addAnalysis(new HanMorphoAnalysis.Builder().addReading("inu").partOfSpeech("NOUN").build());
+        tokens.add(dogs.build());
+        Token.Builder chase = new Token.Builder(5, 10, "chase");
+        chase.addAnalysis(new ArabicMorphoAnalysis.Builder().lengths(1, 3).root("chs").definiteArticle(true)
+                .addPrefix("c", "PREP").addStem("has", "VERB").addSuffix("e", "SUFF").partOfSpeech("VERB").build());
+        chase.addAnalysis(new KoreanMorphoAnalysis.Builder().addMorpheme("chase", "VV").partOfSpeech("VERB").build());
+        chase.extendedProperty("weight", 3);
+        chase.extendedProperty("nested", ImmutableMap.of("list", Arrays.asList(1L, 2.5, "x", true)));
+        tokens.add(chase.build());
+        tokens.add(new Token.Builder(11, 15, "cats").source("unit").build());
+        // a text that does not match the data
+        tokens.add(new Token.Builder(15, 16, "!").build());
+        tokens.add(new Token.Builder(17, 20, "Big").build());
+        tokens.add(new Token.Builder(21, 24, "dog").addNormalized("dog").build());
+        tokens.add(new Token.Builder(24, 25, ".").build());
+        builder.tokens(tokens.extendedProperty("tokenizer", "unit").build());
+
+        ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+        sentences.add(new Sentence.Builder(0, 16).build());
+        sentences.add(new Sentence.Builder(17, 25).build());
+        builder.sentences(sentences.build());
+
+        ListAttribute.Builder<BaseNounPhrase> phrases = new ListAttribute.Builder<>(BaseNounPhrase.class);
+        phrases.add(new BaseNounPhrase.Builder(17, 24).build());
+        builder.baseNounPhrases(phrases.build());
+
+        ListAttribute.Builder<ScriptRegion> regions = new ListAttribute.Builder<>(ScriptRegion.class);
+        regions.add(new ScriptRegion.Builder(0, 25, ISO15924.Latn).build());
+        builder.scriptRegions(regions.build());
+
+        ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+        dependencies.add(new Dependency.Builder("nsubj", 1, 0).build());
+        dependencies.add(new Dependency.Builder("root", -1, 1).build());
+        builder.dependencies(dependencies.build());
+
+        ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        entities.add(new Entity.Builder().type("ANIMAL").entityId("Q144").confidence(0.5).headMentionIndex(0)
+                .mention(new Mention.Builder(0, 4).source("unit").normalized("dog").confidence(0.25).build())
+                .mention(new Mention.Builder(21, 24).source("unit").build())
+                .sentiment(new CategorizerResult.Builder("pos", 0.75).explanationSet(Lists.newArrayList("good")).build())
+                .salience(1.0).build());
+        entities.add(new Entity.Builder().type("ANIMAL").mention(new Mention.Builder(11, 15).build()).build());
+        builder.entities(entities.build());
+
+        ListAttribute.Builder<CategorizerResult> categories = new ListAttribute.Builder<>(CategorizerResult.class);
+        categories.add(new CategorizerResult.Builder("PETS", 2.0).confidence(0.9)
+                .perFeatureScores(ImmutableMap.of("dog", 1.5)).build());
+        builder.categorizerResults(categories.build());
+
+        // no binary encoding of its own
+        List<LanguageDetection.DetectionResult> results = Lists.newArrayList();
+        results.add(new LanguageDetection.DetectionResult.Builder(LanguageCode.ENGLISH).script(ISO15924.Latn).confidence(1.0).build());
+        builder.wholeDocumentLanguageDetection(new LanguageDetection.Builder(0, 25, results).build());
+        EmbeddingCollection.Builder vectors = new EmbeddingCollection.Builder();
+        for (int x = 0; x < 7; x++) {
+            vectors.put(x, new float[] {x, 0.5f, -x});
+        }
+        builder.embeddings(new Embeddings.Builder().put(Embeddings.Name.TOKENS, vectors.build()).build());
+        text = builder.build();
+    }
+
+    private static void assertTextEquals(AnnotatedText expected, AnnotatedText actual) {
+        assertEquals(String.valueOf(expected.getData()), String.valueOf(actual.getData()));
+        assertEquals(expected.getDocumentMetadata(), actual.getDocumentMetadata());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        AnnotatedText decoded = codec.decode(codec.encode(text));
+        assertTextEquals(text, decoded);
+        for (int x = 0; x < text.getTokens().size(); x++) {
+            assertEquals(text.getTokens().get(x).getText(), decoded.getTokens().get(x).getText());
+        }
+    }
+
+    @Test
+    public void smallerThanJson() throws Exception {
+        ObjectMapper mapper = AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper());
+        assertTrue(codec.encode(text).length < mapper.writeValueAsBytes(text).length);
+    }
+
+    @Test
+    public void series() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AnnotatedText empty = new AnnotatedText.Builder().build();
+        codec.encode(text, bytes);
+        codec.encode(empty, bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        assertTextEquals(text, codec.decode(buffer));
+        assertTextEquals(empty, codec.decode(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void littleEndianBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(codec.encode(text)).order(ByteOrder.LITTLE_ENDIAN);
+        AnnotatedText decoded = codec.decode(buffer);
+        assertTextEquals(text, decoded);
+        assertEquals(0.5, decoded.getEntities().get(0).getConfidence(), 0.0);
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        byte[] encoded = codec.encode(text);
+        try {
+            codec.decode(Arrays.copyOf(encoded, encoded.length / 2));
+            fail("Expected an exception");
+        } catch (IOException e) {
+            // expected
+        }
+        assertArrayEquals(encoded, codec.encode(codec.decode(encoded)));
+    }
+}
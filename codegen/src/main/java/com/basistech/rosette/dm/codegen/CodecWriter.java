@@ -0,0 +1,538 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.codegen;
+
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes the source of the generated classes.
+ */
+final class CodecWriter {
+    static final String REGISTRY = "GeneratedCodecs";
+    private static final String ITEM_FIELDS = "com.basistech.rosette.dm.jackson.ItemFields";
+    private static final String INDENT = "    ";
+
+    private final String packageName;
+    private final boolean generatedAnnotation;
+    private final Types types;
+    private final StringBuilder source = new StringBuilder();
+    private int depth;
+
+    CodecWriter(String packageName, boolean generatedAnnotation, Types types) {
+        this.packageName = packageName;
+        this.generatedAnnotation = generatedAnnotation;
+        this.types = types;
+    }
+
+    /**
+     * @return the source of the codec class for one model class.
+     */
+    String codec(ItemType type) {
+        String model = type.model.getQualifiedName().toString();
+        header("com.fasterxml.jackson.core.JsonGenerator",
+                "com.fasterxml.jackson.core.JsonParser",
+                "com.fasterxml.jackson.core.JsonToken",
+                "com.fasterxml.jackson.core.type.TypeReference",
+                "com.fasterxml.jackson.databind.DeserializationContext",
+                "com.fasterxml.jackson.databind.DeserializationFeature",
+                "com.fasterxml.jackson.databind.JsonDeserializer",
+                "com.fasterxml.jackson.databind.JsonMappingException",
+                "com.fasterxml.jackson.databind.SerializerProvider",
+                "com.fasterxml.jackson.databind.deser.ResolvableDeserializer",
+                "com.fasterxml.jackson.databind.deser.std.StdDeserializer",
+                "com.fasterxml.jackson.databind.jsontype.TypeSerializer",
+                "com.fasterxml.jackson.databind.ser.std.StdSerializer",
+                "java.io.IOException",
+                "java.util.Map");
+        line("/**");
+        line(" * Reads and writes {@link " + model + "} as described by {@link " + type.mixin.getQualifiedName() + "}.");
+        line(" */");
+        generated();
+        open("final class " + type.codecName());
+        open("private " + type.codecName() + "()");
+        line("//");
+        close();
+        line("");
+        build(type, model);
+        serializer(type, model);
+        arraySerializer(type, model);
+        baseDeserializer(type, model);
+        deserializer(type, model);
+        arrayDeserializer(type, model);
+        close();
+        return source.toString();
+    }
+
+    /**
+     * @return the source of the class that supplies the codecs to a module.
+     */
+    String registry(List<ItemType> itemTypes) {
+        header("com.fasterxml.jackson.databind.BeanDescription",
+                "com.fasterxml.jackson.databind.DeserializationConfig",
+                "com.fasterxml.jackson.databind.JavaType",
+                "com.fasterxml.jackson.databind.JsonDeserializer",
+                "com.fasterxml.jackson.databind.JsonSerializer",
+                "com.fasterxml.jackson.databind.SerializationConfig",
+                "com.fasterxml.jackson.databind.deser.Deserializers",
+                "com.fasterxml.jackson.databind.ser.Serializers");
+        line("/**");
+        line(" * Serializers and deserializers generated for the mixins in this package with {@code @ItemCodec}.");
+        line(" * They handle exactly the model classes, not their subclasses.");
+        line(" */");
+        generated();
+        open("public final class " + REGISTRY);
+        open("private " + REGISTRY + "()");
+        line("//");
+        close();
+        line("");
+        line("/**");
+        line(" * @param arrayShape whether to write items as arrays, as for the array module");
+        line(" * @return the serializers");
+        line(" */");
+        open("public static Serializers serializers(final boolean arrayShape)");
+        open("return new Serializers.Base()");
+        line("@Override");
+        open("public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc)");
+        line("Class<?> raw = type.getRawClass();");
+        for (ItemType type : itemTypes) {
+            open("if (raw == " + type.model.getQualifiedName() + ".class)");
+            line("return arrayShape ? new " + type.codecName() + ".ArraySerializer() : new " + type.codecName() + ".Serializer();");
+            close();
+        }
+        line("return null;");
+        close();
+        closeWith("};");
+        close();
+        line("");
+        line("/**");
+        line(" * @param arrayShape whether to read items as arrays, as for the array module");
+        line(" * @return the deserializers");
+        line(" */");
+        open("public static Deserializers deserializers(final boolean arrayShape)");
+        open("return new Deserializers.Base()");
+        line("@Override");
+        open("public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc)");
+        line("Class<?> raw = type.getRawClass();");
+        for (ItemType type : itemTypes) {
+            open("if (raw == " + type.model.getQualifiedName() + ".class)");
+            line("return arrayShape ? new " + type.codecName() + ".ArrayDeserializer() : new " + type.codecName() + ".Deserializer();");
+            close();
+        }
+        line("return null;");
+        close();
+        closeWith("};");
+        close();
+        close();
+        return source.toString();
+    }
+
+    private void header(String... imports) {
+        line("package " + packageName + ";");
+        line("");
+        if (!ITEM_FIELDS.startsWith(packageName + ".")) {
+            line("import " + ITEM_FIELDS + ";");
+        }
+        for (String name : imports) {
+            line("import " + name + ";");
+        }
+        line("");
+    }
+
+    private void generated() {
+        if (generatedAnnotation) {
+            line("@javax.annotation.Generated(\"" + ItemCodecProcessor.class.getName() + "\")");
+        }
+    }
+
+    private void build(ItemType type, String model) {
+        List<String> parameters = new ArrayList<>();
+        for (Property property : type.properties) {
+            parameters.add(property.type + " " + property.local);
+        }
+        parameters.add("Map<String, Object> extendedProperties");
+        open("static " + model + " build(" + join(parameters) + ")");
+        List<String> arguments = new ArrayList<>();
+        for (Property property : type.constructorArguments) {
+            arguments.add(property.local);
+        }
+        String builder = type.builder.getQualifiedName().toString();
+        line(builder + " builder = new " + builder + "(" + join(arguments) + ");");
+        for (Property property : type.properties) {
+            if (property.constructorIndex >= 0) {
+                continue;
+            }
+            if (property.isReference()) {
+                open("if (" + property.local + " != null)");
+            }
+            if (property.adder) {
+                DeclaredType collection = (DeclaredType) property.type;
+                open("for (" + collection.getTypeArguments().get(0) + " item : " + property.local + ")");
+                line("builder." + property.setter + "(item);");
+                close();
+            } else {
+                line("builder." + property.setter + "(" + property.local + ");");
+            }
+            if (property.isReference()) {
+                close();
+            }
+        }
+        open("if (extendedProperties != null)");
+        line("builder.extendedProperties(extendedProperties);");
+        close();
+        line("return " + (type.castBuild ? "(" + model + ") " : "") + "builder.build();");
+        close();
+        line("");
+    }
+
+    private void serializer(ItemType type, String model) {
+        line("/* fields in the order of the creator, and nulls omitted, as BaseAttributeMixin includes only non-null values. */");
+        open("static final class Serializer extends StdSerializer<" + model + ">");
+        open("Serializer()");
+        line("super(" + model + ".class);");
+        close();
+        line("");
+        line("@Override");
+        open("public void serialize(" + model + " value, JsonGenerator jgen, SerializerProvider provider) throws IOException");
+        line("jgen.writeStartObject();");
+        line("writeFields(value, jgen, provider);");
+        line("jgen.writeEndObject();");
+        close();
+        line("");
+        line("@Override");
+        open("public void serializeWithType(" + model + " value, JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException");
+        line("typeSer.writeTypePrefixForObject(value, jgen);");
+        line("writeFields(value, jgen, provider);");
+        line("typeSer.writeTypeSuffixForObject(value, jgen);");
+        close();
+        line("");
+        open("private static void writeFields(" + model + " value, JsonGenerator jgen, SerializerProvider provider) throws IOException");
+        for (Property property : type.properties) {
+            String get = "value." + property.getter + "()";
+            String name = quote(property.name);
+            if (property.isReference()) {
+                open("if (" + get + " != null)");
+            }
+            switch (property.kind) {
+            case INT:
+            case DOUBLE:
+            case INTEGER:
+                line("jgen.writeNumberField(" + name + ", " + get + ");");
+                break;
+            case STRING:
+                line("jgen.writeStringField(" + name + ", " + get + ");");
+                break;
+            case STRINGS:
+                line("jgen.writeFieldName(" + name + ");");
+                line("ItemFields.writeStrings(jgen, " + get + ");");
+                break;
+            default:
+                line("jgen.writeFieldName(" + name + ");");
+                line("provider.defaultSerializeValue(" + get + ", jgen);");
+                break;
+            }
+            if (property.isReference()) {
+                close();
+            }
+        }
+        line("ItemFields.writeExtendedPropertyFields(value, jgen, provider);");
+        close();
+        close();
+        line("");
+    }
+
+    private void arraySerializer(ItemType type, String model) {
+        line("/* all of the values, in the alphabetical order of their names, as BaseAttributeArrayMixin orders them. */");
+        open("static final class ArraySerializer extends StdSerializer<" + model + ">");
+        open("ArraySerializer()");
+        line("super(" + model + ".class);");
+        close();
+        line("");
+        line("@Override");
+        open("public void serialize(" + model + " value, JsonGenerator jgen, SerializerProvider provider) throws IOException");
+        line("jgen.writeStartArray();");
+        line("writeValues(value, jgen, provider);");
+        line("jgen.writeEndArray();");
+        close();
+        line("");
+        line("@Override");
+        open("public void serializeWithType(" + model + " value, JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException");
+        line("typeSer.writeTypePrefixForArray(value, jgen);");
+        line("writeValues(value, jgen, provider);");
+        line("typeSer.writeTypeSuffixForArray(value, jgen);");
+        close();
+        line("");
+        open("private static void writeValues(" + model + " value, JsonGenerator jgen, SerializerProvider provider) throws IOException");
+        for (Property property : sorted(type.properties)) {
+            if (property == null) {
+                line("ItemFields.writeExtendedPropertyMap(value, jgen, provider);");
+                continue;
+            }
+            String get = "value." + property.getter + "()";
+            switch (property.kind) {
+            case INT:
+                line("jgen.writeNumber(" + get + ");");
+                break;
+            case DOUBLE:
+            case INTEGER:
+                line("ItemFields.writeNumber(jgen, " + get + ");");
+                break;
+            case STRING:
+                line("ItemFields.writeString(jgen, " + get + ");");
+                break;
+            case STRINGS:
+                line("ItemFields.writeStrings(jgen, " + get + ");");
+                break;
+            default:
+                line("provider.defaultSerializeValue(" + get + ", jgen);");
+                break;
+            }
+        }
+        close();
+        close();
+        line("");
+    }
+
+    private void baseDeserializer(ItemType type, String model) {
+        open("abstract static class BaseDeserializer extends StdDeserializer<" + model + "> implements ResolvableDeserializer");
+        line("JsonDeserializer<Object> objects;");
+        for (Property property : type.properties) {
+            if (property.kind == Property.Kind.OBJECT) {
+                line("JsonDeserializer<Object> " + property.local + "Deserializer;");
+            }
+        }
+        line("");
+        open("BaseDeserializer()");
+        line("super(" + model + ".class);");
+        close();
+        line("");
+        line("@Override");
+        open("public void resolve(DeserializationContext ctxt) throws JsonMappingException");
+        line("objects = ctxt.findRootValueDeserializer(ctxt.constructType(Object.class));");
+        for (Property property : type.properties) {
+            if (property.kind != Property.Kind.OBJECT) {
+                continue;
+            }
+            String javaType;
+            if (isGeneric(property)) {
+                javaType = "ctxt.getTypeFactory().constructType(new TypeReference<" + property.type + ">() { })";
+            } else {
+                javaType = "ctxt.constructType(" + types.erasure(property.type) + ".class)";
+            }
+            line(property.local + "Deserializer = ctxt.findRootValueDeserializer(" + javaType + ");");
+        }
+        close();
+        line("");
+        line("@Override");
+        open("public boolean isCachable()");
+        line("return true;");
+        close();
+        close();
+        line("");
+    }
+
+    private void deserializer(ItemType type, String model) {
+        line("/* fields in any order; those not named by the creator are extended properties. */");
+        open("static final class Deserializer extends BaseDeserializer");
+        line("@Override");
+        suppressUnchecked(type);
+        open("public " + model + " deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException");
+        locals(type);
+        line("JsonToken token = jp.getCurrentToken();");
+        open("if (token == JsonToken.START_OBJECT)");
+        line("token = jp.nextToken();");
+        close();
+        open("for (; token == JsonToken.FIELD_NAME; token = jp.nextToken())");
+        line("String field = jp.getCurrentName();");
+        line("jp.nextToken();");
+        line("switch (field) {");
+        for (Property property : type.properties) {
+            line("case " + quote(property.name) + ":");
+            depth++;
+            line(property.local + " = " + read(property) + ";");
+            line("break;");
+            depth--;
+        }
+        line("case " + quote(ItemCodecProcessor.EXTENDED_PROPERTIES) + ":");
+        depth++;
+        line("extendedProperties = ItemFields.readExtendedProperties(jp, ctxt, objects, extendedProperties);");
+        line("break;");
+        depth--;
+        line("default:");
+        depth++;
+        line("extendedProperties = ItemFields.putExtendedProperty(extendedProperties, field, objects.deserialize(jp, ctxt));");
+        line("break;");
+        depth--;
+        line("}");
+        close();
+        open("if (token != JsonToken.END_OBJECT)");
+        line("throw ctxt.wrongTokenException(jp, JsonToken.END_OBJECT, \"Expected field name\");");
+        close();
+        returnBuild(type);
+        close();
+        close();
+        line("");
+    }
+
+    private void arrayDeserializer(ItemType type, String model) {
+        String simpleName = type.model.getSimpleName().toString();
+        line("/* values in the alphabetical order of their names. */");
+        open("static final class ArrayDeserializer extends BaseDeserializer");
+        line("@Override");
+        suppressUnchecked(type);
+        open("public " + model + " deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException");
+        open("if (jp.getCurrentToken() != JsonToken.START_ARRAY)");
+        line("throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, \"Expected array for " + simpleName + "\");");
+        close();
+        locals(type);
+        line("int index = 0;");
+        open("while (jp.nextToken() != JsonToken.END_ARRAY)");
+        line("switch (index++) {");
+        int index = 0;
+        for (Property property : sorted(type.properties)) {
+            line("case " + index++ + ":");
+            depth++;
+            if (property == null) {
+                line("extendedProperties = ItemFields.readExtendedProperties(jp, ctxt, objects, extendedProperties);");
+            } else {
+                line(property.local + " = " + read(property) + ";");
+            }
+            line("break;");
+            depth--;
+        }
+        line("default:");
+        depth++;
+        open("if (ctxt.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES))");
+        line("throw ctxt.mappingException(\"Too many values in array for " + simpleName + "\");");
+        close();
+        line("jp.skipChildren();");
+        line("break;");
+        depth--;
+        line("}");
+        close();
+        returnBuild(type);
+        close();
+        close();
+    }
+
+    private void suppressUnchecked(ItemType type) {
+        for (Property property : type.properties) {
+            if (property.kind == Property.Kind.OBJECT && isGeneric(property)) {
+                line("@SuppressWarnings(\"unchecked\")");
+                return;
+            }
+        }
+    }
+
+    private void locals(ItemType type) {
+        for (Property property : type.properties) {
+            line(property.type + " " + property.local + " = " + (property.isReference() ? "null" : "0") + ";");
+        }
+        line("Map<String, Object> extendedProperties = null;");
+    }
+
+    private void returnBuild(ItemType type) {
+        List<String> arguments = new ArrayList<>();
+        for (Property property : type.properties) {
+            arguments.add(property.local);
+        }
+        arguments.add("ItemFields.shareExtendedProperties(ctxt, extendedProperties)");
+        line("return " + type.codecName() + ".build(" + join(arguments) + ");");
+    }
+
+    private String read(Property property) {
+        switch (property.kind) {
+        case INT:
+            return "ItemFields.readInt(jp, ctxt)";
+        case STRING:
+            return property.pooled ? "ItemFields.readPooledString(jp, ctxt)" : "ItemFields.readString(jp, ctxt)";
+        case DOUBLE:
+            return "ItemFields.readDouble(jp, ctxt)";
+        case INTEGER:
+            return "ItemFields.readInteger(jp, ctxt)";
+        case STRINGS:
+            return "ItemFields.readStrings(jp, ctxt)";
+        default:
+            return "jp.getCurrentToken() == JsonToken.VALUE_NULL ? null : (" + property.type + ") "
+                    + property.local + "Deserializer.deserialize(jp, ctxt)";
+        }
+    }
+
+    private static boolean isGeneric(Property property) {
+        return property.type.getKind() == TypeKind.DECLARED && !((DeclaredType) property.type).getTypeArguments().isEmpty();
+    }
+
+    /* the properties by name, with null standing for the extended properties. */
+    private static List<Property> sorted(List<Property> properties) {
+        List<Property> result = new ArrayList<>(properties);
+        result.add(null);
+        Collections.sort(result, new Comparator<Property>() {
+            @Override
+            public int compare(Property o1, Property o2) {
+                return nameOf(o1).compareTo(nameOf(o2));
+            }
+        });
+        return result;
+    }
+
+    private static String nameOf(Property property) {
+        return property == null ? ItemCodecProcessor.EXTENDED_PROPERTIES : property.name;
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder result = new StringBuilder();
+        for (String part : parts) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(part);
+        }
+        return result.toString();
+    }
+
+    private void open(String text) {
+        line(text + " {");
+        depth++;
+    }
+
+    private void close() {
+        closeWith("}");
+    }
+
+    private void closeWith(String text) {
+        depth--;
+        line(text);
+    }
+
+    private void line(String text) {
+        if (!text.isEmpty()) {
+            for (int x = 0; x < depth; x++) {
+                source.append(INDENT);
+            }
+            source.append(text);
+        }
+        source.append('\n');
+    }
+}
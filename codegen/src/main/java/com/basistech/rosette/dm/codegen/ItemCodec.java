@@ -0,0 +1,41 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a Jackson mixin for which {@link ItemCodecProcessor} generates serializers and deserializers.
+ * The mixin's {@code JsonCreator} constructor names the properties; the generated code reads and
+ * writes them through the getters and the Builder of the model class, with no bean introspection.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface ItemCodec {
+    /**
+     * @return the model class that the mixin describes.
+     */
+    Class<?> value();
+
+    /**
+     * @return the names of string properties with a small vocabulary, which the generated
+     * deserializers read with {@code ItemFields.readPooledString}.
+     */
+    String[] pooled() default { };
+}
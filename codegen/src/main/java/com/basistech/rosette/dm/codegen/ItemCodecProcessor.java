@@ -0,0 +1,523 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates Jackson serializers and deserializers for the model classes named by {@link ItemCodec}.
+ * <p>
+ * The mixin's {@code JsonCreator} constructor lists the properties, and the model's getters must
+ * have exactly those properties. The generated deserializer builds the item with the Builder of the
+ * model class: the widest public Builder constructor whose parameter types match, in order,
+ * some of the creator parameters, then a setter named for each remaining property, or, for a
+ * collection, an adder named for its singular. Anything the processor cannot map exactly is
+ * an error, so that the generated code never disagrees with the mixin.
+ * <p>
+ * For each model class, the processor writes a {@code <Model>Codec} class, and for each package of
+ * mixins, a {@code GeneratedCodecs} class that supplies them to a Jackson module.
+ */
+public class ItemCodecProcessor extends AbstractProcessor {
+    static final String JSON_CREATOR = "com.fasterxml.jackson.annotation.JsonCreator";
+    static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+    static final String JSON_INCLUDE = "com.fasterxml.jackson.annotation.JsonInclude";
+    static final String EXTENDED_PROPERTIES = "extendedProperties";
+
+    /* names used by the generated code for its own purposes. */
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList("jp", "ctxt", "token", "field", "index",
+            "builder", "item", "objects", "value", "jgen", "provider", "typeSer", EXTENDED_PROPERTIES));
+
+    private final Set<String> generatedPackages = new HashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ItemCodec.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<String, List<ItemType>> byPackage = new TreeMap<>();
+        Set<String> roots = new HashSet<>();
+        for (TypeElement root : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            roots.add(root.getQualifiedName().toString());
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(ItemCodec.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@ItemCodec applies only to mixin classes");
+                continue;
+            }
+            ItemType type = read((TypeElement) element);
+            if (type != null) {
+                String packageName = elements().getPackageOf(element).getQualifiedName().toString();
+                List<ItemType> types = byPackage.get(packageName);
+                if (types == null) {
+                    types = new ArrayList<>();
+                    byPackage.put(packageName, types);
+                }
+                types.add(type);
+            }
+        }
+        for (Map.Entry<String, List<ItemType>> me : byPackage.entrySet()) {
+            if (!generatedPackages.add(me.getKey())) {
+                error(me.getValue().get(0).mixin, "GeneratedCodecs for " + me.getKey() + " was written in an earlier round");
+                continue;
+            }
+            // the same source for the same mixins, whatever order javac finds them in.
+            Collections.sort(me.getValue(), new Comparator<ItemType>() {
+                @Override
+                public int compare(ItemType a, ItemType b) {
+                    return a.codecName().compareTo(b.codecName());
+                }
+            });
+            boolean generatedAnnotation = elements().getTypeElement("javax.annotation.Generated") != null;
+            for (ItemType type : me.getValue()) {
+                write(me.getKey() + "." + type.codecName(), new CodecWriter(me.getKey(), generatedAnnotation, types()).codec(type),
+                        type.mixin, roots);
+            }
+            write(me.getKey() + "." + CodecWriter.REGISTRY, new CodecWriter(me.getKey(), generatedAnnotation, types()).registry(me.getValue()),
+                    me.getValue().get(0).mixin, roots);
+        }
+        return true;
+    }
+
+    /*
+     * An incremental build compiles the output of the previous compile again, as sources; javac cannot
+     * generate a type that it is also compiling, so an unchanged one is left as it is.
+     */
+    private void write(String className, String source, TypeElement origin, Set<String> roots) {
+        if (roots.contains(className)) {
+            String existing = generatedSource(className);
+            if (existing != null && !existing.equals(source)) {
+                error(origin, className + " from an earlier compile is out of date; clean the build to generate it again");
+            }
+            return;
+        }
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(className, origin);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source);
+            }
+        } catch (IOException e) {
+            error(origin, "Cannot write " + className + ": " + e.getMessage());
+        }
+    }
+
+    /* The source that an earlier compile generated for a class, or null if there is none. */
+    private String generatedSource(String className) {
+        int dot = className.lastIndexOf('.');
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.SOURCE_OUTPUT,
+                    className.substring(0, dot), className.substring(dot + 1) + ".java");
+            return file.getCharContent(true).toString();
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Reads the mixin and the model class. Reports errors, and returns null, for anything that the
+     * generated code could not do exactly as Jackson does with the mixin.
+     */
+    private ItemType read(TypeElement mixin) {
+        TypeElement model = modelOf(mixin);
+        if (model == null) {
+            return null;
+        }
+        if (!checkMixinAnnotations(mixin)) {
+            return null;
+        }
+        ExecutableElement creator = creatorOf(mixin);
+        if (creator == null) {
+            return null;
+        }
+        Map<String, ExecutableElement> getters = gettersOf(model);
+        Set<String> pooled = new HashSet<>(Arrays.asList(mixin.getAnnotation(ItemCodec.class).pooled()));
+        List<Property> properties = new ArrayList<>();
+        boolean extendedProperties = false;
+        for (VariableElement parameter : creator.getParameters()) {
+            String name = stringValue(parameter, JSON_PROPERTY);
+            if (name == null || name.isEmpty()) {
+                error(parameter, "Creator parameters must all have a @JsonProperty name");
+                return null;
+            }
+            if (EXTENDED_PROPERTIES.equals(name)) {
+                extendedProperties = true;
+                continue;
+            }
+            ExecutableElement getter = getters.remove(name);
+            if (getter == null) {
+                error(parameter, model.getQualifiedName() + " has no getter for " + name);
+                return null;
+            }
+            TypeMirror type = parameter.asType();
+            if (!types().isSameType(types().erasure(type), types().erasure(getter.getReturnType()))) {
+                error(parameter, "The type of " + name + " does not match " + model.getSimpleName() + "." + getter.getSimpleName());
+                return null;
+            }
+            Property.Kind kind = kindOf(type);
+            if (kind == null) {
+                error(parameter, "Unsupported type for " + name + ": " + type);
+                return null;
+            }
+            String local = RESERVED.contains(name) || SourceVersion.isKeyword(name) ? name + "Value" : name;
+            Property property = new Property(name, type, kind, getter.getSimpleName().toString(), local);
+            if (pooled.remove(name)) {
+                if (kind != Property.Kind.STRING) {
+                    error(parameter, "Only string properties can be pooled: " + name);
+                    return null;
+                }
+                property.pooled = true;
+            }
+            properties.add(property);
+        }
+        if (!pooled.isEmpty()) {
+            error(mixin, "The creator has no parameter for pooled " + pooled);
+            return null;
+        }
+        if (!extendedProperties) {
+            error(creator, "The creator has no extendedProperties parameter");
+            return null;
+        }
+        if (!getters.isEmpty()) {
+            error(mixin, "The creator has no parameter for " + getters.keySet());
+            return null;
+        }
+        return mapBuilder(mixin, model, properties);
+    }
+
+    private TypeElement modelOf(TypeElement mixin) {
+        for (AnnotationMirror annotation : mixin.getAnnotationMirrors()) {
+            if (isAnnotation(annotation, ItemCodec.class.getName())) {
+                AnnotationValue value = valueOf(annotation, "value");
+                if (value != null && value.getValue() instanceof DeclaredType) {
+                    TypeElement model = (TypeElement) ((DeclaredType) value.getValue()).asElement();
+                    TypeElement base = elements().getTypeElement("com.basistech.rosette.dm.BaseAttribute");
+                    if (base == null || !types().isSubtype(types().erasure(model.asType()), types().erasure(base.asType()))) {
+                        error(mixin, model.getQualifiedName() + " is not a BaseAttribute");
+                        return null;
+                    }
+                    return model;
+                }
+            }
+        }
+        error(mixin, "@ItemCodec must name a model class");
+        return null;
+    }
+
+    /* only the annotations that the generated code reproduces. */
+    private boolean checkMixinAnnotations(TypeElement mixin) {
+        for (AnnotationMirror annotation : mixin.getAnnotationMirrors()) {
+            if (isAnnotation(annotation, ItemCodec.class.getName())) {
+                continue;
+            }
+            if (isAnnotation(annotation, JSON_INCLUDE)) {
+                AnnotationValue value = valueOf(annotation, "value");
+                if (annotation.getElementValues().size() == 1 && value != null
+                        && value.getValue() instanceof VariableElement
+                        && ((VariableElement) value.getValue()).getSimpleName().contentEquals("NON_NULL")) {
+                    continue;
+                }
+            }
+            error(mixin, "Unsupported annotation on a mixin with @ItemCodec: " + annotation);
+            return false;
+        }
+        for (Element member : mixin.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.CONSTRUCTOR && !member.getAnnotationMirrors().isEmpty()) {
+                error(member, "Unsupported annotation on a mixin with @ItemCodec");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ExecutableElement creatorOf(TypeElement mixin) {
+        ExecutableElement creator = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(mixin.getEnclosedElements())) {
+            if (hasAnnotation(constructor, JSON_CREATOR)) {
+                if (creator != null) {
+                    error(constructor, "More than one @JsonCreator");
+                    return null;
+                }
+                creator = constructor;
+            }
+        }
+        if (creator == null) {
+            error(mixin, "No @JsonCreator constructor");
+        }
+        return creator;
+    }
+
+    /* the properties that Jackson finds from the public getters, by property name. */
+    private Map<String, ExecutableElement> gettersOf(TypeElement model) {
+        Map<String, ExecutableElement> getters = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements().getAllMembers(model))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) || !method.getParameters().isEmpty()) {
+                continue;
+            }
+            String name = method.getSimpleName().toString();
+            TypeKind returnKind = method.getReturnType().getKind();
+            String property = null;
+            if (name.startsWith("get") && name.length() > 3 && returnKind != TypeKind.VOID) {
+                property = decapitalize(name.substring(3));
+            } else if (name.startsWith("is") && name.length() > 2 && returnKind == TypeKind.BOOLEAN) {
+                property = decapitalize(name.substring(2));
+            }
+            if (property != null && !"getClass".equals(name) && !EXTENDED_PROPERTIES.equals(property)) {
+                getters.put(property, method);
+            }
+        }
+        return getters;
+    }
+
+    /* as Jackson does by default: lower-case all of the leading capitals. */
+    private static String decapitalize(String name) {
+        StringBuilder result = new StringBuilder(name);
+        for (int x = 0; x < result.length() && Character.isUpperCase(result.charAt(x)); x++) {
+            result.setCharAt(x, Character.toLowerCase(result.charAt(x)));
+        }
+        return result.toString();
+    }
+
+    private Property.Kind kindOf(TypeMirror type) {
+        if (type.getKind() == TypeKind.INT) {
+            return Property.Kind.INT;
+        }
+        if (type.getKind().isPrimitive()) {
+            return null;
+        }
+        if (isClass(type, String.class)) {
+            return Property.Kind.STRING;
+        }
+        if (isClass(type, Double.class)) {
+            return Property.Kind.DOUBLE;
+        }
+        if (isClass(type, Integer.class)) {
+            return Property.Kind.INTEGER;
+        }
+        if (type.getKind() == TypeKind.DECLARED && isClass(types().erasure(type), List.class)) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+            if (arguments.size() == 1 && isClass(arguments.get(0), String.class)) {
+                return Property.Kind.STRINGS;
+            }
+        }
+        if (type.getKind() == TypeKind.DECLARED || type.getKind() == TypeKind.ARRAY) {
+            return Property.Kind.OBJECT;
+        }
+        return null;
+    }
+
+    private ItemType mapBuilder(TypeElement mixin, TypeElement model, List<Property> properties) {
+        TypeElement builder = null;
+        for (TypeElement nested : ElementFilter.typesIn(model.getEnclosedElements())) {
+            if (nested.getSimpleName().contentEquals("Builder") && nested.getModifiers().contains(Modifier.PUBLIC)
+                    && nested.getModifiers().contains(Modifier.STATIC) && nested.getTypeParameters().isEmpty()) {
+                builder = nested;
+            }
+        }
+        if (builder == null) {
+            error(mixin, model.getQualifiedName() + " has no public, non-generic Builder");
+            return null;
+        }
+        List<Property> constructorArguments = null;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(builder.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC) && !isCopyConstructor(constructor, model)) {
+                List<Property> arguments = matchArguments(constructor, properties);
+                if (arguments != null && (constructorArguments == null || arguments.size() > constructorArguments.size())) {
+                    constructorArguments = arguments;
+                }
+            }
+        }
+        if (constructorArguments == null) {
+            error(mixin, model.getQualifiedName() + ".Builder has no constructor that takes creator properties");
+            return null;
+        }
+        for (int x = 0; x < constructorArguments.size(); x++) {
+            constructorArguments.get(x).constructorIndex = x;
+        }
+        List<ExecutableElement> methods = ElementFilter.methodsIn(elements().getAllMembers(builder));
+        for (Property property : properties) {
+            if (property.constructorIndex < 0 && !mapSetter(property, methods)) {
+                error(mixin, model.getQualifiedName() + ".Builder has no method to set " + property.name);
+                return null;
+            }
+        }
+        ExecutableElement build = findMethod(methods, "build", null);
+        if (build == null || !types().isAssignable(model.asType(), types().erasure(build.getReturnType()))) {
+            error(mixin, model.getQualifiedName() + ".Builder has no build()");
+            return null;
+        }
+        boolean castBuild = !types().isSameType(types().erasure(build.getReturnType()), types().erasure(model.asType()));
+        return new ItemType(mixin, model, builder, properties, constructorArguments, castBuild);
+    }
+
+    /* a constructor that starts from an existing item. */
+    private boolean isCopyConstructor(ExecutableElement constructor, TypeElement model) {
+        for (VariableElement parameter : constructor.getParameters()) {
+            if (types().isAssignable(types().erasure(model.asType()), types().erasure(parameter.asType()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* the properties that the constructor takes, in order, or null if they do not match in order of type. */
+    private List<Property> matchArguments(ExecutableElement constructor, List<Property> properties) {
+        List<Property> arguments = new ArrayList<>();
+        int next = 0;
+        for (VariableElement parameter : constructor.getParameters()) {
+            TypeMirror type = types().erasure(parameter.asType());
+            while (next < properties.size() && !types().isSameType(type, types().erasure(properties.get(next).type))) {
+                next++;
+            }
+            if (next == properties.size()) {
+                return null;
+            }
+            arguments.add(properties.get(next++));
+        }
+        return arguments;
+    }
+
+    private boolean mapSetter(Property property, List<ExecutableElement> methods) {
+        if (findMethod(methods, property.name, property.type) != null) {
+            property.setter = property.name;
+            return true;
+        }
+        TypeElement collection = elements().getTypeElement("java.util.Collection");
+        if (property.type.getKind() == TypeKind.DECLARED
+                && types().isAssignable(types().erasure(property.type), types().erasure(collection.asType()))) {
+            List<? extends TypeMirror> arguments = ((DeclaredType) property.type).getTypeArguments();
+            if (arguments.size() == 1) {
+                String singular = property.name.endsWith("s") ? property.name.substring(0, property.name.length() - 1) : property.name;
+                for (String name : Arrays.asList("add" + capitalize(singular), singular, "add" + capitalize(property.name))) {
+                    if (findMethod(methods, name, arguments.get(0)) != null) {
+                        property.setter = name;
+                        property.adder = true;
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /* a public method with this name and one parameter of this erasure, or no parameters if the type is null. */
+    private ExecutableElement findMethod(List<ExecutableElement> methods, String name, TypeMirror parameterType) {
+        for (ExecutableElement method : methods) {
+            if (!method.getSimpleName().contentEquals(name) || !method.getModifiers().contains(Modifier.PUBLIC)
+                    || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            List<? extends VariableElement> parameters = method.getParameters();
+            if (parameterType == null ? parameters.isEmpty()
+                    : parameters.size() == 1
+                    && types().isSameType(types().erasure(parameters.get(0).asType()), types().erasure(parameterType))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private boolean isClass(TypeMirror type, Class<?> c) {
+        TypeElement element = elements().getTypeElement(c.getCanonicalName());
+        return element != null && types().isSameType(type, element.asType());
+    }
+
+    private static boolean isAnnotation(AnnotationMirror annotation, String name) {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(name);
+    }
+
+    private static boolean hasAnnotation(Element element, String name) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (isAnnotation(annotation, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static AnnotationValue valueOf(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> me : annotation.getElementValues().entrySet()) {
+            if (me.getKey().getSimpleName().contentEquals(name)) {
+                return me.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String stringValue(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (isAnnotation(annotation, annotationName)) {
+                AnnotationValue value = valueOf(annotation, "value");
+                return value == null ? null : value.getValue().toString();
+            }
+        }
+        return null;
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private Elements elements() {
+        return processingEnv.getElementUtils();
+    }
+
+    private Types types() {
+        return processingEnv.getTypeUtils();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.codegen;
+
+import javax.lang.model.element.TypeElement;
+import java.util.List;
+
+/**
+ * A model class for which codecs are generated, as described by its mixin.
+ */
+final class ItemType {
+    final TypeElement mixin;
+    final TypeElement model;
+    final TypeElement builder;
+    /* in the order of the creator parameters, without the extended properties. */
+    final List<Property> properties;
+    final List<Property> constructorArguments;
+    /* whether build() returns a supertype of the model. */
+    final boolean castBuild;
+
+    ItemType(TypeElement mixin, TypeElement model, TypeElement builder, List<Property> properties,
+             List<Property> constructorArguments, boolean castBuild) {
+        this.mixin = mixin;
+        this.model = model;
+        this.builder = builder;
+        this.properties = properties;
+        this.constructorArguments = constructorArguments;
+        this.castBuild = castBuild;
+    }
+
+    /**
+     * @return the simple name of the generated codec class.
+     */
+    String codecName() {
+        return model.getSimpleName() + "Codec";
+    }
+}
@@ -0,0 +1,67 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.codegen;
+
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * One property of an item, as named by the mixin's creator, together with how the generated code
+ * reads it from the item and passes it to the Builder.
+ */
+final class Property {
+
+    /**
+     * How the generated code reads and writes the value. Everything other than the common scalars
+     * is left to whatever serializer and deserializer Jackson has for the type.
+     */
+    enum Kind {
+        INT,
+        STRING,
+        DOUBLE,
+        INTEGER,
+        STRINGS,
+        OBJECT
+    }
+
+    final String name;
+    final TypeMirror type;
+    final Kind kind;
+    final String getter;
+    /* the Java name for the value in generated code. */
+    final String local;
+    /* index among the arguments of the Builder constructor, or -1. */
+    int constructorIndex = -1;
+    /* the Builder method that takes the value, or the element of a collection value. */
+    String setter;
+    boolean adder;
+    /* read through the string pool. */
+    boolean pooled;
+
+    Property(String name, TypeMirror type, Kind kind, String getter, String local) {
+        this.name = name;
+        this.type = type;
+        this.kind = kind;
+        this.getter = getter;
+        this.local = local;
+    }
+
+    /**
+     * @return whether the value may be null.
+     */
+    boolean isReference() {
+        return kind != Kind.INT;
+    }
+}
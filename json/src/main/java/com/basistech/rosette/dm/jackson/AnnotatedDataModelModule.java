@@ -49,9 +49,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * annotated data model.
  */
 public class  AnnotatedDataModelModule extends EnumModule {
+    private final AttributeTypeRegistry typeRegistry;
 
     public AnnotatedDataModelModule() {
+        this(new AttributeTypeRegistry());
+    }
+
+    /**
+     * Constructs a module whose mappers use a registry of attribute types.
+     * @param typeRegistry the registry.
+     */
+    public AnnotatedDataModelModule(AttributeTypeRegistry typeRegistry) {
         super();
+        this.typeRegistry = typeRegistry;
     }
 
     @SuppressWarnings("deprecation")
@@ -86,6 +96,17 @@ public class  AnnotatedDataModelModule extends EnumModule {
         context.setMixInAnnotations(Dependency.class, DependencyMixin.class);
         context.setMixInAnnotations(EmbeddingCollection.class, EmbeddingCollectionMixin.class);
         context.setMixInAnnotations(Embeddings.class, EmbeddingsMixin.class);
+        context.addSerializers(new ItemSerializers());
+        context.addDeserializers(new ItemDeserializers());
+        context.addSerializers(GeneratedCodecs.serializers(false));
+        context.addDeserializers(GeneratedCodecs.deserializers(false));
+        context.addSerializers(EmbeddingCodecs.serializers());
+        context.addDeserializers(EmbeddingCodecs.deserializers());
+        context.addBeanDeserializerModifier(DocumentDataDeserializer.documentScope());
+        // the type ids of attributes for mappers with this module; see AttributeTypeRegistry.
+        ObjectMapper mapper = context.getOwner();
+        mapper.setConfig(mapper.getSerializationConfig().withAttribute(AttributeTypeRegistry.class, typeRegistry));
+        mapper.setConfig(mapper.getDeserializationConfig().withAttribute(AttributeTypeRegistry.class, typeRegistry));
     }
 
     /**
@@ -94,8 +115,18 @@ public class  AnnotatedDataModelModule extends EnumModule {
      * @return the same mapper, for convenience.
      */
     public static ObjectMapper setupObjectMapper(ObjectMapper mapper) {
+        return setupObjectMapper(mapper, new AttributeTypeRegistry());
+    }
+
+    /**
+     * Register the Annotated Data Model Jackson module on an {@link ObjectMapper}, with a registry of attribute types.
+     * @param mapper the mapper.
+     * @param typeRegistry the registry.
+     * @return the same mapper, for convenience.
+     */
+    public static ObjectMapper setupObjectMapper(ObjectMapper mapper, AttributeTypeRegistry typeRegistry) {
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-        final AnnotatedDataModelModule module = new AnnotatedDataModelModule();
+        final AnnotatedDataModelModule module = new AnnotatedDataModelModule(typeRegistry);
         mapper.registerModule(module);
 
         return mapper;
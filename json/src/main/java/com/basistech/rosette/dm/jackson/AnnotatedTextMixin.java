@@ -19,6 +19,7 @@ import com.basistech.rosette.dm.BaseAttribute;
 import com.basistech.rosette.dm.BaseNounPhrase;
 import com.basistech.rosette.dm.CategorizerResult;
 import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.DependencyGraph;
 import com.basistech.rosette.dm.Embeddings;
 import com.basistech.rosette.dm.Entity;
 import com.basistech.rosette.dm.LanguageDetection;
@@ -37,7 +38,7 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.annotation.JsonAppend;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
+import com.fasterxml.jackson.databind.annotation.JsonTypeResolver;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 import java.util.List;
@@ -53,7 +54,9 @@ import java.util.Map;
 public abstract class AnnotatedTextMixin {
 
     @JsonCreator
-    AnnotatedTextMixin(@JsonProperty("data") CharSequence data,
+    AnnotatedTextMixin(@JsonProperty("data")
+                       @JsonDeserialize(using = DocumentDataDeserializer.class)
+                       CharSequence data,
                        @JsonProperty("attributes") Map<String, BaseAttribute> attributes,
                        @JsonProperty("documentMetadata") Map<String, List<String>> documentMetadata,
                        /* work around https://github.com/FasterXML/jackson-databind/issues/1118,
@@ -65,7 +68,7 @@ public abstract class AnnotatedTextMixin {
     }
 
     @JsonTypeInfo(use = JsonTypeInfo.Id.CUSTOM, include = JsonTypeInfo.As.PROPERTY, property = "type")
-    @JsonTypeIdResolver(DmTypeIdResolver.class)
+    @JsonTypeResolver(DmTypeResolverBuilder.class)
     public abstract Map<String, BaseAttribute> getAttributes();
 
     /* prevent Jackson from serializing a complex object here. */
@@ -122,6 +125,9 @@ public abstract class AnnotatedTextMixin {
     @JsonIgnore
     public abstract ListAttribute<Dependency> getDependencies();
 
+    @JsonIgnore
+    public abstract DependencyGraph getDependencyGraph();
+
     @JsonIgnore
     public abstract Embeddings getEmbeddings();
 }
@@ -0,0 +1,241 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.AttributeKey;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Reads {@link AnnotatedText} objects with an {@link ObjectMapper} configured for the data model,
+ * either {@link AnnotatedDataModelModule} or {@link com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule},
+ * over any data format that the mapper's factory supports.
+ * <p>
+ * A reader may be limited to some of the attributes. The others are skipped
+ * by the parser without being built, and are absent from the results.
+ * A reader may also defer attributes: each one is buffered as parsed tokens, and only
+ * built when it is first accessed. See {@link com.basistech.rosette.dm.DeferredAttributes}.
+ * Readers are immutable and thread-safe.
+ * <pre>{@code
+ * AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).attributes(AttributeKey.ENTITY).build();
+ * AnnotatedText text = reader.read(inputStream);
+ * }</pre>
+ * To read many texts from one input, see {@link #readValues(InputStream)}.
+ */
+public final class AnnotatedTextReader {
+    private final ObjectMapper mapper;
+    /* null for all attributes. */
+    private final Set<String> attributeKeys;
+    private final boolean deferred;
+
+    private AnnotatedTextReader(ObjectMapper mapper, Set<String> attributeKeys, boolean deferred) {
+        this.mapper = mapper;
+        this.attributeKeys = attributeKeys;
+        this.deferred = deferred;
+    }
+
+    /**
+     * Reads one text from a parser. If the parser is not positioned at the start of the text,
+     * this advances it to the next token. The parser is left at the end of the text.
+     *
+     * @param parser the parser
+     * @return the text
+     * @throws IOException for errors reading or parsing
+     */
+    public AnnotatedText read(JsonParser parser) throws IOException {
+        if (deferred) {
+            return DeferredTextReader.read(mapper, parser, attributeKeys);
+        }
+        JsonParser source = parser;
+        if (attributeKeys != null) {
+            source = new AttributeFilteringParser(parser, attributeKeys);
+        }
+        return mapper.readValue(source, AnnotatedText.class);
+    }
+
+    /**
+     * Reads one text from a stream. This does not close the stream.
+     *
+     * @param input the stream
+     * @return the text
+     * @throws IOException for errors reading or parsing
+     */
+    public AnnotatedText read(InputStream input) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(input)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads one text from a reader. This does not close the reader.
+     *
+     * @param input the reader
+     * @return the text
+     * @throws IOException for errors reading or parsing
+     */
+    public AnnotatedText read(Reader input) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(input)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads one text from bytes.
+     *
+     * @param input the bytes
+     * @return the text
+     * @throws IOException for errors parsing
+     */
+    public AnnotatedText read(byte[] input) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(input)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads one text from a file.
+     *
+     * @param input the file
+     * @return the text
+     * @throws IOException for errors reading or parsing
+     */
+    public AnnotatedText read(File input) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(input)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads a sequence of texts from a parser, one at a time. Closing the stream reader closes the parser.
+     *
+     * @param parser the parser
+     * @return the stream reader
+     */
+    public AnnotatedTextStreamReader readValues(JsonParser parser) {
+        return new AnnotatedTextStreamReader(this, parser);
+    }
+
+    /**
+     * Reads a sequence of texts from a stream, one at a time. Closing the stream reader does not close the stream.
+     *
+     * @param input the stream
+     * @return the stream reader
+     * @throws IOException for errors reading
+     */
+    public AnnotatedTextStreamReader readValues(InputStream input) throws IOException {
+        JsonParser parser = mapper.getFactory().createParser(input);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        return readValues(parser);
+    }
+
+    /**
+     * Reads a sequence of texts from a file, one at a time. Closing the stream reader closes the file.
+     *
+     * @param input the file
+     * @return the stream reader
+     * @throws IOException for errors opening or reading the file
+     */
+    public AnnotatedTextStreamReader readValues(File input) throws IOException {
+        return readValues(mapper.getFactory().createParser(input));
+    }
+
+    /**
+     * Builder for readers.
+     */
+    public static class Builder {
+        private final ObjectMapper mapper;
+        private Set<String> attributeKeys;
+        private boolean deferred;
+
+        /**
+         * Constructs a builder for a reader that reads all of the attributes.
+         *
+         * @param mapper a mapper configured for the data model
+         */
+        public Builder(ObjectMapper mapper) {
+            this.mapper = mapper;
+        }
+
+        /**
+         * Limits the reader to the given attributes.
+         * Asking for {@link AttributeKey#ENTITY} also reads entities stored in the form of
+         * ADM 1.0, so that they can be converted.
+         *
+         * @param keys the attributes to read
+         * @return this
+         */
+        public Builder attributes(AttributeKey... keys) {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (AttributeKey key : keys) {
+                builder.add(key.key());
+            }
+            return attributes(builder.build());
+        }
+
+        /**
+         * Limits the reader to the attributes with the given keys. This allows for
+         * attributes that applications add to the model.
+         *
+         * @param keys the keys of the attributes to read
+         * @return this
+         * @see #attributes(AttributeKey...)
+         */
+        @SuppressWarnings("deprecation")
+        public Builder attributes(Collection<String> keys) {
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            builder.addAll(keys);
+            if (keys.contains(AttributeKey.ENTITY.key())) {
+                builder.add(AttributeKey.ENTITY_MENTION.key());
+                builder.add(AttributeKey.RESOLVED_ENTITY.key());
+            }
+            attributeKeys = builder.build();
+            return this;
+        }
+
+        /**
+         * Specifies whether attributes are built when they are first accessed,
+         * rather than as they are read. This is false by default.
+         * Texts whose entities are stored in the form of ADM 1.0 are always read in full.
+         *
+         * @param deferred whether to defer attributes
+         * @return this
+         */
+        public Builder deferred(boolean deferred) {
+            this.deferred = deferred;
+            return this;
+        }
+
+        /**
+         * Constructs the reader.
+         *
+         * @return the reader
+         */
+        public AnnotatedTextReader build() {
+            return new AnnotatedTextReader(mapper, attributeKeys, deferred);
+        }
+    }
+}
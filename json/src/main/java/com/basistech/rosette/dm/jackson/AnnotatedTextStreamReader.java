@@ -0,0 +1,125 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.RosetteRuntimeException;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a sequence of {@link AnnotatedText} objects, one at a time, from a single parser: for example,
+ * newline-delimited Json, or concatenated Smile or CBOR documents.
+ * The parser, with its symbol tables and buffers, is reused for all of the texts, and only
+ * one text is held at a time, so memory use does not grow with the length of the input.
+ * Obtain one from {@link AnnotatedTextReader#readValues(java.io.InputStream)} or its overloads;
+ * each text is read as {@link AnnotatedTextReader#read(JsonParser)} reads it.
+ * <p>
+ * As an {@link Iterator}, this reports errors as {@link RosetteRuntimeException}; use {@link #readNext()}
+ * to have them as {@link IOException}. Stream readers are not thread-safe.
+ * <pre>{@code
+ * try (AnnotatedTextStreamReader texts = reader.readValues(inputStream)) {
+ *     while (texts.hasNext()) {
+ *         process(texts.next());
+ *     }
+ * }
+ * }</pre>
+ */
+public final class AnnotatedTextStreamReader implements Iterator<AnnotatedText>, Closeable {
+    private final AnnotatedTextReader reader;
+    private final JsonParser parser;
+    /* true when the parser is at the start of a text that has not been read. */
+    private boolean started;
+    private boolean done;
+
+    AnnotatedTextStreamReader(AnnotatedTextReader reader, JsonParser parser) {
+        this.reader = reader;
+        this.parser = parser;
+        this.started = parser.getCurrentToken() != null;
+    }
+
+    /**
+     * Reads the next text.
+     *
+     * @return the text, or null at the end of the input
+     * @throws IOException for errors reading or parsing
+     */
+    public AnnotatedText readNext() throws IOException {
+        if (!advance()) {
+            return null;
+        }
+        AnnotatedText text = reader.read(parser);
+        started = false;
+        // so that nothing from the previous text is held between calls.
+        parser.clearCurrentToken();
+        return text;
+    }
+
+    private boolean advance() throws IOException {
+        if (!started && !done) {
+            if (parser.nextToken() == null) {
+                done = true;
+            } else {
+                started = true;
+            }
+        }
+        return started;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            return advance();
+        } catch (IOException e) {
+            throw new RosetteRuntimeException("Failed to read the next text", e);
+        }
+    }
+
+    @Override
+    public AnnotatedText next() {
+        AnnotatedText text;
+        try {
+            text = readNext();
+        } catch (IOException e) {
+            throw new RosetteRuntimeException("Failed to read the next text", e);
+        }
+        if (text == null) {
+            throw new NoSuchElementException();
+        }
+        return text;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the parser. This closes the underlying input only if this reader opened it.
+     *
+     * @throws IOException for errors closing the input
+     */
+    @Override
+    public void close() throws IOException {
+        done = true;
+        started = false;
+        parser.close();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a sequence of {@link AnnotatedText} objects to a single generator, one at a time,
+ * with an {@link ObjectMapper} configured for the data model. In Json, the texts are separated by newlines,
+ * so that the output is newline-delimited Json; in binary formats such as Smile, they are concatenated.
+ * The generator and the serializers are reused for all of the texts.
+ * {@link AnnotatedTextStreamReader} reads the output back. Stream writers are not thread-safe.
+ */
+public final class AnnotatedTextStreamWriter implements Closeable, Flushable {
+    private final SequenceWriter writer;
+
+    /**
+     * Constructs a writer over a stream. Closing the writer does not close the stream.
+     *
+     * @param mapper a mapper configured for the data model
+     * @param output the stream
+     * @throws IOException for errors writing
+     */
+    public AnnotatedTextStreamWriter(ObjectMapper mapper, OutputStream output) throws IOException {
+        this(mapper, mapper.getFactory().createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+
+    /**
+     * Constructs a writer over a file. Closing the writer closes the file.
+     *
+     * @param mapper a mapper configured for the data model
+     * @param output the file
+     * @throws IOException for errors opening or writing the file
+     */
+    public AnnotatedTextStreamWriter(ObjectMapper mapper, File output) throws IOException {
+        this(mapper, mapper.getFactory().createGenerator(output, JsonEncoding.UTF8));
+    }
+
+    /**
+     * Constructs a writer over a generator. Closing the writer closes the generator.
+     *
+     * @param mapper a mapper configured for the data model
+     * @param generator the generator
+     * @throws IOException for errors writing
+     */
+    public AnnotatedTextStreamWriter(ObjectMapper mapper, JsonGenerator generator) throws IOException {
+        writer = mapper.writerFor(AnnotatedText.class).withRootValueSeparator("\n").writeValues(generator);
+    }
+
+    /**
+     * Writes one text.
+     *
+     * @param text the text
+     * @return this
+     * @throws IOException for errors writing
+     */
+    public AnnotatedTextStreamWriter write(AnnotatedText text) throws IOException {
+        writer.write(text);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Writes any buffered output and closes the generator.
+     *
+     * @throws IOException for errors writing
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A parser that hides the entries of the attribute map of one serialized
+ * {@link com.basistech.rosette.dm.AnnotatedText} whose keys are not wanted.
+ * Hidden entries are skipped with {@link JsonParser#skipChildren()}, so nothing is built for them.
+ * This handles both the object form and the array form of the AnnotatedText.
+ */
+class AttributeFilteringParser extends JsonParserDelegate {
+    private final Set<String> keys;
+    /* the context of the AnnotatedText itself, once we have seen its start. */
+    private JsonStreamContext document;
+
+    AttributeFilteringParser(JsonParser parser, Set<String> keys) {
+        super(parser);
+        this.keys = keys;
+        if (parser.isExpectedStartObjectToken() || parser.getCurrentToken() == JsonToken.START_ARRAY) {
+            document = parser.getParsingContext();
+        }
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+        JsonToken token = delegate.nextToken();
+        while (token == JsonToken.FIELD_NAME && hidden()) {
+            delegate.nextToken();
+            delegate.skipChildren();
+            token = delegate.nextToken();
+        }
+        if (document == null && (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY)) {
+            document = delegate.getParsingContext();
+        }
+        return token;
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+        // the delegate's nextValue would bypass the filter.
+        JsonToken token = nextToken();
+        if (token == JsonToken.FIELD_NAME) {
+            token = nextToken();
+        }
+        return token;
+    }
+
+    private boolean hidden() throws IOException {
+        JsonStreamContext map = delegate.getParsingContext();
+        if (document == null || map.getParent() != document) {
+            return false;
+        }
+        boolean inAttributes;
+        if (document.inObject()) {
+            inAttributes = "attributes".equals(document.getCurrentName());
+        } else {
+            // data, attributes, documentMetadata, version
+            inAttributes = document.getCurrentIndex() == 1;
+        }
+        return inAttributes && !keys.contains(delegate.getCurrentName());
+    }
+}
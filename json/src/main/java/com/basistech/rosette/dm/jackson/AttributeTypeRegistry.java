@@ -0,0 +1,136 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.UnknownAttribute;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The type ids of attributes in JSON, and the classes they stand for. The attributes of
+ * {@link KnownAttribute} are always present. Applications may register their own subclasses
+ * of {@link BaseAttribute}, so that they are written with their own type ids, and read back
+ * as themselves instead of as {@link UnknownAttribute}. Jackson must also be able to read and write
+ * the classes themselves, with annotations, mixins, or serializers and deserializers in a module of
+ * the application's own. Lookups in both directions take constant time.
+ * <p>
+ * Each {@link AnnotatedDataModelModule} holds a registry, and stores it in the configuration of the
+ * mappers it is registered with, so that registrations apply only to those mappers:
+ * <pre>{@code
+ * AttributeTypeRegistry registry = new AttributeTypeRegistry();
+ * registry.register("sighting", Sighting.class);
+ * ObjectMapper mapper = AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper(), registry);
+ * }</pre>
+ * Register classes before reading or writing any texts that contain them.
+ */
+public final class AttributeTypeRegistry {
+    /* For mappers configured without a registry; nothing registers with this one. */
+    private static final AttributeTypeRegistry KNOWN = new AttributeTypeRegistry();
+
+    private final ConcurrentMap<String, Class<? extends BaseAttribute>> classes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, String> typeIds = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a registry of the attributes of {@link KnownAttribute}.
+     */
+    public AttributeTypeRegistry() {
+        for (KnownAttribute attribute : KnownAttribute.values()) {
+            classes.put(attribute.key(), attribute.attributeClass());
+            // some classes have several ids; the first is the one written.
+            typeIds.putIfAbsent(attribute.attributeClass(), attribute.key());
+        }
+    }
+
+    /**
+     * Returns the registry in a mapper configuration.
+     *
+     * @param config the configuration
+     * @return the registry, or one of the known attributes only if the configuration has none
+     */
+    public static AttributeTypeRegistry forConfig(MapperConfig<?> config) {
+        Object registry = config.getAttributes().getAttribute(AttributeTypeRegistry.class);
+        return registry instanceof AttributeTypeRegistry ? (AttributeTypeRegistry) registry : KNOWN;
+    }
+
+    /**
+     * Returns the registry for a serialization or deserialization.
+     *
+     * @param context the context
+     * @return the registry, or one of the known attributes only if the configuration has none
+     */
+    public static AttributeTypeRegistry forContext(DatabindContext context) {
+        Object registry = context.getAttribute(AttributeTypeRegistry.class);
+        return registry instanceof AttributeTypeRegistry ? (AttributeTypeRegistry) registry : KNOWN;
+    }
+
+    /* the registry of the known attributes only. */
+    static AttributeTypeRegistry known() {
+        return KNOWN;
+    }
+
+    /**
+     * Registers an attribute class. Registering the same class with the same id again has no effect.
+     *
+     * @param typeId the type id in JSON
+     * @param attributeClass the class
+     * @throws IllegalArgumentException if the type id or the class is already registered differently
+     */
+    public synchronized void register(String typeId, Class<? extends BaseAttribute> attributeClass) {
+        Class<? extends BaseAttribute> existingClass = classes.get(typeId);
+        String existingId = typeIds.get(attributeClass);
+        if (existingClass == attributeClass && typeId.equals(existingId)) {
+            return;
+        }
+        if (existingClass != null) {
+            throw new IllegalArgumentException(String.format("Type id %s is already registered for %s", typeId, existingClass.getName()));
+        }
+        if (existingId != null) {
+            throw new IllegalArgumentException(String.format("%s is already registered as %s", attributeClass.getName(), existingId));
+        }
+        classes.put(typeId, attributeClass);
+        typeIds.put(attributeClass, typeId);
+    }
+
+    /**
+     * Returns the class for a type id.
+     *
+     * @param typeId the type id
+     * @return the class, or {@link UnknownAttribute} if the id is not registered
+     */
+    public Class<? extends BaseAttribute> classForTypeId(String typeId) {
+        Class<? extends BaseAttribute> attributeClass = classes.get(typeId);
+        return attributeClass == null ? UnknownAttribute.class : attributeClass;
+    }
+
+    /**
+     * Returns the type id for a class.
+     *
+     * @param attributeClass the class
+     * @return the type id
+     * @throws IllegalArgumentException if the class is not registered
+     */
+    public String typeIdForClass(Class<?> attributeClass) {
+        String typeId = typeIds.get(attributeClass);
+        if (typeId == null) {
+            throw new IllegalArgumentException(String.format("No type id for %s; register it with an AttributeTypeRegistry.", attributeClass.getName()));
+        }
+        return typeId;
+    }
+}
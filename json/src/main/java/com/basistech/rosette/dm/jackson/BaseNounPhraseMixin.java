@@ -15,6 +15,8 @@
 */
 package com.basistech.rosette.dm.jackson;
 
+import com.basistech.rosette.dm.BaseNounPhrase;
+import com.basistech.rosette.dm.codegen.ItemCodec;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -23,6 +25,7 @@ import java.util.Map;
 /**
  * {@link com.basistech.rosette.dm.BaseNounPhrase}
  */
+@ItemCodec(BaseNounPhrase.class)
 public abstract class BaseNounPhraseMixin {
     @JsonCreator
     BaseNounPhraseMixin(@JsonProperty("startOffset") int startOffset,
@@ -15,6 +15,8 @@
 */
 package com.basistech.rosette.dm.jackson;
 
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.codegen.ItemCodec;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -24,6 +26,7 @@ import java.util.Map;
 /**
  * {@link com.basistech.rosette.dm.CategorizerResult}
  */
+@ItemCodec(value = CategorizerResult.class, pooled = "label")
 public class CategorizerResultMixin {
     @JsonCreator
     CategorizerResultMixin(@JsonProperty("label") String label,
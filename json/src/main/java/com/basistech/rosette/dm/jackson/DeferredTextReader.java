@@ -0,0 +1,243 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.RosetteRuntimeException;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.DeferredAttributes;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads an {@link AnnotatedText} whose attributes are buffered as tokens, and only
+ * deserialized when they are first accessed. See {@link DeferredAttributes}.
+ */
+final class DeferredTextReader {
+    private static final TypeReference<Map<String, List<String>>> METADATA_TYPE = new TypeReference<Map<String, List<String>>>() { };
+
+    private final ObjectMapper mapper;
+    private final JsonParser parser;
+    /* null for all attributes. */
+    private final Set<String> keys;
+    private boolean arrayShape;
+    private String data;
+    private Map<String, List<String>> documentMetadata;
+    private final Map<String, TokenBuffer> buffers = Maps.newLinkedHashMap();
+
+    private DeferredTextReader(ObjectMapper mapper, JsonParser parser, Set<String> keys) {
+        this.mapper = mapper;
+        this.parser = parser;
+        this.keys = keys;
+    }
+
+    static AnnotatedText read(ObjectMapper mapper, JsonParser parser, Set<String> keys) throws IOException {
+        return new DeferredTextReader(mapper, parser, keys).read();
+    }
+
+    @SuppressWarnings("deprecation")
+    private AnnotatedText read() throws IOException {
+        JsonToken start = parser.getCurrentToken();
+        if (start != JsonToken.START_OBJECT && start != JsonToken.START_ARRAY) {
+            start = parser.nextToken();
+        }
+        if (start == JsonToken.START_OBJECT) {
+            readObject();
+        } else if (start == JsonToken.START_ARRAY) {
+            arrayShape = true;
+            readArray();
+        } else {
+            throw JsonMappingException.from(parser, "Expected the start of an AnnotatedText");
+        }
+
+        if (buffers.containsKey(AttributeKey.ENTITY_MENTION.key()) || buffers.containsKey(AttributeKey.RESOLVED_ENTITY.key())) {
+            // ADM 1.0 entities have to be converted together; just read the whole thing.
+            return mapper.readValue(wrap(mapper, data, arrayShape, buffers).asParser(), AnnotatedText.class);
+        }
+        DeferredAttributes.Builder attributes = new DeferredAttributes.Builder();
+        for (Map.Entry<String, TokenBuffer> me : buffers.entrySet()) {
+            attributes.put(me.getKey(), new BufferDecoder(mapper, data, arrayShape, me.getKey(), me.getValue()));
+        }
+        // each decoder now owns its buffer.
+        buffers.clear();
+        AnnotatedText.Builder builder = new AnnotatedText.Builder().data(data).deferredAttributes(attributes.build());
+        if (documentMetadata != null) {
+            builder.documentMetadata(documentMetadata);
+        }
+        return builder.build();
+    }
+
+    private void readObject() throws IOException {
+        for (JsonToken t = parser.nextToken(); t == JsonToken.FIELD_NAME; t = parser.nextToken()) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("data".equals(name)) {
+                readData();
+            } else if ("attributes".equals(name)) {
+                readAttributes();
+            } else if ("documentMetadata".equals(name)) {
+                documentMetadata = mapper.readValue(parser, METADATA_TYPE);
+            } else if ("version".equals(name)) {
+                readVersion();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readArray() throws IOException {
+        // data, attributes, documentMetadata, version; any of them may be missing from the end.
+        int index = 0;
+        for (JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser.nextToken()) {
+            if (t == null) {
+                throw JsonMappingException.from(parser, "Unexpected end of input in an AnnotatedText");
+            }
+            switch (index++) {
+            case 0:
+                readData();
+                break;
+            case 1:
+                readAttributes();
+                break;
+            case 2:
+                documentMetadata = mapper.readValue(parser, METADATA_TYPE);
+                break;
+            case 3:
+                readVersion();
+                break;
+            default:
+                parser.skipChildren();
+                break;
+            }
+        }
+    }
+
+    private void readData() throws IOException {
+        data = parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+
+    private void readVersion() throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        String version = parser.getValueAsString();
+        String problem = version == null ? "The value of 'version' must be a string" : VersionCheckDeserializer.checkVersion(version);
+        if (problem != null) {
+            throw new InvalidFormatException(parser, problem, version, String.class);
+        }
+    }
+
+    private void readAttributes() throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw JsonMappingException.from(parser, "Expected an object of attributes");
+        }
+        for (JsonToken t = parser.nextToken(); t == JsonToken.FIELD_NAME; t = parser.nextToken()) {
+            String key = parser.getCurrentName();
+            parser.nextToken();
+            if (keys != null && !keys.contains(key)) {
+                parser.skipChildren();
+            } else {
+                TokenBuffer buffer = new TokenBuffer(mapper, false);
+                buffer.copyCurrentStructure(parser);
+                buffers.put(key, buffer);
+            }
+        }
+    }
+
+    /* Rebuild a serialized AnnotatedText, with the same shape as the original, holding the given attributes. */
+    private static TokenBuffer wrap(ObjectMapper mapper, String data, boolean arrayShape, Map<String, TokenBuffer> attributes)
+            throws IOException {
+        TokenBuffer wrapper = new TokenBuffer(mapper, false);
+        if (arrayShape) {
+            wrapper.writeStartArray();
+        } else {
+            wrapper.writeStartObject();
+            wrapper.writeFieldName("data");
+        }
+        // the same String as the data of the text, so that tokens can share it.
+        if (data == null) {
+            wrapper.writeNull();
+        } else {
+            wrapper.writeString(data);
+        }
+        if (!arrayShape) {
+            wrapper.writeFieldName("attributes");
+        }
+        wrapper.writeStartObject();
+        for (Map.Entry<String, TokenBuffer> me : attributes.entrySet()) {
+            wrapper.writeFieldName(me.getKey());
+            JsonParser bufferParser = me.getValue().asParser();
+            bufferParser.nextToken();
+            wrapper.copyCurrentStructure(bufferParser);
+        }
+        wrapper.writeEndObject();
+        if (arrayShape) {
+            wrapper.writeEndArray();
+        } else {
+            wrapper.writeEndObject();
+        }
+        return wrapper;
+    }
+
+    /**
+     * Decodes one attribute from its buffer. This is static, and holds only what it needs,
+     * so that a text does not keep the reader or its parser alive.
+     */
+    private static final class BufferDecoder implements DeferredAttributes.Decoder {
+        private final ObjectMapper mapper;
+        private final String data;
+        private final boolean arrayShape;
+        private final String key;
+        private TokenBuffer buffer;
+
+        BufferDecoder(ObjectMapper mapper, String data, boolean arrayShape, String key, TokenBuffer buffer) {
+            this.mapper = mapper;
+            this.data = data;
+            this.arrayShape = arrayShape;
+            this.key = key;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public BaseAttribute decode() {
+            try {
+                Map<String, TokenBuffer> single = Maps.newHashMap();
+                single.put(key, buffer);
+                AnnotatedText text = mapper.readValue(wrap(mapper, data, arrayShape, single).asParser(), AnnotatedText.class);
+                // keep the buffer after a failure, so that another attempt reports the same error.
+                buffer = null;
+                return text.getAttributes().get(key);
+            } catch (IOException e) {
+                throw new RosetteRuntimeException(String.format("Failed to deserialize the attribute %s", key), e);
+            }
+        }
+    }
+}
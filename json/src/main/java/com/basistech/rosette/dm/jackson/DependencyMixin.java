@@ -15,6 +15,8 @@
 */
 package com.basistech.rosette.dm.jackson;
 
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.codegen.ItemCodec;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -24,6 +26,7 @@ import java.util.Map;
 /**
  * {@link com.basistech.rosette.dm.BaseAttribute}.
  */
+@ItemCodec(value = Dependency.class, pooled = "relationship")
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public abstract class DependencyMixin {
 
@@ -21,9 +21,27 @@ import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.jsontype.impl.TypeIdResolverBase;
 
 /**
- * Jackson custom type info resolver for the data model.
+ * Jackson custom type info resolver for the data model. The type ids come from an
+ * {@link AttributeTypeRegistry}; {@link DmTypeResolverBuilder} builds resolvers with the
+ * registry in the mapper configuration.
  */
 public class DmTypeIdResolver extends TypeIdResolverBase {
+    private final AttributeTypeRegistry registry;
+
+    /**
+     * Constructs a resolver for the attributes of {@link KnownAttribute}.
+     */
+    public DmTypeIdResolver() {
+        this(AttributeTypeRegistry.known());
+    }
+
+    /**
+     * Constructs a resolver for the attributes of a registry.
+     * @param registry the registry.
+     */
+    public DmTypeIdResolver(AttributeTypeRegistry registry) {
+        this.registry = registry;
+    }
 
     @Override
     public void init(JavaType javaType) {
@@ -37,17 +55,13 @@ public class DmTypeIdResolver extends TypeIdResolverBase {
 
     @Override
     public String idFromValueAndType(Object o, Class<?> aClass) {
-        KnownAttribute attribute = KnownAttribute.getAttributeForClass(o.getClass());
-        return attribute.key();
+        return registry.typeIdForClass(o.getClass());
     }
 
     @Override
     public JavaType typeFromId(DatabindContext context, String id) {
-        KnownAttribute attribute = KnownAttribute.getAttributeForKey(id);
-        if (attribute == null) {
-            attribute = KnownAttribute.UNKNOWN; // extension mechanism, build a BaseAttribute.
-        }
-        return context.constructType(attribute.attributeClass());
+        // unregistered ids are the extension mechanism, build an UnknownAttribute.
+        return context.constructType(registry.classForTypeId(id));
     }
 
     @Override
@@ -0,0 +1,110 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserialize the data of an {@link com.basistech.rosette.dm.AnnotatedText}, and remember
+ * it for the rest of the text, so that the token deserializers can make tokens whose text
+ * is the same as the data at their offsets refer to it instead of keeping a copy.
+ * This works when the data precedes the attributes, as it does in everything we write;
+ * tokens read before the data keep their own text.
+ * The data is forgotten at the end of each text; see {@link #documentScope()}.
+ */
+public class DocumentDataDeserializer extends JsonDeserializer<CharSequence> {
+    /* Jackson 2.7 keeps a context attribute that is set to null, so this stands for 'no data'. */
+    private static final Object NO_DATA = new Object();
+
+    @Override
+    public CharSequence deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String data;
+        if (p.getCurrentToken() == JsonToken.VALUE_STRING) {
+            data = p.getText();
+        } else {
+            data = p.readValueAs(String.class);
+        }
+        ctxt.setAttribute(DocumentDataDeserializer.class, data);
+        return data;
+    }
+
+    /**
+     * Returns the data of the text being read, if it has been read yet.
+     *
+     * @param ctxt the context of the current deserialization
+     * @return the data, or {@code null}
+     */
+    public static CharSequence documentData(DeserializationContext ctxt) {
+        Object data = ctxt.getAttribute(DocumentDataDeserializer.class);
+        return data instanceof CharSequence ? (CharSequence) data : null;
+    }
+
+    /**
+     * Returns a modifier that confines the remembered data to the text being read. Without it,
+     * a text without data that follows another in the same context, as in a stream of texts,
+     * would see the data of the one before. The modules register it.
+     *
+     * @return the modifier
+     */
+    public static BeanDeserializerModifier documentScope() {
+        return new BeanDeserializerModifier() {
+            @Override
+            public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
+                if (beanDesc.getBeanClass() == AnnotatedText.class) {
+                    return new ScopedDeserializer(deserializer);
+                }
+                return deserializer;
+            }
+        };
+    }
+
+    /**
+     * Starts each text with no data, and restores whatever was there when it is done.
+     */
+    private static final class ScopedDeserializer extends DelegatingDeserializer {
+        private static final long serialVersionUID = 1L;
+
+        ScopedDeserializer(JsonDeserializer<?> delegatee) {
+            super(delegatee);
+        }
+
+        @Override
+        protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+            return new ScopedDeserializer(newDelegatee);
+        }
+
+        @Override
+        public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            Object outer = ctxt.getAttribute(DocumentDataDeserializer.class);
+            ctxt.setAttribute(DocumentDataDeserializer.class, NO_DATA);
+            try {
+                return _delegatee.deserialize(p, ctxt);
+            } finally {
+                ctxt.setAttribute(DocumentDataDeserializer.class, outer == null ? NO_DATA : outer);
+            }
+        }
+    }
+}
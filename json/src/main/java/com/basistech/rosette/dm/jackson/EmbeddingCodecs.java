@@ -0,0 +1,248 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.EmbeddingCollection;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.Serializers;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Serializer and deserializer for {@link EmbeddingCollection}, in either {@link EmbeddingEncoding}.
+ * They write and read the same Json objects for both modules. A collection at less than full
+ * precision has a {@code precision} field, and in the binary encoding its values stay in
+ * the collection's encoded form.
+ */
+public final class EmbeddingCodecs {
+    private EmbeddingCodecs() {
+        //
+    }
+
+    /**
+     * @return the serializers
+     */
+    public static Serializers serializers() {
+        return new Serializers.Base() {
+            @Override
+            public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc) {
+                return type.getRawClass() == EmbeddingCollection.class ? new CollectionSerializer() : null;
+            }
+        };
+    }
+
+    /**
+     * @return the deserializers
+     */
+    public static Deserializers deserializers() {
+        return new Deserializers.Base() {
+            @Override
+            public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc) {
+                return type.getRawClass() == EmbeddingCollection.class ? new CollectionDeserializer() : null;
+            }
+        };
+    }
+
+    private static final class CollectionSerializer extends StdSerializer<EmbeddingCollection> {
+        CollectionSerializer() {
+            super(EmbeddingCollection.class);
+        }
+
+        @Override
+        public void serialize(EmbeddingCollection value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+            if (value.getPrecision() != EmbeddingCollection.Precision.FLOAT32) {
+                jgen.writeStringField("precision", value.getPrecision().name());
+            }
+            if (provider.getAttribute(EmbeddingEncoding.class) == EmbeddingEncoding.BINARY) {
+                writeBinary(value, jgen);
+            } else {
+                writeNumbers(value, jgen);
+            }
+            jgen.writeEndObject();
+        }
+
+        private static void writeNumbers(EmbeddingCollection value, JsonGenerator jgen) throws IOException {
+            jgen.writeObjectFieldStart("embeddings");
+            for (int x = 0; x < value.size(); x++) {
+                jgen.writeArrayFieldStart(Integer.toString(value.getIndex(x)));
+                FloatBuffer row = value.rowAt(x);
+                while (row.hasRemaining()) {
+                    jgen.writeNumber(row.get());
+                }
+                jgen.writeEndArray();
+            }
+            jgen.writeEndObject();
+        }
+
+        private static void writeBinary(EmbeddingCollection value, JsonGenerator jgen) throws IOException {
+            jgen.writeArrayFieldStart("indices");
+            for (int x = 0; x < value.size(); x++) {
+                jgen.writeNumber(value.getIndex(x));
+            }
+            jgen.writeEndArray();
+            jgen.writeNumberField("dimension", value.getDimension());
+            ByteBuffer bytes = value.getEncodedValues();
+            jgen.writeFieldName("values");
+            jgen.writeBinary(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        }
+    }
+
+    private static final class CollectionDeserializer extends StdDeserializer<EmbeddingCollection> {
+        CollectionDeserializer() {
+            super(EmbeddingCollection.class);
+        }
+
+        @Override
+        public boolean isCachable() {
+            return true;
+        }
+
+        @Override
+        public EmbeddingCollection deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            EmbeddingCollection.Builder builder = new EmbeddingCollection.Builder();
+            int[] indices = null;
+            int dimension = 0;
+            EmbeddingCollection.Precision precision = EmbeddingCollection.Precision.FLOAT32;
+            EmbeddingCollection.Decoder values = null;
+            JsonToken t = jp.getCurrentToken();
+            if (t == JsonToken.START_OBJECT) {
+                t = jp.nextToken();
+            }
+            for (; t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                String name = jp.getCurrentName();
+                t = jp.nextToken();
+                if ("embeddings".equals(name)) {
+                    readNumbers(builder, jp, ctxt);
+                } else if ("indices".equals(name)) {
+                    indices = readIndices(jp, ctxt);
+                } else if ("precision".equals(name)) {
+                    precision = readPrecision(jp, ctxt);
+                } else if ("dimension".equals(name)) {
+                    dimension = jp.getValueAsInt();
+                } else if ("values".equals(name)) {
+                    values = t == JsonToken.VALUE_STRING ? new Base64Values(jp.getText()) : new BinaryValues(jp.getBinaryValue());
+                } else {
+                    ctxt.handleUnknownProperty(jp, this, EmbeddingCollection.class, name);
+                }
+            }
+            if (t != JsonToken.END_OBJECT) {
+                throw ctxt.wrongTokenException(jp, JsonToken.END_OBJECT, "Expected field name");
+            }
+            if (values != null) {
+                if (indices == null) {
+                    throw ctxt.mappingException("Embedding values without indices");
+                }
+                builder.encodedValues(indices, dimension, precision, values);
+            }
+            return builder.precision(precision).build();
+        }
+
+        private static void readNumbers(EmbeddingCollection.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+                return;
+            }
+            float[] row = new float[16];
+            for (JsonToken t = jp.nextToken(); t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                int index;
+                try {
+                    index = Integer.parseInt(jp.getCurrentName());
+                } catch (NumberFormatException e) {
+                    throw ctxt.weirdKeyException(Integer.class, jp.getCurrentName(), "not an item index");
+                }
+                if (jp.nextToken() != JsonToken.START_ARRAY) {
+                    throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected embedding values");
+                }
+                int length = 0;
+                while (jp.nextToken() != JsonToken.END_ARRAY) {
+                    if (length == row.length) {
+                        row = Arrays.copyOf(row, 2 * length);
+                    }
+                    row[length++] = jp.getFloatValue();
+                }
+                builder.put(index, Arrays.copyOf(row, length));
+            }
+        }
+
+        private static EmbeddingCollection.Precision readPrecision(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            try {
+                return EmbeddingCollection.Precision.valueOf(jp.getText());
+            } catch (IllegalArgumentException e) {
+                throw ctxt.weirdStringException(jp.getText(), EmbeddingCollection.Precision.class, "unknown precision");
+            }
+        }
+
+        private static int[] readIndices(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected embedding indices");
+            }
+            int[] indices = new int[16];
+            int length = 0;
+            while (jp.nextToken() != JsonToken.END_ARRAY) {
+                if (length == indices.length) {
+                    indices = Arrays.copyOf(indices, 2 * length);
+                }
+                indices[length++] = jp.getIntValue();
+            }
+            return Arrays.copyOf(indices, length);
+        }
+    }
+
+    /* base64 text, decoded on first use. */
+    private static final class Base64Values implements EmbeddingCollection.Decoder {
+        private final String text;
+
+        Base64Values(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public ByteBuffer decode() {
+            return ByteBuffer.wrap(Base64Variants.getDefaultVariant().decode(text));
+        }
+    }
+
+    /* bytes from a binary format, which need no decoding. */
+    private static final class BinaryValues implements EmbeddingCollection.Decoder {
+        private final byte[] bytes;
+
+        BinaryValues(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public ByteBuffer decode() {
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+}
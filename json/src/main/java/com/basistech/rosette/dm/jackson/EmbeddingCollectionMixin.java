@@ -17,8 +17,10 @@
 package com.basistech.rosette.dm.jackson;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.nio.FloatBuffer;
 import java.util.Map;
 
 public abstract class EmbeddingCollectionMixin {
@@ -26,4 +28,10 @@ public abstract class EmbeddingCollectionMixin {
     public EmbeddingCollectionMixin(@JsonProperty("embeddings") Map<Integer, float[]> embeddings) {
         //
     }
+
+    @JsonIgnore
+    public abstract int getDimension();
+
+    @JsonIgnore
+    public abstract FloatBuffer getValues();
 }
@@ -0,0 +1,57 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * How to write the values of an {@link com.basistech.rosette.dm.EmbeddingCollection}.
+ * The encoding is a serialization attribute; a writer without one uses {@link #NUMBERS}.
+ * Either module reads both encodings.
+ */
+public enum EmbeddingEncoding {
+    /**
+     * Each row as an array of numbers, keyed by item index. This is the form
+     * that versions before 2.2.3 read and write.
+     */
+    NUMBERS,
+
+    /**
+     * The item indices as an array of numbers, and all of the rows as one binary value
+     * of little-endian floats: base64 in Json, raw bytes in Smile or CBOR.
+     * Readers decode the values when they are first used.
+     */
+    BINARY;
+
+    /**
+     * @param writer a writer.
+     * @return a writer like {@code writer} that writes embeddings in this encoding.
+     */
+    public ObjectWriter configure(ObjectWriter writer) {
+        return writer.withAttribute(EmbeddingEncoding.class, this);
+    }
+
+    /**
+     * Make a mapper write embeddings in this encoding.
+     * @param mapper the mapper.
+     * @return the same mapper, for convenience.
+     */
+    public ObjectMapper configure(ObjectMapper mapper) {
+        mapper.setConfig(mapper.getSerializationConfig().withAttribute(EmbeddingEncoding.class, this));
+        return mapper;
+    }
+}
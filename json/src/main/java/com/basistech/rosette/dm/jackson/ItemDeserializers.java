@@ -0,0 +1,362 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deserializers for the items that make up most of a document: tokens, their analyses,
+ * sentences, entities and mentions. Each reads the fields of its item straight into the builder;
+ * any field it does not know becomes an extended property, as with the mixins.
+ */
+final class ItemDeserializers extends Deserializers.Base {
+
+    @Override
+    public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc) {
+        Class<?> raw = type.getRawClass();
+        if (raw == Token.class) {
+            return new TokenDeserializer();
+        } else if (raw == MorphoAnalysis.class) {
+            return new MorphoAnalysisDeserializer();
+        } else if (raw == Sentence.class) {
+            return new SentenceDeserializer();
+        } else if (raw == Entity.class) {
+            return new EntityDeserializer();
+        } else if (raw == Mention.class) {
+            return new MentionDeserializer();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> JsonDeserializer<T> find(DeserializationContext ctxt, Class<T> type) throws JsonMappingException {
+        return (JsonDeserializer<T>) ctxt.findRootValueDeserializer(ctxt.constructType(type));
+    }
+
+    /**
+     * Reads the fields of an object into a builder. This may be called at the start of the object,
+     * or, after a type id, at its next field.
+     */
+    private abstract static class ItemDeserializer<T extends BaseAttribute, B extends BaseAttribute.Builder<?, ?>>
+            extends StdDeserializer<T> implements ResolvableDeserializer {
+        JsonDeserializer<Object> objects;
+
+        ItemDeserializer(Class<T> itemClass) {
+            super(itemClass);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            objects = find(ctxt, Object.class);
+        }
+
+        @Override
+        public boolean isCachable() {
+            return true;
+        }
+
+        abstract B builder();
+
+        /* returns false for a field that becomes an extended property. */
+        abstract boolean readField(String name, B builder, JsonParser jp, DeserializationContext ctxt) throws IOException;
+
+        abstract T build(B builder);
+
+        @Override
+        public T deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            B builder = builder();
+            Map<String, Object> extendedProperties = null;
+            JsonToken t = jp.getCurrentToken();
+            if (t == JsonToken.START_OBJECT) {
+                t = jp.nextToken();
+            }
+            for (; t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                String name = jp.getCurrentName();
+                jp.nextToken();
+                if ("extendedProperties".equals(name)) {
+                    extendedProperties = ItemFields.readExtendedProperties(jp, ctxt, objects, extendedProperties);
+                } else if (!readField(name, builder, jp, ctxt)) {
+                    extendedProperties = ItemFields.putExtendedProperty(extendedProperties, name, objects.deserialize(jp, ctxt));
+                }
+            }
+            if (t != JsonToken.END_OBJECT) {
+                throw ctxt.wrongTokenException(jp, JsonToken.END_OBJECT, "Expected field name");
+            }
+            if (extendedProperties != null) {
+                builder.extendedProperties(ItemFields.shareExtendedProperties(ctxt, extendedProperties));
+            }
+            return build(builder);
+        }
+    }
+
+    private static final class TokenDeserializer extends ItemDeserializer<Token, Token.Builder> {
+        private JsonDeserializer<Object> analyses;
+
+        TokenDeserializer() {
+            super(Token.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            @SuppressWarnings("unchecked")
+            JsonDeserializer<Object> listDeserializer = (JsonDeserializer<Object>) new MorphoAnalysisListDeserializer().createContextual(ctxt, null);
+            analyses = listDeserializer;
+        }
+
+        @Override
+        Token.Builder builder() {
+            return new Token.Builder(0, 0, null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean readField(String name, Token.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (name) {
+            case "startOffset":
+                builder.startOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case "endOffset":
+                builder.endOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case "text":
+                ItemFields.readTokenText(jp, ctxt, builder);
+                return true;
+            case "normalized":
+                builder.normalized(ItemFields.readStrings(jp, ctxt));
+                return true;
+            case "source":
+                builder.source(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case "analyses":
+                if (jp.getCurrentToken() != JsonToken.VALUE_NULL) {
+                    builder.analyses((List<MorphoAnalysis>) analyses.deserialize(jp, ctxt));
+                }
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Token build(Token.Builder builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class MorphoAnalysisDeserializer extends ItemDeserializer<MorphoAnalysis, MorphoAnalysis.Builder<MorphoAnalysis, ?>> {
+        private JsonDeserializer<Token> tokens;
+
+        MorphoAnalysisDeserializer() {
+            super(MorphoAnalysis.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            tokens = find(ctxt, Token.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        MorphoAnalysis.Builder<MorphoAnalysis, ?> builder() {
+            return new MorphoAnalysis.Builder();
+        }
+
+        @Override
+        boolean readField(String name, MorphoAnalysis.Builder<MorphoAnalysis, ?> builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (name) {
+            case "partOfSpeech":
+                builder.partOfSpeech(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case "lemma":
+                builder.lemma(ItemFields.readString(jp, ctxt));
+                return true;
+            case "components":
+                builder.components(ItemFields.<Token>readList(jp, ctxt, tokens));
+                return true;
+            case "raw":
+                builder.raw(ItemFields.readString(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        MorphoAnalysis build(MorphoAnalysis.Builder<MorphoAnalysis, ?> builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class SentenceDeserializer extends ItemDeserializer<Sentence, Sentence.Builder> {
+        SentenceDeserializer() {
+            super(Sentence.class);
+        }
+
+        @Override
+        Sentence.Builder builder() {
+            return new Sentence.Builder(0, 0);
+        }
+
+        @Override
+        boolean readField(String name, Sentence.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (name) {
+            case "startOffset":
+                builder.startOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case "endOffset":
+                builder.endOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Sentence build(Sentence.Builder builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class EntityDeserializer extends ItemDeserializer<Entity, Entity.Builder> {
+        private JsonDeserializer<Mention> mentions;
+        private JsonDeserializer<CategorizerResult> categorizerResults;
+
+        EntityDeserializer() {
+            super(Entity.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            mentions = find(ctxt, Mention.class);
+            categorizerResults = find(ctxt, CategorizerResult.class);
+        }
+
+        @Override
+        Entity.Builder builder() {
+            return new Entity.Builder();
+        }
+
+        @Override
+        boolean readField(String name, Entity.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (name) {
+            case "mentions":
+                List<Mention> entityMentions = ItemFields.readList(jp, ctxt, mentions);
+                if (entityMentions != null) {
+                    for (Mention mention : entityMentions) {
+                        builder.mention(mention);
+                    }
+                }
+                return true;
+            case "headMentionIndex":
+                builder.headMentionIndex(ItemFields.readInteger(jp, ctxt));
+                return true;
+            case "type":
+                builder.type(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case "entityId":
+                builder.entityId(ItemFields.readString(jp, ctxt));
+                return true;
+            case "confidence":
+                builder.confidence(ItemFields.readDouble(jp, ctxt));
+                return true;
+            case "sentiment":
+                List<CategorizerResult> sentiment = ItemFields.readList(jp, ctxt, categorizerResults);
+                if (sentiment != null) {
+                    for (CategorizerResult result : sentiment) {
+                        builder.sentiment(result);
+                    }
+                }
+                return true;
+            case "salience":
+                builder.salience(ItemFields.readDouble(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Entity build(Entity.Builder builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class MentionDeserializer extends ItemDeserializer<Mention, Mention.Builder> {
+        MentionDeserializer() {
+            super(Mention.class);
+        }
+
+        @Override
+        Mention.Builder builder() {
+            return new Mention.Builder(0, 0);
+        }
+
+        @Override
+        boolean readField(String name, Mention.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (name) {
+            case "startOffset":
+                builder.startOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case "endOffset":
+                builder.endOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case "confidence":
+                builder.confidence(ItemFields.readDouble(jp, ctxt));
+                return true;
+            case "source":
+                builder.source(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case "subsource":
+                builder.subsource(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case "normalized":
+                builder.normalized(ItemFields.readString(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Mention build(Mention.Builder builder) {
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,455 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.ExtendedProperties;
+import com.basistech.rosette.dm.Token;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field-level reading and writing shared by the dedicated serializers and deserializers
+ * for list items. Each read method expects the parser to be positioned at the value.
+ */
+public final class ItemFields {
+    /** The number of distinct maps of extended properties that {@link #shareExtendedProperties} keeps for each stream. */
+    public static final int SHARED_PROPERTY_MAPS = 256;
+
+    private ItemFields() {
+        //
+    }
+
+    /**
+     * Reads a string, or null.
+     * @param jp the parser
+     * @param ctxt the context
+     * @return the string
+     * @throws IOException if the value is not a scalar
+     */
+    public static String readString(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        JsonToken t = jp.getCurrentToken();
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (t.isScalarValue()) {
+            return jp.getText();
+        }
+        throw ctxt.mappingException(String.class, t);
+    }
+
+    /**
+     * Reads the text of a token into its builder. If the data of the text being read is
+     * already known, the token refers to it when the text matches the data at the token's offsets.
+     * @param jp the parser
+     * @param ctxt the context
+     * @param builder the builder of the token
+     * @throws IOException if the value is not a scalar
+     */
+    public static void readTokenText(JsonParser jp, DeserializationContext ctxt, Token.Builder builder) throws IOException {
+        String text = readString(jp, ctxt);
+        builder.text(text);
+        CharSequence data = DocumentDataDeserializer.documentData(ctxt);
+        if (text != null && data != null) {
+            builder.textFrom(data);
+        }
+    }
+
+    /**
+     * Reads a string from a small vocabulary, such as a part of speech, or null.
+     * The string comes from a {@link StringPool.Local} kept in the context, backed by the
+     * {@link StringPool#global()} pool, and is created only if neither has it.
+     * @param jp the parser
+     * @param ctxt the context
+     * @return the string
+     * @throws IOException if the value is not a scalar
+     */
+    public static String readPooledString(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if (jp.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return readString(jp, ctxt);
+        }
+        StringPool.Local pool = (StringPool.Local) ctxt.getAttribute(StringPool.class);
+        if (pool == null) {
+            pool = StringPool.global().newLocal();
+            ctxt.setAttribute(StringPool.class, pool);
+        }
+        return pool.intern(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+    }
+
+    /**
+     * Reads a number as a Double, or null.
+     * @param jp the parser
+     * @param ctxt the context
+     * @return the number
+     * @throws IOException if the value is not a number
+     */
+    public static Double readDouble(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        JsonToken t = jp.getCurrentToken();
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (t.isNumeric()) {
+            return jp.getDoubleValue();
+        }
+        if (t == JsonToken.VALUE_STRING) {
+            return Double.valueOf(jp.getText().trim());
+        }
+        throw ctxt.mappingException(Double.class, t);
+    }
+
+    /**
+     * Reads a number as an Integer, or null.
+     * @param jp the parser
+     * @param ctxt the context
+     * @return the number
+     * @throws IOException if the value is not a number
+     */
+    public static Integer readInteger(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        JsonToken t = jp.getCurrentToken();
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (t.isNumeric()) {
+            return jp.getValueAsInt();
+        }
+        if (t == JsonToken.VALUE_STRING) {
+            return Integer.valueOf(jp.getText().trim());
+        }
+        throw ctxt.mappingException(Integer.class, t);
+    }
+
+    /**
+     * Reads an int; null reads as 0.
+     * @param jp the parser
+     * @param ctxt the context
+     * @return the number
+     * @throws IOException if the value is not a number
+     */
+    public static int readInt(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        Integer value = readInteger(jp, ctxt);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Reads an array of strings, or null.
+     * @param jp the parser
+     * @param ctxt the context
+     * @return the strings
+     * @throws IOException if the value is not an array of strings
+     */
+    public static List<String> readStrings(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected array of strings");
+        }
+        List<String> strings = Lists.newArrayList();
+        while (jp.nextToken() != JsonToken.END_ARRAY) {
+            strings.add(readString(jp, ctxt));
+        }
+        return strings;
+    }
+
+    /**
+     * Reads an array of values with one deserializer, or null.
+     * @param jp the parser
+     * @param ctxt the context
+     * @param deserializer the deserializer for the elements
+     * @param <T> the type of the elements
+     * @return the values
+     * @throws IOException if the value is not an array
+     */
+    public static <T> List<T> readList(JsonParser jp, DeserializationContext ctxt, JsonDeserializer<? extends T> deserializer) throws IOException {
+        if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected array of items");
+        }
+        List<T> values = Lists.newArrayList();
+        while (jp.nextToken() != JsonToken.END_ARRAY) {
+            values.add(jp.getCurrentToken() == JsonToken.VALUE_NULL ? null : deserializer.deserialize(jp, ctxt));
+        }
+        return values;
+    }
+
+    /**
+     * Reads a map of extended properties into a builder, replacing any it has. Null adds nothing.
+     * @param jp the parser
+     * @param ctxt the context
+     * @param objects the deserializer for untyped values
+     * @param builder the builder
+     * @throws IOException if the value is not an object
+     */
+    @SuppressWarnings("unchecked")
+    public static void readExtendedProperties(JsonParser jp, DeserializationContext ctxt, JsonDeserializer<Object> objects,
+                                              BaseAttribute.Builder<?, ?> builder) throws IOException {
+        Object value = objects.deserialize(jp, ctxt);
+        if (value instanceof Map) {
+            if (!((Map<?, ?>) value).isEmpty()) {
+                builder.extendedProperties(shareExtendedProperties(ctxt, (Map<String, Object>) value));
+            }
+        } else if (value != null) {
+            throw ctxt.mappingException("Extended properties must be an object");
+        }
+    }
+
+    /**
+     * Reads a map of extended properties into a map, which is created if need be. Null adds nothing.
+     * @param jp the parser
+     * @param ctxt the context
+     * @param objects the deserializer for untyped values
+     * @param properties the properties read so far, or null
+     * @return the properties
+     * @throws IOException if the value is not an object
+     */
+    public static Map<String, Object> readExtendedProperties(JsonParser jp, DeserializationContext ctxt, JsonDeserializer<Object> objects,
+                                                             Map<String, Object> properties) throws IOException {
+        Object value = objects.deserialize(jp, ctxt);
+        Map<String, Object> result = properties;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> me : ((Map<?, ?>) value).entrySet()) {
+                result = putExtendedProperty(result, (String) me.getKey(), me.getValue());
+            }
+        } else if (value != null) {
+            throw ctxt.mappingException("Extended properties must be an object");
+        }
+        return result;
+    }
+
+    /**
+     * Adds an extended property to a map, which is created if need be.
+     * @param properties the properties so far, or null
+     * @param name the name
+     * @param value the value
+     * @return the properties
+     */
+    public static Map<String, Object> putExtendedProperty(Map<String, Object> properties, String name, Object value) {
+        Map<String, Object> result = properties == null ? Maps.<String, Object>newLinkedHashMap() : properties;
+        result.put(name, value);
+        return result;
+    }
+
+    /**
+     * Makes the immutable map of extended properties for one item from the properties read for it.
+     * Maps whose values are all strings, numbers or booleans are shared: each stream keeps
+     * up to {@value #SHARED_PROPERTY_MAPS} of them, and an item whose properties equal one of
+     * those gets the same map.
+     * @param ctxt the context
+     * @param properties the properties, or null
+     * @return the map, or null for null
+     */
+    @SuppressWarnings("unchecked")
+    public static ExtendedProperties shareExtendedProperties(DeserializationContext ctxt, Map<String, Object> properties) {
+        if (properties == null) {
+            return null;
+        }
+        if (properties.isEmpty() || !allScalars(properties)) {
+            return ExtendedProperties.copyOf(properties);
+        }
+        Map<Map<String, Object>, ExtendedProperties> shared = (Map<Map<String, Object>, ExtendedProperties>) ctxt.getAttribute(ExtendedProperties.class);
+        if (shared == null) {
+            shared = Maps.newHashMap();
+            ctxt.setAttribute(ExtendedProperties.class, shared);
+        }
+        ExtendedProperties result = shared.get(properties);
+        if (result == null) {
+            result = ExtendedProperties.copyOf(properties);
+            if (shared.size() < SHARED_PROPERTY_MAPS) {
+                shared.put(result, result);
+            }
+        }
+        return result;
+    }
+
+    /* only maps of immutable values may be shared. */
+    private static boolean allScalars(Map<String, Object> properties) {
+        for (Object value : properties.values()) {
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a string, or null.
+     * @param jgen the generator
+     * @param value the string
+     * @throws IOException on write error
+     */
+    public static void writeString(JsonGenerator jgen, String value) throws IOException {
+        if (value == null) {
+            jgen.writeNull();
+        } else {
+            jgen.writeString(value);
+        }
+    }
+
+    /**
+     * Writes a number, or null.
+     * @param jgen the generator
+     * @param value the number
+     * @throws IOException on write error
+     */
+    public static void writeNumber(JsonGenerator jgen, Double value) throws IOException {
+        if (value == null) {
+            jgen.writeNull();
+        } else {
+            jgen.writeNumber(value);
+        }
+    }
+
+    /**
+     * Writes a number, or null.
+     * @param jgen the generator
+     * @param value the number
+     * @throws IOException on write error
+     */
+    public static void writeNumber(JsonGenerator jgen, Integer value) throws IOException {
+        if (value == null) {
+            jgen.writeNull();
+        } else {
+            jgen.writeNumber(value);
+        }
+    }
+
+    /**
+     * Writes an array of strings, or null.
+     * @param jgen the generator
+     * @param values the strings
+     * @throws IOException on write error
+     */
+    public static void writeStrings(JsonGenerator jgen, List<String> values) throws IOException {
+        if (values == null) {
+            jgen.writeNull();
+            return;
+        }
+        jgen.writeStartArray();
+        for (String value : values) {
+            writeString(jgen, value);
+        }
+        jgen.writeEndArray();
+    }
+
+    /**
+     * Writes the extended properties of an item as fields of the item itself, as the mixins' any-getter does.
+     * @param value the item
+     * @param jgen the generator
+     * @param provider the provider
+     * @throws IOException on write error
+     */
+    public static void writeExtendedPropertyFields(BaseAttribute value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        for (Map.Entry<String, Object> me : value.getExtendedProperties().entrySet()) {
+            jgen.writeFieldName(me.getKey());
+            provider.defaultSerializeValue(me.getValue(), jgen);
+        }
+    }
+
+    /**
+     * Writes the extended properties of an item as one map, as the array shape does.
+     * @param value the item
+     * @param jgen the generator
+     * @param provider the provider
+     * @throws IOException on write error
+     */
+    public static void writeExtendedPropertyMap(BaseAttribute value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        Map<String, Object> extendedProperties = value.getExtendedProperties();
+        if (extendedProperties.isEmpty()) {
+            jgen.writeStartObject();
+            jgen.writeEndObject();
+        } else {
+            provider.defaultSerializeValue(extendedProperties, jgen);
+        }
+    }
+
+    /**
+     * Writes one item. Items of exactly the expected class use the given serializer;
+     * others, such as subclasses, use whatever the provider finds for them.
+     * @param jgen the generator
+     * @param provider the provider
+     * @param item the item
+     * @param itemClass the expected class
+     * @param serializer the serializer for the expected class
+     * @param <T> the expected type
+     * @throws IOException on write error
+     */
+    public static <T> void writeItem(JsonGenerator jgen, SerializerProvider provider, T item, Class<T> itemClass,
+                                     JsonSerializer<T> serializer) throws IOException {
+        if (item != null && item.getClass() == itemClass) {
+            serializer.serialize(item, jgen, provider);
+        } else {
+            provider.defaultSerializeValue(item, jgen);
+        }
+    }
+
+    /**
+     * Writes an array of items. The serializer for the item class is found once, not per item.
+     * @param jgen the generator
+     * @param provider the provider
+     * @param items the items
+     * @param itemClass the class of the items
+     * @throws IOException on write error
+     */
+    public static void writeItems(JsonGenerator jgen, SerializerProvider provider, List<?> items, Class<?> itemClass) throws IOException {
+        jgen.writeStartArray();
+        JsonSerializer<Object> serializer = null;
+        for (Object item : items) {
+            if (item != null && item.getClass() == itemClass) {
+                if (serializer == null) {
+                    serializer = provider.findValueSerializer(itemClass, null);
+                }
+                serializer.serialize(item, jgen, provider);
+            } else {
+                provider.defaultSerializeValue(item, jgen);
+            }
+        }
+        jgen.writeEndArray();
+    }
+
+    /**
+     * Reads the elements of an array of items. The deserializer for the item class is found once, not per item.
+     * @param jp the parser, positioned at the start of the array
+     * @param ctxt the context
+     * @param itemClass the class of the items
+     * @param items the list to add to
+     * @throws IOException on read error
+     */
+    @SuppressWarnings("unchecked")
+    public static void readItems(JsonParser jp, DeserializationContext ctxt, Class<? extends BaseAttribute> itemClass,
+                                 List<BaseAttribute> items) throws IOException {
+        JsonDeserializer<Object> deserializer = ctxt.findRootValueDeserializer(ctxt.constructType(itemClass));
+        while (jp.nextToken() != JsonToken.END_ARRAY) {
+            if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+                items.add((BaseAttribute) deserializer.getNullValue(ctxt));
+            } else {
+                items.add((BaseAttribute) deserializer.deserialize(jp, ctxt));
+            }
+        }
+    }
+}
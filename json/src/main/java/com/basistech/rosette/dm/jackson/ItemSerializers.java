@@ -0,0 +1,211 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.Serializers;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializers for the items that make up most of a document: tokens, their analyses,
+ * sentences, entities and mentions. They write exactly what the mixins describe, with the
+ * fields in the same order and nulls omitted, but without bean introspection.
+ * Subclasses of these items are left to the mixins.
+ */
+final class ItemSerializers extends Serializers.Base {
+    private final TokenSerializer tokens = new TokenSerializer();
+    private final MorphoAnalysisSerializer analyses = new MorphoAnalysisSerializer();
+    private final SentenceSerializer sentences = new SentenceSerializer();
+    private final EntitySerializer entities = new EntitySerializer();
+    private final MentionSerializer mentions = new MentionSerializer();
+
+    @Override
+    public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc) {
+        Class<?> raw = type.getRawClass();
+        if (raw == Token.class) {
+            return tokens;
+        } else if (raw == MorphoAnalysis.class) {
+            return analyses;
+        } else if (raw == Sentence.class) {
+            return sentences;
+        } else if (raw == Entity.class) {
+            return entities;
+        } else if (raw == Mention.class) {
+            return mentions;
+        }
+        return null;
+    }
+
+    private static void writeStringField(JsonGenerator jgen, String name, String value) throws IOException {
+        if (value != null) {
+            jgen.writeStringField(name, value);
+        }
+    }
+
+    private static void writeNumberField(JsonGenerator jgen, String name, Double value) throws IOException {
+        if (value != null) {
+            jgen.writeNumberField(name, value);
+        }
+    }
+
+    private abstract static class ItemSerializer<T extends BaseAttribute> extends StdSerializer<T> {
+        ItemSerializer(Class<T> itemClass) {
+            super(itemClass);
+        }
+
+        abstract void writeFields(T value, JsonGenerator jgen, SerializerProvider provider) throws IOException;
+
+        @Override
+        public void serialize(T value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartObject();
+            writeFields(value, jgen, provider);
+            ItemFields.writeExtendedPropertyFields(value, jgen, provider);
+            jgen.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(T value, JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
+            typeSer.writeTypePrefixForObject(value, jgen);
+            writeFields(value, jgen, provider);
+            ItemFields.writeExtendedPropertyFields(value, jgen, provider);
+            typeSer.writeTypeSuffixForObject(value, jgen);
+        }
+    }
+
+    private final class TokenSerializer extends ItemSerializer<Token> {
+        TokenSerializer() {
+            super(Token.class);
+        }
+
+        @Override
+        void writeFields(Token value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeNumberField("startOffset", value.getStartOffset());
+            jgen.writeNumberField("endOffset", value.getEndOffset());
+            writeStringField(jgen, "text", value.getText());
+            if (value.getNormalized() != null) {
+                jgen.writeFieldName("normalized");
+                ItemFields.writeStrings(jgen, value.getNormalized());
+            }
+            writeStringField(jgen, "source", value.getSource());
+            List<MorphoAnalysis> tokenAnalyses = value.getAnalyses();
+            if (tokenAnalyses != null) {
+                jgen.writeArrayFieldStart("analyses");
+                for (MorphoAnalysis analysis : tokenAnalyses) {
+                    ItemFields.writeItem(jgen, provider, analysis, MorphoAnalysis.class, analyses);
+                }
+                jgen.writeEndArray();
+            }
+        }
+    }
+
+    private final class MorphoAnalysisSerializer extends ItemSerializer<MorphoAnalysis> {
+        MorphoAnalysisSerializer() {
+            super(MorphoAnalysis.class);
+        }
+
+        @Override
+        void writeFields(MorphoAnalysis value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            writeStringField(jgen, "partOfSpeech", value.getPartOfSpeech());
+            writeStringField(jgen, "lemma", value.getLemma());
+            List<Token> components = value.getComponents();
+            if (components != null) {
+                jgen.writeArrayFieldStart("components");
+                for (Token component : components) {
+                    ItemFields.writeItem(jgen, provider, component, Token.class, tokens);
+                }
+                jgen.writeEndArray();
+            }
+            writeStringField(jgen, "raw", value.getRaw());
+        }
+    }
+
+    private static final class SentenceSerializer extends ItemSerializer<Sentence> {
+        SentenceSerializer() {
+            super(Sentence.class);
+        }
+
+        @Override
+        void writeFields(Sentence value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeNumberField("startOffset", value.getStartOffset());
+            jgen.writeNumberField("endOffset", value.getEndOffset());
+        }
+    }
+
+    private final class EntitySerializer extends ItemSerializer<Entity> {
+        EntitySerializer() {
+            super(Entity.class);
+        }
+
+        @Override
+        void writeFields(Entity value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            List<Mention> entityMentions = value.getMentions();
+            if (entityMentions != null) {
+                jgen.writeArrayFieldStart("mentions");
+                for (Mention mention : entityMentions) {
+                    ItemFields.writeItem(jgen, provider, mention, Mention.class, mentions);
+                }
+                jgen.writeEndArray();
+            }
+            if (value.getHeadMentionIndex() != null) {
+                jgen.writeNumberField("headMentionIndex", value.getHeadMentionIndex());
+            }
+            writeStringField(jgen, "type", value.getType());
+            writeStringField(jgen, "entityId", value.getEntityId());
+            writeNumberField(jgen, "confidence", value.getConfidence());
+            List<CategorizerResult> sentiment = value.getSentiment();
+            if (sentiment != null) {
+                jgen.writeArrayFieldStart("sentiment");
+                for (CategorizerResult result : sentiment) {
+                    provider.defaultSerializeValue(result, jgen);
+                }
+                jgen.writeEndArray();
+            }
+            writeNumberField(jgen, "salience", value.getSalience());
+        }
+    }
+
+    private static final class MentionSerializer extends ItemSerializer<Mention> {
+        MentionSerializer() {
+            super(Mention.class);
+        }
+
+        @Override
+        void writeFields(Mention value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeNumberField("startOffset", value.getStartOffset());
+            jgen.writeNumberField("endOffset", value.getEndOffset());
+            writeNumberField(jgen, "confidence", value.getConfidence());
+            writeStringField(jgen, "source", value.getSource());
+            writeStringField(jgen, "subsource", value.getSubsource());
+            writeStringField(jgen, "normalized", value.getNormalized());
+        }
+    }
+}
@@ -31,12 +31,17 @@ import com.basistech.rosette.dm.Token;
 import com.basistech.rosette.dm.TranslatedData;
 import com.basistech.rosette.dm.TranslatedTokens;
 import com.basistech.rosette.dm.UnknownAttribute;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
 
 /**
  * The attributes currently defined in the data model.
  * Applications may extend the model with additional attributes;
  * this provides keys for {@link com.basistech.rosette.dm.AnnotatedText} and
  * {@link com.basistech.rosette.dm.RelationshipMention} for the known attributes.
+ * To add attributes of other classes, see {@link AttributeTypeRegistry}.
  */
 public enum KnownAttribute {
     BASE_NOUN_PHRASE("baseNounPhrases", BaseNounPhrase.class),
@@ -61,6 +66,23 @@ public enum KnownAttribute {
     UNKNOWN("unknown", UnknownAttribute.class),
     RELATION_ARGUMENT("RelationshipComponent", RelationshipComponent.class);
 
+    private static final Map<String, KnownAttribute> BY_KEY;
+    private static final Map<Class<?>, KnownAttribute> BY_CLASS;
+
+    static {
+        ImmutableMap.Builder<String, KnownAttribute> byKey = ImmutableMap.builder();
+        Map<Class<?>, KnownAttribute> byClass = Maps.newHashMap();
+        for (KnownAttribute item : values()) {
+            byKey.put(item.key(), item);
+            // some classes have several keys; the first one wins.
+            if (!byClass.containsKey(item.attributeClass())) {
+                byClass.put(item.attributeClass(), item);
+            }
+        }
+        BY_KEY = byKey.build();
+        BY_CLASS = ImmutableMap.copyOf(byClass);
+    }
+
     private final String jsonTag;
     private final Class<? extends BaseAttribute> attributeClass;
 
@@ -82,20 +104,10 @@ public enum KnownAttribute {
     }
 
     public static KnownAttribute getAttributeForKey(String key) {
-        for (KnownAttribute item : values()) {
-            if (item.key().equals(key)) {
-                return item;
-            }
-        }
-        return null;
+        return BY_KEY.get(key);
     }
 
     public static KnownAttribute getAttributeForClass(Class<?> attributeClass) {
-        for (KnownAttribute item : values()) {
-            if (item.attributeClass().equals(attributeClass)) {
-                return item;
-            }
-        }
-        return null;
+        return BY_CLASS.get(attributeClass);
     }
 }
@@ -72,13 +72,9 @@ public class ListAttributeDeserializer extends JsonDeserializer<ListAttribute> {
         }
         // Must point to the next value; tb had no current, jp pointed to VALUE_STRING:
 
-        KnownAttribute attribute = KnownAttribute.getAttributeForKey(keyName);
-        if (attribute == null) {
-            attribute = KnownAttribute.UNKNOWN;
-        }
-        Class<? extends BaseAttribute> itemClass = attribute.attributeClass();
+        Class<? extends BaseAttribute> itemClass = AttributeTypeRegistry.forContext(ctxt).classForTypeId(keyName);
 
-        ListAttribute.Builder<BaseAttribute> builder = new ListAttribute.Builder<>(attribute.attributeClass());
+        ListAttribute.Builder<BaseAttribute> builder = new ListAttribute.Builder<>(itemClass);
         List<BaseAttribute> items = Lists.newArrayList();
 
         JsonToken nextToken;
@@ -102,9 +98,7 @@ public class ListAttributeDeserializer extends JsonDeserializer<ListAttribute> {
                         throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected array of items");
                     } else {
                         // the START_ARRAY case, which is _normal_. Read the elements.
-                        while (jp.nextToken() != JsonToken.END_ARRAY) {
-                            items.add(jp.readValueAs(itemClass));
-                        }
+                        ItemFields.readItems(jp, ctxt, itemClass, items);
                     }
                 } else {
                     nextToken = jp.nextToken();
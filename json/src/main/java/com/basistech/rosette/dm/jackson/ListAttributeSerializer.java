@@ -33,8 +33,9 @@ public class ListAttributeSerializer extends JsonSerializer<ListAttribute> {
     public void serialize(ListAttribute value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
         jgen.writeStartObject();
 
-        jgen.writeStringField("itemType", KnownAttribute.getAttributeForClass(value.getItemClass()).key());
-        jgen.writeObjectField("items", value.getItems());
+        jgen.writeStringField("itemType", AttributeTypeRegistry.forContext(provider).typeIdForClass(value.getItemClass()));
+        jgen.writeFieldName("items");
+        ItemFields.writeItems(jgen, provider, value.getItems(), value.getItemClass());
         writeExtendedProperties(value, jgen);
         jgen.writeEndObject();
     }
@@ -52,10 +53,9 @@ public class ListAttributeSerializer extends JsonSerializer<ListAttribute> {
     public void serializeWithType(ListAttribute value, JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
         typeSer.writeTypePrefixForObject(value, jgen);
 
-        KnownAttribute attributeForClass = KnownAttribute.getAttributeForClass(value.getItemClass());
-        assert attributeForClass != null;
-        jgen.writeStringField("itemType", attributeForClass.key());
-        jgen.writeObjectField("items", value.getItems());
+        jgen.writeStringField("itemType", AttributeTypeRegistry.forContext(provider).typeIdForClass(value.getItemClass()));
+        jgen.writeFieldName("items");
+        ItemFields.writeItems(jgen, provider, value.getItems(), value.getItemClass());
         writeExtendedProperties(value, jgen);
         typeSer.writeTypeSuffixForObject(value, jgen);
     }
@@ -24,79 +24,168 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Jackson deserialization that handles polymorphism of MorphoAnalysis without writing
- * out the type in each one.
+ * out the type in each one. Each analysis is read in one pass; the fields that only a subclass
+ * has decide which class it is built as. {@code morphemes} makes a {@link KoreanMorphoAnalysis},
+ * {@code readings} a {@link HanMorphoAnalysis}, and any of the fields of {@link ArabicMorphoAnalysis}
+ * an Arabic analysis. Fields of the other subclasses become extended properties.
  */
 public final class MorphoAnalysisListDeserializer extends JsonDeserializer<List<MorphoAnalysis>> implements ContextualDeserializer {
-    private static final Set<String> ARABIC_FIELDS;
 
-    static {
-        ImmutableSet.Builder<String> builder = new ImmutableSet.Builder<>();
-        for (Field field : ArabicMorphoAnalysis.class.getDeclaredFields()) {
-            try {
-                MorphoAnalysis.class.getDeclaredField(field.getName());
-            } catch (NoSuchFieldException e) {
-                builder.add(field.getName());
+    private enum Subtype {
+        PLAIN,
+        HAN,
+        KOREAN,
+        ARABIC
+    }
+
+    /**
+     * The fields of the subclasses, and how to read them.
+     */
+    private enum SubtypeField {
+        READINGS("readings", Subtype.HAN),
+        MORPHEMES("morphemes", Subtype.KOREAN),
+        MORPHEME_TAGS("morphemeTags", Subtype.KOREAN),
+        PREFIX_LENGTH("prefixLength", Subtype.ARABIC),
+        STEM_LENGTH("stemLength", Subtype.ARABIC),
+        ROOT("root", Subtype.ARABIC),
+        DEFINITE_ARTICLE("definiteArticle", Subtype.ARABIC),
+        STRIPPABLE_PREFIX("strippablePrefix", Subtype.ARABIC),
+        PREFIXES("prefixes", Subtype.ARABIC),
+        STEMS("stems", Subtype.ARABIC),
+        SUFFIXES("suffixes", Subtype.ARABIC),
+        PREFIX_TAGS("prefixTags", Subtype.ARABIC),
+        STEM_TAGS("stemTags", Subtype.ARABIC),
+        SUFFIX_TAGS("suffixTags", Subtype.ARABIC);
+
+        final String fieldName;
+        final Subtype subtype;
+
+        SubtypeField(String fieldName, Subtype subtype) {
+            this.fieldName = fieldName;
+            this.subtype = subtype;
+        }
+
+        Object read(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (this) {
+            case PREFIX_LENGTH:
+            case STEM_LENGTH:
+                return ItemFields.readInteger(jp, ctxt);
+            case ROOT:
+                return ItemFields.readString(jp, ctxt);
+            case DEFINITE_ARTICLE:
+            case STRIPPABLE_PREFIX:
+                return jp.getCurrentToken() == JsonToken.VALUE_NULL ? null : jp.getValueAsBoolean();
+            default:
+                return ItemFields.readStrings(jp, ctxt);
             }
         }
-        ARABIC_FIELDS = builder.build();
+    }
+
+    private static final Map<String, SubtypeField> SUBTYPE_FIELDS;
+
+    static {
+        ImmutableMap.Builder<String, SubtypeField> builder = ImmutableMap.builder();
+        for (SubtypeField field : SubtypeField.values()) {
+            builder.put(field.fieldName, field);
+        }
+        SUBTYPE_FIELDS = builder.build();
     }
 
     private final boolean cached;
-    private final JsonDeserializer<Object> maDeserializer;
-    private final JsonDeserializer<Object> hanMaDeserializer;
-    private final JsonDeserializer<Object> arMaDeserializer;
-    private final JsonDeserializer<Object> korMaDeserializer;
+    private final JsonDeserializer<Token> tokenDeserializer;
+    private final JsonDeserializer<Object> objectDeserializer;
 
     public MorphoAnalysisListDeserializer() {
         cached = false;
-        maDeserializer = null;
-        hanMaDeserializer = null;
-        arMaDeserializer = null;
-        korMaDeserializer = null;
+        tokenDeserializer = null;
+        objectDeserializer = null;
     }
 
+    @SuppressWarnings("unchecked")
     private MorphoAnalysisListDeserializer(DeserializationContext ctxt) throws JsonMappingException {
-        JavaType type = ctxt.constructType(MorphoAnalysis.class);
-        maDeserializer = ctxt.findRootValueDeserializer(type);
-        type = ctxt.constructType(HanMorphoAnalysis.class);
-        hanMaDeserializer = ctxt.findRootValueDeserializer(type);
-        type = ctxt.constructType(ArabicMorphoAnalysis.class);
-        arMaDeserializer = ctxt.findRootValueDeserializer(type);
-        ctxt.setAttribute(MorphoAnalysisListDeserializer.class, maDeserializer);
-        type = ctxt.constructType(KoreanMorphoAnalysis.class);
-        korMaDeserializer = ctxt.findRootValueDeserializer(type);
-        ctxt.setAttribute(KoreanMorphoAnalysis.class, korMaDeserializer);
+        tokenDeserializer = (JsonDeserializer<Token>) (JsonDeserializer<?>) ctxt.findRootValueDeserializer(ctxt.constructType(Token.class));
+        objectDeserializer = ctxt.findRootValueDeserializer(ctxt.constructType(Object.class));
         cached = true;
     }
 
-    private boolean anyArabicFields(Set<String> fields) {
-        for (String field : fields) {
-            if (ARABIC_FIELDS.contains(field)) {
-                return true;
-            }
+    /**
+     * The fields of one analysis, as they are read. One of these is reused for all the analyses of a list.
+     */
+    private static final class Fields {
+        String partOfSpeech;
+        String lemma;
+        String raw;
+        List<Token> components;
+        Map<String, Object> extendedProperties;
+        final Object[] subtypeValues = new Object[SubtypeField.values().length];
+        /* bits by the ordinal of SubtypeField. */
+        int seen;
+
+        void clear() {
+            partOfSpeech = null;
+            lemma = null;
+            raw = null;
+            components = null;
+            extendedProperties = null;
+            Arrays.fill(subtypeValues, null);
+            seen = 0;
         }
-        return false;
-    }
 
-    @SuppressWarnings("unchecked")
-    private JsonDeserializer<Object> castDeserializer(Object attributeValue) {
-        return (JsonDeserializer<Object>)attributeValue;
+        boolean has(SubtypeField field) {
+            return (seen & (1 << field.ordinal())) != 0;
+        }
+
+        void put(SubtypeField field, Object value) {
+            subtypeValues[field.ordinal()] = value;
+            seen |= 1 << field.ordinal();
+        }
+
+        Object get(SubtypeField field) {
+            return subtypeValues[field.ordinal()];
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> strings(SubtypeField field) {
+            return (List<String>) get(field);
+        }
+
+        int intValue(SubtypeField field) {
+            Integer value = (Integer) get(field);
+            return value == null ? 0 : value;
+        }
+
+        boolean booleanValue(SubtypeField field) {
+            return Boolean.TRUE.equals(get(field));
+        }
+
+        Subtype subtype() {
+            if (has(SubtypeField.MORPHEMES)) {
+                return Subtype.KOREAN;
+            }
+            if (has(SubtypeField.READINGS)) {
+                return Subtype.HAN;
+            }
+            for (SubtypeField field : SubtypeField.values()) {
+                if (field.subtype == Subtype.ARABIC && has(field)) {
+                    return Subtype.ARABIC;
+                }
+            }
+            return Subtype.PLAIN;
+        }
     }
 
     @Override
@@ -113,138 +202,101 @@ public final class MorphoAnalysisListDeserializer extends JsonDeserializer<List<
             throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected array of items");
         }
 
-        JsonDeserializer<Object> currentDeserializer =
-                castDeserializer(ctxt.getAttribute(MorphoAnalysisListDeserializer.class));
-        if (currentDeserializer == null) {
-            currentDeserializer = maDeserializer;
-            ctxt.setAttribute(MorphoAnalysisListDeserializer.class, maDeserializer);
-        }
-
         List<MorphoAnalysis> result = Lists.newArrayList();
+        Fields fields = new Fields();
         while (jp.nextToken() != JsonToken.END_ARRAY) {
-            // if we just read it in as the wrong class, any leftovers will end up in extendedAttributes, and we can cope.
-
-            MorphoAnalysis analysis = (MorphoAnalysis) currentDeserializer.deserialize(jp, ctxt);
-            if (analysis.getExtendedProperties().size() != 0) {
-                // so, we have leftovers. Note that this will not trim han and arabic down. Tough
-
-                if (analysis.getExtendedProperties().containsKey("morphemes")) {
-                    KoreanMorphoAnalysis.Builder builder = new KoreanMorphoAnalysis.Builder();
-                    copyBasic(analysis, builder);
-
-                    List<String> morphemes = cast(analysis.getExtendedProperties().get("morphemes"));
-                    List<String> morphemeTags = cast(analysis.getExtendedProperties().get("morphemeTags"));
-                    for (int x = 0; x < morphemes.size(); x++) {
-                        builder.addMorpheme(morphemes.get(x), morphemeTags.get(x));
-                    }
-
-                    for (Map.Entry<String, Object> me : analysis.getExtendedProperties().entrySet()) {
-                        if (!"morphemes".equals(me.getKey()) && !"morphemeTags".equals(me.getKey())) {
-                            builder.extendedProperty(me.getKey(), me.getValue());
-                        }
-                    }
-
-                    analysis = builder.build();
-                    ctxt.setAttribute(MorphoAnalysisListDeserializer.class, korMaDeserializer);
-
-                } else if (analysis.getExtendedProperties().containsKey("readings")) {
-                    // convert to Han.
-                    HanMorphoAnalysis.Builder builder = new HanMorphoAnalysis.Builder();
-                    copyBasic(analysis, builder);
-
-                    for (String reading : cast(analysis.getExtendedProperties().get("readings"))) {
-                        builder.addReading(reading);
-                    }
-
-                    for (Map.Entry<String, Object> me : analysis.getExtendedProperties().entrySet()) {
-                        if (!"readings".equals(me.getKey())) {
-                            builder.extendedProperty(me.getKey(), me.getValue());
-                        }
-                    }
-
-                    analysis = builder.build();
-                    ctxt.setAttribute(MorphoAnalysisListDeserializer.class, hanMaDeserializer);
-                } else if (anyArabicFields(analysis.getExtendedProperties().keySet())) {
-                    ArabicMorphoAnalysis.Builder builder = new ArabicMorphoAnalysis.Builder();
-                    copyBasic(analysis, builder);
-
-                    Integer prefixLength = (Integer)analysis.getExtendedProperties().get("prefixLength");
-                    Integer stemLength = (Integer)analysis.getExtendedProperties().get("stemLength");
-                    if (prefixLength != null && stemLength != null) {
-                        builder.lengths(prefixLength, stemLength);
-                    }
-                    String root = (String)analysis.getExtendedProperties().get("root");
-                    if (root != null) {
-                        builder.root(root);
-                    }
-                    Boolean definiteArticle = (Boolean)analysis.getExtendedProperties().get("definiteArticle");
-                    if (definiteArticle != null) {
-                        builder.definiteArticle(definiteArticle);
-                    }
-                    Boolean strippablePrefix = (Boolean)analysis.getExtendedProperties().get("strippablePrefix");
-                    if (strippablePrefix != null) {
-                        builder.strippablePrefix(strippablePrefix);
-                    }
-
-                    List<String> prefixes = cast(analysis.getExtendedProperties().get("prefixes"));
-                    if (prefixes != null) {
-                        List<String> prefixTags = cast(analysis.getExtendedProperties().get("prefixTags"));
-                        for (int x = 0; x < prefixes.size(); x++) {
-                            builder.addPrefix(prefixes.get(x), prefixTags.get(x));
-                        }
-                    }
-
-                    List<String> stems = cast(analysis.getExtendedProperties().get("stems"));
-                    if (stems != null) {
-                        List<String> stemTags = cast(analysis.getExtendedProperties().get("stemTags"));
-                        for (int x = 0; x < stems.size(); x++) {
-                            builder.addStem(stems.get(x), stemTags.get(x));
-                        }
-                    }
-
-                    List<String> suffixes = cast(analysis.getExtendedProperties().get("suffixes"));
-                    if (suffixes != null) {
-                        List<String> suffixTags = cast(analysis.getExtendedProperties().get("suffixTags"));
-                        for (int x = 0; x < suffixes.size(); x++) {
-                            builder.addSuffix(suffixes.get(x), suffixTags.get(x));
-                        }
-                    }
-
-                    for (Map.Entry<String, Object> me : analysis.getExtendedProperties().entrySet()) {
-                        if (!ARABIC_FIELDS.contains(me.getKey())) {
-                            builder.extendedProperty(me.getKey(), me.getValue());
-                        }
-                    }
+            fields.clear();
+            read(jp, ctxt, fields);
+            result.add(build(fields, ctxt));
+        }
+        return ImmutableList.copyOf(result);
+    }
 
-                    analysis = builder.build();
-                    ctxt.setAttribute(MorphoAnalysisListDeserializer.class, arMaDeserializer);
+    private void read(JsonParser jp, DeserializationContext ctxt, Fields fields) throws IOException {
+        if (jp.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw ctxt.wrongTokenException(jp, JsonToken.START_OBJECT, "Expected morpho analysis");
+        }
+        JsonToken t = jp.nextToken();
+        for (; t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+            String name = jp.getCurrentName();
+            jp.nextToken();
+            switch (name) {
+            case "partOfSpeech":
+                fields.partOfSpeech = ItemFields.readPooledString(jp, ctxt);
+                break;
+            case "lemma":
+                fields.lemma = ItemFields.readString(jp, ctxt);
+                break;
+            case "raw":
+                fields.raw = ItemFields.readString(jp, ctxt);
+                break;
+            case "components":
+                fields.components = ItemFields.readList(jp, ctxt, tokenDeserializer);
+                break;
+            case "extendedProperties":
+                fields.extendedProperties = ItemFields.readExtendedProperties(jp, ctxt, objectDeserializer, fields.extendedProperties);
+                break;
+            default:
+                SubtypeField field = SUBTYPE_FIELDS.get(name);
+                if (field != null) {
+                    fields.put(field, field.read(jp, ctxt));
+                } else {
+                    fields.extendedProperties = ItemFields.putExtendedProperty(fields.extendedProperties, name,
+                            objectDeserializer.deserialize(jp, ctxt));
                 }
+                break;
             }
-            result.add(analysis);
         }
-        return ImmutableList.copyOf(result);
+        if (t != JsonToken.END_OBJECT) {
+            throw ctxt.wrongTokenException(jp, JsonToken.END_OBJECT, "Expected field name");
+        }
     }
 
-    private void copyBasic(MorphoAnalysis analysis, MorphoAnalysis.Builder builder) {
-        if (analysis.getLemma() != null && !"".equals(analysis.getLemma())) {
-            builder.lemma(analysis.getLemma());
-        }
-        if (analysis.getPartOfSpeech() != null && !"".equals(analysis.getPartOfSpeech())) {
-            builder.partOfSpeech(analysis.getPartOfSpeech());
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private MorphoAnalysis build(Fields fields, DeserializationContext ctxt) {
+        Subtype subtype = fields.subtype();
+        MorphoAnalysis.Builder builder;
+        switch (subtype) {
+        case KOREAN:
+            builder = new KoreanMorphoAnalysis.Builder()
+                    .morphemes(fields.strings(SubtypeField.MORPHEMES), fields.strings(SubtypeField.MORPHEME_TAGS));
+            break;
+        case HAN:
+            builder = new HanMorphoAnalysis.Builder().readings(fields.strings(SubtypeField.READINGS));
+            break;
+        case ARABIC:
+            builder = new ArabicMorphoAnalysis.Builder()
+                    .lengths(fields.intValue(SubtypeField.PREFIX_LENGTH), fields.intValue(SubtypeField.STEM_LENGTH))
+                    .root((String) fields.get(SubtypeField.ROOT))
+                    .definiteArticle(fields.booleanValue(SubtypeField.DEFINITE_ARTICLE))
+                    .strippablePrefix(fields.booleanValue(SubtypeField.STRIPPABLE_PREFIX))
+                    .prefixes(fields.strings(SubtypeField.PREFIXES), fields.strings(SubtypeField.PREFIX_TAGS))
+                    .stems(fields.strings(SubtypeField.STEMS), fields.strings(SubtypeField.STEM_TAGS))
+                    .suffixes(fields.strings(SubtypeField.SUFFIXES), fields.strings(SubtypeField.SUFFIX_TAGS));
+            break;
+        default:
+            builder = new MorphoAnalysis.Builder();
+            break;
         }
-        if (analysis.getRaw() != null && !"".equals(analysis.getRaw())) {
-            builder.raw(analysis.getRaw());
+        builder.partOfSpeech(fields.partOfSpeech);
+        builder.lemma(fields.lemma);
+        builder.raw(fields.raw);
+        if (fields.components != null) {
+            builder.components(fields.components);
         }
-        if (analysis.getComponents() != null) {
-            for (Token token : analysis.getComponents()) {
-                builder.addComponent(token);
+        Map<String, Object> extendedProperties = fields.extendedProperties;
+        // the fields of other subclasses, such as morphemeTags without morphemes.
+        if (fields.seen != 0) {
+            for (SubtypeField field : SubtypeField.values()) {
+                if (field.subtype != subtype && fields.has(field)) {
+                    extendedProperties = ItemFields.putExtendedProperty(extendedProperties, field.fieldName, fields.get(field));
+                }
             }
         }
-    }
-
-    @SuppressWarnings("unchecked")
-    private static List<String> cast(Object object) {
-        return (List<String>)object;
+        if (extendedProperties != null) {
+            builder.extendedProperties(ItemFields.shareExtendedProperties(ctxt, extendedProperties));
+        }
+        return (MorphoAnalysis) builder.build();
     }
 
     @Override
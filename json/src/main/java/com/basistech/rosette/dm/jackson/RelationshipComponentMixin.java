@@ -17,6 +17,8 @@
 package com.basistech.rosette.dm.jackson;
 
 import com.basistech.rosette.dm.Extent;
+import com.basistech.rosette.dm.RelationshipComponent;
+import com.basistech.rosette.dm.codegen.ItemCodec;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -26,6 +28,7 @@ import java.util.Map;
 /**
  * {@link com.basistech.rosette.dm.RelationshipComponent}
  */
+@ItemCodec(RelationshipComponent.class)
 public abstract class RelationshipComponentMixin {
 
     @JsonCreator
@@ -16,6 +16,8 @@
 package com.basistech.rosette.dm.jackson;
 
 import com.basistech.rosette.dm.RelationshipComponent;
+import com.basistech.rosette.dm.RelationshipMention;
+import com.basistech.rosette.dm.codegen.ItemCodec;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -25,6 +27,7 @@ import java.util.Set;
 /**
  * {@link com.basistech.rosette.dm.RelationshipMention}
  */
+@ItemCodec(RelationshipMention.class)
 public abstract class RelationshipMentionMixin {
 
     @JsonCreator
@@ -0,0 +1,268 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of strings, so that a document of many items holds one copy of each value
+ * of a field with a small vocabulary, such as a part of speech or an entity type,
+ * rather than one per item.
+ * <p>
+ * The pool is a fixed-size table of one string per slot; a string replaces whatever string was
+ * in its slot. So it never grows, and never takes a lock: at worst, two vocabularies that collide
+ * take turns. Strings longer than {@value #MAX_LENGTH} characters are not pooled.
+ * <p>
+ * Each deserialization goes through a {@link Local} pool, made by {@link #newLocal()},
+ * which keeps the strings of one stream without synchronization and consults this pool only for
+ * strings that it has not seen. {@link ItemFields#readPooledString} keeps a local pool of the
+ * {@link #global()} pool in the deserialization context.
+ */
+public final class StringPool {
+    /** The length of the longest string that is pooled. */
+    public static final int MAX_LENGTH = 64;
+    private static final StringPool GLOBAL = new StringPool(4096);
+    private static final int LOCAL_CAPACITY = 256;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a pool.
+     *
+     * @param capacity the number of strings; rounded up to a power of two
+     */
+    public StringPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        table = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * @return the pool shared by the deserializers of adm-json
+     */
+    public static StringPool global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the pooled copy of a string, adding it if need be.
+     *
+     * @param value the string
+     * @return an equal string, or null for null
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        int slot = spread(value.hashCode()) & mask;
+        String pooled = table.get(slot);
+        if (value.equals(pooled)) {
+            hits.incrementAndGet();
+            return pooled;
+        }
+        misses.incrementAndGet();
+        table.lazySet(slot, value);
+        return value;
+    }
+
+    /* the string is created only if the pool does not have it. */
+    String intern(char[] chars, int offset, int length, int hash) {
+        int slot = spread(hash) & mask;
+        String pooled = table.get(slot);
+        if (matches(pooled, chars, offset, length)) {
+            hits.incrementAndGet();
+            return pooled;
+        }
+        misses.incrementAndGet();
+        String value = new String(chars, offset, length);
+        table.lazySet(slot, value);
+        return value;
+    }
+
+    /**
+     * @return the number of lookups that found their string in the pool
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that added their string to the pool
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of lookups that found their string, or 0 if there were none
+     */
+    public double getHitRate() {
+        return hitRate(getHits(), getMisses());
+    }
+
+    /**
+     * Makes a pool for one stream, backed by this pool.
+     *
+     * @return the pool
+     */
+    public Local newLocal() {
+        return new Local(this);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int x = offset; x < offset + length; x++) {
+            hash = 31 * hash + chars[x];
+        }
+        return hash;
+    }
+
+    private static boolean matches(String pooled, char[] chars, int offset, int length) {
+        if (pooled == null || pooled.length() != length) {
+            return false;
+        }
+        for (int x = 0; x < length; x++) {
+            if (pooled.charAt(x) != chars[offset + x]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * A pool for the strings of one stream. It holds up to 256 strings;
+     * the rest go to the shared pool. Not thread-safe.
+     */
+    public static final class Local {
+        private final StringPool shared;
+        private final String[] strings;
+        private final int[] hashes;
+        private int size;
+        private long hits;
+        private long misses;
+
+        Local(StringPool shared) {
+            this.shared = shared;
+            this.strings = new String[LOCAL_CAPACITY * 2];
+            this.hashes = new int[LOCAL_CAPACITY * 2];
+        }
+
+        /**
+         * Returns the pooled copy of a string.
+         *
+         * @param value the string
+         * @return an equal string, or null for null
+         */
+        public String intern(String value) {
+            if (value == null || value.length() > MAX_LENGTH) {
+                return value;
+            }
+            int hash = value.hashCode();
+            int slot = find(hash, value, null, 0, value.length());
+            if (strings[slot] != null) {
+                hits++;
+                return strings[slot];
+            }
+            misses++;
+            return add(slot, hash, shared.intern(value));
+        }
+
+        /**
+         * Returns the pooled copy of a string held in an array, such as the text buffer of
+         * a parser. A new string is created only when neither this pool nor the shared pool has it.
+         *
+         * @param chars the characters
+         * @param offset the offset of the string in the array
+         * @param length the length of the string
+         * @return the string
+         */
+        public String intern(char[] chars, int offset, int length) {
+            if (length > MAX_LENGTH) {
+                return new String(chars, offset, length);
+            }
+            int hash = hash(chars, offset, length);
+            int slot = find(hash, null, chars, offset, length);
+            if (strings[slot] != null) {
+                hits++;
+                return strings[slot];
+            }
+            misses++;
+            return add(slot, hash, shared.intern(chars, offset, length, hash));
+        }
+
+        /* the slot of the string, or the empty slot where it belongs; the table is never more than half full. */
+        private int find(int hash, String value, char[] chars, int offset, int length) {
+            int mask = strings.length - 1;
+            int slot = spread(hash) & mask;
+            for (String pooled = strings[slot]; pooled != null; pooled = strings[slot]) {
+                if (hashes[slot] == hash && (value != null ? value.equals(pooled) : matches(pooled, chars, offset, length))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private String add(int slot, int hash, String value) {
+            if (size < LOCAL_CAPACITY) {
+                strings[slot] = value;
+                hashes[slot] = hash;
+                size++;
+            }
+            return value;
+        }
+
+        /**
+         * @return the number of lookups that found their string in this pool
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return the number of lookups that went to the shared pool
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the fraction of lookups that found their string in this pool, or 0 if there were none
+         */
+        public double getHitRate() {
+            return hitRate(hits, misses);
+        }
+    }
+}
@@ -15,6 +15,8 @@
 */
 package com.basistech.rosette.dm.jackson;
 
+import com.basistech.rosette.dm.TranslatedData;
+import com.basistech.rosette.dm.codegen.ItemCodec;
 import com.basistech.util.TextDomain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -24,6 +26,7 @@ import java.util.Map;
 /**
  * {@link com.basistech.rosette.dm.TranslatedData}.
  */
+@ItemCodec(TranslatedData.class)
 public abstract class TranslatedDataMixin {
     @JsonCreator
     TranslatedDataMixin(@JsonProperty("domain") TextDomain domain,
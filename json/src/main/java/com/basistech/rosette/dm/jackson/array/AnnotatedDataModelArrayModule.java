@@ -44,14 +44,18 @@ import com.basistech.rosette.dm.TranslatedData;
 import com.basistech.rosette.dm.TranslatedTokens;
 import com.basistech.rosette.dm.jackson.ArabicMorphoAnalysisMixin;
 import com.basistech.rosette.dm.jackson.AttributeMixin;
+import com.basistech.rosette.dm.jackson.AttributeTypeRegistry;
 import com.basistech.rosette.dm.jackson.BaseNounPhraseMixin;
 import com.basistech.rosette.dm.jackson.CategorizerResultMixin;
 import com.basistech.rosette.dm.jackson.DependencyMixin;
+import com.basistech.rosette.dm.jackson.DocumentDataDeserializer;
+import com.basistech.rosette.dm.jackson.EmbeddingCodecs;
 import com.basistech.rosette.dm.jackson.EmbeddingCollectionMixin;
 import com.basistech.rosette.dm.jackson.EmbeddingsMixin;
 import com.basistech.rosette.dm.jackson.EntityMentionMixin;
 import com.basistech.rosette.dm.jackson.EntityMixin;
 import com.basistech.rosette.dm.jackson.ExtentMixin;
+import com.basistech.rosette.dm.jackson.GeneratedCodecs;
 import com.basistech.rosette.dm.jackson.HanMorphoAnalysisMixin;
 import com.basistech.rosette.dm.jackson.KoreanMorphoAnalysisMixin;
 import com.basistech.rosette.dm.jackson.MentionMixin;
@@ -78,9 +82,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 @SuppressWarnings("deprecation")
 public class AnnotatedDataModelArrayModule extends EnumModule {
+    private final AttributeTypeRegistry typeRegistry;
 
     public AnnotatedDataModelArrayModule() {
+        this(new AttributeTypeRegistry());
+    }
+
+    /**
+     * Constructs a module whose mappers use a registry of attribute types.
+     * @param typeRegistry the registry.
+     */
+    public AnnotatedDataModelArrayModule(AttributeTypeRegistry typeRegistry) {
         super();
+        this.typeRegistry = typeRegistry;
     }
 
     public void setupModule(SetupContext context) {
@@ -114,6 +128,17 @@ public class AnnotatedDataModelArrayModule extends EnumModule {
         context.setMixInAnnotations(Dependency.class, DependencyMixin.class);
         context.setMixInAnnotations(EmbeddingCollection.class, EmbeddingCollectionMixin.class);
         context.setMixInAnnotations(Embeddings.class, EmbeddingsMixin.class);
+        context.addSerializers(new ItemArraySerializers());
+        context.addDeserializers(new ItemArrayDeserializers());
+        context.addSerializers(GeneratedCodecs.serializers(true));
+        context.addDeserializers(GeneratedCodecs.deserializers(true));
+        context.addSerializers(EmbeddingCodecs.serializers());
+        context.addDeserializers(EmbeddingCodecs.deserializers());
+        context.addBeanDeserializerModifier(DocumentDataDeserializer.documentScope());
+        // the type ids of attributes for mappers with this module; see AttributeTypeRegistry.
+        ObjectMapper mapper = context.getOwner();
+        mapper.setConfig(mapper.getSerializationConfig().withAttribute(AttributeTypeRegistry.class, typeRegistry));
+        mapper.setConfig(mapper.getDeserializationConfig().withAttribute(AttributeTypeRegistry.class, typeRegistry));
     }
 
     /**
@@ -122,7 +147,17 @@ public class AnnotatedDataModelArrayModule extends EnumModule {
      * @return the same mapper, for convenience.
      */
     public static ObjectMapper setupObjectMapper(ObjectMapper mapper) {
-        final AnnotatedDataModelArrayModule module = new AnnotatedDataModelArrayModule();
+        return setupObjectMapper(mapper, new AttributeTypeRegistry());
+    }
+
+    /**
+     * Register the Annotated Data Model Jackson module on an {@link ObjectMapper}, with a registry of attribute types.
+     * @param mapper the mapper.
+     * @param typeRegistry the registry.
+     * @return the same mapper, for convenience.
+     */
+    public static ObjectMapper setupObjectMapper(ObjectMapper mapper, AttributeTypeRegistry typeRegistry) {
+        final AnnotatedDataModelArrayModule module = new AnnotatedDataModelArrayModule(typeRegistry);
         mapper.registerModule(module);
         return mapper;
     }
@@ -20,6 +20,8 @@ import com.basistech.rosette.dm.BaseAttribute;
 import com.basistech.rosette.dm.BaseNounPhrase;
 import com.basistech.rosette.dm.CategorizerResult;
 import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.DependencyGraph;
+import com.basistech.rosette.dm.Embeddings;
 import com.basistech.rosette.dm.Entity;
 import com.basistech.rosette.dm.LanguageDetection;
 import com.basistech.rosette.dm.ListAttribute;
@@ -29,7 +31,8 @@ import com.basistech.rosette.dm.Sentence;
 import com.basistech.rosette.dm.Token;
 import com.basistech.rosette.dm.TranslatedData;
 import com.basistech.rosette.dm.TranslatedTokens;
-import com.basistech.rosette.dm.jackson.DmTypeIdResolver;
+import com.basistech.rosette.dm.jackson.DmTypeResolverBuilder;
+import com.basistech.rosette.dm.jackson.DocumentDataDeserializer;
 import com.basistech.rosette.dm.jackson.VersionCheckDeserializer;
 import com.basistech.rosette.dm.jackson.VersionProperty;
 import com.fasterxml.jackson.annotation.JsonCreator;
@@ -40,7 +43,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.databind.annotation.JsonAppend;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
+import com.fasterxml.jackson.databind.annotation.JsonTypeResolver;
+import com.fasterxml.jackson.databind.ser.std.NullSerializer;
 import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 import java.util.List;
@@ -55,7 +59,8 @@ import java.util.Map;
 public abstract class AnnotatedTextArrayMixin {
 
     @JsonCreator
-    AnnotatedTextArrayMixin(@JsonProperty("data") CharSequence data,
+    AnnotatedTextArrayMixin(@JsonDeserialize(using = DocumentDataDeserializer.class)
+                            @JsonProperty("data") CharSequence data,
                             @JsonProperty("attributes") Map<String, BaseAttribute> attributes,
                             @JsonProperty("documentMetadata") Map<String, List<String>> documentMetadata,
                             @JsonDeserialize(using = VersionCheckDeserializer.class)
@@ -65,7 +70,7 @@ public abstract class AnnotatedTextArrayMixin {
 
     // The first two work right for deserialization but not for serialization, so we have the third.
     @JsonTypeInfo(use = JsonTypeInfo.Id.CUSTOM, include = JsonTypeInfo.As.WRAPPER_ARRAY)
-    @JsonTypeIdResolver(DmTypeIdResolver.class)
+    @JsonTypeResolver(DmTypeResolverBuilder.class)
     @JsonSerialize(using = TempAttributeMapSerializer.class)
     public abstract Map<String, BaseAttribute> getAttributes();
 
@@ -122,4 +127,11 @@ public abstract class AnnotatedTextArrayMixin {
 
     @JsonIgnore
     public abstract ListAttribute<Dependency> getDependencies();
+
+    @JsonIgnore
+    public abstract DependencyGraph getDependencyGraph();
+
+    // This slot has always been written but never read back; the embeddings are among the attributes.
+    @JsonSerialize(using = NullSerializer.class)
+    public abstract Embeddings getEmbeddings();
 }
@@ -0,0 +1,385 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson.array;
+
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.ItemFields;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.deser.ResolvableDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Array-shape deserializers for the items that make up most of a document: tokens, their analyses,
+ * sentences, entities and mentions. Each reads the values of its item, in the alphabetical order of their
+ * names, straight into the builder.
+ */
+final class ItemArrayDeserializers extends Deserializers.Base {
+
+    @Override
+    public JsonDeserializer<?> findBeanDeserializer(JavaType type, DeserializationConfig config, BeanDescription beanDesc) {
+        Class<?> raw = type.getRawClass();
+        if (raw == Token.class) {
+            return new TokenDeserializer();
+        } else if (raw == MorphoAnalysis.class) {
+            return new MorphoAnalysisDeserializer();
+        } else if (raw == Sentence.class) {
+            return new SentenceDeserializer();
+        } else if (raw == Entity.class) {
+            return new EntityDeserializer();
+        } else if (raw == Mention.class) {
+            return new MentionDeserializer();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> JsonDeserializer<T> find(DeserializationContext ctxt, Class<T> type) throws JsonMappingException {
+        return (JsonDeserializer<T>) ctxt.findRootValueDeserializer(ctxt.constructType(type));
+    }
+
+    private abstract static class ItemDeserializer<T extends BaseAttribute, B extends BaseAttribute.Builder<?, ?>>
+            extends StdDeserializer<T> implements ResolvableDeserializer {
+        JsonDeserializer<Object> objects;
+
+        ItemDeserializer(Class<T> itemClass) {
+            super(itemClass);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            objects = find(ctxt, Object.class);
+        }
+
+        @Override
+        public boolean isCachable() {
+            return true;
+        }
+
+        abstract B builder();
+
+        /* returns false if there is no value at this index. */
+        abstract boolean readValue(int index, B builder, JsonParser jp, DeserializationContext ctxt) throws IOException;
+
+        abstract T build(B builder);
+
+        @Override
+        public T deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected array for " + handledType().getSimpleName());
+            }
+            B builder = builder();
+            int index = 0;
+            while (jp.nextToken() != JsonToken.END_ARRAY) {
+                if (!readValue(index++, builder, jp, ctxt)) {
+                    if (ctxt.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)) {
+                        throw ctxt.mappingException("Too many values in array for " + handledType().getSimpleName());
+                    }
+                    jp.skipChildren();
+                }
+            }
+            return build(builder);
+        }
+    }
+
+    private static final class TokenDeserializer extends ItemDeserializer<Token, Token.Builder> {
+        private final List<JsonDeserializer<MorphoAnalysis>> analyses = Lists.newArrayList();
+
+        TokenDeserializer() {
+            super(Token.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            for (MorphoAnalysisTypes type : MorphoAnalysisTypes.values()) {
+                analyses.add((JsonDeserializer<MorphoAnalysis>) find(ctxt, type.getMorphoAnalysisClass()));
+            }
+        }
+
+        @Override
+        Token.Builder builder() {
+            return new Token.Builder(0, 0, null);
+        }
+
+        @Override
+        boolean readValue(int index, Token.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (index) {
+            case 0:
+                builder.analyses(readAnalyses(jp, ctxt));
+                return true;
+            case 1:
+                builder.endOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case 2:
+                ItemFields.readExtendedProperties(jp, ctxt, objects, builder);
+                return true;
+            case 3:
+                builder.normalized(ItemFields.readStrings(jp, ctxt));
+                return true;
+            case 4:
+                builder.source(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case 5:
+                builder.startOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case 6:
+                ItemFields.readTokenText(jp, ctxt, builder);
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        /* [n, {}, m, {}, ...] for n, m ordinals from MorphoAnalysisTypes, as in MorphoAnalysisListArrayDeserializer. */
+        private List<MorphoAnalysis> readAnalyses(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            if (jp.getCurrentToken() == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            if (jp.getCurrentToken() != JsonToken.START_ARRAY) {
+                throw ctxt.wrongTokenException(jp, JsonToken.START_ARRAY, "Expected array of analyses");
+            }
+            List<MorphoAnalysis> results = Lists.newArrayList();
+            JsonDeserializer<MorphoAnalysis> deserializer = analyses.get(MorphoAnalysisTypes.PLAIN.ordinal());
+            while (jp.nextToken() != JsonToken.END_ARRAY) {
+                if (jp.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+                    deserializer = analyses.get(MorphoAnalysisTypes.byOrdinal(jp.getIntValue()).ordinal());
+                    jp.nextToken();
+                }
+                results.add(deserializer.deserialize(jp, ctxt));
+            }
+            return results;
+        }
+
+        @Override
+        Token build(Token.Builder builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class MorphoAnalysisDeserializer extends ItemDeserializer<MorphoAnalysis, MorphoAnalysis.Builder<MorphoAnalysis, ?>> {
+        private JsonDeserializer<Token> tokens;
+
+        MorphoAnalysisDeserializer() {
+            super(MorphoAnalysis.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            tokens = find(ctxt, Token.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        MorphoAnalysis.Builder<MorphoAnalysis, ?> builder() {
+            return new MorphoAnalysis.Builder();
+        }
+
+        @Override
+        boolean readValue(int index, MorphoAnalysis.Builder<MorphoAnalysis, ?> builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (index) {
+            case 0:
+                builder.components(ItemFields.<Token>readList(jp, ctxt, tokens));
+                return true;
+            case 1:
+                ItemFields.readExtendedProperties(jp, ctxt, objects, builder);
+                return true;
+            case 2:
+                builder.lemma(ItemFields.readString(jp, ctxt));
+                return true;
+            case 3:
+                builder.partOfSpeech(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case 4:
+                builder.raw(ItemFields.readString(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        MorphoAnalysis build(MorphoAnalysis.Builder<MorphoAnalysis, ?> builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class SentenceDeserializer extends ItemDeserializer<Sentence, Sentence.Builder> {
+        SentenceDeserializer() {
+            super(Sentence.class);
+        }
+
+        @Override
+        Sentence.Builder builder() {
+            return new Sentence.Builder(0, 0);
+        }
+
+        @Override
+        boolean readValue(int index, Sentence.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (index) {
+            case 0:
+                builder.endOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case 1:
+                ItemFields.readExtendedProperties(jp, ctxt, objects, builder);
+                return true;
+            case 2:
+                builder.startOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Sentence build(Sentence.Builder builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class EntityDeserializer extends ItemDeserializer<Entity, Entity.Builder> {
+        private JsonDeserializer<Mention> mentions;
+        private JsonDeserializer<CategorizerResult> categorizerResults;
+
+        EntityDeserializer() {
+            super(Entity.class);
+        }
+
+        @Override
+        public void resolve(DeserializationContext ctxt) throws JsonMappingException {
+            super.resolve(ctxt);
+            mentions = find(ctxt, Mention.class);
+            categorizerResults = find(ctxt, CategorizerResult.class);
+        }
+
+        @Override
+        Entity.Builder builder() {
+            return new Entity.Builder();
+        }
+
+        @Override
+        boolean readValue(int index, Entity.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (index) {
+            case 0:
+                builder.confidence(ItemFields.readDouble(jp, ctxt));
+                return true;
+            case 1:
+                builder.entityId(ItemFields.readString(jp, ctxt));
+                return true;
+            case 2:
+                ItemFields.readExtendedProperties(jp, ctxt, objects, builder);
+                return true;
+            case 3:
+                builder.headMentionIndex(ItemFields.readInteger(jp, ctxt));
+                return true;
+            case 4:
+                List<Mention> entityMentions = ItemFields.readList(jp, ctxt, mentions);
+                if (entityMentions != null) {
+                    for (Mention mention : entityMentions) {
+                        builder.mention(mention);
+                    }
+                }
+                return true;
+            case 5:
+                builder.salience(ItemFields.readDouble(jp, ctxt));
+                return true;
+            case 6:
+                List<CategorizerResult> sentiment = ItemFields.readList(jp, ctxt, categorizerResults);
+                if (sentiment != null) {
+                    for (CategorizerResult result : sentiment) {
+                        builder.sentiment(result);
+                    }
+                }
+                return true;
+            case 7:
+                builder.type(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Entity build(Entity.Builder builder) {
+            return builder.build();
+        }
+    }
+
+    private static final class MentionDeserializer extends ItemDeserializer<Mention, Mention.Builder> {
+        MentionDeserializer() {
+            super(Mention.class);
+        }
+
+        @Override
+        Mention.Builder builder() {
+            return new Mention.Builder(0, 0);
+        }
+
+        @Override
+        boolean readValue(int index, Mention.Builder builder, JsonParser jp, DeserializationContext ctxt) throws IOException {
+            switch (index) {
+            case 0:
+                builder.confidence(ItemFields.readDouble(jp, ctxt));
+                return true;
+            case 1:
+                builder.endOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case 2:
+                ItemFields.readExtendedProperties(jp, ctxt, objects, builder);
+                return true;
+            case 3:
+                builder.normalized(ItemFields.readString(jp, ctxt));
+                return true;
+            case 4:
+                builder.source(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            case 5:
+                builder.startOffset(ItemFields.readInt(jp, ctxt));
+                return true;
+            case 6:
+                builder.subsource(ItemFields.readPooledString(jp, ctxt));
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        @Override
+        Mention build(Mention.Builder builder) {
+            return builder.build();
+        }
+    }
+}
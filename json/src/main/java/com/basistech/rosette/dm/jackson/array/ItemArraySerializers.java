@@ -0,0 +1,212 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.jackson.array;
+
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.ItemFields;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.Serializers;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Array-shape serializers for the items that make up most of a document: tokens, their analyses,
+ * sentences, entities and mentions. Each writes all of its fields in alphabetical order,
+ * as the mixins do, but without bean introspection. Subclasses of these items are left to the mixins.
+ */
+final class ItemArraySerializers extends Serializers.Base {
+    private final TokenSerializer tokens = new TokenSerializer();
+    private final MorphoAnalysisSerializer analyses = new MorphoAnalysisSerializer();
+    private final SentenceSerializer sentences = new SentenceSerializer();
+    private final EntitySerializer entities = new EntitySerializer();
+    private final MentionSerializer mentions = new MentionSerializer();
+
+    @Override
+    public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc) {
+        Class<?> raw = type.getRawClass();
+        if (raw == Token.class) {
+            return tokens;
+        } else if (raw == MorphoAnalysis.class) {
+            return analyses;
+        } else if (raw == Sentence.class) {
+            return sentences;
+        } else if (raw == Entity.class) {
+            return entities;
+        } else if (raw == Mention.class) {
+            return mentions;
+        }
+        return null;
+    }
+
+    private abstract static class ItemSerializer<T extends BaseAttribute> extends StdSerializer<T> {
+        ItemSerializer(Class<T> itemClass) {
+            super(itemClass);
+        }
+
+        abstract void writeValues(T value, JsonGenerator jgen, SerializerProvider provider) throws IOException;
+
+        @Override
+        public void serialize(T value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeStartArray();
+            writeValues(value, jgen, provider);
+            jgen.writeEndArray();
+        }
+
+        @Override
+        public void serializeWithType(T value, JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
+            typeSer.writeTypePrefixForArray(value, jgen);
+            writeValues(value, jgen, provider);
+            typeSer.writeTypeSuffixForArray(value, jgen);
+        }
+    }
+
+    private final class TokenSerializer extends ItemSerializer<Token> {
+        TokenSerializer() {
+            super(Token.class);
+        }
+
+        @Override
+        void writeValues(Token value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            List<MorphoAnalysis> tokenAnalyses = value.getAnalyses();
+            if (tokenAnalyses == null) {
+                jgen.writeNull();
+            } else {
+                // as in MorphoAnalysisListArraySerializer, the type ordinal precedes each change of type.
+                jgen.writeStartArray();
+                MorphoAnalysisTypes currentType = MorphoAnalysisTypes.PLAIN;
+                for (MorphoAnalysis analysis : tokenAnalyses) {
+                    MorphoAnalysisTypes type = MorphoAnalysisTypes.byClass(analysis.getClass());
+                    if (type != currentType) {
+                        jgen.writeNumber(type.ordinal());
+                        currentType = type;
+                    }
+                    ItemFields.writeItem(jgen, provider, analysis, MorphoAnalysis.class, analyses);
+                }
+                jgen.writeEndArray();
+            }
+            jgen.writeNumber(value.getEndOffset());
+            ItemFields.writeExtendedPropertyMap(value, jgen, provider);
+            ItemFields.writeStrings(jgen, value.getNormalized());
+            ItemFields.writeString(jgen, value.getSource());
+            jgen.writeNumber(value.getStartOffset());
+            ItemFields.writeString(jgen, value.getText());
+        }
+    }
+
+    private final class MorphoAnalysisSerializer extends ItemSerializer<MorphoAnalysis> {
+        MorphoAnalysisSerializer() {
+            super(MorphoAnalysis.class);
+        }
+
+        @Override
+        void writeValues(MorphoAnalysis value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            List<Token> components = value.getComponents();
+            if (components == null) {
+                jgen.writeNull();
+            } else {
+                jgen.writeStartArray();
+                for (Token component : components) {
+                    ItemFields.writeItem(jgen, provider, component, Token.class, tokens);
+                }
+                jgen.writeEndArray();
+            }
+            ItemFields.writeExtendedPropertyMap(value, jgen, provider);
+            ItemFields.writeString(jgen, value.getLemma());
+            ItemFields.writeString(jgen, value.getPartOfSpeech());
+            ItemFields.writeString(jgen, value.getRaw());
+        }
+    }
+
+    private static final class SentenceSerializer extends ItemSerializer<Sentence> {
+        SentenceSerializer() {
+            super(Sentence.class);
+        }
+
+        @Override
+        void writeValues(Sentence value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            jgen.writeNumber(value.getEndOffset());
+            ItemFields.writeExtendedPropertyMap(value, jgen, provider);
+            jgen.writeNumber(value.getStartOffset());
+        }
+    }
+
+    private final class EntitySerializer extends ItemSerializer<Entity> {
+        EntitySerializer() {
+            super(Entity.class);
+        }
+
+        @Override
+        void writeValues(Entity value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            ItemFields.writeNumber(jgen, value.getConfidence());
+            ItemFields.writeString(jgen, value.getEntityId());
+            ItemFields.writeExtendedPropertyMap(value, jgen, provider);
+            ItemFields.writeNumber(jgen, value.getHeadMentionIndex());
+            List<Mention> entityMentions = value.getMentions();
+            if (entityMentions == null) {
+                jgen.writeNull();
+            } else {
+                jgen.writeStartArray();
+                for (Mention mention : entityMentions) {
+                    ItemFields.writeItem(jgen, provider, mention, Mention.class, mentions);
+                }
+                jgen.writeEndArray();
+            }
+            ItemFields.writeNumber(jgen, value.getSalience());
+            List<CategorizerResult> sentiment = value.getSentiment();
+            if (sentiment == null) {
+                jgen.writeNull();
+            } else {
+                jgen.writeStartArray();
+                for (CategorizerResult result : sentiment) {
+                    provider.defaultSerializeValue(result, jgen);
+                }
+                jgen.writeEndArray();
+            }
+            ItemFields.writeString(jgen, value.getType());
+        }
+    }
+
+    private static final class MentionSerializer extends ItemSerializer<Mention> {
+        MentionSerializer() {
+            super(Mention.class);
+        }
+
+        @Override
+        void writeValues(Mention value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+            ItemFields.writeNumber(jgen, value.getConfidence());
+            jgen.writeNumber(value.getEndOffset());
+            ItemFields.writeExtendedPropertyMap(value, jgen, provider);
+            ItemFields.writeString(jgen, value.getNormalized());
+            ItemFields.writeString(jgen, value.getSource());
+            jgen.writeNumber(value.getStartOffset());
+            ItemFields.writeString(jgen, value.getSubsource());
+        }
+    }
+}
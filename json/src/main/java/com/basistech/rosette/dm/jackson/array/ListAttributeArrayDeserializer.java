@@ -17,7 +17,8 @@ package com.basistech.rosette.dm.jackson.array;
 
 import com.basistech.rosette.dm.BaseAttribute;
 import com.basistech.rosette.dm.ListAttribute;
-import com.basistech.rosette.dm.jackson.KnownAttribute;
+import com.basistech.rosette.dm.jackson.ItemFields;
+import com.basistech.rosette.dm.jackson.AttributeTypeRegistry;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -49,13 +50,9 @@ public class ListAttributeArrayDeserializer extends JsonDeserializer<ListAttribu
         }
         String itemTypeKeyName = jp.getText();
 
-        KnownAttribute attribute = KnownAttribute.getAttributeForKey(itemTypeKeyName);
-        if (attribute == null) {
-            attribute = KnownAttribute.UNKNOWN;
-        }
-        Class<? extends BaseAttribute> itemClass = attribute.attributeClass();
+        Class<? extends BaseAttribute> itemClass = AttributeTypeRegistry.forContext(ctxt).classForTypeId(itemTypeKeyName);
 
-        ListAttribute.Builder<BaseAttribute> builder = new ListAttribute.Builder<>(attribute.attributeClass());
+        ListAttribute.Builder<BaseAttribute> builder = new ListAttribute.Builder<>(itemClass);
         List<BaseAttribute> items = Lists.newArrayList();
 
         if (jp.nextToken() != JsonToken.START_ARRAY) {
@@ -63,10 +60,7 @@ public class ListAttributeArrayDeserializer extends JsonDeserializer<ListAttribu
         }
 
         // we just read the elements as we see them,
-        while (jp.nextToken() != JsonToken.END_ARRAY) {
-            // the START_ARRAY case, which is _normal_. Read the elements.
-            items.add(jp.readValueAs(itemClass));
-        }
+        ItemFields.readItems(jp, ctxt, itemClass, items);
         builder.setItems(items);
         // we are still in the top-level array ...
         if (jp.nextToken() != JsonToken.START_OBJECT) {
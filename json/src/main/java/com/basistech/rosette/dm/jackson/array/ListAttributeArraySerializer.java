@@ -17,7 +17,8 @@
 package com.basistech.rosette.dm.jackson.array;
 
 import com.basistech.rosette.dm.ListAttribute;
-import com.basistech.rosette.dm.jackson.KnownAttribute;
+import com.basistech.rosette.dm.jackson.AttributeTypeRegistry;
+import com.basistech.rosette.dm.jackson.ItemFields;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
@@ -34,20 +35,14 @@ public class ListAttributeArraySerializer extends JsonSerializer<ListAttribute>
     @Override
     public void serialize(ListAttribute value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
         jgen.writeStartArray();
-        jgen.writeString(KnownAttribute.getAttributeForClass(value.getItemClass()).key());
+        jgen.writeString(AttributeTypeRegistry.forContext(provider).typeIdForClass(value.getItemClass()));
         writeItems(value, jgen, provider);
         writeExtendedProperties(value, jgen);
         jgen.writeEndArray();
     }
 
     private void writeItems(ListAttribute value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-        jgen.writeStartArray();
-
-        for (Object attr : value) {
-            provider.defaultSerializeValue(attr, jgen);
-        }
-
-        jgen.writeEndArray();
+        ItemFields.writeItems(jgen, provider, value.getItems(), value.getItemClass());
     }
 
     private void writeExtendedProperties(ListAttribute value, JsonGenerator jgen) throws IOException {
@@ -62,7 +57,7 @@ public class ListAttributeArraySerializer extends JsonSerializer<ListAttribute>
     @Override
     public void serializeWithType(ListAttribute value, JsonGenerator jgen, SerializerProvider provider, TypeSerializer typeSer) throws IOException {
         typeSer.writeTypePrefixForArray(value, jgen);
-        jgen.writeString(KnownAttribute.getAttributeForClass(value.getItemClass()).key());
+        jgen.writeString(AttributeTypeRegistry.forContext(provider).typeIdForClass(value.getItemClass()));
         writeItems(value, jgen, provider);
         writeExtendedProperties(value, jgen);
         typeSer.writeTypeSuffixForArray(value, jgen);
@@ -16,8 +16,8 @@
 
 package com.basistech.rosette.dm.jackson.array;
 
-import com.basistech.rosette.dm.Attribute;
-import com.basistech.rosette.dm.jackson.DmTypeIdResolver;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.jackson.AttributeTypeRegistry;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
@@ -28,21 +28,16 @@ import java.util.Map;
 /**
  * Until we get to the bottom of <a href="https://github.com/FasterXML/jackson-databind/issues/646">This Jackson Bug</a>.
  */
-public class TempAttributeMapSerializer extends JsonSerializer<Map<String, Attribute>> {
-
-    private final DmTypeIdResolver resolver;
-
-    public TempAttributeMapSerializer() {
-        resolver = new DmTypeIdResolver();
-    }
+public class TempAttributeMapSerializer extends JsonSerializer<Map<String, BaseAttribute>> {
 
     @Override
-    public void serialize(Map<String, Attribute> value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+    public void serialize(Map<String, BaseAttribute> value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        AttributeTypeRegistry registry = AttributeTypeRegistry.forContext(provider);
         jgen.writeStartObject();
-        for (Map.Entry<String, Attribute> me : value.entrySet()) {
+        for (Map.Entry<String, BaseAttribute> me : value.entrySet()) {
             jgen.writeFieldName(me.getKey());
             jgen.writeStartArray();
-            jgen.writeString(resolver.idFromValue(me.getValue()));
+            jgen.writeString(registry.typeIdForClass(me.getValue().getClass()));
             // this will write out in array notation due to the annotation
             provider.defaultSerializeValue(me.getValue(), jgen);
             jgen.writeEndArray();
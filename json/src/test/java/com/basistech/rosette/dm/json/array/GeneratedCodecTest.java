@@ -0,0 +1,126 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.array;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.BaseNounPhrase;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.Extent;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.RelationshipComponent;
+import com.basistech.rosette.dm.RelationshipMention;
+import com.basistech.rosette.dm.TranslatedData;
+import com.basistech.util.ISO15924;
+import com.basistech.util.LanguageCode;
+import com.basistech.util.TextDomain;
+import com.basistech.util.TransliterationScheme;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * The generated codecs must write exactly what the bean mixins wrote, and read it back.
+ */
+public class GeneratedCodecTest extends AdmAssert {
+    private static final File GOLDEN = new File("test-data/generated-codecs-array.json");
+    private AnnotatedText text;
+
+    @Before
+    public void before() {
+        //                   0123456789012345
+        String data = "Dogs chase cats.";
+        ListAttribute.Builder<BaseNounPhrase> phrases = new ListAttribute.Builder<>(BaseNounPhrase.class);
+        BaseNounPhrase.Builder cats = new BaseNounPhrase.Builder(11, 15);
+        cats.extendedProperty("head", "cats");
+        phrases.add(new BaseNounPhrase.Builder(0, 4).build());
+        phrases.add(cats.build());
+        ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+        dependencies.add(new Dependency.Builder("nsubj", 1, 0).build());
+        Dependency.Builder root = new Dependency.Builder("root", -1, 1);
+        root.extendedProperty("score", 0.5);
+        dependencies.add(root.build());
+        dependencies.add(new Dependency.Builder(null, 1, 2).build());
+        ListAttribute.Builder<CategorizerResult> categories = new ListAttribute.Builder<>(CategorizerResult.class);
+        categories.add(new CategorizerResult.Builder("ANIMALS", 0.8).confidence(0.25)
+                .explanationSet(ImmutableList.of("dogs", "cats"))
+                .perFeatureScores(ImmutableMap.of("dogs", 0.5, "cats", 0.3)).build());
+        CategorizerResult.Builder sports = new CategorizerResult.Builder("SPORTS", null);
+        sports.extendedProperty("rank", 2);
+        categories.add(sports.build());
+        ListAttribute.Builder<RelationshipMention> relationships = new ListAttribute.Builder<>(RelationshipMention.class);
+        RelationshipComponent predicate = new RelationshipComponent.Builder().phrase("chase")
+                .extents(ImmutableList.of(new Extent.Builder(5, 10).build())).build();
+        RelationshipComponent.Builder dogs = new RelationshipComponent.Builder().phrase("Dogs").identifier("Q144")
+                .extents(ImmutableList.of(new Extent.Builder(0, 4).build()));
+        dogs.extendedProperty("role", "agent");
+        RelationshipComponent catsComponent = new RelationshipComponent.Builder().phrase("cats").build();
+        RelationshipMention.Builder chase = new RelationshipMention.Builder(0, 16).predicate(predicate).arg1(dogs.build())
+                .arg2(catsComponent).source("relax").confidence(0.5).salience(0.25)
+                .modality(ImmutableSet.of("asserted"));
+        chase.addAdjunct(new RelationshipComponent.Builder().phrase("daily").build());
+        chase.extendedProperty("tense", "present");
+        relationships.add(chase.build());
+        relationships.add(new RelationshipMention.Builder(0, 4).build());
+        text = new AnnotatedText.Builder().data(data)
+                .baseNounPhrases(phrases.build())
+                .dependencies(dependencies.build())
+                .categorizerResults(categories.build())
+                .relationshipMentions(relationships.build())
+                .build();
+    }
+
+    @Test
+    public void writesSameJson() throws Exception {
+        assertEquals(Files.toString(GOLDEN, Charsets.UTF_8), objectMapper().writeValueAsString(text));
+    }
+
+    @Test
+    public void readsSameItems() throws Exception {
+        AnnotatedText read = objectMapper().readValue(GOLDEN, AnnotatedText.class);
+        assertEquals(text.getBaseNounPhrases(), read.getBaseNounPhrases());
+        assertEquals(text.getDependencies(), read.getDependencies());
+        assertEquals(text.getCategorizerResults(), read.getCategorizerResults());
+        assertEquals(text.getRelationshipMentions(), read.getRelationshipMentions());
+    }
+
+    @Test
+    public void singleItems() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        RelationshipMention mention = text.getRelationshipMentions().get(0);
+        assertEquals(mention, mapper.readValue(mapper.writeValueAsString(mention), RelationshipMention.class));
+        CategorizerResult result = text.getCategorizerResults().get(1);
+        assertEquals(result, mapper.readValue(mapper.writeValueAsString(result), CategorizerResult.class));
+        // not in the golden file: Jackson does not write the fields of TextDomain in a fixed order.
+        TranslatedData translation = new TranslatedData.Builder(new TextDomain(ISO15924.Latn, LanguageCode.GERMAN, TransliterationScheme.NATIVE),
+                "Hunde jagen Katzen.").confidence(0.75).build();
+        assertEquals(translation, mapper.readValue(mapper.writeValueAsString(translation), TranslatedData.class));
+    }
+
+    @Test
+    public void usesGeneratedCodecs() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        assertEquals("com.basistech.rosette.dm.jackson.DependencyCodec$ArraySerializer",
+                mapper.getSerializerProviderInstance().findValueSerializer(Dependency.class).getClass().getName());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.array;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.HanMorphoAnalysis;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * The dedicated serializers for tokens, mentions, entities, sentences and analyses
+ * must write exactly what the bean mixins wrote, and read it back.
+ */
+public class HotItemTest extends AdmAssert {
+    private static final File GOLDEN = new File("test-data/hot-items-array.json");
+    private AnnotatedText text;
+
+    @Before
+    public void before() {
+        //                   0123456789012345
+        String data = "Dogs chase cats.";
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        Token.Builder dogs = new Token.Builder(0, 4, "Dogs").addNormalized("dog").addNormalized("Dog");
+        MorphoAnalysis.Builder noun = new MorphoAnalysis.Builder().partOfSpeech("NOUN").lemma("dog").raw("dog+N");
+        noun.extendedProperty("frequency", 0.5);
+        dogs.addAnalysis(noun.build());
+        dogs.addAnalysis(new MorphoAnalysis.Builder().partOfSpeech("VERB").lemma("dog").raw("dog+V+s")
+                .addComponent(new Token.Builder(0, 3, "Dog").build())
+                .addComponent(new Token.Builder(3, 4, "s").build()).build());
+        tokens.add(dogs.build());
+        Token.Builder chase = new Token.Builder(5, 10, "chase").source("rbl");
+        chase.extendedProperty("weight", 2);
+        chase.addAnalysis(new HanMorphoAnalysis.Builder().addReading("cheisu").lemma("chase").build());
+        tokens.add(chase.build());
+        tokens.add(new Token.Builder(11, 15, "CATS").build());
+        tokens.add(new Token.Builder(15, 16, ".").textFrom(data).build());
+        ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+        Sentence.Builder sentence = new Sentence.Builder(0, 16);
+        sentence.extendedProperty("kind", "declarative");
+        sentences.add(sentence.build());
+        ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        Mention.Builder cats = new Mention.Builder(11, 15).confidence(0.5).source("gazetteer")
+                .subsource("animals").normalized("cats");
+        cats.extendedProperty("plural", true);
+        Entity.Builder animal = new Entity.Builder().type("ANIMAL").entityId("Q146").confidence(0.25)
+                .salience(0.75).headMentionIndex(0).mention(cats.build())
+                .sentiment(new CategorizerResult.Builder("positive", 0.1).confidence(0.9).build());
+        animal.extendedProperty("tags", ImmutableList.of("pet", "mammal"));
+        entities.add(animal.build());
+        entities.add(new Entity.Builder().type("ANIMAL").mention(new Mention.Builder(0, 4).build()).build());
+        text = new AnnotatedText.Builder().data(data)
+                .tokens(tokens.build())
+                .sentences(sentences.build())
+                .entities(entities.build())
+                .build();
+    }
+
+    @Test
+    public void writesSameJson() throws Exception {
+        assertEquals(Files.toString(GOLDEN, Charsets.UTF_8), objectMapper().writeValueAsString(text));
+    }
+
+    @Test
+    public void readsSameItems() throws Exception {
+        AnnotatedText read = objectMapper().readValue(GOLDEN, AnnotatedText.class);
+        assertEquals(text.getTokens(), read.getTokens());
+        assertEquals(text.getSentences(), read.getSentences());
+        assertEquals(text.getEntities(), read.getEntities());
+        assertEquals(HanMorphoAnalysis.class, read.getTokens().get(1).getAnalyses().get(0).getClass());
+    }
+
+    @Test
+    public void singleItems() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        Token token = text.getTokens().get(0);
+        assertEquals(token, mapper.readValue(mapper.writeValueAsString(token), Token.class));
+        Entity entity = text.getEntities().get(0);
+        assertEquals(entity, mapper.readValue(mapper.writeValueAsString(entity), Entity.class));
+    }
+}
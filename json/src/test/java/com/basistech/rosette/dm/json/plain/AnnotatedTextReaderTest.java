@@ -0,0 +1,163 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.plain;
+
+import com.basistech.rosette.RosetteRuntimeException;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.DeferredAttributes;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.AnnotatedTextReader;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+
+public class AnnotatedTextReaderTest extends AdmAssert {
+    private AnnotatedText text;
+
+    @Before
+    public void before() {
+        //                   0123456789012345
+        String data = "Dogs chase cats.";
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        tokens.add(new Token.Builder(0, 4, "Dogs").build());
+        tokens.add(new Token.Builder(5, 10, "chase").build());
+        tokens.add(new Token.Builder(11, 15, "cats").build());
+        tokens.add(new Token.Builder(15, 16, ".").build());
+        ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+        sentences.add(new Sentence.Builder(0, 16).build());
+        ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        entities.add(new Entity.Builder().type("ANIMAL").mention(new Mention.Builder(11, 15).build()).build());
+        text = new AnnotatedText.Builder().data(data)
+                .tokens(tokens.build())
+                .sentences(sentences.build())
+                .entities(entities.build())
+                .build();
+    }
+
+    private void checkEntitiesOnly(ObjectMapper mapper) throws Exception {
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).attributes(AttributeKey.ENTITY).build();
+        AnnotatedText read = reader.read(mapper.writeValueAsBytes(text));
+        assertEquals(text.getData().toString(), read.getData().toString());
+        assertEquals(text.getEntities(), read.getEntities());
+        assertNull(read.getTokens());
+        assertNull(read.getSentences());
+        assertEquals(1, read.getAttributes().size());
+    }
+
+    @Test
+    public void entitiesOnly() throws Exception {
+        checkEntitiesOnly(objectMapper());
+    }
+
+    @Test
+    public void entitiesOnlyArray() throws Exception {
+        checkEntitiesOnly(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+    }
+
+    @Test
+    public void allAttributes() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        AnnotatedText read = new AnnotatedTextReader.Builder(mapper).build().read(mapper.writeValueAsBytes(text));
+        assertEquals(text.getAttributes(), read.getAttributes());
+    }
+
+    @Test
+    public void oldEntities() throws Exception {
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(objectMapper()).attributes(AttributeKey.ENTITY).build();
+        AnnotatedText read = reader.read(new File("test-data/simple_doc0_resolved_adm_v100.json"));
+        assertNotNull(read.getEntities());
+        assertNull(read.getTokens());
+    }
+
+    private void checkDeferred(ObjectMapper mapper) throws Exception {
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).deferred(true).build();
+        AnnotatedText read = reader.read(mapper.writeValueAsBytes(text));
+        assertTrue(read.getAttributes() instanceof DeferredAttributes);
+        DeferredAttributes attributes = (DeferredAttributes) read.getAttributes();
+        assertEquals(3, attributes.size());
+        assertFalse(attributes.isDecoded(AttributeKey.TOKEN.key()));
+        assertEquals(text.getSentences(), read.getSentences());
+        assertFalse(attributes.isDecoded(AttributeKey.TOKEN.key()));
+        assertTrue(attributes.isDecoded(AttributeKey.SENTENCE.key()));
+        assertEquals(text.getTokens(), read.getTokens());
+        assertEquals(text.getData().toString(), read.getData().toString());
+        assertEquals(text.getAttributes(), read.getAttributes());
+    }
+
+    @Test
+    public void deferred() throws Exception {
+        checkDeferred(objectMapper());
+    }
+
+    @Test
+    public void deferredArray() throws Exception {
+        checkDeferred(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+    }
+
+    @Test
+    public void deferredFailure() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        String json = mapper.writeValueAsString(text).replace("\"startOffset\":11", "\"startOffset\":\"eleven\"");
+        AnnotatedText read = new AnnotatedTextReader.Builder(mapper).deferred(true).build().read(json.getBytes("UTF-8"));
+        // each attempt reports the failure to decode, not a consequence of the one before.
+        for (int x = 0; x < 2; x++) {
+            try {
+                read.getTokens();
+                fail();
+            } catch (RosetteRuntimeException e) {
+                assertTrue(e.getCause() instanceof JsonMappingException);
+            }
+        }
+        assertEquals(text.getSentences(), read.getSentences());
+    }
+
+    @Test
+    public void deferredDoesNotRetainParser() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).deferred(true).build();
+        JsonParser parser = mapper.getFactory().createParser(mapper.writeValueAsBytes(text));
+        WeakReference<JsonParser> parserRef = new WeakReference<>(parser);
+        AnnotatedText read = reader.read(parser);
+        parser.close();
+        parser = null;
+        for (int x = 0; x < 20 && parserRef.get() != null; x++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        // the undecoded attributes hold only their buffers, not the parser that filled them.
+        assertNull(parserRef.get());
+        assertEquals(text.getTokens(), read.getTokens());
+    }
+
+    @Test
+    public void deferredOldEntities() throws Exception {
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(objectMapper()).deferred(true).build();
+        AnnotatedText read = reader.read(new File("test-data/simple_doc0_resolved_adm_v100.json"));
+        assertNotNull(read.getEntities());
+        assertNotNull(read.getTokens());
+    }
+}
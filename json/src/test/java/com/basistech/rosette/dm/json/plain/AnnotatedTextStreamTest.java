@@ -0,0 +1,125 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.plain;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.AnnotatedTextReader;
+import com.basistech.rosette.dm.jackson.AnnotatedTextStreamReader;
+import com.basistech.rosette.dm.jackson.AnnotatedTextStreamWriter;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class AnnotatedTextStreamTest extends AdmAssert {
+    private List<AnnotatedText> texts;
+
+    @Before
+    public void before() {
+        texts = Lists.newArrayList();
+        for (String data : new String[] {"Dogs chase cats.", "Cats chase mice.", ""}) {
+            ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+            int start = 0;
+            for (int end = 1; end <= data.length(); end++) {
+                if (end == data.length() || data.charAt(end) == ' ') {
+                    tokens.add(new Token.Builder(start, end, data.substring(start, end)).build());
+                    start = end + 1;
+                }
+            }
+            ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+            sentences.add(new Sentence.Builder(0, data.length()).build());
+            texts.add(new AnnotatedText.Builder().data(data).tokens(tokens.build()).sentences(sentences.build()).build());
+        }
+    }
+
+    private byte[] write(ObjectMapper mapper) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (AnnotatedTextStreamWriter writer = new AnnotatedTextStreamWriter(mapper, output)) {
+            for (AnnotatedText text : texts) {
+                writer.write(text);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private void checkRoundTrip(ObjectMapper mapper) throws Exception {
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).build();
+        List<AnnotatedText> read = Lists.newArrayList();
+        try (AnnotatedTextStreamReader stream = reader.readValues(new ByteArrayInputStream(write(mapper)))) {
+            while (stream.hasNext()) {
+                read.add(stream.next());
+            }
+            assertFalse(stream.hasNext());
+        }
+        assertEquals(texts.size(), read.size());
+        for (int x = 0; x < texts.size(); x++) {
+            assertEquals(texts.get(x).getData().toString(), read.get(x).getData().toString());
+            assertEquals(texts.get(x).getAttributes(), read.get(x).getAttributes());
+        }
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        checkRoundTrip(objectMapper());
+    }
+
+    @Test
+    public void roundTripArray() throws Exception {
+        checkRoundTrip(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+    }
+
+    @Test
+    public void oneTextPerLine() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        String[] lines = new String(write(mapper), Charsets.UTF_8).split("\n");
+        assertEquals(texts.size(), lines.length);
+        assertEquals(texts.get(1).getAttributes(), mapper.readValue(lines[1], AnnotatedText.class).getAttributes());
+    }
+
+    @Test
+    public void selectedAttributes() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).attributes(AttributeKey.SENTENCE).build();
+        try (AnnotatedTextStreamReader stream = reader.readValues(new ByteArrayInputStream(write(mapper)))) {
+            for (AnnotatedText text : texts) {
+                AnnotatedText read = stream.readNext();
+                assertEquals(text.getSentences(), read.getSentences());
+                assertNull(read.getTokens());
+            }
+            assertNull(stream.readNext());
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void pastTheEnd() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        AnnotatedTextReader reader = new AnnotatedTextReader.Builder(mapper).build();
+        try (AnnotatedTextStreamReader stream = reader.readValues(new ByteArrayInputStream(new byte[0]))) {
+            stream.next();
+        }
+    }
+}
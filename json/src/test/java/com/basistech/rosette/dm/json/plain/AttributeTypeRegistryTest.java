@@ -0,0 +1,125 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.plain;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.UnknownAttribute;
+import com.basistech.rosette.dm.jackson.AnnotatedDataModelModule;
+import com.basistech.rosette.dm.jackson.AttributeTypeRegistry;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AttributeTypeRegistryTest extends AdmAssert {
+
+    /**
+     * An attribute that an application adds to the model.
+     */
+    public static final class Sighting extends BaseAttribute {
+        private static final long serialVersionUID = 222L;
+        private final String species;
+
+        @JsonCreator
+        public Sighting(@JsonProperty("species") String species) {
+            this.species = species;
+        }
+
+        public String getSpecies() {
+            return species;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Sighting && super.equals(o) && species.equals(((Sighting) o).species);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + species.hashCode();
+        }
+    }
+
+    private AttributeTypeRegistry registry;
+
+    @Before
+    public void register() {
+        registry = new AttributeTypeRegistry();
+        registry.register("sighting", Sighting.class);
+    }
+
+    private static AnnotatedText sightingText() {
+        ListAttribute.Builder<Sighting> sightings = new ListAttribute.Builder<>(Sighting.class);
+        sightings.add(new Sighting("owl"));
+        return new AnnotatedText.Builder().data("owl")
+                .attribute("sightings", sightings.build())
+                .attribute("firstSighting", new Sighting("owl"))
+                .build();
+    }
+
+    private void checkCustom(ObjectMapper mapper) throws Exception {
+        AnnotatedText text = sightingText();
+        AnnotatedText read = mapper.readValue(mapper.writeValueAsBytes(text), AnnotatedText.class);
+        assertEquals(Sighting.class, ((ListAttribute<?>) read.getAttributes().get("sightings")).getItemClass());
+        assertTrue(read.getAttributes().get("firstSighting") instanceof Sighting);
+        assertEquals(text.getAttributes(), read.getAttributes());
+    }
+
+    @Test
+    public void custom() throws Exception {
+        checkCustom(AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper(), registry));
+    }
+
+    @Test
+    public void customArray() throws Exception {
+        checkCustom(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper(), registry));
+    }
+
+    @Test
+    public void isolated() throws Exception {
+        // a mapper with its own registry knows nothing of the registrations of another.
+        byte[] json = AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper(), registry).writeValueAsBytes(sightingText());
+        AnnotatedText read = objectMapper().readValue(json, AnnotatedText.class);
+        assertTrue(read.getAttributes().get("firstSighting") instanceof UnknownAttribute);
+        try {
+            objectMapper().writeValueAsBytes(sightingText());
+            fail();
+        } catch (JsonMappingException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void lookups() throws Exception {
+        assertEquals("token", registry.typeIdForClass(Token.class));
+        assertEquals(Token.class, registry.classForTypeId("token"));
+        assertEquals(UnknownAttribute.class, registry.classForTypeId("nothing"));
+        assertEquals("categorizerResults", registry.typeIdForClass(com.basistech.rosette.dm.CategorizerResult.class));
+        // again is fine.
+        registry.register("sighting", Sighting.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void conflict() throws Exception {
+        registry.register("token", Sighting.class);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.plain;
+
+import com.basistech.rosette.dm.EmbeddingCollection;
+import com.basistech.rosette.dm.Embeddings;
+import com.basistech.rosette.dm.jackson.AnnotatedDataModelModule;
+import com.basistech.rosette.dm.jackson.EmbeddingEncoding;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Test;
+
+public class EmbeddingEncodingTest extends AdmAssert {
+
+    private static EmbeddingCollection collection() {
+        EmbeddingCollection.Builder builder = new EmbeddingCollection.Builder();
+        for (int x = 0; x < 5; x++) {
+            builder.put(x, new float[] {x, -x, 0.25f, Float.MIN_VALUE});
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void numbersByDefault() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        JsonNode tree = mapper.readTree(mapper.writeValueAsString(collection()));
+        assertEquals(-3.0, tree.get("embeddings").get("3").get(1).asDouble(), 0);
+        assertEquals(collection(), mapper.readValue(tree.toString(), EmbeddingCollection.class));
+    }
+
+    @Test
+    public void base64() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        String json = mapper.writer().withAttribute(EmbeddingEncoding.class, EmbeddingEncoding.BINARY).writeValueAsString(collection());
+        JsonNode tree = mapper.readTree(json);
+        assertEquals(5, tree.get("indices").size());
+        assertEquals(4, tree.get("dimension").asInt());
+        assertEquals(5 * 4 * 4, tree.get("values").binaryValue().length);
+        EmbeddingCollection read = mapper.readValue(json, EmbeddingCollection.class);
+        assertEquals(collection(), read);
+        assertEquals(0.25f, read.getRow(4).get(2), 0);
+    }
+
+    @Test
+    public void smile() throws Exception {
+        ObjectMapper mapper = EmbeddingEncoding.BINARY.configure(AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper(new SmileFactory())));
+        byte[] smile = mapper.writeValueAsBytes(collection());
+        assertEquals(collection(), mapper.readValue(smile, EmbeddingCollection.class));
+    }
+
+    @Test
+    public void decodedWhenRead() throws Exception {
+        EmbeddingCollection read = objectMapper().readValue("{\"indices\":[2,3],\"dimension\":1,\"values\":\"!!!!\"}", EmbeddingCollection.class);
+        assertEquals(2, read.size());
+        assertEquals(1, read.positionOf(3));
+        try {
+            read.getRow(2);
+            fail("values decoded");
+        } catch (IllegalArgumentException e) {
+            // the values are not valid base64.
+        }
+    }
+
+    @Test
+    public void arrayModule() throws Exception {
+        Embeddings embeddings = new Embeddings.Builder().put(Embeddings.Name.TOKENS, collection()).build();
+        ObjectMapper mapper = EmbeddingEncoding.BINARY.configure(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+        assertEquals(embeddings, mapper.readValue(mapper.writeValueAsString(embeddings), Embeddings.class));
+    }
+
+    @Test
+    public void quantized() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        ObjectMapper smile = EmbeddingEncoding.BINARY.configure(AnnotatedDataModelModule.setupObjectMapper(new ObjectMapper(new SmileFactory())));
+        ObjectWriter binary = EmbeddingEncoding.BINARY.configure(mapper.writer());
+        int fullSize = binary.writeValueAsBytes(collection()).length;
+        for (EmbeddingCollection.Precision precision : new EmbeddingCollection.Precision[] {
+            EmbeddingCollection.Precision.FLOAT16, EmbeddingCollection.Precision.INT8}) {
+            EmbeddingCollection collection = new EmbeddingCollection.Builder(collection()).precision(precision).build();
+            byte[] json = binary.writeValueAsBytes(collection);
+            assertTrue(json.length < fullSize);
+            assertEquals(precision.name(), mapper.readTree(json).get("precision").asText());
+            assertEquals(collection, mapper.readValue(json, EmbeddingCollection.class));
+            assertEquals(collection, smile.readValue(smile.writeValueAsBytes(collection), EmbeddingCollection.class));
+            // the numeric form keeps the precision; the values are quantized again.
+            EmbeddingCollection read = mapper.readValue(mapper.writeValueAsString(collection), EmbeddingCollection.class);
+            assertEquals(precision, read.getPrecision());
+            assertEquals(collection.getValues(), read.getValues());
+        }
+    }
+}
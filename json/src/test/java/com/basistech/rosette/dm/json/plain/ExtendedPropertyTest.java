@@ -30,6 +30,7 @@ import org.junit.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Arrays;
 
 /**
  * See if the extension mechanism works round-trip.
@@ -120,4 +121,27 @@ public class ExtendedPropertyTest extends AdmAssert {
         ArabicMorphoAnalysis ma2 = (ArabicMorphoAnalysis)deserialized.getAnalyses().get(1);
         assertEquals("apples", ma2.getExtendedProperties().get("some"));
     }
+
+    @Test
+    public void sharedAcrossItems() throws Exception {
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        for (int x = 0; x < 3; x++) {
+            Token.Builder withList = new Token.Builder(x, x + 1, "a");
+            withList.extendedProperty("weight", 2);
+            withList.extendedProperty("kind", "x");
+            withList.extendedProperty("list", Arrays.asList(1, 2));
+            tokens.add(withList.build());
+            Token.Builder scalars = new Token.Builder(x, x + 1, "a");
+            scalars.extendedProperty("weight", 2);
+            scalars.extendedProperty("kind", "x");
+            tokens.add(scalars.build());
+        }
+        AnnotatedText text = new AnnotatedText.Builder().data("aaa").tokens(tokens.build()).build();
+        ObjectMapper mapper = objectMapper();
+        AnnotatedText read = mapper.readValue(mapper.writeValueAsBytes(text), AnnotatedText.class);
+        assertEquals(text.getTokens(), read.getTokens());
+        // maps of scalars are shared; maps with lists are not.
+        assertSame(read.getTokens().get(1).getExtendedProperties(), read.getTokens().get(3).getExtendedProperties());
+        assertNotSame(read.getTokens().get(0).getExtendedProperties(), read.getTokens().get(2).getExtendedProperties());
+    }
 }
@@ -44,6 +44,7 @@ import com.basistech.util.LanguageCode;
 import com.basistech.util.TextDomain;
 import com.basistech.util.TransliterationScheme;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -748,6 +749,32 @@ public class JsonTest extends AdmAssert {
         assertEquals(embeddings, readEmbeddings);
     }
 
+    @Test
+    public void tokenTextSharesData() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        String json = mapper.writeValueAsString(referenceText);
+        AnnotatedText read = mapper.readValue(json, AnnotatedText.class);
+        Token readToken = read.getTokens().get(0);
+        assertEquals("This", readToken.getText());
+        // a token that refers to the data creates its text on request.
+        assertNotSame(readToken.getText(), readToken.getText());
+        assertEquals(json, mapper.writeValueAsString(read));
+    }
+
+    @Test
+    public void tokenTextStaysWithItsText() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        AnnotatedText noData = new AnnotatedText.Builder().tokens(referenceText.getTokens()).build();
+        String json = mapper.writeValueAsString(referenceText) + mapper.writeValueAsString(noData);
+        MappingIterator<AnnotatedText> texts = mapper.readerFor(AnnotatedText.class).readValues(json);
+        Token shared = texts.next().getTokens().get(0);
+        assertNotSame(shared.getText(), shared.getText());
+        // the next text has no data of its own, so its tokens keep their text.
+        Token own = texts.next().getTokens().get(0);
+        assertEquals("This", own.getText());
+        assertSame(own.getText(), own.getText());
+    }
+
     @Test
     public void testForwardCompatibilitySimple() throws Exception {
         ObjectMapper mapper = objectMapper();
@@ -16,11 +16,18 @@
 package com.basistech.rosette.dm.json.plain;
 
 import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.ArabicMorphoAnalysis;
+import com.basistech.rosette.dm.HanMorphoAnalysis;
+import com.basistech.rosette.dm.KoreanMorphoAnalysis;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Token;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * Tests of the complex code that speeds up morpho analysis deserialization.
@@ -34,4 +41,38 @@ public class MorphoDeserializerTest extends AdmAssert {
         // threw
         reader.readValue(new File("test-data/comn-130-adm.json"));
     }
+
+    private static List<MorphoAnalysis> analyses(String json) throws Exception {
+        String token = "{\"startOffset\":0,\"endOffset\":1,\"text\":\"t\",\"analyses\":" + json.replace('\'', '"') + "}";
+        return objectMapper().readValue(token, Token.class).getAnalyses();
+    }
+
+    @Test
+    public void subtypesFromFields() throws Exception {
+        List<MorphoAnalysis> analyses = analyses("[{'partOfSpeech':'N'},"
+                + "{'readings':['a','b'],'partOfSpeech':'N'},"
+                + "{'morphemes':['m','n'],'x':1,'morphemeTags':['T','U'],'extendedProperties':{'y':2}},"
+                + "{'lemma':'l','prefixLength':1,'stemLength':2,'root':'r','definiteArticle':true,"
+                + "'prefixes':['p'],'prefixTags':['PT'],'stems':['s'],'stemTags':['ST']},"
+                + "{'lemma':'x'}]");
+        assertEquals(ImmutableList.of(
+                new MorphoAnalysis.Builder().partOfSpeech("N").build(),
+                new HanMorphoAnalysis.Builder().partOfSpeech("N").addReading("a").addReading("b").build(),
+                new KoreanMorphoAnalysis.Builder().addMorpheme("m", "T").addMorpheme("n", "U")
+                        .extendedProperty("x", 1).extendedProperty("y", 2).build(),
+                new ArabicMorphoAnalysis.Builder().lemma("l").lengths(1, 2).root("r").definiteArticle(true)
+                        .addPrefix("p", "PT").addStem("s", "ST").build(),
+                new MorphoAnalysis.Builder().lemma("x").build()), analyses);
+        // the subtype of one analysis does not carry over to the next.
+        assertEquals(MorphoAnalysis.class, analyses.get(4).getClass());
+    }
+
+    @Test
+    public void fieldsOfOtherSubtypes() throws Exception {
+        List<MorphoAnalysis> analyses = analyses("[{'partOfSpeech':'N','morphemeTags':['T']},{'readings':['a'],'root':'r'}]");
+        assertEquals(MorphoAnalysis.class, analyses.get(0).getClass());
+        assertEquals(ImmutableList.of("T"), analyses.get(0).getExtendedProperties().get("morphemeTags"));
+        assertEquals(HanMorphoAnalysis.class, analyses.get(1).getClass());
+        assertEquals("r", analyses.get(1).getExtendedProperties().get("root"));
+    }
 }
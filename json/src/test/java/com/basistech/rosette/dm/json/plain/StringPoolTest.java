@@ -0,0 +1,130 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.json.plain;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.MorphoAnalysis;
+import com.basistech.rosette.dm.Token;
+import com.basistech.rosette.dm.jackson.StringPool;
+import com.basistech.rosette.dm.jackson.array.AnnotatedDataModelArrayModule;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+public class StringPoolTest extends AdmAssert {
+
+    private static AnnotatedText text() {
+        StringBuilder data = new StringBuilder();
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+        ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        for (int x = 0; x < 10; x++) {
+            int start = data.length();
+            data.append("owl ");
+            tokens.add(new Token.Builder(start, start + 3, "owl").source("unit")
+                    .addAnalysis(new MorphoAnalysis.Builder().partOfSpeech("NOUN").lemma("owl").build()).build());
+            dependencies.add(new Dependency.Builder("nsubj", x, x + 1).build());
+            entities.add(new Entity.Builder().type("ANIMAL")
+                    .mention(new Mention.Builder(start, start + 3).source("gazetteer").subsource("birds").build()).build());
+        }
+        return new AnnotatedText.Builder().data(data.toString()).tokens(tokens.build())
+                .dependencies(dependencies.build()).entities(entities.build()).build();
+    }
+
+    private void checkShared(ObjectMapper mapper) throws Exception {
+        AnnotatedText read = mapper.readValue(mapper.writeValueAsBytes(text()), AnnotatedText.class);
+        assertEquals(text().getTokens(), read.getTokens());
+        Token first = read.getTokens().get(0);
+        Dependency firstDependency = read.getDependencies().get(0);
+        Mention firstMention = read.getEntities().get(0).getMentions().get(0);
+        for (int x = 1; x < 10; x++) {
+            Token token = read.getTokens().get(x);
+            assertSame(first.getSource(), token.getSource());
+            assertSame(first.getAnalyses().get(0).getPartOfSpeech(), token.getAnalyses().get(0).getPartOfSpeech());
+            assertSame(firstDependency.getRelationship(), read.getDependencies().get(x).getRelationship());
+            assertSame(read.getEntities().get(0).getType(), read.getEntities().get(x).getType());
+            Mention mention = read.getEntities().get(x).getMentions().get(0);
+            assertSame(firstMention.getSource(), mention.getSource());
+            assertSame(firstMention.getSubsource(), mention.getSubsource());
+        }
+    }
+
+    @Test
+    public void sharedAcrossItems() throws Exception {
+        checkShared(objectMapper());
+    }
+
+    @Test
+    public void sharedAcrossItemsArray() throws Exception {
+        checkShared(AnnotatedDataModelArrayModule.setupObjectMapper(new ObjectMapper()));
+    }
+
+    @Test
+    public void sharedAcrossDocuments() throws Exception {
+        ObjectMapper mapper = objectMapper();
+        byte[] json = mapper.writeValueAsBytes(text());
+        AnnotatedText one = mapper.readValue(json, AnnotatedText.class);
+        AnnotatedText two = mapper.readValue(json, AnnotatedText.class);
+        assertSame(one.getEntities().get(0).getType(), two.getEntities().get(0).getType());
+    }
+
+    @Test
+    public void pool() {
+        StringPool pool = new StringPool(100);
+        String noun = pool.intern(new String("NOUN"));
+        assertSame(noun, pool.intern(new String("NOUN")));
+        assertNull(pool.intern(null));
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0.5, pool.getHitRate(), 0.0);
+        String longer = Strings.repeat("x", StringPool.MAX_LENGTH + 1);
+        assertSame(longer, pool.intern(longer));
+        assertEquals(2, pool.getHits() + pool.getMisses());
+    }
+
+    @Test
+    public void local() {
+        StringPool shared = new StringPool(16);
+        StringPool.Local one = shared.newLocal();
+        StringPool.Local two = shared.newLocal();
+        String verb = one.intern("xVERBx".toCharArray(), 1, 4);
+        assertEquals("VERB", verb);
+        assertSame(verb, one.intern(new String("VERB")));
+        assertSame(verb, two.intern("VERB".toCharArray(), 0, 4));
+        assertEquals(1, one.getHits());
+        assertEquals(1, one.getMisses());
+        assertEquals(0, two.getHits());
+        assertEquals(1, shared.getHits());
+        assertEquals(1, shared.getMisses());
+    }
+
+    @Test
+    public void bounded() {
+        StringPool shared = new StringPool(16);
+        StringPool.Local local = shared.newLocal();
+        for (int x = 0; x < 10000; x++) {
+            assertEquals(Integer.toString(x), local.intern(Integer.toString(x)));
+        }
+        assertEquals(10000, local.getMisses());
+        // the first strings stay in the local pool; the rest go to the shared pool.
+        assertSame(local.intern("0"), local.intern("0"));
+        assertEquals(2, local.getHits());
+    }
+}
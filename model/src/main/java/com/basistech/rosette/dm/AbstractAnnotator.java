@@ -16,13 +16,28 @@
 
 package com.basistech.rosette.dm;
 
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
 /**
  * This abstract class provides the canonical mapping from
- * annotating with string input to annotating with {@link AnnotatedText} input.
+ * annotating with string input to annotating with {@link AnnotatedText} input,
+ * and annotates batches one text at a time. Subclasses that can do better with a batch
+ * override {@link #annotateAll(List)}.
  */
-public abstract class AbstractAnnotator implements Annotator {
+public abstract class AbstractAnnotator implements BatchAnnotator {
     @Override
     public AnnotatedText annotate(CharSequence input) {
         return annotate(new AnnotatedText.Builder().data(input).build());
     }
+
+    @Override
+    public List<AnnotatedText> annotateAll(List<AnnotatedText> inputs) {
+        List<AnnotatedText> results = Lists.newArrayListWithCapacity(inputs.size());
+        for (AnnotatedText input : inputs) {
+            results.add(annotate(input));
+        }
+        return results;
+    }
 }
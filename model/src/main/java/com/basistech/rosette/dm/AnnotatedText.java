@@ -20,6 +20,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The root of the data model. An {@code AnnotatedText} is blob of text and its attributes.
@@ -57,10 +59,13 @@ public class AnnotatedText implements Serializable {
      */
     private final Map<String, BaseAttribute> attributes;
     private final Map<String, List<String>> documentMetadata;
-    private transient boolean compatMentionsProcessed;
-    private transient ListAttribute<EntityMention> compatMentions;
-    private transient boolean compatResolvedEntitiesProcessed;
-    private transient ListAttribute<ResolvedEntity> compatResolvedEntities;
+    /* The compatibility lists are computed at most once, and published through these; null until computed. */
+    private transient volatile CompatList<EntityMention> compatMentions;
+    private transient volatile CompatList<ResolvedEntity> compatResolvedEntities;
+    /* Guards computing the compatibility lists; private, so that callers locking the text cannot interfere. */
+    private final transient Object lock = new Object();
+    /* Built on first use; concurrent callers may each build one, but they are equivalent and immutable. */
+    private transient volatile DependencyGraph dependencyGraph;
 
     AnnotatedText(CharSequence data,
                   Map<String, BaseAttribute> attributes,
@@ -72,8 +77,15 @@ public class AnnotatedText implements Serializable {
                    */
                   String version) {
         this.data = data;
-        // allow incoming json that simply lacks attributes or documentMetadata.
-        this.attributes = absorbAttributes(attributes);
+        if (attributes instanceof DeferredAttributes
+                && !attributes.containsKey(AttributeKey.ENTITY_MENTION.key())
+                && !attributes.containsKey(AttributeKey.RESOLVED_ENTITY.key())) {
+            // nothing to convert, so leave the attributes to be decoded as needed.
+            this.attributes = attributes;
+        } else {
+            // allow incoming json that simply lacks attributes or documentMetadata.
+            this.attributes = absorbAttributes(attributes);
+        }
         if (documentMetadata != null) {
             this.documentMetadata = ImmutableMap.copyOf(documentMetadata);
         } else {
@@ -81,6 +93,11 @@ public class AnnotatedText implements Serializable {
         }
     }
 
+    /* The lock is transient; build the text again so that a deserialized text has one. */
+    private Object readResolve() {
+        return new AnnotatedText(data, attributes, documentMetadata, null);
+    }
+
     /*
      * This method is called from the constructor. It can encounter 'old' attributes
      * if there is data coming from old json.
@@ -115,8 +132,7 @@ public class AnnotatedText implements Serializable {
         if (oldResolved != null && oldResolved.size() == 0) {
             // In this one special class we need to end up with an empty list.
             // The code otherwise ends up with null.
-            compatResolvedEntities = new ListAttribute.Builder<ResolvedEntity>(ResolvedEntity.class).build();
-            compatResolvedEntitiesProcessed = true;
+            compatResolvedEntities = new CompatList<>(new ListAttribute.Builder<ResolvedEntity>(ResolvedEntity.class).build());
         }
         return builder.build();
     }
@@ -228,38 +244,57 @@ public class AnnotatedText implements Serializable {
      * item is {@link Mention}.
      *
      */
-    @SuppressWarnings("unchecked")
     @Deprecated
     public ListAttribute<EntityMention> getEntityMentions() {
+        CompatList<EntityMention> compat = compatMentions;
+        if (compat == null) {
+            synchronized (lock) {
+                compat = compatMentions;
+                if (compat == null) {
+                    compat = new CompatList<>(buildEntityMentions());
+                    compatMentions = compat;
+                }
+            }
+        }
+        return compat.list;
+    }
 
-        if (!compatMentionsProcessed) {
-            compatMentionsProcessed = true;
-            List<EntityMention> entityMentionList = Lists.newArrayList();
-            ListAttribute<Entity> entities = getEntities();
+    private ListAttribute<EntityMention> buildEntityMentions() {
+        List<EntityMention> entityMentionList = Lists.newArrayList();
+        ListAttribute<Entity> entities = getEntities();
 
-            if (entities != null) {
-                downconvertEntities(entityMentionList, entities);
-            } else {
-                return null; // null entities = null compat.
-            }
+        if (entities != null) {
+            downconvertEntities(entityMentionList, entities);
+        } else {
+            return null; // null entities = null compat.
+        }
 
-            ListAttribute.Builder<EntityMention> cmListBuilder = new ListAttribute.Builder<>(EntityMention.class);
+        ListAttribute.Builder<EntityMention> cmListBuilder = new ListAttribute.Builder<>(EntityMention.class);
 
-            for (EntityMention entityMention : entityMentionList) {
-                cmListBuilder.add(entityMention);
-            }
+        for (EntityMention entityMention : entityMentionList) {
+            cmListBuilder.add(entityMention);
+        }
 
-            if (entities.getExtendedProperties() != null) {
-                for (Map.Entry<String, Object> me : entities.getExtendedProperties().entrySet()) {
-                    String key = me.getKey();
-                    if (key.startsWith("mention.")) {
-                        cmListBuilder.extendedProperty(key.substring(8), me.getValue());
-                    }
+        if (entities.getExtendedProperties() != null) {
+            for (Map.Entry<String, Object> me : entities.getExtendedProperties().entrySet()) {
+                String key = me.getKey();
+                if (key.startsWith("mention.")) {
+                    cmListBuilder.extendedProperty(key.substring(8), me.getValue());
                 }
             }
-            compatMentions = cmListBuilder.build();
         }
-        return compatMentions;
+        return cmListBuilder.build();
+    }
+
+    /**
+     * A compatibility list, once computed. The list may be null.
+     */
+    private static final class CompatList<T extends BaseAttribute> {
+        final ListAttribute<T> list;
+
+        CompatList(ListAttribute<T> list) {
+            this.list = list;
+        }
     }
 
     // Class uses to flatten mentions on their way to EntityMentions.
@@ -382,66 +417,76 @@ public class AnnotatedText implements Serializable {
      * @deprecated this constructs a list of the old objects for compatibility, the supported item
      * is {@link Entity}.
      */
-    @SuppressWarnings("unchecked")
     @Deprecated
     public ListAttribute<ResolvedEntity> getResolvedEntities() {
-        if (!compatResolvedEntitiesProcessed) {
-            compatResolvedEntitiesProcessed = true;
-            ListAttribute.Builder<ResolvedEntity> reListBuilder = new ListAttribute.Builder<>(ResolvedEntity.class);
-            ListAttribute<Entity> entities = getEntities();
-            if (entities == null) {
-                return null;
+        CompatList<ResolvedEntity> compat = compatResolvedEntities;
+        if (compat == null) {
+            synchronized (lock) {
+                compat = compatResolvedEntities;
+                if (compat == null) {
+                    compat = new CompatList<>(buildResolvedEntities());
+                    compatResolvedEntities = compat;
+                }
             }
+        }
+        return compat.list;
+    }
 
-            if (entities.getExtendedProperties() != null) {
-                for (Map.Entry<String, Object> me : entities.getExtendedProperties().entrySet()) {
-                    String key = me.getKey();
-                    if (!key.startsWith("mention.")) {
-                        reListBuilder.extendedProperty(key, me.getValue());
-                    }
+    private ListAttribute<ResolvedEntity> buildResolvedEntities() {
+        ListAttribute.Builder<ResolvedEntity> reListBuilder = new ListAttribute.Builder<>(ResolvedEntity.class);
+        ListAttribute<Entity> entities = getEntities();
+        if (entities == null) {
+            return null;
+        }
+
+        if (entities.getExtendedProperties() != null) {
+            for (Map.Entry<String, Object> me : entities.getExtendedProperties().entrySet()) {
+                String key = me.getKey();
+                if (!key.startsWith("mention.")) {
+                    reListBuilder.extendedProperty(key, me.getValue());
                 }
             }
+        }
 
-            for (Entity entity : entities) {
-                if (entity.getHeadMentionIndex() == null) {
-                    // ignore entities without head mentions.
-                    continue;
-                }
-                int headStart = 0;
-                int headEnd = 0;
-                if (entity.getHeadMentionIndex() != null) {
-                    Mention head = entity.getMentions().get(entity.getHeadMentionIndex());
-                    headStart = head.getStartOffset();
-                    headEnd = head.getEndOffset();
-                }
+        for (Entity entity : entities) {
+            if (entity.getHeadMentionIndex() == null) {
+                // ignore entities without head mentions.
+                continue;
+            }
+            int headStart = 0;
+            int headEnd = 0;
+            if (entity.getHeadMentionIndex() != null) {
+                Mention head = entity.getMentions().get(entity.getHeadMentionIndex());
+                headStart = head.getStartOffset();
+                headEnd = head.getEndOffset();
+            }
 
-                ResolvedEntity.Builder reBuilder = new ResolvedEntity.Builder(headStart, headEnd, entity.getEntityId());
-                if (entity.getConfidence() != null) {
-                    reBuilder.confidence(entity.getConfidence());
-                }
-                if (entity.getSentiment() != null && !entity.getSentiment().isEmpty()) {
-                    reBuilder.sentiment(entity.getSentiment().get(0));
-                }
+            ResolvedEntity.Builder reBuilder = new ResolvedEntity.Builder(headStart, headEnd, entity.getEntityId());
+            if (entity.getConfidence() != null) {
+                reBuilder.confidence(entity.getConfidence());
+            }
+            if (entity.getSentiment() != null && !entity.getSentiment().isEmpty()) {
+                reBuilder.sentiment(entity.getSentiment().get(0));
+            }
 
-                if (entity.getExtendedProperties() != null) {
-                    for (Map.Entry<String, Object> me : entity.getExtendedProperties().entrySet()) {
-                        if (me.getKey().equals("oldCoreferenceChainId")) {
-                            reBuilder.coreferenceChainId((Integer)me.getValue());
-                        } else {
-                            reBuilder.extendedProperty(me.getKey(), me.getValue());
-                        }
+            if (entity.getExtendedProperties() != null) {
+                for (Map.Entry<String, Object> me : entity.getExtendedProperties().entrySet()) {
+                    if (me.getKey().equals("oldCoreferenceChainId")) {
+                        reBuilder.coreferenceChainId((Integer)me.getValue());
+                    } else {
+                        reBuilder.extendedProperty(me.getKey(), me.getValue());
                     }
                 }
-
-                reListBuilder.add(reBuilder.build());
-            }
-            compatResolvedEntities = reListBuilder.build();
-            if (compatResolvedEntities.size() == 0) { // If no resolved entities survived, don't make it look as if someone specified them.
-                /* But note special case in absorbAttributes when someone used the old API to create an empty list. */
-                compatResolvedEntities = null;
             }
+
+            reListBuilder.add(reBuilder.build());
+        }
+        ListAttribute<ResolvedEntity> resolvedEntities = reListBuilder.build();
+        if (resolvedEntities.size() == 0) { // If no resolved entities survived, don't make it look as if someone specified them.
+            /* But note special case in absorbAttributes when someone used the old API to create an empty list. */
+            return null;
         }
-        return compatResolvedEntities;
+        return resolvedEntities;
     }
 
     /**
@@ -504,6 +549,27 @@ public class AnnotatedText implements Serializable {
         return (ListAttribute<Dependency>) attributes.get(AttributeKey.DEPENDENCY.key());
     }
 
+    /**
+     * Returns an index of the dependencies for traversals: the dependents and governors of
+     * each token, subtree extents, and paths between tokens. It is built from {@link #getDependencies()}
+     * the first time it is requested.
+     *
+     * @return the dependency graph, or {@code null} if there are no dependencies.
+     */
+    public DependencyGraph getDependencyGraph() {
+        DependencyGraph graph = dependencyGraph;
+        if (graph == null) {
+            ListAttribute<Dependency> dependencies = getDependencies();
+            if (dependencies == null) {
+                return null;
+            }
+            ListAttribute<Token> tokens = getTokens();
+            graph = new DependencyGraph(dependencies, tokens == null ? 0 : tokens.size());
+            dependencyGraph = graph;
+        }
+        return graph;
+    }
+
     /*
      * Returns the list of topic results.  Topics differ from categories in
      * that there is usually a single best category (e.g. SPORTS) whereas
@@ -551,6 +617,9 @@ public class AnnotatedText implements Serializable {
         // AttributeKey.key().
         private final Map<String, BaseAttribute> attributes = Maps.newHashMap();
         private final Map<String, List<String>> documentMetadata = Maps.newHashMap();
+        private DeferredAttributes deferredAttributes;
+        /* keys of deferred attributes that have been removed. */
+        private final Set<String> removedKeys = Sets.newHashSet();
 
         /**
          * Constructs a builder.  The initial data is the empty string.
@@ -566,7 +635,11 @@ public class AnnotatedText implements Serializable {
          */
         public Builder(AnnotatedText startingPoint) {
             this.data = startingPoint.data;
-            this.attributes.putAll(startingPoint.attributes);
+            if (startingPoint.attributes instanceof DeferredAttributes) {
+                this.deferredAttributes = (DeferredAttributes) startingPoint.attributes;
+            } else {
+                this.attributes.putAll(startingPoint.attributes);
+            }
             this.documentMetadata.putAll(startingPoint.documentMetadata);
         }
 
@@ -611,7 +684,7 @@ public class AnnotatedText implements Serializable {
         @Deprecated
         public Builder entityMentions(ListAttribute<EntityMention> entityMentions) {
             // a new set of old objects replaces any prior set of new objects.
-            attributes.remove(AttributeKey.ENTITY.key());
+            removeAttribute(AttributeKey.ENTITY.key());
             attributes.put(AttributeKey.ENTITY_MENTION.key(), entityMentions);
             return this;
         }
@@ -634,8 +707,8 @@ public class AnnotatedText implements Serializable {
          */
         public Builder entities(ListAttribute<Entity> entities) {
             // specifying entities replaces the old entity structures.
-            attributes.remove(AttributeKey.ENTITY_MENTION.key());
-            attributes.remove(AttributeKey.RESOLVED_ENTITY.key());
+            removeAttribute(AttributeKey.ENTITY_MENTION.key());
+            removeAttribute(AttributeKey.RESOLVED_ENTITY.key());
             attributes.put(AttributeKey.ENTITY.key(), entities);
             return this;
         }
@@ -651,15 +724,16 @@ public class AnnotatedText implements Serializable {
         @SuppressWarnings("unchecked")
         public Builder resolvedEntities(ListAttribute<ResolvedEntity> resolvedEntities) {
             if (resolvedEntities != null && !resolvedEntities.isEmpty()) {
-                if (attributes.containsKey(AttributeKey.ENTITY.key())) {
+                ListAttribute<Entity> entities = (ListAttribute<Entity>) attribute(AttributeKey.ENTITY.key());
+                if (entities != null) {
                     // we need to recreate the old mentions to go with 'old' resolved entities.
                     List<EntityMention> oldList = Lists.newArrayList();
-                    downconvertEntities(oldList, (ListAttribute<Entity>) attributes.get(AttributeKey.ENTITY.key()));
+                    downconvertEntities(oldList, entities);
                     ListAttribute.Builder<EntityMention> oldBuilder = new ListAttribute.Builder<>(EntityMention.class);
                     for (EntityMention em : oldList) {
                         oldBuilder.add(em);
                     }
-                    attributes.remove(AttributeKey.ENTITY.key());
+                    removeAttribute(AttributeKey.ENTITY.key());
                     attributes.put(AttributeKey.ENTITY_MENTION.key(), oldBuilder.build());
                 }
                 attributes.put(AttributeKey.RESOLVED_ENTITY.key(), resolvedEntities);
@@ -805,7 +879,7 @@ public class AnnotatedText implements Serializable {
          * @param attribute the attribute. Replaces any previous value for this key.
          * @return this
          */
-        Builder attribute(String key, BaseAttribute attribute) {
+        public Builder attribute(String key, BaseAttribute attribute) {
             attributes.put(key, attribute);
             return this;
         }
@@ -817,20 +891,59 @@ public class AnnotatedText implements Serializable {
          * @param attribute the attribute. Replaces any previous value for this key.
          * @return this
          */
-        Builder attribute(AttributeKey key, BaseAttribute attribute) {
+        public Builder attribute(AttributeKey key, BaseAttribute attribute) {
             attributes.put(key.key(), attribute);
             return this;
         }
 
         /**
-         * Returns the current attributes.
+         * Specifies attributes that are decoded when they are first accessed.
+         * Attributes added to the builder in other ways replace deferred attributes with the same keys.
+         *
+         * @param deferredAttributes the attributes
+         * @return this
+         */
+        public Builder deferredAttributes(DeferredAttributes deferredAttributes) {
+            this.deferredAttributes = deferredAttributes;
+            return this;
+        }
+
+        /**
+         * Returns the current attributes, which may be modified. Deferred attributes are decoded and
+         * added to the map first, so that it is complete; to keep them deferred, avoid this method.
          *
          * @return the current attributes
+         * @see #deferredAttributes(DeferredAttributes)
          */
         public Map<String, BaseAttribute> attributes() {
+            if (deferredAttributes != null) {
+                for (Map.Entry<String, BaseAttribute> me : deferredAttributes.without(removedKeys).entrySet()) {
+                    if (!attributes.containsKey(me.getKey())) {
+                        attributes.put(me.getKey(), me.getValue());
+                    }
+                }
+                deferredAttributes = null;
+            }
             return attributes;
         }
 
+        /* Returns the attribute for a key, decoding it if it is deferred. */
+        private BaseAttribute attribute(String key) {
+            if (attributes.containsKey(key)) {
+                return attributes.get(key);
+            }
+            if (deferredAttributes != null && !removedKeys.contains(key)) {
+                return deferredAttributes.get(key);
+            }
+            return null;
+        }
+
+        /* Removes the attribute for a key, including one that is deferred. */
+        private void removeAttribute(String key) {
+            attributes.remove(key);
+            removedKeys.add(key);
+        }
+
         /**
          * Adds an entry to the document metadata. Replaces any previous value for this key.
          *
@@ -884,6 +997,9 @@ public class AnnotatedText implements Serializable {
          * @return the new object
          */
         public AnnotatedText build() {
+            if (deferredAttributes != null) {
+                return new AnnotatedText(data, deferredAttributes.without(removedKeys).with(attributes), documentMetadata, null);
+            }
             return new AnnotatedText(data, attributes, documentMetadata, null);
         }
     }
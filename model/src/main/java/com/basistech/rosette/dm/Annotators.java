@@ -0,0 +1,49 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Static methods for working with {@link Annotator}s.
+ * @adm.ignore
+ */
+public final class Annotators {
+    private Annotators() {
+        //
+    }
+
+    /**
+     * Annotates a batch of texts. A {@link BatchAnnotator} receives the whole batch;
+     * any other annotator is applied to each text in turn.
+     *
+     * @param annotator the annotator
+     * @param inputs data to process
+     * @return annotated data, one result for each input, in the same order
+     */
+    public static List<AnnotatedText> annotateAll(Annotator annotator, List<AnnotatedText> inputs) {
+        if (annotator instanceof BatchAnnotator) {
+            return ((BatchAnnotator) annotator).annotateAll(inputs);
+        }
+        List<AnnotatedText> results = Lists.newArrayListWithCapacity(inputs.size());
+        for (AnnotatedText input : inputs) {
+            results.add(annotator.annotate(input));
+        }
+        return results;
+    }
+}
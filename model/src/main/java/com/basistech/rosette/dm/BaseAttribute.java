@@ -39,18 +39,14 @@ public abstract class BaseAttribute implements Serializable {
     protected Map<String, Object> extendedProperties;
 
     protected BaseAttribute() {
-        this.extendedProperties = ImmutableMap.of();
+        this.extendedProperties = ExtendedProperties.of();
     }
 
     protected BaseAttribute(Map<String, Object> extendedProperties) {
         if (extendedProperties != null) {
-            if (extendedProperties instanceof ImmutableMap) {
-                this.extendedProperties = extendedProperties;
-            } else {
-                this.extendedProperties = ImmutableMap.copyOf(extendedProperties);
-            }
+            this.extendedProperties = ExtendedProperties.copyOf(extendedProperties);
         } else {
-            this.extendedProperties = ImmutableMap.of();
+            this.extendedProperties = ExtendedProperties.of();
         }
     }
 
@@ -72,12 +68,8 @@ public abstract class BaseAttribute implements Serializable {
      */
     protected void setExtendedProperty(String name, Object value) {
         /* This is only called in deserialization. So we do something
-        * to work around the read-only collection. */
-        if (extendedProperties.size() > 0) {
-            extendedProperties = ImmutableMap.<String, Object>builder().putAll(extendedProperties).put(name, value).build();
-        } else {
-            extendedProperties = ImmutableMap.of(name, value);
-        }
+        * to work around the read-only collection; adding to the map does not copy it. */
+        extendedProperties = ExtendedProperties.copyOf(extendedProperties).plus(name, value);
     }
 
     @Override
@@ -156,17 +148,17 @@ public abstract class BaseAttribute implements Serializable {
      * Base class for builders for the subclasses of {@link com.basistech.rosette.dm.BaseAttribute}.
      */
     public abstract static class Builder<T extends BaseAttribute, B extends Builder<T, B>> {
-        private ImmutableMap.Builder<String, Object> extendedPropertiesBuilder;
-        private ImmutableMap<String, Object> extendedPropertiesToCopy;
+        private ExtendedProperties.Builder extendedPropertiesBuilder;
+        private ExtendedProperties extendedPropertiesToCopy;
 
         /**
          * Constructs a builder with no data.
          */
         protected Builder() {
-            /* Usually we don't have any. So start with an empty map, which the constructor above will 'copy'
-             * cheaply due to optimization inside ImmutableMap.
+            /* Usually we don't have any. So start with the empty map, which the constructor above will 'copy'
+             * for free.
              */
-            this.extendedPropertiesToCopy = ImmutableMap.of();
+            this.extendedPropertiesToCopy = ExtendedProperties.of();
         }
 
         /**
@@ -176,7 +168,7 @@ public abstract class BaseAttribute implements Serializable {
          */
         protected Builder(BaseAttribute toCopy) {
             /* Just treat the copy as an immutable item until the caller asks us to change it. */
-            this.extendedPropertiesToCopy = (ImmutableMap<String, Object>) toCopy.extendedProperties;
+            this.extendedPropertiesToCopy = ExtendedProperties.copyOf(toCopy.extendedProperties);
         }
 
         protected abstract B getThis();
@@ -206,7 +198,7 @@ public abstract class BaseAttribute implements Serializable {
         public B extendedProperty(String key, Object value) {
             if (extendedPropertiesBuilder == null) {
                 /* if we don't have a builder yet, forget 'toCopy' in favor of a builder. */
-                extendedPropertiesBuilder = ImmutableMap.builder();
+                extendedPropertiesBuilder = new ExtendedProperties.Builder();
                 if (extendedPropertiesToCopy != null) {
                     extendedPropertiesBuilder.putAll(extendedPropertiesToCopy);
                     extendedPropertiesToCopy = null;
@@ -223,11 +215,7 @@ public abstract class BaseAttribute implements Serializable {
          */
         public B extendedProperties(Map<String, Object> properties) {
             /* Turn this into the version we copy. */
-            if (properties instanceof ImmutableMap) {
-                this.extendedPropertiesToCopy = (ImmutableMap<String, Object>) properties;
-            } else {
-                this.extendedPropertiesToCopy = ImmutableMap.copyOf(properties);
-            }
+            this.extendedPropertiesToCopy = ExtendedProperties.copyOf(properties);
             /* No builder. */
             this.extendedPropertiesBuilder = null;
             return getThis();
@@ -0,0 +1,35 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import java.util.List;
+
+/**
+ * An {@link Annotator} that can annotate a batch of texts at once. Annotators that
+ * amortize work across texts, such as loading models or running inference on
+ * several inputs together, implement this to receive whole batches.
+ * Use {@link Annotators#annotateAll(Annotator, List)} to pass a batch to any annotator.
+ * @adm.ignore
+ */
+public interface BatchAnnotator extends Annotator {
+    /**
+     * Annotates a batch of existing text objects with additional attributes.
+     *
+     * @param inputs data to process
+     * @return annotated data, one result for each input, in the same order
+     */
+    List<AnnotatedText> annotateAll(List<AnnotatedText> inputs);
+}
@@ -0,0 +1,327 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map of attributes whose values are decoded on first access.
+ * A deserializer can hand the undecoded form of each attribute to this map, and attach it to an
+ * {@link AnnotatedText} with {@link AnnotatedText.Builder#deferredAttributes(DeferredAttributes)}.
+ * Then only the attributes that are used are ever built. Each value is decoded at most once,
+ * and is safe to access from multiple threads.
+ * <p>
+ * Operations that visit all of the values, such as iteration, {@code equals} or Java serialization,
+ * decode all of them.
+ */
+public final class DeferredAttributes extends AbstractMap<String, BaseAttribute> implements Serializable {
+    private static final long serialVersionUID = 222L;
+
+    private final String[] keys;
+    private final Slot[] slots;
+
+    private DeferredAttributes(List<String> keys, List<Slot> slots) {
+        this.keys = keys.toArray(new String[keys.size()]);
+        this.slots = slots.toArray(new Slot[slots.size()]);
+    }
+
+    /**
+     * Decodes the value of one attribute.
+     */
+    public interface Decoder {
+        /**
+         * Decodes the value. This is called at most once.
+         *
+         * @return the attribute
+         */
+        BaseAttribute decode();
+    }
+
+    /**
+     * Holds one attribute. Slots are shared by the maps made with {@link #with(Map)},
+     * so that an attribute is decoded once for all of them.
+     */
+    private static final class Slot implements Serializable {
+        private static final long serialVersionUID = 222L;
+        /* null once decoded. */
+        private transient Decoder decoder;
+        private volatile BaseAttribute value;
+
+        Slot(Decoder decoder) {
+            this.decoder = decoder;
+        }
+
+        Slot(BaseAttribute value) {
+            this.value = value;
+        }
+
+        boolean isDecoded() {
+            return decoder == null;
+        }
+
+        BaseAttribute get() {
+            BaseAttribute result = value;
+            if (result != null) {
+                return result;
+            }
+            // each slot has its own lock, so different attributes decode concurrently.
+            synchronized (this) {
+                if (decoder != null) {
+                    value = decoder.decode();
+                    decoder = null;
+                }
+                return value;
+            }
+        }
+    }
+
+    private int indexOf(Object key) {
+        for (int x = 0; x < keys.length; x++) {
+            if (keys[x].equals(key)) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    private BaseAttribute value(int index) {
+        return slots[index].get();
+    }
+
+    /**
+     * Returns whether an attribute has been decoded yet.
+     *
+     * @param key the key
+     * @return true if there is no attribute for this key, or if it has been decoded
+     */
+    public boolean isDecoded(String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return true;
+        }
+        synchronized (slots[index]) {
+            return slots[index].isDecoded();
+        }
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public BaseAttribute get(Object key) {
+        int index = indexOf(key);
+        return index < 0 ? null : value(index);
+    }
+
+    @Override
+    public Set<Entry<String, BaseAttribute>> entrySet() {
+        return new AbstractSet<Entry<String, BaseAttribute>>() {
+            @Override
+            public Iterator<Entry<String, BaseAttribute>> iterator() {
+                return new Iterator<Entry<String, BaseAttribute>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, BaseAttribute> next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return new DeferredEntry(next++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    /**
+     * Returns a map with the same deferred attributes, except for those with the given keys.
+     *
+     * @param removedKeys the keys of the attributes to leave out
+     * @return the new map
+     */
+    public DeferredAttributes without(Collection<String> removedKeys) {
+        if (removedKeys.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder();
+        for (int x = 0; x < keys.length; x++) {
+            if (!removedKeys.contains(keys[x])) {
+                builder.keys.add(keys[x]);
+                builder.slots.add(slots[x]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns a map with the same deferred attributes, except that the given attributes
+     * are added or replace those with the same keys.
+     *
+     * @param attributes the attributes to add
+     * @return the new map
+     */
+    public DeferredAttributes with(Map<String, BaseAttribute> attributes) {
+        if (attributes.isEmpty()) {
+            return this;
+        }
+        Builder builder = new Builder();
+        for (int x = 0; x < keys.length; x++) {
+            if (!attributes.containsKey(keys[x])) {
+                builder.keys.add(keys[x]);
+                builder.slots.add(slots[x]);
+            }
+        }
+        for (Map.Entry<String, BaseAttribute> me : attributes.entrySet()) {
+            builder.put(me.getKey(), me.getValue());
+        }
+        return builder.build();
+    }
+
+    /* Decoders are not serializable; replace ourselves with an ordinary map. */
+    private Object writeReplace() {
+        return ImmutableMap.copyOf(this);
+    }
+
+    /**
+     * An entry that decodes its value when asked for it.
+     */
+    private final class DeferredEntry implements Entry<String, BaseAttribute> {
+        private final int index;
+
+        DeferredEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return keys[index];
+        }
+
+        @Override
+        public BaseAttribute getValue() {
+            return value(index);
+        }
+
+        @Override
+        public BaseAttribute setValue(BaseAttribute value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> that = (Entry<?, ?>) o;
+            BaseAttribute value = getValue();
+            return getKey().equals(that.getKey()) && (value == null ? that.getValue() == null : value.equals(that.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            BaseAttribute value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    /**
+     * Builder for deferred attribute maps.
+     */
+    public static class Builder {
+        private final List<String> keys = Lists.newArrayList();
+        private final List<Slot> slots = Lists.newArrayList();
+
+        /**
+         * Adds an attribute to be decoded on first access. Replaces any previous attribute for this key.
+         *
+         * @param key the key
+         * @param decoder the decoder for the attribute
+         * @return this
+         */
+        public Builder put(String key, Decoder decoder) {
+            return putSlot(key, new Slot(decoder));
+        }
+
+        /**
+         * Adds an attribute that is already decoded. Replaces any previous attribute for this key.
+         *
+         * @param key the key
+         * @param attribute the attribute
+         * @return this
+         */
+        public Builder put(String key, BaseAttribute attribute) {
+            return putSlot(key, new Slot(attribute));
+        }
+
+        private Builder putSlot(String key, Slot slot) {
+            int index = keys.indexOf(key);
+            if (index >= 0) {
+                slots.set(index, slot);
+            } else {
+                keys.add(key);
+                slots.add(slot);
+            }
+            return this;
+        }
+
+        /**
+         * Constructs the map.
+         *
+         * @return the map
+         */
+        public DeferredAttributes build() {
+            return new DeferredAttributes(keys, slots);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An immutable adjacency index over the {@link Dependency} arcs of a text, in compressed sparse row form.
+ * For each token, the dependents and the governors are stored as a contiguous range of a single
+ * {@code int} array, so that the children or the heads of a token are found in time proportional
+ * to their number rather than by a scan of the whole list of dependencies.
+ * <p>
+ * Tokens are identified by their index in the token list. Arcs from the root (a governor index
+ * of {@code -1}) are recorded in {@link #roots()}; the root is not a node of the graph. Arcs are
+ * kept in the order of the list of dependencies, and can be mapped back to it with
+ * {@link #childArcs(int)} and {@link #parentArcs(int)}.
+ * <p>
+ * Obtain the graph of a text with {@link AnnotatedText#getDependencyGraph()}. It is built on first use
+ * and cached on the text. Parsers produce trees, but the graph does not assume it: a token may have
+ * more than one governor, and cycles do not cause any of the traversals to loop.
+ */
+public final class DependencyGraph {
+    private final int tokenCount;
+    /* children of token t are childTargets[childOffsets[t], childOffsets[t + 1]). */
+    private final int[] childOffsets;
+    private final int[] childTargets;
+    /* positions of the corresponding arcs in the list of dependencies. */
+    private final int[] childArcs;
+    private final int[] parentOffsets;
+    private final int[] parentTargets;
+    private final int[] parentArcs;
+    private final int[] roots;
+
+    DependencyGraph(List<Dependency> dependencies, int tokenCount) {
+        int count = tokenCount;
+        int rootCount = 0;
+        for (Dependency dependency : dependencies) {
+            count = Math.max(count, dependency.getGovernorTokenIndex() + 1);
+            count = Math.max(count, dependency.getDependencyTokenIndex() + 1);
+        }
+        this.tokenCount = count;
+        childOffsets = new int[count + 1];
+        parentOffsets = new int[count + 1];
+        for (Dependency dependency : dependencies) {
+            int governor = dependency.getGovernorTokenIndex();
+            int dependent = dependency.getDependencyTokenIndex();
+            if (dependent < 0) {
+                continue;
+            }
+            if (governor < 0) {
+                rootCount++;
+            } else {
+                childOffsets[governor + 1]++;
+                parentOffsets[dependent + 1]++;
+            }
+        }
+        for (int t = 0; t < count; t++) {
+            childOffsets[t + 1] += childOffsets[t];
+            parentOffsets[t + 1] += parentOffsets[t];
+        }
+        int arcCount = childOffsets[count];
+        childTargets = new int[arcCount];
+        childArcs = new int[arcCount];
+        parentTargets = new int[arcCount];
+        parentArcs = new int[arcCount];
+        roots = new int[rootCount];
+        int[] childFill = Arrays.copyOf(childOffsets, count);
+        int[] parentFill = Arrays.copyOf(parentOffsets, count);
+        int rootFill = 0;
+        int position = 0;
+        for (Dependency dependency : dependencies) {
+            int governor = dependency.getGovernorTokenIndex();
+            int dependent = dependency.getDependencyTokenIndex();
+            if (dependent >= 0) {
+                if (governor < 0) {
+                    roots[rootFill++] = dependent;
+                } else {
+                    int c = childFill[governor]++;
+                    childTargets[c] = dependent;
+                    childArcs[c] = position;
+                    int p = parentFill[dependent]++;
+                    parentTargets[p] = governor;
+                    parentArcs[p] = position;
+                }
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Returns the number of tokens in the graph: the number of tokens in the text, or more
+     * if some dependency refers to a token beyond the end of the token list.
+     *
+     * @return the number of tokens
+     */
+    public int tokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the tokens that depend directly on the root.
+     *
+     * @return the token indices, in the order of the list of dependencies
+     */
+    public int[] roots() {
+        return roots.clone();
+    }
+
+    /**
+     * Returns the number of dependents of a token.
+     *
+     * @param token the token index
+     * @return the number of dependents
+     */
+    public int childCount(int token) {
+        int t = check(token);
+        return childOffsets[t + 1] - childOffsets[t];
+    }
+
+    /**
+     * Returns the dependents of a token.
+     *
+     * @param token the token index
+     * @return the token indices, in the order of the list of dependencies
+     */
+    public int[] children(int token) {
+        return Arrays.copyOfRange(childTargets, childOffsets[check(token)], childOffsets[token + 1]);
+    }
+
+    /**
+     * Returns the positions in the list of dependencies of the arcs from a token to its dependents,
+     * in the same order as {@link #children(int)}.
+     *
+     * @param token the token index
+     * @return the positions
+     */
+    public int[] childArcs(int token) {
+        return Arrays.copyOfRange(childArcs, childOffsets[check(token)], childOffsets[token + 1]);
+    }
+
+    /**
+     * Returns the governors of a token. A token that depends only on the root has none.
+     *
+     * @param token the token index
+     * @return the token indices, in the order of the list of dependencies
+     */
+    public int[] parents(int token) {
+        return Arrays.copyOfRange(parentTargets, parentOffsets[check(token)], parentOffsets[token + 1]);
+    }
+
+    /**
+     * Returns the positions in the list of dependencies of the arcs from the governors of a token to it,
+     * in the same order as {@link #parents(int)}.
+     *
+     * @param token the token index
+     * @return the positions
+     */
+    public int[] parentArcs(int token) {
+        return Arrays.copyOfRange(parentArcs, parentOffsets[check(token)], parentOffsets[token + 1]);
+    }
+
+    /**
+     * Returns the first governor of a token.
+     *
+     * @param token the token index
+     * @return the token index of the governor, or {@code -1} if the token depends on the root
+     * or has no governor.
+     */
+    public int parent(int token) {
+        int offset = parentOffsets[check(token)];
+        return offset == parentOffsets[token + 1] ? -1 : parentTargets[offset];
+    }
+
+    /**
+     * Returns the range of tokens spanned by a token and everything that depends on it, directly
+     * or indirectly. For a projective parse, this is exactly the tokens of the subtree.
+     *
+     * @param token the token index
+     * @return a two-element array of the first token index and one past the last token index
+     */
+    public int[] subtreeExtent(int token) {
+        int start = check(token);
+        int end = token + 1;
+        BitSet visited = new BitSet(tokenCount);
+        visited.set(token);
+        int[] stack = new int[16];
+        int depth = 0;
+        stack[depth++] = token;
+        while (depth > 0) {
+            int node = stack[--depth];
+            for (int c = childOffsets[node]; c < childOffsets[node + 1]; c++) {
+                int child = childTargets[c];
+                if (!visited.get(child)) {
+                    visited.set(child);
+                    start = Math.min(start, child);
+                    end = Math.max(end, child + 1);
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = child;
+                }
+            }
+        }
+        return new int[] {start, end};
+    }
+
+    /**
+     * Returns a shortest path between two tokens along dependency arcs, followed in either direction.
+     * The path does not pass through the root.
+     *
+     * @param from the token index at which the path starts
+     * @param to the token index at which the path ends
+     * @return the token indices along the path, starting with {@code from} and ending with {@code to};
+     * empty if the tokens are not connected.
+     */
+    public int[] path(int from, int to) {
+        check(from);
+        check(to);
+        if (from == to) {
+            return new int[] {from};
+        }
+        /* breadth-first from 'to', so that following the links from 'from' gives the path in order. */
+        int[] next = new int[tokenCount];
+        Arrays.fill(next, -1);
+        next[to] = to;
+        int[] queue = new int[tokenCount];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = to;
+        while (head < tail && next[from] < 0) {
+            int node = queue[head++];
+            tail = visit(node, childTargets, childOffsets, next, queue, tail);
+            tail = visit(node, parentTargets, parentOffsets, next, queue, tail);
+        }
+        if (next[from] < 0) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int t = from; t != to; t = next[t]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int t = from;
+        for (int x = 0; x < length; x++) {
+            path[x] = t;
+            t = next[t];
+        }
+        return path;
+    }
+
+    private static int visit(int node, int[] targets, int[] offsets, int[] next, int[] queue, int tail) {
+        int end = tail;
+        for (int x = offsets[node]; x < offsets[node + 1]; x++) {
+            int neighbor = targets[x];
+            if (next[neighbor] < 0) {
+                next[neighbor] = node;
+                queue[end++] = neighbor;
+            }
+        }
+        return end;
+    }
+
+    private int check(int token) {
+        if (token < 0 || token >= tokenCount) {
+            throw new IndexOutOfBoundsException("Token index " + token + " is not in [0, " + tokenCount + ")");
+        }
+        return token;
+    }
+}
@@ -16,11 +16,21 @@
 
 package com.basistech.rosette.dm;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * A vector of embeddings for some vector of items in an {@link AnnotatedText}.
@@ -28,23 +38,383 @@ import java.util.Objects;
  * such as tokens or entities. The collection of embeddings is represented as a map
  * from indices to the value vector. In the case of the embedding for the entire text,
  * the index value is 0.
+ * <p>
+ * The values are stored as a single dense matrix: one row of {@link #getDimension()} floats
+ * for each item, in order of item index. {@link #getRow(int)} and {@link #rowAt(int)} return
+ * views of a row without copying it; {@link #getEmbeddings()} remains available as a map,
+ * but copies each row it returns. {@link #cosine(int, FloatBuffer)}, {@link #nearest(int, int)} and the
+ * other similarity methods work on the rows in place. A collection read from serialized form may defer decoding
+ * its values until something reads them.
+ * <p>
+ * A collection may store its values at less than full {@link Precision}, to save space. It converts
+ * them back to floats as it reads them, so the only difference is in accuracy.
  */
 public class EmbeddingCollection implements Serializable {
     private static final long serialVersionUID = 222L;
+    private static final int[] NO_INDICES = new int[0];
+
+    /* the item indices of the rows, strictly ascending. */
+    private final int[] indices;
+    private final int dimension;
+    private final Precision precision;
+    /* the values; never handed out except as read-only views or copies. */
+    private volatile EmbeddingRows rows;
+    /* decodes the values on first use; null once they are available. */
+    private Decoder source;
+    /* the norms of the rows, computed on first use. */
+    private volatile float[] norms;
     private final Map<Integer, float[]> embeddings;
+    /* the values read from a stream written by a release before 2.2.3; only set during deserialization. */
+    private transient Map<Integer, float[]> legacyEmbeddings;
 
     protected EmbeddingCollection(Map<Integer, float[]> embeddings) {
-        this.embeddings = BaseAttribute.mapOrNull(embeddings);
+        this(packed(embeddings == null ? new TreeMap<Integer, float[]>() : new TreeMap<>(embeddings)));
+    }
+
+    /**
+     * Constructs a collection over existing values, without copying them.
+     * @param indices the item indices of the rows, in ascending order.
+     * @param dimension the number of values in each row.
+     * @param values the rows, one after the other, from the buffer's position.
+     *               The buffer may be direct. The caller must not modify it afterwards.
+     */
+    protected EmbeddingCollection(int[] indices, int dimension, FloatBuffer values) {
+        this(indices, dimension, Precision.FLOAT32);
+        this.rows = EmbeddingRows.floats(values, indices.length, dimension);
+    }
+
+    /**
+     * Constructs a collection whose values are obtained when they are first needed,
+     * for example by decoding them from serialized form.
+     * @param indices the item indices of the rows, in ascending order.
+     * @param dimension the number of values in each row.
+     * @param precision the precision of the encoded values.
+     * @param values decodes the values, as {@link #getEncodedValues()} returns them.
+     */
+    protected EmbeddingCollection(int[] indices, int dimension, Precision precision, Decoder values) {
+        this(indices, dimension, precision);
+        this.source = values;
+    }
+
+    private EmbeddingCollection(int[] indices, EmbeddingRows rows) {
+        this(indices, rows.dimension, rows.precision());
+        this.rows = rows;
+    }
+
+    /**
+     * How a collection stores its values. Each has an encoded form, in which the rows
+     * follow one another with no padding, and all numbers are little-endian.
+     */
+    public enum Precision {
+        /**
+         * 32-bit floats. This is the default, and the only precision that keeps values as given.
+         */
+        FLOAT32,
+
+        /**
+         * IEEE 754 half-precision floats, which keep about three significant digits.
+         * Values of magnitude beyond 65504 become infinite.
+         */
+        FLOAT16,
+
+        /**
+         * Signed 8-bit codes with a float scale and offset for each row: each value is
+         * {@code scale * code + offset}, with the range of each row spread over all 256 codes.
+         * A row is encoded as its scale, its offset and then its codes.
+         */
+        INT8
+    }
+
+    /**
+     * Decodes the values of a collection.
+     */
+    public interface Decoder {
+        /**
+         * Decodes the values. This is called at most once.
+         *
+         * @return the values in their encoded form, from the buffer's position
+         */
+        ByteBuffer decode();
+    }
+
+    private EmbeddingCollection(int[] indices, int dimension, Precision precision) {
+        if (dimension < 0) {
+            throw new IllegalArgumentException("Negative dimension " + dimension);
+        }
+        for (int x = 1; x < indices.length; x++) {
+            if (indices[x] <= indices[x - 1]) {
+                throw new IllegalArgumentException("Indices not in ascending order at " + indices[x]);
+            }
+        }
+        this.indices = indices;
+        this.dimension = dimension;
+        this.precision = precision;
+        this.embeddings = new RowMap();
+    }
+
+    private EmbeddingCollection(Packed packed) {
+        this(packed.indices, packed.dimension, FloatBuffer.wrap(packed.values));
+    }
+
+    private EmbeddingRows rows() {
+        EmbeddingRows result = rows;
+        if (result == null) {
+            synchronized (this) {
+                result = rows;
+                if (result == null) {
+                    result = EmbeddingRows.decode(precision, source.decode(), indices.length, dimension);
+                    rows = result;
+                    source = null;
+                }
+            }
+        }
+        return result;
     }
 
     /**
      * Return the embeddings.
-     * @return a map from item indices to values.
+     * The map is a read-only view of the collection that copies each row it returns;
+     * use {@link #getRow(int)} to read values in place.
+     * @return a map from item indices to values, in order of index.
      */
     public Map<Integer, float[]> getEmbeddings() {
         return embeddings;
     }
 
+    /**
+     * @return the number of rows in the collection.
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * @return the number of values in each row.
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Return the item index of a row.
+     * @param position the position of the row, from 0 to {@link #size()} - 1.
+     * @return the item index.
+     */
+    public int getIndex(int position) {
+        return indices[position];
+    }
+
+    /**
+     * Return the position of the row for an item.
+     * This takes constant time when the indices are consecutive, as they usually are.
+     * @param index the item index.
+     * @return the position of its row, or -1 if the collection has no row for the item.
+     */
+    public int positionOf(int index) {
+        int n = indices.length;
+        if (n == 0) {
+            return -1;
+        }
+        int position = index - indices[0];
+        if (indices[n - 1] - indices[0] == n - 1) {
+            return position >= 0 && position < n ? position : -1;
+        }
+        position = Arrays.binarySearch(indices, index);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * @return how the collection stores its values.
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Return the row for an item, without copying it if the collection stores floats.
+     * @param index the item index.
+     * @return a read-only view of the row, or {@code null} if the collection has no row for the item.
+     */
+    public FloatBuffer getRow(int index) {
+        int position = positionOf(index);
+        return position < 0 ? null : rowAt(position);
+    }
+
+    /**
+     * Return a row by position, without copying it if the collection stores floats.
+     * Otherwise, the row is converted to floats.
+     * @param position the position of the row, from 0 to {@link #size()} - 1.
+     * @return a read-only view of the row.
+     */
+    public FloatBuffer rowAt(int position) {
+        checkPosition(position);
+        FloatBuffer floats = rows().floats();
+        if (floats == null) {
+            return FloatBuffer.wrap(copyRow(position, new float[dimension])).asReadOnlyBuffer();
+        }
+        FloatBuffer row = floats.asReadOnlyBuffer();
+        row.position(position * dimension);
+        row.limit(position * dimension + dimension);
+        return row.slice();
+    }
+
+    /**
+     * Return all of the values, without copying them if the collection stores floats.
+     * Otherwise, the values are converted to floats.
+     * @return a read-only view of the rows, one after the other, in order of item index.
+     */
+    public FloatBuffer getValues() {
+        FloatBuffer floats = rows().floats();
+        return floats == null ? rows().convert(Precision.FLOAT32).floats().asReadOnlyBuffer() : floats.asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the values in the encoded form of the collection's {@link Precision}.
+     * @return the values, as little-endian bytes.
+     */
+    public ByteBuffer getEncodedValues() {
+        return rows().encode();
+    }
+
+    /**
+     * Return the Euclidean norm of a row. The norms of all of the rows are computed
+     * together the first time any is needed.
+     * @param position the position of the row.
+     * @return the norm.
+     */
+    public float norm(int position) {
+        return norms()[position];
+    }
+
+    /**
+     * Return the dot product of a row and a vector.
+     * @param position the position of the row.
+     * @param vector the vector, from its position to its limit, of {@link #getDimension()} values.
+     * @return the dot product.
+     */
+    public float dot(int position, FloatBuffer vector) {
+        return dot(position, query(vector));
+    }
+
+    /**
+     * Return the cosine similarity of a row and a vector.
+     * @param position the position of the row.
+     * @param vector the vector, from its position to its limit, of {@link #getDimension()} values.
+     * @return the cosine, or 0 if either has no length.
+     */
+    public float cosine(int position, FloatBuffer vector) {
+        float[] query = query(vector);
+        return cosine(dot(position, query), norm(position), norm(query));
+    }
+
+    /**
+     * Return the Euclidean distance between a row and a vector.
+     * @param position the position of the row.
+     * @param vector the vector, from its position to its limit, of {@link #getDimension()} values.
+     * @return the distance.
+     */
+    public float distance(int position, FloatBuffer vector) {
+        float[] query = query(vector);
+        checkPosition(position);
+        return (float) Math.sqrt(rows().squaredDistance(position, query));
+    }
+
+    /**
+     * Compute the cosine similarity of every row with a vector.
+     * @param vector the vector, from its position to its limit, of {@link #getDimension()} values.
+     * @param result receives the cosine for each row, by position; at least {@link #size()} long.
+     */
+    public void cosines(FloatBuffer vector, float[] result) {
+        cosines(query(vector), result);
+    }
+
+    /**
+     * Find the rows most similar to a vector, by cosine.
+     * @param vector the vector, from its position to its limit, of {@link #getDimension()} values.
+     * @param k the most rows to return.
+     * @return the positions of the rows, most similar first.
+     */
+    public int[] nearest(FloatBuffer vector, int k) {
+        float[] scores = new float[indices.length];
+        cosines(query(vector), scores);
+        return VectorKernels.top(scores, k, -1);
+    }
+
+    /**
+     * Find the other rows most similar to a row, by cosine.
+     * @param position the position of the row.
+     * @param k the most rows to return.
+     * @return the positions of the rows, most similar first, not including {@code position}.
+     */
+    public int[] nearest(int position, int k) {
+        checkPosition(position);
+        float[] query = new float[dimension];
+        copyRow(position, query);
+        float[] scores = new float[indices.length];
+        cosines(query, scores);
+        return VectorKernels.top(scores, k, position);
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= indices.length) {
+            throw new IndexOutOfBoundsException("Row " + position + " of " + indices.length);
+        }
+    }
+
+    private float[] query(FloatBuffer vector) {
+        if (vector.remaining() != dimension) {
+            throw new IllegalArgumentException(String.format("Vector of %d values, not %d", vector.remaining(), dimension));
+        }
+        float[] query = new float[dimension];
+        vector.duplicate().get(query);
+        return query;
+    }
+
+    private float dot(int position, float[] query) {
+        checkPosition(position);
+        return rows().dot(position, query, sum(query));
+    }
+
+    private void cosines(float[] query, float[] result) {
+        float queryNorm = norm(query);
+        float querySum = sum(query);
+        float[] rowNorms = norms();
+        EmbeddingRows matrix = rows();
+        for (int x = 0; x < indices.length; x++) {
+            result[x] = cosine(matrix.dot(x, query, querySum), rowNorms[x], queryNorm);
+        }
+    }
+
+    private static float sum(float[] vector) {
+        float sum = 0;
+        for (float value : vector) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static float cosine(float dot, float norm, float otherNorm) {
+        return norm == 0 || otherNorm == 0 ? 0 : dot / (norm * otherNorm);
+    }
+
+    private float norm(float[] vector) {
+        return (float) Math.sqrt(VectorKernels.dot(vector, 0, vector, 0, dimension));
+    }
+
+    private float[] norms() {
+        float[] result = norms;
+        if (result == null) {
+            result = new float[indices.length];
+            float[] row = new float[dimension];
+            for (int x = 0; x < indices.length; x++) {
+                result[x] = norm(copyRow(x, row));
+            }
+            // racing threads compute the same values.
+            norms = result;
+        }
+        return result;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -54,60 +424,251 @@ public class EmbeddingCollection implements Serializable {
             return false;
         }
         EmbeddingCollection that = (EmbeddingCollection) o;
-        if (!embeddings.keySet().equals(that.embeddings.keySet())) {
-            return false;
-        }
-        for (Map.Entry<Integer, float[]> me : embeddings.entrySet()) {
-            // equals used for round-trip testing, floating point == is ok.
-            if (!Arrays.equals(me.getValue(), that.embeddings.get(me.getKey()))) {
-                return false;
-            }
-
-        }
-        return true;
+        return dimension == that.dimension && precision == that.precision
+                && Arrays.equals(indices, that.indices) && rows().sameValues(that.rows());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(embeddings);
+        return 31 * Arrays.hashCode(indices) + rows().valuesHash();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("EmbeddingCollection{" + "embeddings={");
-        for (Map.Entry<Integer, float[]> me : embeddings.entrySet()) {
-            sb.append(String.format("%d : %s,", me.getKey(), Arrays.toString(me.getValue())));
+        float[] row = new float[dimension];
+        for (int x = 0; x < indices.length; x++) {
+            copyRow(x, row);
+            sb.append(String.format("%d : %s,", indices[x], Arrays.toString(row)));
         }
         sb.append("}");
         return sb.toString();
     }
 
+    private float[] copyRow(int position, float[] row) {
+        rows().copyRow(position, row);
+        return row;
+    }
+
+    /* this collection, at another precision. */
+    private EmbeddingCollection convert(Precision to) {
+        return to == precision ? this : new EmbeddingCollection(indices, rows().convert(to));
+    }
+
+    private static Packed packed(TreeMap<Integer, float[]> rows) {
+        Packed packed = new Packed();
+        packed.indices = rows.isEmpty() ? NO_INDICES : new int[rows.size()];
+        packed.dimension = rows.isEmpty() ? 0 : rows.firstEntry().getValue().length;
+        packed.values = new float[rows.size() * packed.dimension];
+        int x = 0;
+        for (Map.Entry<Integer, float[]> me : rows.entrySet()) {
+            float[] row = me.getValue();
+            if (row.length != packed.dimension) {
+                throw new IllegalArgumentException(String.format("Embedding for %d has %d values, not %d",
+                        me.getKey(), row.length, packed.dimension));
+            }
+            packed.indices[x] = me.getKey();
+            System.arraycopy(row, 0, packed.values, x * packed.dimension, packed.dimension);
+            x++;
+        }
+        return packed;
+    }
+
+    private static final class Packed {
+        int[] indices;
+        int dimension;
+        float[] values;
+    }
+
+    /**
+     * The map view of the rows.
+     */
+    private final class RowMap extends AbstractMap<Integer, float[]> {
+        @Override
+        public int size() {
+            return indices.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer && positionOf((Integer) key) >= 0;
+        }
+
+        @Override
+        public float[] get(Object key) {
+            int position = key instanceof Integer ? positionOf((Integer) key) : -1;
+            return position < 0 ? null : copyRow(position, new float[dimension]);
+        }
+
+        @Override
+        public Set<Entry<Integer, float[]>> entrySet() {
+            return new AbstractSet<Entry<Integer, float[]>>() {
+                @Override
+                public int size() {
+                    return indices.length;
+                }
+
+                @Override
+                public Iterator<Entry<Integer, float[]>> iterator() {
+                    return new Iterator<Entry<Integer, float[]>>() {
+                        private int position;
+
+                        @Override
+                        public boolean hasNext() {
+                            return position < indices.length;
+                        }
+
+                        @Override
+                        public Entry<Integer, float[]> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<Integer, float[]> entry = new SimpleImmutableEntry<>(indices[position],
+                                    copyRow(position, new float[dimension]));
+                            position++;
+                            return entry;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /*
+     * Releases before 2.2.3 serialized the collection itself, with its map of rows as its only field.
+     * Accept that form and convert it in readResolve; current releases always write a SerializedForm.
+     */
+    private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = stream.readFields();
+        if (fields.defaulted("embeddings")) {
+            throw new InvalidObjectException("Serialized through SerializedForm");
+        }
+        @SuppressWarnings("unchecked")
+        Map<Integer, float[]> legacy = (Map<Integer, float[]>) fields.get("embeddings", null);
+        legacyEmbeddings = legacy;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        try {
+            return new EmbeddingCollection(legacyEmbeddings);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            InvalidObjectException invalid = new InvalidObjectException("Invalid embeddings: " + e.getMessage());
+            invalid.initCause(e);
+            throw invalid;
+        }
+    }
+
+    /* The buffer is not serializable, and may be direct; write out the encoded values instead. */
+    private Object writeReplace() {
+        ByteBuffer encoded = rows().encode();
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return new SerializedForm(indices, dimension, precision, bytes);
+    }
+
+    /**
+     * The serialized form of a collection: its indices and encoded values.
+     */
+    private static final class SerializedForm implements Serializable {
+        private static final long serialVersionUID = 222L;
+        private final int[] indices;
+        private final int dimension;
+        private final Precision precision;
+        private final byte[] values;
+
+        SerializedForm(int[] indices, int dimension, Precision precision, byte[] values) {
+            this.indices = indices;
+            this.dimension = dimension;
+            this.precision = precision;
+            this.values = values;
+        }
+
+        private Object readResolve() {
+            return new EmbeddingCollection(indices, EmbeddingRows.decode(precision, ByteBuffer.wrap(values), indices.length, dimension));
+        }
+    }
+
     /**
      * Builder class for EmbeddingsCollection.
      */
     public static class Builder {
+        /* rows added one at a time; null while the builder holds only a prebuilt collection. */
         private Map<Integer, float[]> embeddings;
+        private EmbeddingCollection collection;
+        private Precision precision;
 
         public Builder() {
-            embeddings = new HashMap<>();
+            embeddings = new TreeMap<>();
+            precision = Precision.FLOAT32;
         }
 
+        /**
+         * Constructs a builder over an existing collection, with its precision. The collection
+         * is immutable, so the builder shares its values until a row is added.
+         * @param toCopy the collection.
+         */
         public Builder(EmbeddingCollection toCopy) {
-            embeddings = new HashMap<>();
-            for (Map.Entry<Integer, float[]> me : toCopy.getEmbeddings().entrySet()) {
-                embeddings.put(me.getKey(), me.getValue().clone());
-            }
+            collection = toCopy;
+            precision = toCopy.getPrecision();
+        }
+
+        /**
+         * Set how the collection stores its values. Values are converted when the collection
+         * is built; any precision but {@link Precision#FLOAT32} loses some accuracy.
+         * @param precision the precision.
+         * @return this
+         */
+        public Builder precision(Precision precision) {
+            this.precision = precision;
+            return this;
         }
 
         /**
          * Add an embedding.
          * @param index the item index.
-         * @param values the values.
+         * @param values the values. All of the rows in a collection must have the same length.
          * @return this
          */
         public Builder put(int index, float[] values) {
-            embeddings.put(index, values);
+            embeddings().put(index, values);
+            return this;
+        }
+
+        /**
+         * Set all of the embeddings at once, without copying them. This replaces
+         * any embeddings already in the builder.
+         * @param indices the item indices of the rows, in ascending order.
+         * @param dimension the number of values in each row.
+         * @param values the rows, one after the other, from the buffer's position.
+         *               The buffer may be direct. The caller must not modify it afterwards.
+         * @return this
+         */
+        public Builder values(int[] indices, int dimension, FloatBuffer values) {
+            collection = new EmbeddingCollection(indices, dimension, values);
+            embeddings = null;
+            return this;
+        }
+
+        /**
+         * Set all of the embeddings at once from their encoded form, decoding the values only when
+         * they are first read from the collection. This replaces any embeddings already in the builder,
+         * and sets the precision.
+         * @param indices the item indices of the rows, in ascending order.
+         * @param dimension the number of values in each row.
+         * @param precision the precision of the encoded values.
+         * @param values decodes the values, as {@link EmbeddingCollection#getEncodedValues()} returns them.
+         * @return this
+         */
+        public Builder encodedValues(int[] indices, int dimension, Precision precision, Decoder values) {
+            collection = new EmbeddingCollection(indices, dimension, precision, values);
+            embeddings = null;
+            this.precision = precision;
             return this;
         }
 
@@ -116,6 +677,10 @@ public class EmbeddingCollection implements Serializable {
          * @return the embeddings.
          */
         public Map<Integer, float[]> embeddings() {
+            if (embeddings == null) {
+                embeddings = new TreeMap<>(collection.getEmbeddings());
+                collection = null;
+            }
             return embeddings;
         }
 
@@ -124,7 +689,8 @@ public class EmbeddingCollection implements Serializable {
          * @return the collection.
          */
         public EmbeddingCollection build() {
-            return new EmbeddingCollection(embeddings);
+            EmbeddingCollection result = embeddings == null ? collection : new EmbeddingCollection(embeddings);
+            return result.convert(precision);
         }
 
 
@@ -0,0 +1,352 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.basistech.rosette.dm.EmbeddingCollection.Precision;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * The values of an {@link EmbeddingCollection} at one {@link Precision}.
+ * Quantized rows are converted back to floats as they are read; the similarity loops
+ * work on the stored values directly.
+ */
+abstract class EmbeddingRows {
+    final int rows;
+    final int dimension;
+
+    EmbeddingRows(int rows, int dimension) {
+        this.rows = rows;
+        this.dimension = dimension;
+    }
+
+    abstract Precision precision();
+
+    /* the rows themselves, when they are stored as floats; otherwise null. */
+    FloatBuffer floats() {
+        return null;
+    }
+
+    abstract void copyRow(int position, float[] row);
+
+    /* querySum is the sum of the values of the query. */
+    abstract float dot(int position, float[] query, float querySum);
+
+    abstract float squaredDistance(int position, float[] query);
+
+    /* the encoded form; see Precision. */
+    abstract ByteBuffer encode();
+
+    abstract boolean sameValues(EmbeddingRows other);
+
+    abstract int valuesHash();
+
+    static int stride(Precision precision, int dimension) {
+        switch (precision) {
+        case FLOAT16:
+            return 2 * dimension;
+        case INT8:
+            return 8 + dimension;
+        default:
+            return 4 * dimension;
+        }
+    }
+
+    static EmbeddingRows floats(FloatBuffer values, int rows, int dimension) {
+        long length = (long) rows * dimension;
+        if (values.remaining() < length) {
+            throw new IllegalArgumentException(String.format("%d rows of %d values need %d values, not %d",
+                    rows, dimension, length, values.remaining()));
+        }
+        FloatBuffer slice = values.slice();
+        slice.limit((int) length);
+        return new Float32(slice, rows, dimension);
+    }
+
+    static EmbeddingRows decode(Precision precision, ByteBuffer encoded, int rows, int dimension) {
+        long length = (long) rows * stride(precision, dimension);
+        if (encoded.remaining() < length) {
+            throw new IllegalArgumentException(String.format("%d rows of %d %s values need %d bytes, not %d",
+                    rows, dimension, precision, length, encoded.remaining()));
+        }
+        ByteBuffer bytes = encoded.slice().order(ByteOrder.LITTLE_ENDIAN);
+        switch (precision) {
+        case FLOAT16:
+            short[] halves = new short[rows * dimension];
+            bytes.asShortBuffer().get(halves);
+            return new Float16(halves, rows, dimension);
+        case INT8:
+            Int8 int8 = new Int8(rows, dimension);
+            for (int x = 0; x < rows; x++) {
+                int8.scales[x] = bytes.getFloat();
+                int8.offsets[x] = bytes.getFloat();
+                bytes.get(int8.codes, x * dimension, dimension);
+            }
+            return int8;
+        default:
+            FloatBuffer floats = bytes.asFloatBuffer();
+            if (!bytes.isDirect()) {
+                // reading from the array is much faster than reading floats from heap bytes.
+                float[] array = new float[rows * dimension];
+                floats.get(array);
+                floats = FloatBuffer.wrap(array);
+            }
+            return floats(floats, rows, dimension);
+        }
+    }
+
+    /* this.rows at another precision. */
+    EmbeddingRows convert(Precision precision) {
+        if (precision == precision()) {
+            return this;
+        }
+        float[] row = new float[dimension];
+        switch (precision) {
+        case FLOAT16:
+            Float16 float16 = new Float16(new short[rows * dimension], rows, dimension);
+            for (int x = 0; x < rows; x++) {
+                copyRow(x, row);
+                for (int y = 0; y < dimension; y++) {
+                    float16.halves[x * dimension + y] = VectorKernels.toHalf(row[y]);
+                }
+            }
+            return float16;
+        case INT8:
+            Int8 int8 = new Int8(rows, dimension);
+            for (int x = 0; x < rows; x++) {
+                copyRow(x, row);
+                int8.quantize(x, row);
+            }
+            return int8;
+        default:
+            float[] array = new float[rows * dimension];
+            for (int x = 0; x < rows; x++) {
+                copyRow(x, row);
+                System.arraycopy(row, 0, array, x * dimension, dimension);
+            }
+            return new Float32(FloatBuffer.wrap(array), rows, dimension);
+        }
+    }
+
+    private static final class Float32 extends EmbeddingRows {
+        private final FloatBuffer values;
+
+        Float32(FloatBuffer values, int rows, int dimension) {
+            super(rows, dimension);
+            this.values = values;
+        }
+
+        @Override
+        Precision precision() {
+            return Precision.FLOAT32;
+        }
+
+        @Override
+        FloatBuffer floats() {
+            return values;
+        }
+
+        @Override
+        void copyRow(int position, float[] row) {
+            FloatBuffer matrix = values.duplicate();
+            matrix.position(position * dimension);
+            matrix.get(row, 0, dimension);
+        }
+
+        @Override
+        float dot(int position, float[] query, float querySum) {
+            int offset = position * dimension;
+            return values.hasArray()
+                    ? VectorKernels.dot(values.array(), values.arrayOffset() + offset, query, 0, dimension)
+                    : VectorKernels.dot(values, offset, query, 0, dimension);
+        }
+
+        @Override
+        float squaredDistance(int position, float[] query) {
+            int offset = position * dimension;
+            return values.hasArray()
+                    ? VectorKernels.squaredDistance(values.array(), values.arrayOffset() + offset, query, 0, dimension)
+                    : VectorKernels.squaredDistance(values, offset, query, 0, dimension);
+        }
+
+        @Override
+        ByteBuffer encode() {
+            ByteBuffer bytes = ByteBuffer.allocate(4 * values.limit()).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asFloatBuffer().put(values.duplicate());
+            return bytes;
+        }
+
+        @Override
+        boolean sameValues(EmbeddingRows other) {
+            // equals used for round-trip testing, floating point == is ok.
+            FloatBuffer that = ((Float32) other).values;
+            for (int x = 0; x < values.limit(); x++) {
+                if (Float.floatToIntBits(values.get(x)) != Float.floatToIntBits(that.get(x))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int valuesHash() {
+            int result = 1;
+            for (int x = 0; x < values.limit(); x++) {
+                result = 31 * result + Float.floatToIntBits(values.get(x));
+            }
+            return result;
+        }
+    }
+
+    private static final class Float16 extends EmbeddingRows {
+        private final short[] halves;
+
+        Float16(short[] halves, int rows, int dimension) {
+            super(rows, dimension);
+            this.halves = halves;
+        }
+
+        @Override
+        Precision precision() {
+            return Precision.FLOAT16;
+        }
+
+        @Override
+        void copyRow(int position, float[] row) {
+            int offset = position * dimension;
+            for (int x = 0; x < dimension; x++) {
+                row[x] = VectorKernels.fromHalf(halves[offset + x]);
+            }
+        }
+
+        @Override
+        float dot(int position, float[] query, float querySum) {
+            return VectorKernels.dot(halves, position * dimension, query, dimension);
+        }
+
+        @Override
+        float squaredDistance(int position, float[] query) {
+            return VectorKernels.squaredDistance(halves, position * dimension, query, dimension);
+        }
+
+        @Override
+        ByteBuffer encode() {
+            ByteBuffer bytes = ByteBuffer.allocate(2 * halves.length).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asShortBuffer().put(halves);
+            return bytes;
+        }
+
+        @Override
+        boolean sameValues(EmbeddingRows other) {
+            return Arrays.equals(halves, ((Float16) other).halves);
+        }
+
+        @Override
+        int valuesHash() {
+            return Arrays.hashCode(halves);
+        }
+    }
+
+    /**
+     * Each value is {@code scale * code + offset}, with the scale and offset of its row
+     * chosen to spread the row's range over all 256 codes.
+     */
+    private static final class Int8 extends EmbeddingRows {
+        private final byte[] codes;
+        private final float[] scales;
+        private final float[] offsets;
+
+        Int8(int rows, int dimension) {
+            super(rows, dimension);
+            codes = new byte[rows * dimension];
+            scales = new float[rows];
+            offsets = new float[rows];
+        }
+
+        void quantize(int position, float[] row) {
+            if (dimension == 0) {
+                return;
+            }
+            float min = Float.POSITIVE_INFINITY;
+            float max = Float.NEGATIVE_INFINITY;
+            for (int x = 0; x < dimension; x++) {
+                min = Math.min(min, row[x]);
+                max = Math.max(max, row[x]);
+            }
+            float scale = (max - min) / 255;
+            float offset = min + 128 * scale;
+            scales[position] = scale;
+            offsets[position] = offset;
+            int base = position * dimension;
+            for (int x = 0; x < dimension; x++) {
+                int code = scale == 0 ? 0 : Math.round((row[x] - offset) / scale);
+                codes[base + x] = (byte) Math.max(-128, Math.min(127, code));
+            }
+        }
+
+        @Override
+        Precision precision() {
+            return Precision.INT8;
+        }
+
+        @Override
+        void copyRow(int position, float[] row) {
+            int offset = position * dimension;
+            float scale = scales[position];
+            float shift = offsets[position];
+            for (int x = 0; x < dimension; x++) {
+                row[x] = scale * codes[offset + x] + shift;
+            }
+        }
+
+        @Override
+        float dot(int position, float[] query, float querySum) {
+            return scales[position] * VectorKernels.dot(codes, position * dimension, query, dimension)
+                    + offsets[position] * querySum;
+        }
+
+        @Override
+        float squaredDistance(int position, float[] query) {
+            return VectorKernels.squaredDistance(codes, position * dimension, scales[position], offsets[position], query, dimension);
+        }
+
+        @Override
+        ByteBuffer encode() {
+            ByteBuffer bytes = ByteBuffer.allocate(rows * (8 + dimension)).order(ByteOrder.LITTLE_ENDIAN);
+            for (int x = 0; x < rows; x++) {
+                bytes.putFloat(scales[x]);
+                bytes.putFloat(offsets[x]);
+                bytes.put(codes, x * dimension, dimension);
+            }
+            bytes.flip();
+            return bytes;
+        }
+
+        @Override
+        boolean sameValues(EmbeddingRows other) {
+            Int8 that = (Int8) other;
+            return Arrays.equals(codes, that.codes) && Arrays.equals(scales, that.scales) && Arrays.equals(offsets, that.offsets);
+        }
+
+        @Override
+        int valuesHash() {
+            return 31 * (31 * Arrays.hashCode(codes) + Arrays.hashCode(scales)) + Arrays.hashCode(offsets);
+        }
+    }
+}
@@ -224,6 +224,17 @@ public class Entity extends BaseAttribute implements Serializable {
             return this;
         }
 
+        /**
+         * Sets the list of mentions, replacing any mentions already added.
+         * @param mentions the mentions, or {@code null} for none.
+         * @return this.
+         */
+        public Builder mentions(List<Mention> mentions) {
+            this.mentions = Lists.newArrayList();
+            addAllToList(this.mentions, mentions);
+            return this;
+        }
+
         /**
          * Specifies the index of the head mention in the list of mentions, if any.
          * @param headMentionIndex the index.
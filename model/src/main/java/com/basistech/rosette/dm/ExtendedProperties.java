@@ -0,0 +1,400 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The immutable map of extended properties of a {@link BaseAttribute}. Keys and values are
+ * held in one array, in the order added, and, as with {@code ImmutableMap}, neither may be null.
+ * There is one empty map. Small maps are searched in order; larger ones build a hash index
+ * the first time they are searched.
+ * <p>
+ * A map made by adding one property to another may share the other's array, since neither
+ * ever changes the part of the array that it uses. So adding properties one at a time, as
+ * {@link BaseAttribute#setExtendedProperty(String, Object)} does during deserialization,
+ * does not copy the map for each one.
+ */
+public final class ExtendedProperties extends AbstractMap<String, Object> implements Serializable {
+    private static final long serialVersionUID = 222L;
+    private static final ExtendedProperties EMPTY = new ExtendedProperties(new Object[0], 0);
+    /* maps larger than this are searched by hash. */
+    private static final int LINEAR_SEARCH_SIZE = 8;
+
+    /* key, value, key, value, ...; the entries past size belong to other maps, or to no map. */
+    private final transient Object[] entries;
+    private final transient int size;
+    /* open addressing, of index + 1; built on first use. */
+    private transient volatile int[] index;
+
+    private ExtendedProperties(Object[] entries, int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * @return the empty map
+     */
+    public static ExtendedProperties of() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns an immutable copy of a map, or the map itself if it is already an {@code ExtendedProperties}.
+     *
+     * @param properties the map
+     * @return the copy
+     * @throws NullPointerException if a key or value is null
+     * @throws IllegalArgumentException if the map has duplicate keys, which only a broken map could
+     */
+    public static ExtendedProperties copyOf(Map<String, ?> properties) {
+        if (properties instanceof ExtendedProperties) {
+            return (ExtendedProperties) properties;
+        }
+        if (properties.isEmpty()) {
+            return EMPTY;
+        }
+        return new Builder(properties.size()).putAll(properties).build();
+    }
+
+    /**
+     * Returns a map with one more property. This map is unchanged.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the new map
+     * @throws IllegalArgumentException if this map has the key already
+     */
+    ExtendedProperties plus(String key, Object value) {
+        checkEntry(key, value);
+        for (int x = 0; x < size; x++) {
+            if (key.equals(entries[2 * x])) {
+                throw duplicate(key);
+            }
+        }
+        Object[] array = entries;
+        if (2 * size < array.length) {
+            synchronized (array) {
+                // the slot after our entries is free unless another map was made from this one.
+                if (array[2 * size] == null) {
+                    array[2 * size] = key;
+                    array[2 * size + 1] = value;
+                    return new ExtendedProperties(array, size + 1);
+                }
+            }
+        }
+        Object[] grown = new Object[Math.max(8, 4 * size + 2)];
+        System.arraycopy(array, 0, grown, 0, 2 * size);
+        grown[2 * size] = key;
+        grown[2 * size + 1] = value;
+        return new ExtendedProperties(grown, size + 1);
+    }
+
+    private static void checkEntry(String key, Object value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("null key or value in extended properties: " + key + "=" + value);
+        }
+    }
+
+    private static IllegalArgumentException duplicate(String key) {
+        return new IllegalArgumentException("Multiple extended properties with key " + key);
+    }
+
+    private int indexOf(Object key) {
+        if (key == null || size == 0) {
+            return -1;
+        }
+        if (size <= LINEAR_SEARCH_SIZE) {
+            for (int x = 0; x < size; x++) {
+                if (key.equals(entries[2 * x])) {
+                    return x;
+                }
+            }
+            return -1;
+        }
+        int[] table = index;
+        if (table == null) {
+            table = buildIndex();
+            index = table;
+        }
+        int mask = table.length - 1;
+        for (int slot = spread(key.hashCode()) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int x = table[slot] - 1;
+            if (key.equals(entries[2 * x])) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    private int[] buildIndex() {
+        int[] table = new int[Integer.highestOneBit(size * 2) * 2];
+        int mask = table.length - 1;
+        for (int x = 0; x < size; x++) {
+            int slot = spread(entries[2 * x].hashCode()) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = x + 1;
+        }
+        return table;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int x = indexOf(key);
+        return x < 0 ? null : entries[2 * x + 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Map) || ((Map<?, ?>) o).size() != size) {
+            return false;
+        }
+        Map<?, ?> that = (Map<?, ?>) o;
+        for (int x = 0; x < size; x++) {
+            if (!entries[2 * x + 1].equals(that.get(entries[2 * x]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int x = 0; x < size; x++) {
+            hash += entries[2 * x].hashCode() ^ entries[2 * x + 1].hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int x = next++;
+                        return new SimpleImmutableEntry<>((String) entries[2 * x], entries[2 * x + 1]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* Writes only our own entries, not the rest of a shared array. */
+    private Object writeReplace() {
+        return new SerializedForm(Arrays.copyOf(entries, 2 * size));
+    }
+
+    /**
+     * The serialized form of the map: its entries.
+     */
+    private static final class SerializedForm implements Serializable {
+        private static final long serialVersionUID = 222L;
+        private final Object[] entries;
+
+        SerializedForm(Object[] entries) {
+            this.entries = entries;
+        }
+
+        private Object readResolve() {
+            return entries.length == 0 ? EMPTY : new ExtendedProperties(entries, entries.length / 2);
+        }
+    }
+
+    /**
+     * Collects properties for a map. A builder may go on adding after {@link #build()};
+     * the maps it has built do not change.
+     */
+    public static final class Builder {
+        private Object[] entries;
+        private int size;
+        /* the keys, once there are too many to search in order. */
+        private Set<String> keys;
+        /* the map built from the current entries, if any. */
+        private ExtendedProperties built;
+
+        /**
+         * Constructs an empty builder.
+         */
+        public Builder() {
+            this(4);
+        }
+
+        /**
+         * Constructs an empty builder with room for some properties.
+         *
+         * @param expectedSize the number of properties expected
+         */
+        public Builder(int expectedSize) {
+            entries = new Object[2 * Math.max(1, expectedSize)];
+        }
+
+        /**
+         * Adds a property.
+         *
+         * @param key the key
+         * @param value the value
+         * @return this
+         * @throws NullPointerException if the key or value is null
+         * @throws IllegalArgumentException if the key has already been added
+         */
+        public Builder put(String key, Object value) {
+            checkEntry(key, value);
+            if (keys != null) {
+                if (!keys.add(key)) {
+                    throw duplicate(key);
+                }
+            } else {
+                for (int x = 0; x < size; x++) {
+                    if (key.equals(entries[2 * x])) {
+                        throw duplicate(key);
+                    }
+                }
+                if (size == LINEAR_SEARCH_SIZE) {
+                    keys = new HashSet<>();
+                    for (int x = 0; x < size; x++) {
+                        keys.add((String) entries[2 * x]);
+                    }
+                    keys.add(key);
+                }
+            }
+            if (2 * size == entries.length) {
+                // a built map may share a full array; never write into it.
+                entries = Arrays.copyOf(entries, 4 * size);
+            }
+            entries[2 * size] = key;
+            entries[2 * size + 1] = value;
+            size++;
+            built = null;
+            return this;
+        }
+
+        /**
+         * Adds all the entries of a map.
+         *
+         * @param properties the map
+         * @return this
+         */
+        public Builder putAll(Map<String, ?> properties) {
+            for (Map.Entry<String, ?> me : properties.entrySet()) {
+                put(me.getKey(), me.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * @return the number of properties
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Builds the map. If the array is full, the map uses it, and the builder copies it before
+         * adding more; otherwise, the map has an array of its own of exactly its size.
+         *
+         * @return the map
+         */
+        public ExtendedProperties build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (built == null) {
+                if (2 * size == entries.length) {
+                    built = new ExtendedProperties(entries, size);
+                } else {
+                    built = new ExtendedProperties(Arrays.copyOf(entries, 2 * size), size);
+                }
+            }
+            return built;
+        }
+    }
+}
@@ -38,6 +38,7 @@ public class ListAttribute<Item extends BaseAttribute> extends BaseAttribute imp
 
     private final List<Item> items;
     private final Class<? extends BaseAttribute> itemClass;
+    private transient volatile SpanIndex<?> spanIndex;
 
     protected ListAttribute(Class<? extends BaseAttribute> itemClass, List<Item> items) {
         this.itemClass = itemClass;
@@ -61,6 +62,14 @@ public class ListAttribute<Item extends BaseAttribute> extends BaseAttribute imp
         return items;
     }
 
+    SpanIndex<?> getCachedSpanIndex() {
+        return spanIndex;
+    }
+
+    void setCachedSpanIndex(SpanIndex<?> spanIndex) {
+        this.spanIndex = spanIndex;
+    }
+
     @Override
     public boolean equals(Object o) {
         return items.equals(o);
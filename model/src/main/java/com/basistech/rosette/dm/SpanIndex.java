@@ -0,0 +1,258 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable interval index over the offsets of the items in a {@link ListAttribute}.
+ * The index answers 'which items overlap, lie within, or cover the characters [start, end)'
+ * in logarithmic time plus the size of the answer, instead of a scan of the whole list.
+ * Offsets are half-open ranges, as for {@link Attribute}.
+ * <p>
+ * Obtain an index with {@link #of(ListAttribute)}. The index is built on first use and cached
+ * on the list, so repeated calls for the same list are cheap. Query results are reported
+ * in the order of the items in the list.
+ *
+ * @param <T> the type of the items in the list.
+ */
+public final class SpanIndex<T extends Attribute> {
+    private final List<T> items;
+    /* list positions, sorted by start offset. */
+    private final int[] order;
+    /* start and end offsets, in the sorted order. */
+    private final int[] starts;
+    private final int[] ends;
+    /* the maximum end offset of the implicit subtree rooted at each sorted position. */
+    private final int[] maxEnds;
+
+    private SpanIndex(List<T> items) {
+        this.items = items;
+        int size = items.size();
+        long[] keys = new long[size];
+        boolean sorted = true;
+        int previousStart = Integer.MIN_VALUE;
+        for (int x = 0; x < size; x++) {
+            int start = items.get(x).getStartOffset();
+            sorted &= start >= previousStart;
+            previousStart = start;
+            keys[x] = ((long) start << 32) | x;
+        }
+        if (!sorted) {
+            // start in the high word and list position in the low word; a stable sort by start.
+            Arrays.sort(keys);
+        }
+        order = new int[size];
+        starts = new int[size];
+        ends = new int[size];
+        for (int x = 0; x < size; x++) {
+            int position = (int) keys[x];
+            T item = items.get(position);
+            order[x] = position;
+            starts[x] = item.getStartOffset();
+            ends[x] = item.getEndOffset();
+        }
+        maxEnds = new int[size];
+        augment(0, size);
+    }
+
+    /**
+     * Returns the index for a list, building it if this is the first request for it.
+     *
+     * @param list the list
+     * @param <T> the type of the items in the list
+     * @return the index
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Attribute> SpanIndex<T> of(ListAttribute<T> list) {
+        SpanIndex<T> index = (SpanIndex<T>) list.getCachedSpanIndex();
+        if (index == null) {
+            // Concurrent callers may each build an index; they are equivalent and immutable.
+            index = new SpanIndex<>(list.getItems());
+            list.setCachedSpanIndex(index);
+        }
+        return index;
+    }
+
+    private int augment(int lo, int hi) {
+        if (lo >= hi) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(ends[mid], Math.max(augment(lo, mid), augment(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * Returns the number of items in the index.
+     *
+     * @return the number of items in the index
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Returns the items that share at least one character with [start, end).
+     * Empty items and empty ranges have no characters, so they overlap nothing.
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the overlapping items
+     */
+    public List<T> overlapping(int start, int end) {
+        return itemsAt(overlappingIndices(start, end));
+    }
+
+    /**
+     * Returns the list positions of the items that share at least one character with [start, end).
+     * Empty items and empty ranges overlap nothing.
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the positions, ascending
+     */
+    public int[] overlappingIndices(int start, int end) {
+        if (start >= end) {
+            return new int[0];
+        }
+        Hits hits = new Hits();
+        // start < end and item end > start
+        search(0, order.length, end - 1, start + 1, true, hits);
+        return hits.sorted();
+    }
+
+    /**
+     * Returns the items that lie entirely within [start, end).
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the contained items
+     */
+    public List<T> containedIn(int start, int end) {
+        return itemsAt(containedIndices(start, end));
+    }
+
+    /**
+     * Returns the list positions of the items that lie entirely within [start, end).
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the positions, ascending
+     */
+    public int[] containedIndices(int start, int end) {
+        Hits hits = new Hits();
+        for (int x = firstStartAtOrAfter(start); x < order.length && starts[x] <= end; x++) {
+            if (ends[x] <= end) {
+                hits.add(order[x]);
+            }
+        }
+        return hits.sorted();
+    }
+
+    /**
+     * Returns the items that include all of [start, end).
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the covering items
+     */
+    public List<T> covering(int start, int end) {
+        return itemsAt(coveringIndices(start, end));
+    }
+
+    /**
+     * Returns the list positions of the items that include all of [start, end).
+     *
+     * @param start the start offset
+     * @param end the end offset
+     * @return the positions, ascending
+     */
+    public int[] coveringIndices(int start, int end) {
+        Hits hits = new Hits();
+        search(0, order.length, start, end, false, hits);
+        return hits.sorted();
+    }
+
+    /*
+     * Collects the items in the implicit subtree [lo, hi) with start <= maxStart and end >= minEnd,
+     * leaving out empty items if asked to. Subtrees whose largest end is too small are pruned; so are right subtrees once
+     * the starts get too large.
+     */
+    private void search(int lo, int hi, int maxStart, int minEnd, boolean skipEmpty, Hits hits) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] < minEnd) {
+            return;
+        }
+        search(lo, mid, maxStart, minEnd, skipEmpty, hits);
+        if (starts[mid] <= maxStart) {
+            if (ends[mid] >= minEnd && !(skipEmpty && ends[mid] == starts[mid])) {
+                hits.add(order[mid]);
+            }
+            search(mid + 1, hi, maxStart, minEnd, skipEmpty, hits);
+        }
+    }
+
+    private int firstStartAtOrAfter(int offset) {
+        int lo = 0;
+        int hi = starts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private List<T> itemsAt(int[] positions) {
+        ImmutableList.Builder<T> builder = ImmutableList.builder();
+        for (int position : positions) {
+            builder.add(items.get(position));
+        }
+        return builder.build();
+    }
+
+    /**
+     * A growable array of list positions.
+     */
+    private static final class Hits {
+        private int[] positions = new int[8];
+        private int count;
+
+        void add(int position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+
+        int[] sorted() {
+            int[] result = Arrays.copyOf(positions, count);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
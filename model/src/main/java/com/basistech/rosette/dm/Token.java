@@ -16,6 +16,7 @@
 package com.basistech.rosette.dm;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 import java.io.Serializable;
@@ -25,11 +26,17 @@ import java.util.Map;
 /**
  * The token. The definition of a token can vary by language, but
  * generally a token corresponds to a word.
+ *
+ * A token built with {@link Builder#textFrom(CharSequence)} keeps a reference
+ * to the document data, and so keeps the whole document alive for as long as
+ * the token is reachable. A serialized token carries only its own text.
  */
 public class Token extends Attribute implements Serializable {
     private static final long serialVersionUID = 222L;
     // we don't want to have to go look at the parent {@link AnnotatedText}.
     private final String text;
+    // ... unless the text is exactly the data at our offsets, in which case we keep a reference instead of a copy.
+    private final CharSequence data;
     private final List<String> normalized;
     private final List<MorphoAnalysis> analyses;
     private final String source;
@@ -41,11 +48,80 @@ public class Token extends Attribute implements Serializable {
                     String source,
                     List<MorphoAnalysis> analyses,
                     Map<String, Object> extendedProperties) {
+        this(startOffset, endOffset, text, null, normalized, source, analyses, extendedProperties);
+    }
+
+    /* Exactly one of text and data is non-null; data means that the text is data[startOffset, endOffset). */
+    Token(int startOffset,
+          int endOffset,
+          String text,
+          CharSequence data,
+          List<String> normalized,
+          String source,
+          List<MorphoAnalysis> analyses,
+          Map<String, Object> extendedProperties) {
+        this(startOffset, endOffset, text, data, listOrNull(normalized), source, listOrNull(analyses), extendedProperties, true);
+    }
+
+    /* The lists are immutable, or null; the flag only tells this constructor apart from the one above. */
+    private Token(int startOffset,
+                  int endOffset,
+                  String text,
+                  CharSequence data,
+                  List<String> normalized,
+                  String source,
+                  List<MorphoAnalysis> analyses,
+                  Map<String, Object> extendedProperties,
+                  boolean immutableLists) {
         super(startOffset, endOffset, extendedProperties);
         this.text = text;
-        this.normalized = listOrNull(normalized);
+        this.data = text == null ? data : null;
+        this.normalized = normalized;
         this.source = source;
-        this.analyses = listOrNull(analyses);
+        this.analyses = analyses;
+    }
+
+    /*
+     * Builds a token from lists that are already immutable, such as the pooled lists of TokenColumns,
+     * without copying them. Empty lists still become null.
+     */
+    static Token pooled(int startOffset,
+                        int endOffset,
+                        String text,
+                        CharSequence data,
+                        ImmutableList<String> normalized,
+                        String source,
+                        ImmutableList<MorphoAnalysis> analyses,
+                        Map<String, Object> extendedProperties) {
+        return new Token(startOffset, endOffset, text, data, emptyToNull(normalized), source, emptyToNull(analyses),
+                extendedProperties, true);
+    }
+
+    private static <T> List<T> emptyToNull(ImmutableList<T> list) {
+        return list == null || list.isEmpty() ? null : list;
+    }
+
+    /**
+     * Returns whether a text is exactly the document data between two offsets, as it is for a token
+     * that can refer to the data with {@link Builder#textFrom(CharSequence)}.
+     *
+     * @param text the text, or {@code null}
+     * @param data the document data, or {@code null}
+     * @param startOffset the start offset
+     * @param endOffset the end offset
+     * @return true if neither is null and the text matches the data
+     */
+    public static boolean textMatches(String text, CharSequence data, int startOffset, int endOffset) {
+        if (text == null || data == null || startOffset < 0 || endOffset > data.length()
+                || text.length() != endOffset - startOffset) {
+            return false;
+        }
+        for (int x = 0; x < text.length(); x++) {
+            if (text.charAt(x) != data.charAt(startOffset + x)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -56,12 +132,65 @@ public class Token extends Attribute implements Serializable {
      * to the next line.  The raw text would include the newline character, but
      * the token would not.
      *
+     * If the token was built with {@link Builder#textFrom(CharSequence)}, the text is
+     * only a reference to the document data, and each call creates a new string.
+     *
      * @return the text of the token
      */
     public String getText() {
+        if (text == null && data != null) {
+            return data.subSequence(startOffset, endOffset).toString();
+        }
         return text;
     }
 
+    /* the document data that the text refers to, or null if the token stores its own text. */
+    CharSequence textData() {
+        return data;
+    }
+
+    private int textLength() {
+        return text != null ? text.length() : endOffset - startOffset;
+    }
+
+    private char textCharAt(int index) {
+        return text != null ? text.charAt(index) : data.charAt(startOffset + index);
+    }
+
+    private boolean hasText() {
+        return text != null || data != null;
+    }
+
+    private boolean textEquals(Token token) {
+        if (!hasText() || !token.hasText()) {
+            return hasText() == token.hasText();
+        }
+        if (data != null && data == token.data) {
+            // same data and (as checked by the caller) the same offsets
+            return true;
+        }
+        int length = textLength();
+        if (length != token.textLength()) {
+            return false;
+        }
+        for (int x = 0; x < length; x++) {
+            if (textCharAt(x) != token.textCharAt(x)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int textHashCode() {
+        // the same value as String.hashCode, without creating the string.
+        int hash = 0;
+        int length = textLength();
+        for (int x = 0; x < length; x++) {
+            hash = 31 * hash + textCharAt(x);
+        }
+        return hash;
+    }
+
     /**
      * Returns the normalized form of the token.
      *
@@ -115,13 +244,13 @@ public class Token extends Attribute implements Serializable {
         if (source != null ? !source.equals(token.source) : token.source != null) {
             return false;
         }
-        return !(text != null ? !text.equals(token.text) : token.text != null);
+        return textEquals(token);
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
-        result = 31 * result + text.hashCode();
+        result = 31 * result + textHashCode();
         if (normalized != null) {
             result = 31 * result + normalized.hashCode();
         }
@@ -134,10 +263,18 @@ public class Token extends Attribute implements Serializable {
         return result;
     }
 
+    /* A token that refers to the document data is serialized with a copy of its text, not the whole document. */
+    private Object writeReplace() {
+        if (data != null) {
+            return new Token(startOffset, endOffset, getText(), normalized, source, analyses, extendedProperties);
+        }
+        return this;
+    }
+
     @Override
     protected Objects.ToStringHelper toStringHelper() {
         return Objects.toStringHelper(this)
-                .add("text", text)
+                .add("text", getText())
                 .add("normalized", normalized)
                 .add("analyses", analyses)
                 .add("source", source);
@@ -148,6 +285,10 @@ public class Token extends Attribute implements Serializable {
      */
     public static class Builder extends Attribute.Builder<Token, Token.Builder> {
         private String text;
+        private CharSequence data;
+        /* When copied from a token that refers to the data, the offsets of its text. */
+        private int copiedStart = -1;
+        private int copiedEnd = -1;
         private List<String> normalized;
         private List<MorphoAnalysis> analyses;
 
@@ -177,6 +318,12 @@ public class Token extends Attribute implements Serializable {
         public Builder(Token toCopy) {
             super(toCopy);
             text = toCopy.text;
+            source = toCopy.source;
+            if (toCopy.data != null) {
+                data = toCopy.data;
+                copiedStart = toCopy.startOffset;
+                copiedEnd = toCopy.endOffset;
+            }
             normalized = Lists.newArrayList();
             analyses = Lists.newArrayList();
             addAllToList(normalized, toCopy.normalized);
@@ -191,6 +338,28 @@ public class Token extends Attribute implements Serializable {
          */
         public Builder text(String text) {
             this.text = text;
+            if (copiedStart >= 0) {
+                data = null;
+                copiedStart = -1;
+                copiedEnd = -1;
+            }
+            return this;
+        }
+
+        /**
+         * Specifies that the text of the token is the document data between the
+         * start and end offsets. The token keeps a reference to the data instead
+         * of a copy of the text, and creates the string only when
+         * {@link Token#getText()} is called. If a text was also specified,
+         * and it differs from the data at the offsets, the token keeps the text.
+         *
+         * @param data the document data
+         * @return this
+         */
+        public Builder textFrom(CharSequence data) {
+            this.data = data;
+            copiedStart = -1;
+            copiedEnd = -1;
             return this;
         }
 
@@ -253,7 +422,18 @@ public class Token extends Attribute implements Serializable {
          * @return the new token
          */
         public Token build() {
-            return new Token(startOffset, endOffset, text, normalized, source, analyses, buildExtendedProperties());
+            String builtText = text;
+            CharSequence builtData = null;
+            if (data != null) {
+                if (copiedStart >= 0 && (copiedStart != startOffset || copiedEnd != endOffset)) {
+                    // the offsets moved; the text did not.
+                    builtText = data.subSequence(copiedStart, copiedEnd).toString();
+                } else if (text == null || textMatches(text, data, startOffset, endOffset)) {
+                    builtText = null;
+                    builtData = data;
+                }
+            }
+            return new Token(startOffset, endOffset, builtText, builtData, normalized, source, analyses, buildExtendedProperties());
         }
 
         @Override
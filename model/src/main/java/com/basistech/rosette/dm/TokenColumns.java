@@ -0,0 +1,240 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A compact, column-oriented list of tokens. Offsets are stored in parallel
+ * arrays; the text of a token is not stored at all when it matches the document
+ * data at the token's offsets; normalized forms, analyses, sources and
+ * extended properties are pooled, so that each distinct value is stored once.
+ * {@link Token} objects are created on demand by {@link #get(int)}, and are not retained.
+ * Tokens whose text matches the data refer to it, as with {@link Token.Builder#textFrom(CharSequence)}.
+ * <p>
+ * Use {@link #compact(CharSequence, ListAttribute)} or {@link TokenColumns.Builder} to
+ * obtain a {@link ListAttribute} backed by columns. The result is equal to, and
+ * serializes the same way as, the ordinary list of the same tokens.
+ */
+public final class TokenColumns extends AbstractList<Token> implements RandomAccess, Serializable {
+    private static final long serialVersionUID = 222L;
+
+    private final CharSequence data;
+    private final int[] starts;
+    private final int[] ends;
+    /* null when every text matches the data; otherwise null at positions that match. */
+    private final String[] texts;
+    /* null unless some tokens have no text at all. */
+    private final BitSet missingTexts;
+    /* pooled values; a reference of 0 means null, and k means pool[k - 1]. */
+    private final Object[] pool;
+    /* each column of references is null when all of its values are null. */
+    private final int[] normalizedRefs;
+    private final int[] sourceRefs;
+    private final int[] analysesRefs;
+    private final int[] extendedPropertiesRefs;
+
+    private TokenColumns(Builder builder) {
+        int size = builder.size;
+        data = builder.data;
+        starts = Arrays.copyOf(builder.starts, size);
+        ends = Arrays.copyOf(builder.ends, size);
+        texts = builder.texts == null ? null : Arrays.copyOf(builder.texts, size);
+        missingTexts = builder.missingTexts;
+        pool = builder.pool.keySet().toArray(new Object[builder.pool.size()]);
+        normalizedRefs = trim(builder.normalizedRefs, size);
+        sourceRefs = trim(builder.sourceRefs, size);
+        analysesRefs = trim(builder.analysesRefs, size);
+        extendedPropertiesRefs = trim(builder.extendedPropertiesRefs, size);
+    }
+
+    private static int[] trim(int[] refs, int size) {
+        return refs == null ? null : Arrays.copyOf(refs, size);
+    }
+
+    /**
+     * Returns a column-backed copy of a list of tokens, with the same extended properties.
+     *
+     * @param data the document data that the token offsets refer to
+     * @param tokens the tokens
+     * @return the compact list
+     */
+    public static ListAttribute<Token> compact(CharSequence data, ListAttribute<Token> tokens) {
+        if (tokens.getItems() instanceof TokenColumns) {
+            return tokens;
+        }
+        return new Builder(data).addAll(tokens).extendedProperties(tokens.getExtendedProperties()).build();
+    }
+
+    @Override
+    public Token get(int index) {
+        String text = texts == null ? null : texts[index];
+        CharSequence textData = text == null && (missingTexts == null || !missingTexts.get(index)) ? data : null;
+        return Token.pooled(starts[index], ends[index], text, textData,
+                this.<ImmutableList<String>>pooled(normalizedRefs, index),
+                this.<String>pooled(sourceRefs, index),
+                this.<ImmutableList<MorphoAnalysis>>pooled(analysesRefs, index),
+                this.<Map<String, Object>>pooled(extendedPropertiesRefs, index));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T pooled(int[] refs, int index) {
+        if (refs == null || refs[index] == 0) {
+            return null;
+        }
+        return (T) pool[refs[index] - 1];
+    }
+
+    @Override
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Builds a column-backed list of tokens.
+     */
+    public static class Builder {
+        private final CharSequence data;
+        private int size;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private String[] texts;
+        private BitSet missingTexts;
+        private final Map<Object, Integer> pool = Maps.newLinkedHashMap();
+        private int[] normalizedRefs;
+        private int[] sourceRefs;
+        private int[] analysesRefs;
+        private int[] extendedPropertiesRefs;
+        private Map<String, Object> extendedProperties;
+
+        /**
+         * Constructs a builder for tokens over the given data.
+         *
+         * @param data the document data that the token offsets refer to
+         */
+        public Builder(CharSequence data) {
+            this.data = data;
+        }
+
+        /**
+         * Adds a token.
+         *
+         * @param token the token
+         * @return this
+         */
+        public Builder add(Token token) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            int start = token.getStartOffset();
+            int end = token.getEndOffset();
+            starts[size] = start;
+            ends[size] = end;
+            CharSequence tokenData = token.textData();
+            if (data == null || tokenData != data) {
+                String text = token.getText();
+                if (text == null) {
+                    if (missingTexts == null) {
+                        missingTexts = new BitSet();
+                    }
+                    missingTexts.set(size);
+                } else if (!Token.textMatches(text, data, start, end)) {
+                    texts = grow(texts);
+                    texts[size] = text;
+                }
+            }
+            normalizedRefs = ref(normalizedRefs, token.getNormalized());
+            sourceRefs = ref(sourceRefs, token.getSource());
+            analysesRefs = ref(analysesRefs, token.getAnalyses());
+            Map<String, Object> properties = token.getExtendedProperties();
+            extendedPropertiesRefs = ref(extendedPropertiesRefs, properties.isEmpty() ? null : properties);
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds tokens.
+         *
+         * @param tokens the tokens
+         * @return this
+         */
+        public Builder addAll(List<Token> tokens) {
+            for (Token token : tokens) {
+                add(token);
+            }
+            return this;
+        }
+
+        /**
+         * Specifies the extended properties of the list itself.
+         *
+         * @param properties the extended properties
+         * @return this
+         */
+        public Builder extendedProperties(Map<String, Object> properties) {
+            this.extendedProperties = properties;
+            return this;
+        }
+
+        private String[] grow(String[] column) {
+            if (column == null) {
+                return new String[starts.length];
+            }
+            return column.length < starts.length ? Arrays.copyOf(column, starts.length) : column;
+        }
+
+        private int[] ref(int[] refs, Object value) {
+            if (value == null) {
+                if (refs != null && refs.length < starts.length) {
+                    return Arrays.copyOf(refs, starts.length);
+                }
+                return refs;
+            }
+            int[] column = refs;
+            if (column == null) {
+                column = new int[starts.length];
+            } else if (column.length < starts.length) {
+                column = Arrays.copyOf(column, starts.length);
+            }
+            Integer ref = pool.get(value);
+            if (ref == null) {
+                ref = pool.size() + 1;
+                pool.put(value, ref);
+            }
+            column[size] = ref;
+            return column;
+        }
+
+        /**
+         * Constructs the list from the current state of the builder.
+         *
+         * @return the list
+         */
+        public ListAttribute<Token> build() {
+            return new ListAttribute<>(Token.class, new TokenColumns(this), extendedProperties);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Loops over vectors for {@link EmbeddingCollection}, and conversions to and from half precision. Each loop is unrolled four ways into
+ * independent sums, which breaks the chain of dependent additions and lets the JIT keep more
+ * of the work in flight; the vectors are usually a few hundred values long.
+ * Rows come from an array when the collection has one, and from the buffer otherwise;
+ * quantized rows always come from arrays.
+ */
+final class VectorKernels {
+    /* the float for each half-precision bit pattern. */
+    private static final float[] HALVES = new float[1 << 16];
+
+    static {
+        for (int x = 0; x < HALVES.length; x++) {
+            HALVES[x] = halfToFloat(x);
+        }
+    }
+
+    private VectorKernels() {
+        //
+    }
+
+    static float fromHalf(short half) {
+        return HALVES[half & 0xffff];
+    }
+
+    private static float halfToFloat(int half) {
+        int sign = (half & 0x8000) << 16;
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        } else if (exponent == 0) {
+            // zero or subnormal: the mantissa counts units of 2^-24.
+            float magnitude = mantissa * 0x1p-24f;
+            return sign == 0 ? magnitude : -magnitude;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 127 - 15) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * Convert to half precision, rounding to nearest even. Values too large
+     * for half precision become infinite.
+     */
+    static short toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int magnitude = bits & 0x7fffffff;
+        if (magnitude >= 0x7f800000) {
+            // infinity, or NaN, which keeps a mantissa bit.
+            return (short) (sign | 0x7c00 | (magnitude > 0x7f800000 ? 0x200 : 0));
+        } else if (magnitude >= 0x477ff000) {
+            // 65520 and up round past the largest half, 65504.
+            return (short) (sign | 0x7c00);
+        } else if (magnitude >= 0x38800000) {
+            // normal: rebias the exponent and round away the low 13 bits of the mantissa.
+            int rounded = magnitude + 0xfff + ((magnitude >>> 13) & 1);
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        }
+        return (short) (sign | (int) Math.rint(Float.intBitsToFloat(magnitude) * 0x1p24f));
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            s0 += a[aOffset + x] * b[bOffset + x];
+            s1 += a[aOffset + x + 1] * b[bOffset + x + 1];
+            s2 += a[aOffset + x + 2] * b[bOffset + x + 2];
+            s3 += a[aOffset + x + 3] * b[bOffset + x + 3];
+        }
+        for (; x < length; x++) {
+            s0 += a[aOffset + x] * b[bOffset + x];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float dot(FloatBuffer a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            s0 += a.get(aOffset + x) * b[bOffset + x];
+            s1 += a.get(aOffset + x + 1) * b[bOffset + x + 1];
+            s2 += a.get(aOffset + x + 2) * b[bOffset + x + 2];
+            s3 += a.get(aOffset + x + 3) * b[bOffset + x + 3];
+        }
+        for (; x < length; x++) {
+            s0 += a.get(aOffset + x) * b[bOffset + x];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            float d0 = a[aOffset + x] - b[bOffset + x];
+            float d1 = a[aOffset + x + 1] - b[bOffset + x + 1];
+            float d2 = a[aOffset + x + 2] - b[bOffset + x + 2];
+            float d3 = a[aOffset + x + 3] - b[bOffset + x + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; x < length; x++) {
+            float d = a[aOffset + x] - b[bOffset + x];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float squaredDistance(FloatBuffer a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            float d0 = a.get(aOffset + x) - b[bOffset + x];
+            float d1 = a.get(aOffset + x + 1) - b[bOffset + x + 1];
+            float d2 = a.get(aOffset + x + 2) - b[bOffset + x + 2];
+            float d3 = a.get(aOffset + x + 3) - b[bOffset + x + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; x < length; x++) {
+            float d = a.get(aOffset + x) - b[bOffset + x];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float dot(short[] halves, int offset, float[] b, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            s0 += HALVES[halves[offset + x] & 0xffff] * b[x];
+            s1 += HALVES[halves[offset + x + 1] & 0xffff] * b[x + 1];
+            s2 += HALVES[halves[offset + x + 2] & 0xffff] * b[x + 2];
+            s3 += HALVES[halves[offset + x + 3] & 0xffff] * b[x + 3];
+        }
+        for (; x < length; x++) {
+            s0 += HALVES[halves[offset + x] & 0xffff] * b[x];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float squaredDistance(short[] halves, int offset, float[] b, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            float d0 = HALVES[halves[offset + x] & 0xffff] - b[x];
+            float d1 = HALVES[halves[offset + x + 1] & 0xffff] - b[x + 1];
+            float d2 = HALVES[halves[offset + x + 2] & 0xffff] - b[x + 2];
+            float d3 = HALVES[halves[offset + x + 3] & 0xffff] - b[x + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; x < length; x++) {
+            float d = HALVES[halves[offset + x] & 0xffff] - b[x];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /* the dot product of the codes themselves; the caller applies the scale and offset. */
+    static float dot(byte[] codes, int offset, float[] b, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            s0 += codes[offset + x] * b[x];
+            s1 += codes[offset + x + 1] * b[x + 1];
+            s2 += codes[offset + x + 2] * b[x + 2];
+            s3 += codes[offset + x + 3] * b[x + 3];
+        }
+        for (; x < length; x++) {
+            s0 += codes[offset + x] * b[x];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float squaredDistance(byte[] codes, int offset, float scale, float shift, float[] b, int length) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int x = 0;
+        for (; x + 3 < length; x += 4) {
+            float d0 = scale * codes[offset + x] + shift - b[x];
+            float d1 = scale * codes[offset + x + 1] + shift - b[x + 1];
+            float d2 = scale * codes[offset + x + 2] + shift - b[x + 2];
+            float d3 = scale * codes[offset + x + 3] + shift - b[x + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; x < length; x++) {
+            float d = scale * codes[offset + x] + shift - b[x];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Select the positions of the highest scores, best first; equal scores in order of position.
+     * @param scores the scores.
+     * @param k the most positions to return.
+     * @param exclude a position to leave out, or -1.
+     * @return the positions.
+     */
+    static int[] top(float[] scores, int k, int exclude) {
+        int count = Math.min(k, exclude >= 0 && exclude < scores.length ? scores.length - 1 : scores.length);
+        if (count <= 0) {
+            return new int[0];
+        }
+        // a heap of the best so far, with the worst of them at the root.
+        int[] heap = new int[count];
+        int size = 0;
+        for (int position = 0; position < scores.length; position++) {
+            if (position == exclude) {
+                continue;
+            }
+            if (size < count) {
+                heap[size] = position;
+                up(heap, size++, scores);
+            } else if (worse(heap[0], position, scores)) {
+                heap[0] = position;
+                down(heap, size, scores);
+            }
+        }
+        int[] result = new int[count];
+        for (int x = count - 1; x >= 0; x--) {
+            result[x] = heap[0];
+            heap[0] = heap[--size];
+            down(heap, size, scores);
+        }
+        return result;
+    }
+
+    private static boolean worse(int a, int b, float[] scores) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && a > b);
+    }
+
+    private static void up(int[] heap, int node, float[] scores) {
+        while (node > 0) {
+            int parent = (node - 1) / 2;
+            if (!worse(heap[node], heap[parent], scores)) {
+                return;
+            }
+            swap(heap, node, parent);
+            node = parent;
+        }
+    }
+
+    private static void down(int[] heap, int size, float[] scores) {
+        int node = 0;
+        while (true) {
+            int worst = node;
+            int left = 2 * node + 1;
+            if (left < size && worse(heap[left], heap[worst], scores)) {
+                worst = left;
+            }
+            if (left + 1 < size && worse(heap[left + 1], heap[worst], scores)) {
+                worst = left + 1;
+            }
+            if (worst == node) {
+                return;
+            }
+            swap(heap, node, worst);
+            node = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import java.util.Map;
+
+/**
+ * Receives measurements of annotators wrapped by {@link InstrumentedAnnotator}.
+ * Implementations must be thread-safe, since an annotator may be used from several threads.
+ * {@link NoOpAnnotatorMetrics} discards everything, and {@link CodahaleAnnotatorMetrics}
+ * records into a Codahale Metrics registry.
+ */
+public interface AnnotatorMetrics {
+    /**
+     * Records a successful call to an annotator.
+     *
+     * @param name the name of the annotator.
+     * @param texts the number of texts annotated by the call; more than one for a batch.
+     * @param elapsedNanos the time taken by the call, in nanoseconds.
+     * @param growth for each attribute counted, the number of items the call added, summed over the texts.
+     */
+    void annotated(String name, int texts, long elapsedNanos, Map<String, Integer> growth);
+
+    /**
+     * Records a call to an annotator that failed.
+     *
+     * @param name the name of the annotator.
+     * @param texts the number of texts passed to the call.
+     * @param elapsedNanos the time taken before the failure, in nanoseconds.
+     * @param e the exception.
+     */
+    void failed(String name, int texts, long elapsedNanos, RuntimeException e);
+}
@@ -0,0 +1,61 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics recorded in a Codahale Metrics {@link MetricRegistry}. For an annotator named <i>name</i>,
+ * this records:
+ * <ul>
+ *     <li><i>prefix.name</i>{@code .latency}, a timer of the calls;</li>
+ *     <li><i>prefix.name</i>{@code .texts}, a meter of the texts annotated, for throughput;</li>
+ *     <li><i>prefix.name</i>{@code .errors}, a meter of the calls that failed;</li>
+ *     <li><i>prefix.name</i>{@code .growth.}<i>key</i>, a histogram of the items added to each counted attribute.</li>
+ * </ul>
+ * The metrics library is an optional dependency of the data model; it must be present to use this class.
+ */
+public class CodahaleAnnotatorMetrics implements AnnotatorMetrics {
+    private final MetricRegistry registry;
+    private final String prefix;
+
+    /**
+     * Constructs metrics that record into a registry.
+     * @param registry the registry.
+     * @param prefix the prefix for the names of the metrics.
+     */
+    public CodahaleAnnotatorMetrics(MetricRegistry registry, String prefix) {
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void annotated(String name, int texts, long elapsedNanos, Map<String, Integer> growth) {
+        registry.timer(MetricRegistry.name(prefix, name, "latency")).update(elapsedNanos, TimeUnit.NANOSECONDS);
+        registry.meter(MetricRegistry.name(prefix, name, "texts")).mark(texts);
+        for (Map.Entry<String, Integer> me : growth.entrySet()) {
+            registry.histogram(MetricRegistry.name(prefix, name, "growth", me.getKey())).update(me.getValue());
+        }
+    }
+
+    @Override
+    public void failed(String name, int texts, long elapsedNanos, RuntimeException e) {
+        registry.meter(MetricRegistry.name(prefix, name, "errors")).mark();
+    }
+}
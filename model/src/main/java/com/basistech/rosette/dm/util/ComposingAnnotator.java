@@ -18,13 +18,17 @@ package com.basistech.rosette.dm.util;
 
 import com.basistech.rosette.dm.AnnotatedText;
 import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.Annotators;
+import com.basistech.rosette.dm.BatchAnnotator;
+
+import com.google.common.collect.Lists;
 
 import java.util.List;
 
 /**
- * An annotator that applies a series of annotators.
+ * An annotator that applies a series of annotators. Batches are passed whole to each annotator.
  */
-public class ComposingAnnotator implements Annotator {
+public class ComposingAnnotator implements BatchAnnotator {
     private final List<Annotator> annotators;
 
     /**
@@ -37,6 +41,23 @@ public class ComposingAnnotator implements Annotator {
         this.annotators = annotators;
     }
 
+    /**
+     * Construct a composing annotator from a list of annotators, each of them measured with an
+     * {@link InstrumentedAnnotator}. The measurements of each annotator are named {@code stage}<i>N</i>,
+     * where <i>N</i> is its position in the list, followed by a hyphen and the simple name of its class, if any.
+     * @param annotators the annotators.
+     * @param metrics the metrics to report to.
+     */
+    public ComposingAnnotator(List<Annotator> annotators, AnnotatorMetrics metrics) {
+        this.annotators = Lists.newArrayList();
+        for (int x = 0; x < annotators.size(); x++) {
+            Annotator annotator = annotators.get(x);
+            String className = annotator.getClass().getSimpleName();
+            String name = className.isEmpty() ? "stage" + x : "stage" + x + "-" + className;
+            this.annotators.add(new InstrumentedAnnotator(name, annotator, metrics));
+        }
+    }
+
 
     /**
      * Apply the first annotator to the plain character sequence, and then chain the results of that
@@ -61,4 +82,18 @@ public class ComposingAnnotator implements Annotator {
         }
         return at;
     }
+
+    /**
+     * Pass the batch through each annotator in turn.
+     * @param inputs data to process
+     * @return the results of the last annotator, in the order of the inputs.
+     */
+    @Override
+    public List<AnnotatedText> annotateAll(List<AnnotatedText> inputs) {
+        List<AnnotatedText> results = inputs;
+        for (Annotator annotator : annotators) {
+            results = Annotators.annotateAll(annotator, results);
+        }
+        return results;
+    }
 }
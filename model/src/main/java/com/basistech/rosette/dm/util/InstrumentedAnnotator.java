@@ -0,0 +1,165 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.Annotators;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.BatchAnnotator;
+import com.basistech.rosette.dm.DeferredAttributes;
+import com.basistech.rosette.dm.ListAttribute;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * An annotator that measures another. Each call is timed and reported to an {@link AnnotatorMetrics},
+ * along with the number of items that the call added to each of the counted attributes.
+ * By default, the counted attributes are tokens and entities. Counting reads the counted attributes
+ * of the inputs and the results, but does not decode {@link DeferredAttributes}: an attribute that
+ * is not yet decoded in an input or its result is not counted. Batches are passed through whole,
+ * and measured as one call.
+ */
+public class InstrumentedAnnotator implements BatchAnnotator {
+    private final String name;
+    private final Annotator delegate;
+    private final AnnotatorMetrics metrics;
+    private final List<String> countedKeys;
+
+    /**
+     * Construct an annotator that counts tokens and entities.
+     * @param name the name for the measurements.
+     * @param delegate the annotator to measure.
+     * @param metrics the metrics to report to.
+     */
+    public InstrumentedAnnotator(String name, Annotator delegate, AnnotatorMetrics metrics) {
+        this(name, delegate, metrics, EnumSet.of(AttributeKey.TOKEN, AttributeKey.ENTITY));
+    }
+
+    /**
+     * Construct an annotator.
+     * @param name the name for the measurements.
+     * @param delegate the annotator to measure.
+     * @param metrics the metrics to report to.
+     * @param counted the attributes whose growth is counted.
+     */
+    public InstrumentedAnnotator(String name, Annotator delegate, AnnotatorMetrics metrics, Collection<AttributeKey> counted) {
+        this.name = name;
+        this.delegate = delegate;
+        this.metrics = metrics;
+        ImmutableList.Builder<String> keys = ImmutableList.builder();
+        for (AttributeKey key : counted) {
+            keys.add(key.key());
+        }
+        this.countedKeys = keys.build();
+    }
+
+    /**
+     * @return the annotator that this measures.
+     */
+    public Annotator getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public AnnotatedText annotate(CharSequence input) {
+        long start = System.nanoTime();
+        AnnotatedText result;
+        try {
+            result = delegate.annotate(input);
+        } catch (RuntimeException e) {
+            metrics.failed(name, 1, System.nanoTime() - start, e);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        int[] growth = new int[countedKeys.size()];
+        addGrowth(growth, null, result);
+        metrics.annotated(name, 1, elapsed, growthMap(growth));
+        return result;
+    }
+
+    @Override
+    public AnnotatedText annotate(AnnotatedText input) {
+        long start = System.nanoTime();
+        AnnotatedText result;
+        try {
+            result = delegate.annotate(input);
+        } catch (RuntimeException e) {
+            metrics.failed(name, 1, System.nanoTime() - start, e);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        int[] growth = new int[countedKeys.size()];
+        addGrowth(growth, input, result);
+        metrics.annotated(name, 1, elapsed, growthMap(growth));
+        return result;
+    }
+
+    @Override
+    public List<AnnotatedText> annotateAll(List<AnnotatedText> inputs) {
+        long start = System.nanoTime();
+        List<AnnotatedText> results;
+        try {
+            results = Annotators.annotateAll(delegate, inputs);
+        } catch (RuntimeException e) {
+            metrics.failed(name, inputs.size(), System.nanoTime() - start, e);
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        int[] growth = new int[countedKeys.size()];
+        for (int x = 0; x < results.size(); x++) {
+            addGrowth(growth, inputs.get(x), results.get(x));
+        }
+        metrics.annotated(name, inputs.size(), elapsed, growthMap(growth));
+        return results;
+    }
+
+    private void addGrowth(int[] growth, AnnotatedText input, AnnotatedText result) {
+        for (int x = 0; x < growth.length; x++) {
+            String key = countedKeys.get(x);
+            if (decoded(input, key) && decoded(result, key)) {
+                growth[x] += size(result, key) - size(input, key);
+            }
+        }
+    }
+
+    /* counting must not be what decodes a deferred attribute. */
+    private static boolean decoded(AnnotatedText text, String key) {
+        return text == null || !(text.getAttributes() instanceof DeferredAttributes)
+                || ((DeferredAttributes) text.getAttributes()).isDecoded(key);
+    }
+
+    private static int size(AnnotatedText text, String key) {
+        if (text == null) {
+            return 0;
+        }
+        BaseAttribute attribute = text.getAttributes().get(key);
+        return attribute instanceof ListAttribute ? ((ListAttribute<?>) attribute).size() : 0;
+    }
+
+    private ImmutableMap<String, Integer> growthMap(int[] growth) {
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (int x = 0; x < growth.length; x++) {
+            builder.put(countedKeys.get(x), growth[x]);
+        }
+        return builder.build();
+    }
+}
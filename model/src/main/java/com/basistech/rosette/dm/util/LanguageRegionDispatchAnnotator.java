@@ -0,0 +1,293 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.RosetteUnsupportedLanguageException;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.BaseNounPhrase;
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.LanguageDetection;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.ScriptRegion;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.util.LanguageCode;
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An annotator that divides a text by language, and delegates each part to the annotator for its language.
+ * The parts are defined by {@link AnnotatedText#getLanguageDetectionRegions()}: consecutive regions whose
+ * first detected language is the same form one segment, and each segment extends to the start of the next,
+ * so that the whole text is covered. The segments are annotated concurrently. Each delegate receives the
+ * data of its segment, with a whole document language detection for the segment's language.
+ * <p>
+ * The result is the input text, with the attributes of the segments added. The offsets of tokens,
+ * sentences, base noun phrases, script regions and entity mentions are moved to their places in the
+ * whole text, and the token indexes of dependencies are moved to match the combined tokens.
+ * Each segment numbers its in-document entity IDs, of the form {@code T<n>}, from {@code T0}, so
+ * these are renumbered after the IDs of the segments before it; other entity IDs, such as
+ * knowledge base IDs, are kept as they are.
+ * The lists from the segments are joined in order. Other attributes of the segments are not kept, since
+ * they describe a segment as a whole. If the language of a segment is not in the map,
+ * this throws {@link RosetteUnsupportedLanguageException} before any segment is annotated.
+ */
+public class LanguageRegionDispatchAnnotator implements Annotator {
+    private final Map<LanguageCode, Annotator> delegates;
+    private final ExecutorService executor;
+
+    LanguageRegionDispatchAnnotator(Map<LanguageCode, Annotator> delegates, ExecutorService executor) {
+        this.delegates = delegates;
+        this.executor = executor;
+    }
+
+    /**
+     * One part of the text in one language.
+     */
+    private static final class Segment {
+        final LanguageCode language;
+        final int startOffset;
+        int endOffset;
+
+        Segment(LanguageCode language, int startOffset) {
+            this.language = language;
+            this.startOffset = startOffset;
+        }
+    }
+
+    @Override
+    public AnnotatedText annotate(CharSequence input) {
+        throw new UnsupportedOperationException("No AnnotatedText provided.");
+    }
+
+    @Override
+    public AnnotatedText annotate(AnnotatedText input) {
+        List<Segment> segments = segments(input);
+        List<Future<AnnotatedText>> futures = Lists.newArrayList();
+        try {
+            for (Segment segment : segments) {
+                futures.add(executor.submit(task(input.getData(), segment)));
+            }
+            AnnotatedText.Builder builder = new AnnotatedText.Builder(input);
+            Stitcher stitcher = new Stitcher();
+            for (int x = 0; x < segments.size(); x++) {
+                stitcher.add(segments.get(x).startOffset, futures.get(x).get());
+            }
+            stitcher.addTo(builder);
+            return builder.build();
+        } catch (InterruptedException e) {
+            throw Tasks.interrupted(e);
+        } catch (ExecutionException e) {
+            throw Tasks.failure(e);
+        } finally {
+            for (Future<AnnotatedText> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private List<Segment> segments(AnnotatedText input) {
+        ListAttribute<LanguageDetection> regions = input.getLanguageDetectionRegions();
+        if (regions == null || regions.isEmpty()) {
+            throw new IllegalArgumentException("No language detection regions in the input.");
+        }
+        List<Segment> segments = Lists.newArrayList();
+        Segment current = null;
+        for (LanguageDetection region : regions) {
+            if (region.getDetectionResults().isEmpty()) {
+                throw new IllegalArgumentException("No detection results for the region at " + region.getStartOffset());
+            }
+            LanguageCode language = region.getDetectionResults().get(0).getLanguage();
+            if (current == null || current.language != language) {
+                if (!delegates.containsKey(language)) {
+                    throw new RosetteUnsupportedLanguageException(language);
+                }
+                // the first segment also covers any text before the first region.
+                current = new Segment(language, current == null ? 0 : region.getStartOffset());
+                if (!segments.isEmpty()) {
+                    segments.get(segments.size() - 1).endOffset = current.startOffset;
+                }
+                segments.add(current);
+            }
+        }
+        current.endOffset = input.getData().length();
+        return segments;
+    }
+
+    private Callable<AnnotatedText> task(CharSequence data, Segment segment) {
+        final Annotator delegate = delegates.get(segment.language);
+        int length = segment.endOffset - segment.startOffset;
+        LanguageDetection.DetectionResult result = new LanguageDetection.DetectionResult.Builder(segment.language).build();
+        final AnnotatedText segmentText = new AnnotatedText.Builder()
+                .data(data.subSequence(segment.startOffset, segment.endOffset).toString())
+                .wholeDocumentLanguageDetection(new LanguageDetection.Builder(0, length, Lists.newArrayList(result)).build())
+                .build();
+        return new Callable<AnnotatedText>() {
+            @Override
+            public AnnotatedText call() throws Exception {
+                return delegate.annotate(segmentText);
+            }
+        };
+    }
+
+    /**
+     * Joins the lists of the segments, with their offsets moved into the whole text.
+     */
+    private static final class Stitcher {
+        private static final Pattern IN_DOCUMENT_ID = Pattern.compile("T(\\d{1,9})");
+        private final ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        private final ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+        private final ListAttribute.Builder<BaseNounPhrase> baseNounPhrases = new ListAttribute.Builder<>(BaseNounPhrase.class);
+        private final ListAttribute.Builder<ScriptRegion> scriptRegions = new ListAttribute.Builder<>(ScriptRegion.class);
+        private final ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        private final ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+        /* the attributes that any segment had. */
+        private final List<AttributeKey> present = Lists.newArrayList();
+        private int tokenCount;
+        /* the first in-document entity ID number that the next segment may use. */
+        private int entityIdBase;
+
+        void add(int offset, AnnotatedText segment) {
+            if (segment.getTokens() != null) {
+                see(AttributeKey.TOKEN, segment.getTokens(), tokens);
+                for (Token token : segment.getTokens()) {
+                    tokens.add(new Token.Builder(token).startOffset(token.getStartOffset() + offset)
+                            .endOffset(token.getEndOffset() + offset).build());
+                }
+            }
+            if (segment.getSentences() != null) {
+                see(AttributeKey.SENTENCE, segment.getSentences(), sentences);
+                for (Sentence sentence : segment.getSentences()) {
+                    sentences.add(new Sentence.Builder(sentence).startOffset(sentence.getStartOffset() + offset)
+                            .endOffset(sentence.getEndOffset() + offset).build());
+                }
+            }
+            if (segment.getBaseNounPhrases() != null) {
+                see(AttributeKey.BASE_NOUN_PHRASE, segment.getBaseNounPhrases(), baseNounPhrases);
+                for (BaseNounPhrase phrase : segment.getBaseNounPhrases()) {
+                    baseNounPhrases.add(new BaseNounPhrase.Builder(phrase).startOffset(phrase.getStartOffset() + offset)
+                            .endOffset(phrase.getEndOffset() + offset).build());
+                }
+            }
+            if (segment.getScriptRegions() != null) {
+                see(AttributeKey.SCRIPT_REGION, segment.getScriptRegions(), scriptRegions);
+                for (ScriptRegion region : segment.getScriptRegions()) {
+                    scriptRegions.add(new ScriptRegion.Builder(region).startOffset(region.getStartOffset() + offset)
+                            .endOffset(region.getEndOffset() + offset).build());
+                }
+            }
+            if (segment.getEntities() != null) {
+                see(AttributeKey.ENTITY, segment.getEntities(), entities);
+                int nextBase = entityIdBase;
+                for (Entity entity : segment.getEntities()) {
+                    Entity moved = moveEntity(entity, offset, entityIdBase);
+                    nextBase = Math.max(nextBase, inDocumentIdNumber(moved.getEntityId()) + 1);
+                    entities.add(moved);
+                }
+                entityIdBase = nextBase;
+            }
+            if (segment.getDependencies() != null) {
+                see(AttributeKey.DEPENDENCY, segment.getDependencies(), dependencies);
+                for (Dependency dependency : segment.getDependencies()) {
+                    dependencies.add(moveDependency(dependency, tokenCount));
+                }
+            }
+            if (segment.getTokens() != null) {
+                tokenCount += segment.getTokens().size();
+            }
+        }
+
+        /* keeps the extended properties of the first list for each attribute. */
+        private void see(AttributeKey key, ListAttribute<?> list, ListAttribute.Builder<?> builder) {
+            if (!present.contains(key)) {
+                present.add(key);
+                builder.extendedProperties(list.getExtendedProperties());
+            }
+        }
+
+        private static Entity moveEntity(Entity entity, int offset, int idBase) {
+            Entity.Builder builder = new Entity.Builder(entity);
+            int number = inDocumentIdNumber(entity.getEntityId());
+            if (number >= 0) {
+                builder.entityId("T" + (number + idBase));
+            }
+            if (entity.getMentions() != null) {
+                List<Mention> mentions = Lists.newArrayList();
+                for (Mention mention : entity.getMentions()) {
+                    mentions.add(new Mention.Builder(mention).startOffset(mention.getStartOffset() + offset)
+                            .endOffset(mention.getEndOffset() + offset).build());
+                }
+                builder.mentions(mentions);
+            }
+            return builder.build();
+        }
+
+        /* the number of an in-document entity ID, or -1 for any other ID. */
+        private static int inDocumentIdNumber(String id) {
+            if (id == null) {
+                return -1;
+            }
+            Matcher matcher = IN_DOCUMENT_ID.matcher(id);
+            return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+        }
+
+        private static Dependency moveDependency(Dependency dependency, int tokenCount) {
+            // a negative governor index marks the root.
+            int governor = dependency.getGovernorTokenIndex();
+            Dependency.Builder builder = new Dependency.Builder(dependency.getRelationship(),
+                    governor < 0 ? governor : governor + tokenCount,
+                    dependency.getDependencyTokenIndex() + tokenCount);
+            builder.extendedProperties(dependency.getExtendedProperties());
+            return builder.build();
+        }
+
+        void addTo(AnnotatedText.Builder builder) {
+            for (AttributeKey key : present) {
+                builder.attribute(key, list(key));
+            }
+        }
+
+        private BaseAttribute list(AttributeKey key) {
+            switch (key) {
+            case TOKEN:
+                return tokens.build();
+            case SENTENCE:
+                return sentences.build();
+            case BASE_NOUN_PHRASE:
+                return baseNounPhrases.build();
+            case SCRIPT_REGION:
+                return scriptRegions.build();
+            case ENTITY:
+                return entities.build();
+            default:
+                return dependencies.build();
+            }
+        }
+    }
+}
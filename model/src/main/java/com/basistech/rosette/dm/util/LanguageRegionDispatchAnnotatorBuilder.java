@@ -0,0 +1,67 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.util.LanguageCode;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Fluent builder for {@link LanguageRegionDispatchAnnotator}, which divides a text
+ * by the languages in {@link com.basistech.rosette.dm.AnnotatedText#getLanguageDetectionRegions()}
+ * and annotates each part with the annotator for its language. You supply this builder with an
+ * {@link ExecutorService} to run the annotators, and with pairs of {@link LanguageCode},
+ * {@link Annotator}, and then call {@link #build()}. The annotator does not shut the executor down.
+ */
+public class LanguageRegionDispatchAnnotatorBuilder {
+    private final ExecutorService executor;
+    private final Map<LanguageCode, Annotator> delegates;
+
+    /**
+     * Create a builder.
+     * @param executor the executor to run the annotators.
+     */
+    public LanguageRegionDispatchAnnotatorBuilder(ExecutorService executor) {
+        this.executor = executor;
+        delegates = Maps.newEnumMap(LanguageCode.class);
+    }
+
+    /**
+     * Add a delegate
+     * @param language the language to process.
+     * @param delegate the annotator to process it.
+     * @return this.
+     */
+    public LanguageRegionDispatchAnnotatorBuilder delegate(LanguageCode language, Annotator delegate) {
+        if (delegate == null) {
+            delegates.remove(language);
+        } else {
+            delegates.put(language, delegate);
+        }
+        return this;
+    }
+
+    /**
+     * Create the annotator.
+     * @return the annotator.
+     */
+    public LanguageRegionDispatchAnnotator build() {
+        return new LanguageRegionDispatchAnnotator(Maps.newEnumMap(delegates), executor);
+    }
+}
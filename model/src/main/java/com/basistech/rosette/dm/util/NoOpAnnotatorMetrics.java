@@ -0,0 +1,42 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import java.util.Map;
+
+/**
+ * Metrics that discard all measurements.
+ */
+public final class NoOpAnnotatorMetrics implements AnnotatorMetrics {
+    /**
+     * The one instance.
+     */
+    public static final AnnotatorMetrics INSTANCE = new NoOpAnnotatorMetrics();
+
+    private NoOpAnnotatorMetrics() {
+        //
+    }
+
+    @Override
+    public void annotated(String name, int texts, long elapsedNanos, Map<String, Integer> growth) {
+        //
+    }
+
+    @Override
+    public void failed(String name, int texts, long elapsedNanos, RuntimeException e) {
+        //
+    }
+}
@@ -0,0 +1,154 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.RosetteRuntimeException;
+import com.basistech.rosette.dm.AbstractAnnotator;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An annotator that applies a graph of annotators, running independent annotators concurrently.
+ * Each annotator declares the attributes that it reads and the attributes that it produces;
+ * an annotator waits for the earlier annotators that produce any of the attributes it reads or produces.
+ * Each annotator is given the input text with the outputs of the annotators it waits for, directly or
+ * indirectly. The result is the input text with the declared outputs of all of the annotators,
+ * applied in the order in which the annotators were added, and with the document metadata they add.
+ * Build these with {@link ParallelComposingAnnotatorBuilder}.
+ */
+public class ParallelComposingAnnotator extends AbstractAnnotator {
+    private final ExecutorService executor;
+    private final List<Stage> stages;
+
+    ParallelComposingAnnotator(ExecutorService executor, List<Stage> stages) {
+        this.executor = executor;
+        this.stages = stages;
+    }
+
+    /**
+     * One annotator and its place in the graph.
+     */
+    static final class Stage {
+        final Annotator annotator;
+        final Set<String> outputs;
+        /* number of stages this one waits for directly. */
+        final int dependencies;
+        /* stages that wait for this one directly. */
+        final int[] dependents;
+        /* stages this one waits for directly or indirectly, in order. */
+        final int[] ancestors;
+
+        Stage(Annotator annotator, Set<String> outputs, int dependencies, int[] dependents, int[] ancestors) {
+            this.annotator = annotator;
+            this.outputs = outputs;
+            this.dependencies = dependencies;
+            this.dependents = dependents;
+            this.ancestors = ancestors;
+        }
+    }
+
+    /**
+     * Apply the annotators. This blocks until they are all done. If one fails, this cancels the others
+     * that are running and throws its exception; checked exceptions are wrapped in {@link RosetteRuntimeException}.
+     * @param input data to process
+     * @return the input with the outputs of all of the annotators.
+     */
+    @Override
+    public AnnotatedText annotate(AnnotatedText input) {
+        AnnotatedText[] results = new AnnotatedText[stages.size()];
+        int[] waiting = new int[stages.size()];
+        Map<Future<AnnotatedText>, Integer> running = Maps.newHashMap();
+        CompletionService<AnnotatedText> completion = new ExecutorCompletionService<>(executor);
+        try {
+            for (int x = 0; x < stages.size(); x++) {
+                waiting[x] = stages.get(x).dependencies;
+                if (waiting[x] == 0) {
+                    submit(completion, running, input, x, results);
+                }
+            }
+            while (!running.isEmpty()) {
+                Future<AnnotatedText> done = completion.take();
+                int index = running.remove(done);
+                results[index] = done.get();
+                for (int dependent : stages.get(index).dependents) {
+                    waiting[dependent]--;
+                    if (waiting[dependent] == 0) {
+                        submit(completion, running, input, dependent, results);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw Tasks.interrupted(e);
+        } catch (ExecutionException e) {
+            throw Tasks.failure(e);
+        } finally {
+            for (Future<AnnotatedText> future : running.keySet()) {
+                future.cancel(true);
+            }
+        }
+
+        AnnotatedText.Builder builder = new AnnotatedText.Builder(input);
+        for (int x = 0; x < stages.size(); x++) {
+            merge(builder, x, results[x]);
+        }
+        return builder.build();
+    }
+
+    private void submit(CompletionService<AnnotatedText> completion, Map<Future<AnnotatedText>, Integer> running,
+                        AnnotatedText input, int index, AnnotatedText[] results) {
+        final Stage stage = stages.get(index);
+        final AnnotatedText stageInput;
+        if (stage.ancestors.length == 0) {
+            stageInput = input;
+        } else {
+            AnnotatedText.Builder builder = new AnnotatedText.Builder(input);
+            for (int ancestor : stage.ancestors) {
+                merge(builder, ancestor, results[ancestor]);
+            }
+            stageInput = builder.build();
+        }
+        Future<AnnotatedText> future = completion.submit(new Callable<AnnotatedText>() {
+            @Override
+            public AnnotatedText call() throws Exception {
+                return stage.annotator.annotate(stageInput);
+            }
+        });
+        running.put(future, index);
+    }
+
+    private void merge(AnnotatedText.Builder builder, int index, AnnotatedText result) {
+        Map<String, BaseAttribute> attributes = result.getAttributes();
+        for (String key : stages.get(index).outputs) {
+            BaseAttribute attribute = attributes.get(key);
+            if (attribute != null) {
+                builder.attribute(key, attribute);
+            }
+        }
+        builder.documentMetadata(result.getDocumentMetadata());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.AttributeKey;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Fluent builder for {@link ParallelComposingAnnotator}. You supply this builder with an
+ * {@link ExecutorService} to run the annotators, and then with each annotator, along with the
+ * attributes it reads and the attributes it produces. Attributes that no earlier annotator
+ * produces are read from the input text. Annotators may only wait for annotators added before them,
+ * so the order in which they are added must respect their dependencies.
+ * <p>
+ * The calling thread waits while the annotators run, so the executor needs threads of its own;
+ * any executor will do, such as a fixed thread pool or one that starts a thread per task.
+ * The annotator does not shut the executor down.
+ */
+public class ParallelComposingAnnotatorBuilder {
+    private final ExecutorService executor;
+    private final List<Annotator> annotators;
+    private final List<Set<AttributeKey>> inputs;
+    private final List<Set<AttributeKey>> outputs;
+
+    /**
+     * Create a builder.
+     * @param executor the executor to run the annotators.
+     */
+    public ParallelComposingAnnotatorBuilder(ExecutorService executor) {
+        this.executor = executor;
+        annotators = Lists.newArrayList();
+        inputs = Lists.newArrayList();
+        outputs = Lists.newArrayList();
+    }
+
+    /**
+     * Add an annotator.
+     * @param annotator the annotator.
+     * @param reads the attributes the annotator reads.
+     * @param produces the attributes the annotator produces. Other attributes in its results are ignored.
+     * @return this.
+     */
+    public ParallelComposingAnnotatorBuilder annotator(Annotator annotator, Collection<AttributeKey> reads,
+                                                       Collection<AttributeKey> produces) {
+        annotators.add(annotator);
+        inputs.add(ImmutableSet.copyOf(reads));
+        outputs.add(ImmutableSet.copyOf(produces));
+        return this;
+    }
+
+    /**
+     * Create the annotator.
+     * @return the annotator.
+     */
+    public ParallelComposingAnnotator build() {
+        int count = annotators.size();
+        List<BitSet> dependencies = Lists.newArrayList();
+        List<List<Integer>> dependents = Lists.newArrayList();
+        for (int x = 0; x < count; x++) {
+            BitSet direct = new BitSet();
+            for (int y = 0; y < x; y++) {
+                if (!Collections.disjoint(outputs.get(y), inputs.get(x))
+                    || !Collections.disjoint(outputs.get(y), outputs.get(x))) {
+                    direct.set(y);
+                    dependents.get(y).add(x);
+                }
+            }
+            dependencies.add(direct);
+            dependents.add(Lists.<Integer>newArrayList());
+        }
+
+        List<ParallelComposingAnnotator.Stage> stages = Lists.newArrayList();
+        List<BitSet> ancestors = Lists.newArrayList();
+        for (int x = 0; x < count; x++) {
+            BitSet all = new BitSet();
+            BitSet direct = dependencies.get(x);
+            for (int y = direct.nextSetBit(0); y >= 0; y = direct.nextSetBit(y + 1)) {
+                all.set(y);
+                all.or(ancestors.get(y));
+            }
+            ancestors.add(all);
+            ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+            for (AttributeKey key : outputs.get(x)) {
+                keys.add(key.key());
+            }
+            stages.add(new ParallelComposingAnnotator.Stage(annotators.get(x), keys.build(), direct.cardinality(),
+                    Ints.toArray(dependents.get(x)), indices(all)));
+        }
+        return new ParallelComposingAnnotator(executor, stages);
+    }
+
+    private static int[] indices(BitSet bits) {
+        int[] result = new int[bits.cardinality()];
+        int next = 0;
+        for (int x = bits.nextSetBit(0); x >= 0; x = bits.nextSetBit(x + 1)) {
+            result[next++] = x;
+        }
+        return result;
+    }
+}
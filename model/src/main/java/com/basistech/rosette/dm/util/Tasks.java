@@ -0,0 +1,55 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.RosetteRuntimeException;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Exceptions for annotators that run other annotators as concurrent tasks.
+ */
+final class Tasks {
+    private Tasks() {
+        //
+    }
+
+    /**
+     * Returns the exception to throw when a task fails. Unchecked exceptions are passed on;
+     * checked exceptions are wrapped in {@link RosetteRuntimeException}.
+     * @param e the failure.
+     * @return the exception to throw.
+     */
+    static RuntimeException failure(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new RosetteRuntimeException("Annotator failed", cause);
+    }
+
+    /**
+     * Restores the interrupt status of the current thread, and returns the exception to throw.
+     * @param e the interruption.
+     * @return the exception to throw.
+     */
+    static RuntimeException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new RosetteRuntimeException("Interrupted while waiting for annotators", e);
+    }
+}
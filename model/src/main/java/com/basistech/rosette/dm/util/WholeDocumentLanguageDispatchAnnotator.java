@@ -20,9 +20,15 @@ package com.basistech.rosette.dm.util;
 import com.basistech.rosette.RosetteUnsupportedLanguageException;
 import com.basistech.rosette.dm.AnnotatedText;
 import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.Annotators;
+import com.basistech.rosette.dm.BatchAnnotator;
 import com.basistech.rosette.dm.LanguageDetection;
 import com.basistech.util.LanguageCode;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -30,8 +36,9 @@ import java.util.Map;
  * This picks the annotator based on the first detected language, and has no provision
  * to dispatch 'other' languages as if they are unknown. If the best detected
  * language is not in the map, this throws {@link RosetteUnsupportedLanguageException}.
+ * A batch is divided by language, and each annotator receives one batch of the texts in its language.
  */
-public class WholeDocumentLanguageDispatchAnnotator implements Annotator {
+public class WholeDocumentLanguageDispatchAnnotator implements BatchAnnotator {
     private final Map<LanguageCode, Annotator> delegates;
 
     WholeDocumentLanguageDispatchAnnotator(Map<LanguageCode, Annotator> delegates) {
@@ -45,14 +52,55 @@ public class WholeDocumentLanguageDispatchAnnotator implements Annotator {
 
     @Override
     public AnnotatedText annotate(AnnotatedText input) {
+        return delegate(language(input)).annotate(input);
+    }
+
+    /**
+     * Annotate a batch. The whole batch is checked before any of it is passed on.
+     * @param inputs data to process
+     * @return the results, in the order of the inputs.
+     */
+    @Override
+    public List<AnnotatedText> annotateAll(List<AnnotatedText> inputs) {
+        Map<LanguageCode, List<Integer>> positions = Maps.newEnumMap(LanguageCode.class);
+        for (int x = 0; x < inputs.size(); x++) {
+            LanguageCode language = language(inputs.get(x));
+            delegate(language);
+            List<Integer> languagePositions = positions.get(language);
+            if (languagePositions == null) {
+                languagePositions = Lists.newArrayList();
+                positions.put(language, languagePositions);
+            }
+            languagePositions.add(x);
+        }
+
+        AnnotatedText[] results = new AnnotatedText[inputs.size()];
+        for (Map.Entry<LanguageCode, List<Integer>> me : positions.entrySet()) {
+            List<AnnotatedText> batch = Lists.newArrayListWithCapacity(me.getValue().size());
+            for (int position : me.getValue()) {
+                batch.add(inputs.get(position));
+            }
+            List<AnnotatedText> batchResults = Annotators.annotateAll(delegate(me.getKey()), batch);
+            for (int x = 0; x < batchResults.size(); x++) {
+                results[me.getValue().get(x)] = batchResults.get(x);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static LanguageCode language(AnnotatedText input) {
         LanguageDetection languageDetection = input.getWholeTextLanguageDetection();
         if (languageDetection == null || languageDetection.getDetectionResults().size() == 0) {
             throw new IllegalArgumentException("No whole document language detection in the input.");
         }
-        Annotator delegate = delegates.get(languageDetection.getDetectionResults().get(0).getLanguage());
+        return languageDetection.getDetectionResults().get(0).getLanguage();
+    }
+
+    private Annotator delegate(LanguageCode language) {
+        Annotator delegate = delegates.get(language);
         if (delegate == null) {
-            throw new RosetteUnsupportedLanguageException(languageDetection.getDetectionResults().get(0).getLanguage());
+            throw new RosetteUnsupportedLanguageException(language);
         }
-        return delegate.annotate(input);
+        return delegate;
     }
 }
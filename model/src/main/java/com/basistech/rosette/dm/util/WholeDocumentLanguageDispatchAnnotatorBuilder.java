@@ -34,6 +34,7 @@ import java.util.Map;
  */
 public class WholeDocumentLanguageDispatchAnnotatorBuilder {
     private final Map<LanguageCode, Annotator> delegates;
+    private AnnotatorMetrics metrics;
 
     /**
      * Create a builder.
@@ -57,11 +58,29 @@ public class WholeDocumentLanguageDispatchAnnotatorBuilder {
         return this;
     }
 
+    /**
+     * Measure each delegate with an {@link InstrumentedAnnotator}. The measurements of each delegate
+     * are named {@code dispatch.}<i>language</i>, with the ISO 639-3 code of its language.
+     * @param metrics the metrics to report to, or null to not measure the delegates.
+     * @return this.
+     */
+    public WholeDocumentLanguageDispatchAnnotatorBuilder metrics(AnnotatorMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
     /**
      * Create the annotator.
      * @return the annotator.
      */
     public Annotator build() {
-        return new WholeDocumentLanguageDispatchAnnotator(delegates);
+        if (metrics == null) {
+            return new WholeDocumentLanguageDispatchAnnotator(delegates);
+        }
+        Map<LanguageCode, Annotator> instrumented = Maps.newEnumMap(LanguageCode.class);
+        for (Map.Entry<LanguageCode, Annotator> me : delegates.entrySet()) {
+            instrumented.put(me.getKey(), new InstrumentedAnnotator("dispatch." + me.getKey().ISO639_3(), me.getValue(), metrics));
+        }
+        return new WholeDocumentLanguageDispatchAnnotator(instrumented);
     }
 }
@@ -28,11 +28,17 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 @SuppressWarnings("deprecation")
 public class AnnotatedTextTest {
@@ -669,4 +675,36 @@ public class AnnotatedTextTest {
         Entity.Builder entityBuilder = new Entity.Builder(entity);
         assertEquals(0, (int)entityBuilder.build().getHeadMentionIndex());
     }
+
+    @Test
+    public void compatListsComputedOnce() throws Exception {
+        ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+        entities.add(new Entity.Builder().type("PERSON").headMentionIndex(0).mention(new Mention.Builder(0, 6).build()).build());
+        final AnnotatedText text = new AnnotatedText.Builder().data("George").entities(entities.build()).build();
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<?>>> results = Lists.newArrayList();
+            for (int x = 0; x < threads; x++) {
+                results.add(executor.submit(new Callable<List<?>>() {
+                    @Override
+                    public List<?> call() throws Exception {
+                        start.await();
+                        List<Object> lists = Lists.newArrayList();
+                        lists.add(text.getEntityMentions());
+                        lists.add(text.getResolvedEntities());
+                        return lists;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<List<?>> result : results) {
+                assertSame(text.getEntityMentions(), result.get().get(0));
+                assertSame(text.getResolvedEntities(), result.get().get(1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeferredAttributesTest {
+
+    private static ListAttribute<Token> tokens() {
+        ListAttribute.Builder<Token> builder = new ListAttribute.Builder<>(Token.class);
+        builder.add(new Token.Builder(0, 4, "Dogs").build());
+        builder.add(new Token.Builder(5, 10, "chase").build());
+        return builder.build();
+    }
+
+    private static final class CountingDecoder implements DeferredAttributes.Decoder {
+        private final AtomicInteger count = new AtomicInteger();
+        private final BaseAttribute value;
+
+        CountingDecoder(BaseAttribute value) {
+            this.value = value;
+        }
+
+        @Override
+        public BaseAttribute decode() {
+            count.incrementAndGet();
+            return value;
+        }
+    }
+
+    @Test
+    public void decodedOnce() {
+        ListAttribute<Token> tokens = tokens();
+        CountingDecoder decoder = new CountingDecoder(tokens);
+        DeferredAttributes attributes = new DeferredAttributes.Builder().put(AttributeKey.TOKEN.key(), decoder).build();
+        AnnotatedText text = new AnnotatedText.Builder().data("Dogs chase").deferredAttributes(attributes).build();
+        assertEquals(0, decoder.count.get());
+        assertFalse(attributes.isDecoded(AttributeKey.TOKEN.key()));
+        assertSame(tokens, text.getTokens());
+        assertSame(tokens, text.getTokens());
+        assertEquals(1, decoder.count.get());
+        assertTrue(attributes.isDecoded(AttributeKey.TOKEN.key()));
+    }
+
+    @Test
+    public void builderKeepsDeferred() {
+        ListAttribute<Token> tokens = tokens();
+        CountingDecoder decoder = new CountingDecoder(tokens);
+        DeferredAttributes attributes = new DeferredAttributes.Builder().put(AttributeKey.TOKEN.key(), decoder).build();
+        AnnotatedText text = new AnnotatedText.Builder().data("Dogs chase").deferredAttributes(attributes).build();
+        ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+        sentences.add(new Sentence.Builder(0, 10).build());
+        AnnotatedText copy = new AnnotatedText.Builder(text).sentences(sentences.build()).build();
+        assertEquals(2, copy.getAttributes().size());
+        assertEquals(1, copy.getSentences().size());
+        assertEquals(0, decoder.count.get());
+        assertEquals(tokens, copy.getTokens());
+        assertEquals(1, decoder.count.get());
+    }
+
+    private static ListAttribute<Entity> entities() {
+        ListAttribute.Builder<Entity> builder = new ListAttribute.Builder<>(Entity.class);
+        builder.add(new Entity.Builder().type("ANIMAL").mention(new Mention.Builder(0, 4).build()).build());
+        return builder.build();
+    }
+
+    private static AnnotatedText withDeferredEntities(CountingDecoder decoder) {
+        DeferredAttributes attributes = new DeferredAttributes.Builder()
+                .put(AttributeKey.ENTITY.key(), decoder)
+                .put(AttributeKey.TOKEN.key(), new CountingDecoder(tokens()))
+                .build();
+        return new AnnotatedText.Builder().data("Dogs chase").deferredAttributes(attributes).build();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void builderReplacesDeferredEntities() {
+        CountingDecoder decoder = new CountingDecoder(entities());
+        ListAttribute.Builder<EntityMention> mentions = new ListAttribute.Builder<>(EntityMention.class);
+        mentions.add(new EntityMention.Builder(5, 10, "ACTION").build());
+        AnnotatedText copy = new AnnotatedText.Builder(withDeferredEntities(decoder)).entityMentions(mentions.build()).build();
+        AnnotatedText expected = new AnnotatedText.Builder().data("Dogs chase").entityMentions(mentions.build()).build();
+        assertEquals(expected.getEntities(), copy.getEntities());
+        assertFalse(copy.getAttributes().containsKey(AttributeKey.ENTITY_MENTION.key()));
+        assertEquals(tokens(), copy.getTokens());
+        assertEquals(0, decoder.count.get());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void builderConvertsDeferredEntities() {
+        ListAttribute.Builder<ResolvedEntity> resolved = new ListAttribute.Builder<>(ResolvedEntity.class);
+        resolved.add(new ResolvedEntity.Builder(0, 4, "Q144").coreferenceChainId(0).build());
+        AnnotatedText copy = new AnnotatedText.Builder(withDeferredEntities(new CountingDecoder(entities())))
+                .resolvedEntities(resolved.build()).build();
+        AnnotatedText plain = new AnnotatedText.Builder().data("Dogs chase").entities(entities()).build();
+        AnnotatedText expected = new AnnotatedText.Builder(plain).resolvedEntities(resolved.build()).build();
+        assertEquals(expected.getEntities(), copy.getEntities());
+        assertEquals(expected.getResolvedEntities(), copy.getResolvedEntities());
+    }
+
+    @Test
+    public void builderAttributesIncludeDeferred() {
+        AnnotatedText.Builder builder = new AnnotatedText.Builder(withDeferredEntities(new CountingDecoder(entities())));
+        assertEquals(entities(), builder.attributes().get(AttributeKey.ENTITY.key()));
+        builder.attributes().remove(AttributeKey.TOKEN.key());
+        AnnotatedText copy = builder.build();
+        assertNull(copy.getTokens());
+        assertEquals(entities(), copy.getEntities());
+    }
+
+    @Test
+    public void serializable() throws Exception {
+        DeferredAttributes attributes = new DeferredAttributes.Builder().put(AttributeKey.TOKEN.key(), new CountingDecoder(tokens())).build();
+        AnnotatedText text = new AnnotatedText.Builder().data("Dogs chase").deferredAttributes(attributes).build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(text);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            AnnotatedText read = (AnnotatedText) in.readObject();
+            assertEquals(text.getTokens(), read.getTokens());
+        }
+    }
+}
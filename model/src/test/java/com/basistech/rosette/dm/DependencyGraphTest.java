@@ -0,0 +1,176 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphTest {
+    private static final String DATA = "My dog has fleas .";
+
+    /* The example in the documentation of Dependency. */
+    private static AnnotatedText myDog() {
+        ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+        int start = 0;
+        for (String word : DATA.split(" ")) {
+            tokens.add(new Token.Builder(start, start + word.length(), word).build());
+            start += word.length() + 1;
+        }
+        ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+        dependencies.add(new Dependency.Builder("poss", 1, 0).build());
+        dependencies.add(new Dependency.Builder("nsubj", 2, 1).build());
+        dependencies.add(new Dependency.Builder("root", -1, 2).build());
+        dependencies.add(new Dependency.Builder("dobj", 2, 3).build());
+        dependencies.add(new Dependency.Builder("punct", 2, 4).build());
+        return new AnnotatedText.Builder().data(DATA).tokens(tokens.build()).dependencies(dependencies.build()).build();
+    }
+
+    private static DependencyGraph tree(int... governors) {
+        ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+        for (int x = 0; x < governors.length; x++) {
+            dependencies.add(new Dependency.Builder("dep", governors[x], x).build());
+        }
+        return new DependencyGraph(dependencies.build(), governors.length);
+    }
+
+    @Test
+    public void adjacency() {
+        AnnotatedText text = myDog();
+        DependencyGraph graph = text.getDependencyGraph();
+        assertSame(graph, text.getDependencyGraph());
+        assertEquals(5, graph.tokenCount());
+        assertArrayEquals(new int[] {2}, graph.roots());
+        assertArrayEquals(new int[] {1, 3, 4}, graph.children(2));
+        assertArrayEquals(new int[] {1, 3, 4}, graph.childArcs(2));
+        assertEquals(0, graph.childCount(4));
+        assertArrayEquals(new int[] {1}, graph.parents(0));
+        assertArrayEquals(new int[] {0}, graph.parentArcs(0));
+        assertEquals(2, graph.parent(1));
+        assertEquals(-1, graph.parent(2));
+        assertEquals("dobj", text.getDependencies().get(graph.childArcs(2)[1]).getRelationship());
+    }
+
+    @Test
+    public void traversals() {
+        DependencyGraph graph = myDog().getDependencyGraph();
+        assertArrayEquals(new int[] {0, 2}, graph.subtreeExtent(1));
+        assertArrayEquals(new int[] {0, 5}, graph.subtreeExtent(2));
+        assertArrayEquals(new int[] {3, 4}, graph.subtreeExtent(3));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, graph.path(0, 3));
+        assertArrayEquals(new int[] {4, 2, 1}, graph.path(4, 1));
+        assertArrayEquals(new int[] {3}, graph.path(3, 3));
+    }
+
+    @Test
+    public void disconnectedAndCyclic() {
+        // 0 -> 1 -> 0 is a cycle; 2 -> 3 is apart from it.
+        DependencyGraph graph = tree(1, 0, -1, 2);
+        assertArrayEquals(new int[] {0, 2}, graph.subtreeExtent(0));
+        assertArrayEquals(new int[0], graph.path(0, 3));
+        assertArrayEquals(new int[] {1, 0}, graph.path(1, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfRange() {
+        myDog().getDependencyGraph().children(5);
+    }
+
+    @Test
+    public void noDependencies() {
+        assertNull(new AnnotatedText.Builder().data(DATA).build().getDependencyGraph());
+    }
+
+    @Test
+    public void matchesScan() {
+        Random random = new Random(42);
+        int[] governors = new int[500];
+        governors[0] = -1;
+        for (int x = 1; x < governors.length; x++) {
+            governors[x] = random.nextInt(x);
+        }
+        DependencyGraph graph = tree(governors);
+        for (int q = 0; q < 100; q++) {
+            int from = random.nextInt(governors.length);
+            int to = random.nextInt(governors.length);
+            int[] path = graph.path(from, to);
+            assertEquals(from, path[0]);
+            assertEquals(to, path[path.length - 1]);
+            for (int x = 1; x < path.length; x++) {
+                int a = path[x - 1];
+                int b = path[x];
+                assertTrue(governors[a] == b || governors[b] == a);
+            }
+            // in a tree, the path goes up to the lowest common ancestor and down again.
+            assertEquals(depth(governors, from) + depth(governors, to) - 2 * depth(governors, ancestor(governors, from, to)) + 1,
+                    path.length);
+            int start = from;
+            int end = from + 1;
+            for (int x = 0; x < governors.length; x++) {
+                if (ancestor(governors, from, x) == from) {
+                    start = Math.min(start, x);
+                    end = Math.max(end, x + 1);
+                }
+            }
+            assertArrayEquals(new int[] {start, end}, graph.subtreeExtent(from));
+        }
+    }
+
+    private static int depth(int[] governors, int token) {
+        int depth = 0;
+        for (int t = token; t >= 0; t = governors[t]) {
+            depth++;
+        }
+        return depth;
+    }
+
+    private static int ancestor(int[] governors, int a, int b) {
+        for (int x = a; x >= 0; x = governors[x]) {
+            for (int y = b; y >= 0; y = governors[y]) {
+                if (x == y) {
+                    return x;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void serializedWithoutGraph() throws Exception {
+        AnnotatedText text = myDog();
+        assertNotNull(text.getDependencyGraph());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(text);
+        }
+        AnnotatedText copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (AnnotatedText) in.readObject();
+        }
+        assertArrayEquals(new int[] {1, 3, 4}, copy.getDependencyGraph().children(2));
+    }
+}
@@ -0,0 +1,355 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EmbeddingCollectionTest {
+
+    private static EmbeddingCollection build(int... indices) {
+        EmbeddingCollection.Builder builder = new EmbeddingCollection.Builder();
+        // added out of order; the collection keeps them in index order.
+        for (int x = indices.length - 1; x >= 0; x--) {
+            builder.put(indices[x], new float[] {indices[x], -indices[x], 0.5f});
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void rows() {
+        for (int[] indices : new int[][] {{0, 1, 2, 3}, {1, 4, 9}}) {
+            EmbeddingCollection collection = build(indices);
+            assertEquals(indices.length, collection.size());
+            assertEquals(3, collection.getDimension());
+            for (int x = 0; x < indices.length; x++) {
+                assertEquals(indices[x], collection.getIndex(x));
+                assertEquals(x, collection.positionOf(indices[x]));
+                FloatBuffer row = collection.getRow(indices[x]);
+                assertTrue(row.isReadOnly());
+                assertEquals(3, row.remaining());
+                assertEquals(indices[x], row.get(0), 0);
+                assertEquals(-indices[x], row.get(1), 0);
+                assertEquals(row, collection.rowAt(x));
+            }
+            assertNull(collection.getRow(-1));
+            assertNull(collection.getRow(10));
+            assertEquals(-1, collection.positionOf(5));
+            assertEquals(3 * indices.length, collection.getValues().remaining());
+        }
+    }
+
+    @Test
+    public void mapView() {
+        EmbeddingCollection collection = build(1, 4, 9);
+        Map<Integer, float[]> map = collection.getEmbeddings();
+        assertEquals(3, map.size());
+        assertArrayEquals(new float[] {4, -4, 0.5f}, map.get(4), 0);
+        assertNull(map.get(5));
+        assertNull(map.get("4"));
+        int x = 0;
+        for (Map.Entry<Integer, float[]> me : map.entrySet()) {
+            assertEquals(collection.getIndex(x++), (int) me.getKey());
+        }
+        // the map copies; changing a copy does not change the collection.
+        map.get(4)[0] = 100;
+        assertEquals(4, collection.getRow(4).get(0), 0);
+    }
+
+    @Test
+    public void sharedValues() {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(4 * 6).order(ByteOrder.nativeOrder());
+        FloatBuffer values = bytes.asFloatBuffer();
+        values.put(new float[] {1, 2, 3, 4, 5, 6}).flip();
+        EmbeddingCollection collection = new EmbeddingCollection.Builder().values(new int[] {0, 7}, 3, values).build();
+        assertEquals(2, collection.size());
+        assertEquals(4, collection.getRow(7).get(0), 0);
+        assertTrue(collection.getValues().isDirect());
+        // a builder over a collection shares it until something is added.
+        assertSame(collection, new EmbeddingCollection.Builder(collection).build());
+        EmbeddingCollection extended = new EmbeddingCollection.Builder(collection).put(8, new float[] {7, 8, 9}).build();
+        assertEquals(3, extended.size());
+        assertEquals(2, collection.size());
+        assertEquals(collection.getRow(7), extended.getRow(7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mixedDimensions() {
+        new EmbeddingCollection.Builder().put(0, new float[2]).put(1, new float[3]).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooFewValues() {
+        new EmbeddingCollection.Builder().values(new int[] {0, 1}, 3, FloatBuffer.allocate(5));
+    }
+
+    @Test
+    public void equalsAndSerialization() throws Exception {
+        EmbeddingCollection collection = build(1, 4, 9);
+        assertEquals(collection, build(1, 4, 9));
+        assertEquals(collection.hashCode(), build(1, 4, 9).hashCode());
+        assertEquals(build(), build());
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ObjectOutputStream os = new ObjectOutputStream(byteArrayOutputStream);
+        os.writeObject(collection);
+        os.close();
+        ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+        assertEquals(collection, is.readObject());
+    }
+
+    /* has the fields of an EmbeddingCollection as releases before 2.2.3 serialized it. */
+    private static final class LegacyCollection implements Serializable {
+        private static final long serialVersionUID = 222L;
+        private final Map<Integer, float[]> embeddings;
+
+        LegacyCollection(Map<Integer, float[]> embeddings) {
+            this.embeddings = embeddings;
+        }
+    }
+
+    /* serializes a legacy collection as if it were written by EmbeddingCollection itself. */
+    private static Object readLegacy(Map<Integer, float[]> embeddings) throws Exception {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(byteArrayOutputStream)) {
+            os.writeObject(new LegacyCollection(embeddings));
+        }
+        byte[] bytes = renameClass(byteArrayOutputStream.toByteArray(), LegacyCollection.class.getName(),
+                EmbeddingCollection.class.getName());
+        try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return is.readObject();
+        }
+    }
+
+    private static byte[] renameClass(byte[] stream, String from, String to) throws Exception {
+        byte[] fromBytes = utf(from);
+        int at = Bytes.indexOf(stream, fromBytes);
+        assertTrue(at >= 0);
+        return Bytes.concat(Arrays.copyOf(stream, at), utf(to),
+                Arrays.copyOfRange(stream, at + fromBytes.length, stream.length));
+    }
+
+    private static byte[] utf(String string) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(string);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void legacySerialization() throws Exception {
+        Map<Integer, float[]> embeddings = new HashMap<>();
+        embeddings.put(4, new float[] {4, -4, 0.5f});
+        embeddings.put(1, new float[] {1, -1, 0.5f});
+        embeddings.put(9, new float[] {9, -9, 0.5f});
+        assertEquals(build(1, 4, 9), readLegacy(embeddings));
+        // old collections stored an empty map as null.
+        assertEquals(build(), readLegacy(null));
+    }
+
+    @Test(expected = InvalidObjectException.class)
+    public void legacyRaggedRows() throws Exception {
+        Map<Integer, float[]> embeddings = new HashMap<>();
+        embeddings.put(1, new float[] {1, -1, 0.5f});
+        embeddings.put(4, new float[] {4, -4});
+        readLegacy(embeddings);
+    }
+
+    private static EmbeddingCollection random(int rows, int dimension, boolean direct) {
+        Random random = new Random(rows * 31 + dimension);
+        FloatBuffer values = direct
+                ? ByteBuffer.allocateDirect(4 * rows * dimension).order(ByteOrder.nativeOrder()).asFloatBuffer()
+                : FloatBuffer.allocate(rows * dimension);
+        int[] indices = new int[rows];
+        for (int x = 0; x < rows; x++) {
+            indices[x] = 2 * x;
+            for (int y = 0; y < dimension; y++) {
+                values.put(random.nextFloat() - 0.5f);
+            }
+        }
+        values.flip();
+        return new EmbeddingCollection.Builder().values(indices, dimension, values).build();
+    }
+
+    private static double dot(FloatBuffer a, FloatBuffer b) {
+        double sum = 0;
+        for (int x = 0; x < a.remaining(); x++) {
+            sum += (double) a.get(x) * b.get(x);
+        }
+        return sum;
+    }
+
+    @Test
+    public void similarity() {
+        for (boolean direct : new boolean[] {false, true}) {
+            // 7 and 301 leave a remainder after the unrolled loop.
+            for (int dimension : new int[] {1, 7, 64, 301}) {
+                EmbeddingCollection collection = random(20, dimension, direct);
+                FloatBuffer query = random(1, dimension, !direct).rowAt(0);
+                float[] cosines = new float[collection.size()];
+                collection.cosines(query, cosines);
+                for (int x = 0; x < collection.size(); x++) {
+                    FloatBuffer row = collection.rowAt(x);
+                    double norm = Math.sqrt(dot(row, row));
+                    assertEquals(norm, collection.norm(x), 1e-4);
+                    assertEquals(dot(row, query), collection.dot(x, query), 1e-4);
+                    double cosine = dot(row, query) / (norm * Math.sqrt(dot(query, query)));
+                    assertEquals(cosine, collection.cosine(x, query), 1e-4);
+                    assertEquals(cosine, cosines[x], 1e-4);
+                    double squared = dot(row, row) + dot(query, query) - 2 * dot(row, query);
+                    assertEquals(Math.sqrt(squared), collection.distance(x, query), 1e-3);
+                    assertEquals(0, collection.distance(x, row), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearest() {
+        EmbeddingCollection collection = random(50, 16, false);
+        FloatBuffer query = collection.rowAt(7);
+        int[] nearest = collection.nearest(query, 5);
+        assertEquals(5, nearest.length);
+        assertEquals(7, nearest[0]);
+        float[] cosines = new float[collection.size()];
+        collection.cosines(query, cosines);
+        for (int x = 1; x < nearest.length; x++) {
+            assertTrue(cosines[nearest[x - 1]] >= cosines[nearest[x]]);
+        }
+        // the rest are no closer than the last one returned.
+        for (int x = 0; x < cosines.length; x++) {
+            if (!Ints.contains(nearest, x)) {
+                assertTrue(cosines[x] <= cosines[nearest[4]]);
+            }
+        }
+        int[] others = collection.nearest(7, 4);
+        assertArrayEquals(Arrays.copyOfRange(nearest, 1, 5), others);
+        assertEquals(49, collection.nearest(7, 100).length);
+        assertEquals(0, build().nearest(FloatBuffer.allocate(0), 3).length);
+    }
+
+    @Test
+    public void zeroVectors() {
+        EmbeddingCollection collection = new EmbeddingCollection.Builder().put(0, new float[2]).put(1, new float[] {1, 0}).build();
+        assertEquals(0, collection.cosine(0, FloatBuffer.wrap(new float[] {1, 0})), 0);
+        assertEquals(0, collection.cosine(1, FloatBuffer.wrap(new float[2])), 0);
+        // equal scores come in order of position.
+        assertArrayEquals(new int[] {0, 1}, collection.nearest(FloatBuffer.wrap(new float[2]), 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongDimension() {
+        random(3, 4, false).cosine(0, FloatBuffer.allocate(5));
+    }
+
+    @Test
+    public void halfPrecision() {
+        for (float value : new float[] {0, 1, -2, 0.5f, 65504, -65504, 0x1p-14f, 0x1p-24f, 1 + 0x1p-10f}) {
+            assertEquals(value, VectorKernels.fromHalf(VectorKernels.toHalf(value)), 0);
+        }
+        assertEquals(0x8000, VectorKernels.toHalf(-0.0f) & 0xffff);
+        // halfway cases round to even.
+        assertEquals(1, VectorKernels.fromHalf(VectorKernels.toHalf(1 + 0x1p-11f)), 0);
+        assertEquals(1 + 0x1p-9f, VectorKernels.fromHalf(VectorKernels.toHalf(1 + 3 * 0x1p-11f)), 0);
+        assertEquals(0, VectorKernels.fromHalf(VectorKernels.toHalf(0x1p-25f)), 0);
+        assertEquals(0x1p-24f, VectorKernels.fromHalf(VectorKernels.toHalf(0x1.8p-25f)), 0);
+        assertEquals(65504, VectorKernels.fromHalf(VectorKernels.toHalf(65519)), 0);
+        assertEquals(Float.POSITIVE_INFINITY, VectorKernels.fromHalf(VectorKernels.toHalf(65520)), 0);
+        assertEquals(Float.NEGATIVE_INFINITY, VectorKernels.fromHalf(VectorKernels.toHalf(Float.NEGATIVE_INFINITY)), 0);
+        assertTrue(Float.isNaN(VectorKernels.fromHalf(VectorKernels.toHalf(Float.NaN))));
+    }
+
+    @Test
+    public void quantized() throws Exception {
+        EmbeddingCollection full = random(30, 37, false);
+        FloatBuffer query = random(1, 37, false).rowAt(0);
+        float[] fullCosines = new float[full.size()];
+        full.cosines(query, fullCosines);
+        for (EmbeddingCollection.Precision precision : new EmbeddingCollection.Precision[] {
+            EmbeddingCollection.Precision.FLOAT16, EmbeddingCollection.Precision.INT8}) {
+            EmbeddingCollection collection = new EmbeddingCollection.Builder(full).precision(precision).build();
+            assertEquals(precision, collection.getPrecision());
+            int bytesPerRow = precision == EmbeddingCollection.Precision.INT8 ? 8 + 37 : 2 * 37;
+            assertEquals(30 * bytesPerRow, collection.getEncodedValues().remaining());
+            // the values are within the precision of the full values.
+            for (int x = 0; x < full.size(); x++) {
+                FloatBuffer expected = full.rowAt(x);
+                FloatBuffer actual = collection.rowAt(x);
+                for (int y = 0; y < 37; y++) {
+                    assertEquals(expected.get(y), actual.get(y), precision == EmbeddingCollection.Precision.INT8 ? 1.0 / 510 : 1.0 / 4096);
+                }
+            }
+            // similarity works on the values the collection returns.
+            EmbeddingCollection dequantized = new EmbeddingCollection.Builder(collection).precision(EmbeddingCollection.Precision.FLOAT32).build();
+            assertEquals(EmbeddingCollection.Precision.FLOAT32, dequantized.getPrecision());
+            assertEquals(collection.getValues(), dequantized.getValues());
+            float[] cosines = new float[collection.size()];
+            collection.cosines(query, cosines);
+            for (int x = 0; x < collection.size(); x++) {
+                assertEquals(dequantized.norm(x), collection.norm(x), 1e-4);
+                assertEquals(dequantized.dot(x, query), collection.dot(x, query), 1e-4);
+                assertEquals(dequantized.distance(x, query), collection.distance(x, query), 1e-4);
+                assertEquals(fullCosines[x], cosines[x], 0.02);
+            }
+            assertEquals(collection, new EmbeddingCollection.Builder(collection).build());
+            // quantizing again gives the same codes, but an int8 scale and offset may move by a bit.
+            EmbeddingCollection again = new EmbeddingCollection.Builder(dequantized).precision(precision).build();
+            if (precision == EmbeddingCollection.Precision.FLOAT16) {
+                assertEquals(collection, again);
+            }
+            for (int x = 0; x < 30 * 37; x++) {
+                assertEquals(collection.getValues().get(x), again.getValues().get(x), 1e-6);
+            }
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            ObjectOutputStream os = new ObjectOutputStream(byteArrayOutputStream);
+            os.writeObject(collection);
+            os.close();
+            ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+            assertEquals(collection, is.readObject());
+        }
+    }
+
+    @Test
+    public void constantRow() {
+        EmbeddingCollection collection = new EmbeddingCollection.Builder().put(3, new float[] {0.75f, 0.75f, 0.75f})
+                .precision(EmbeddingCollection.Precision.INT8).build();
+        assertArrayEquals(new float[] {0.75f, 0.75f, 0.75f}, collection.getEmbeddings().get(3), 0);
+    }
+}
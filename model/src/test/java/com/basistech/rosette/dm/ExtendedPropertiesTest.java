@@ -0,0 +1,138 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ExtendedPropertiesTest {
+
+    private static Map<String, Object> expected(int size) {
+        Map<String, Object> map = Maps.newLinkedHashMap();
+        for (int x = 0; x < size; x++) {
+            map.put("key" + x, x);
+        }
+        return map;
+    }
+
+    @Test
+    public void empty() {
+        assertSame(ExtendedProperties.of(), ExtendedProperties.copyOf(ImmutableMap.<String, Object>of()));
+        assertSame(ExtendedProperties.of(), new Token.Builder(0, 1, "a").build().getExtendedProperties());
+        assertSame(ExtendedProperties.of(), new ExtendedProperties.Builder().build());
+    }
+
+    @Test
+    public void mapContract() {
+        // small maps are searched in order, larger ones by hash.
+        for (int size : new int[] {1, 8, 9, 40}) {
+            Map<String, Object> expected = expected(size);
+            ExtendedProperties map = ExtendedProperties.copyOf(expected);
+            assertEquals(expected, map);
+            assertEquals(map, expected);
+            assertEquals(expected.hashCode(), map.hashCode());
+            assertEquals(expected.toString(), map.toString());
+            assertEquals(Lists.newArrayList(expected.keySet()), Lists.newArrayList(map.keySet()));
+            for (int x = 0; x < size; x++) {
+                assertEquals(x, map.get("key" + x));
+            }
+            assertNull(map.get("missing"));
+            assertFalse(map.containsKey(null));
+            assertSame(map, ExtendedProperties.copyOf(map));
+        }
+    }
+
+    @Test
+    public void setExtendedProperty() {
+        Token token = new Token.Builder(0, 1, "a").build();
+        for (int x = 0; x < 20; x++) {
+            token.setExtendedProperty("key" + x, x);
+        }
+        assertEquals(expected(20), token.getExtendedProperties());
+    }
+
+    @Test
+    public void sharedArrays() {
+        ExtendedProperties base = ExtendedProperties.of().plus("a", 1);
+        ExtendedProperties one = base.plus("b", 2);
+        ExtendedProperties two = base.plus("c", 3);
+        assertEquals(ImmutableMap.of("a", 1), base);
+        assertEquals(ImmutableMap.of("a", 1, "b", 2), one);
+        assertEquals(ImmutableMap.of("a", 1, "c", 3), two);
+    }
+
+    @Test
+    public void builderAfterBuild() {
+        ExtendedProperties.Builder builder = new ExtendedProperties.Builder(2).put("a", 1).put("b", 2);
+        ExtendedProperties first = builder.build();
+        builder.put("c", 3);
+        assertEquals(ImmutableMap.of("a", 1, "b", 2), first);
+        assertEquals(ImmutableMap.of("a", 1, "b", 2, "c", 3), builder.build());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKey() {
+        new Token.Builder(0, 1, "a").extendedProperty("a", 1).extendedProperty("a", 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKeyInLargeMap() {
+        ExtendedProperties.Builder builder = new ExtendedProperties.Builder().putAll(expected(20));
+        builder.put("key3", 3);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullValue() {
+        new Token.Builder(0, 1, "a").extendedProperty("a", null);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        ExtendedProperties.copyOf(expected(2)).put("x", 1);
+    }
+
+    @Test
+    public void serializable() throws Exception {
+        ExtendedProperties base = ExtendedProperties.copyOf(expected(3));
+        ExtendedProperties map = base.plus("extra", "x");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(base);
+            output.writeObject(ExtendedProperties.of());
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Object read = input.readObject();
+            assertTrue(read instanceof ExtendedProperties);
+            assertEquals(base, read);
+            assertSame(ExtendedProperties.of(), input.readObject());
+        }
+        assertEquals(4, map.size());
+    }
+}
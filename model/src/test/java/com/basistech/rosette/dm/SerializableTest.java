@@ -307,6 +307,8 @@ public class SerializableTest {
             Entity en = entityList.get(0);
             assertEquals(0.4, en.getSalience(), 0.0001); // just make sure the salience field works all around.
             assertEquals(entity, en);
+            // the compatibility lists are still available after deserialization.
+            assertEquals(1, read.getResolvedEntities().size());
 
             ListAttribute<RelationshipMention> rmList = read.getRelationshipMentions();
             assertNotNull(rmList);
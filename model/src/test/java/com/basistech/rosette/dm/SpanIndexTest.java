@@ -0,0 +1,113 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SpanIndexTest {
+
+    private static ListAttribute<Sentence> sentences(int... offsets) {
+        ListAttribute.Builder<Sentence> builder = new ListAttribute.Builder<>(Sentence.class);
+        for (int x = 0; x < offsets.length; x += 2) {
+            builder.add(new Sentence.Builder(offsets[x], offsets[x + 1]).build());
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void queries() {
+        //                                          0:[0,5) 1:[5,10) 2:[2,8) 3:[10,10) 4:[0,20)
+        ListAttribute<Sentence> list = sentences(0, 5, 5, 10, 2, 8, 10, 10, 0, 20);
+        SpanIndex<Sentence> index = SpanIndex.of(list);
+        assertEquals(5, index.size());
+        assertArrayEquals(new int[] {0, 2, 4}, index.overlappingIndices(4, 5));
+        assertArrayEquals(new int[] {1, 2, 4}, index.overlappingIndices(5, 6));
+        assertArrayEquals(new int[0], index.overlappingIndices(5, 5));
+        assertArrayEquals(new int[] {0, 1, 2, 3}, index.containedIndices(0, 10));
+        assertArrayEquals(new int[] {2, 4}, index.coveringIndices(3, 8));
+        assertEquals(Lists.newArrayList(list.get(1), list.get(4)), index.covering(8, 10));
+        assertEquals(Lists.newArrayList(list.get(3)), index.containedIn(10, 10));
+    }
+
+    @Test
+    public void emptyItemsOverlapNothing() {
+        //                                          0:[3,3) 1:[0,3) 2:[5,5)
+        ListAttribute<Sentence> list = sentences(3, 3, 0, 3, 5, 5);
+        SpanIndex<Sentence> index = SpanIndex.of(list);
+        assertArrayEquals(new int[] {1}, index.overlappingIndices(0, 10));
+        assertArrayEquals(new int[0], index.overlappingIndices(4, 6));
+        assertArrayEquals(new int[0], index.overlappingIndices(1, 1));
+        // empty items still lie within, and are covered by, ranges.
+        assertArrayEquals(new int[] {0, 1, 2}, index.containedIndices(0, 10));
+        assertArrayEquals(new int[] {0, 1}, index.coveringIndices(3, 3));
+    }
+
+    @Test
+    public void cachedOnList() {
+        ListAttribute<Sentence> list = sentences(0, 1);
+        assertSame(SpanIndex.of(list), SpanIndex.of(list));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random random = new Random(42);
+        int[] offsets = new int[2000];
+        for (int x = 0; x < offsets.length; x += 2) {
+            offsets[x] = random.nextInt(5000);
+            offsets[x + 1] = offsets[x] + random.nextInt(50);
+        }
+        ListAttribute<Sentence> list = sentences(offsets);
+        SpanIndex<Sentence> index = SpanIndex.of(list);
+        for (int q = 0; q < 500; q++) {
+            int start = random.nextInt(5100);
+            int end = start + random.nextInt(100);
+            List<Integer> overlapping = Lists.newArrayList();
+            List<Integer> contained = Lists.newArrayList();
+            List<Integer> covering = Lists.newArrayList();
+            for (int x = 0; x < list.size(); x++) {
+                Sentence s = list.get(x);
+                if (start < end && s.getStartOffset() < s.getEndOffset() && s.getStartOffset() < end && s.getEndOffset() > start) {
+                    overlapping.add(x);
+                }
+                if (s.getStartOffset() >= start && s.getEndOffset() <= end) {
+                    contained.add(x);
+                }
+                if (s.getStartOffset() <= start && s.getEndOffset() >= end) {
+                    covering.add(x);
+                }
+            }
+            assertEquals(overlapping, toList(index.overlappingIndices(start, end)));
+            assertEquals(contained, toList(index.containedIndices(start, end)));
+            assertEquals(covering, toList(index.coveringIndices(start, end)));
+        }
+    }
+
+    private static List<Integer> toList(int[] values) {
+        List<Integer> list = Lists.newArrayList();
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
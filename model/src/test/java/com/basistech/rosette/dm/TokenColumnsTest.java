@@ -0,0 +1,108 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TokenColumnsTest {
+    //                                   0123456789012345678
+    private static final String DATA = "Dogs chase a\ncat.";
+
+    private static ListAttribute<Token> tokens() {
+        ListAttribute.Builder<Token> builder = new ListAttribute.Builder<>(Token.class);
+        builder.add(new Token.Builder(0, 4, "Dogs").addNormalized("dog").source("test")
+                .addAnalysis(new MorphoAnalysis.Builder().partOfSpeech("NOUN").lemma("dog").build()).build());
+        Token.Builder chase = new Token.Builder(5, 10, "chase").source("test");
+        chase.extendedProperty("stem", "chas");
+        builder.add(chase.build());
+        builder.add(new Token.Builder(11, 12, "a").source("test").build());
+        // text that does not match the data
+        builder.add(new Token.Builder(12, 16, "cat").source("test").build());
+        builder.add(new Token.Builder(16, 17, ".").source("test").build());
+        return builder.extendedProperty("list", "value").build();
+    }
+
+    @Test
+    public void sameTokens() {
+        ListAttribute<Token> tokens = tokens();
+        ListAttribute<Token> compact = TokenColumns.compact(DATA, tokens);
+        assertTrue(compact.getItems() instanceof TokenColumns);
+        assertEquals(tokens, compact);
+        assertEquals(tokens.hashCode(), compact.hashCode());
+        assertEquals(tokens.getExtendedProperties(), compact.getExtendedProperties());
+        for (int x = 0; x < tokens.size(); x++) {
+            assertEquals(tokens.get(x), compact.get(x));
+            assertEquals(tokens.get(x).getText(), compact.get(x).getText());
+        }
+        assertSame(compact, TokenColumns.compact(DATA, compact));
+        // pooled values are shared, not copied, by each token.
+        assertSame(compact.get(0).getAnalyses(), compact.get(0).getAnalyses());
+        assertSame(compact.get(0).getNormalized(), compact.get(0).getNormalized());
+    }
+
+    @Test
+    public void textFromData() {
+        Token plain = new Token.Builder(0, 4, "Dogs").build();
+        Token view = new Token.Builder(0, 4, null).textFrom(DATA).build();
+        assertEquals(plain, view);
+        assertEquals(view, plain);
+        assertEquals(plain.hashCode(), view.hashCode());
+        assertEquals("Dogs", view.getText());
+        // a text that does not match the data is kept.
+        assertEquals("cat", new Token.Builder(12, 16, "cat").textFrom(DATA).build().getText());
+        // moving the offsets of a copy does not change its text.
+        Token moved = new Token.Builder(view).startOffset(1).endOffset(5).build();
+        assertEquals("Dogs", moved.getText());
+    }
+
+    @Test
+    public void serializable() throws Exception {
+        ListAttribute<Token> compact = TokenColumns.compact(DATA, tokens());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(compact);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(compact, in.readObject());
+        }
+    }
+
+    @Test
+    public void serializedTokenCopiesText() throws Exception {
+        Token view = new Token.Builder(5, 10, null).textFrom(DATA).build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(view);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Token read = (Token) in.readObject();
+            assertEquals(view, read);
+            assertEquals("chase", read.getText());
+            // the document is not part of the serialized token.
+            assertNull(read.textData());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.dm.AbstractAnnotator;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.BaseAttribute;
+import com.basistech.rosette.dm.DeferredAttributes;
+import com.basistech.rosette.dm.LanguageDetection;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Token;
+import com.basistech.util.LanguageCode;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the instrumented annotator and its metrics.
+ */
+public class InstrumentedAnnotatorTest {
+    private MetricRegistry registry;
+    private AnnotatorMetrics metrics;
+
+    @Before
+    public void before() {
+        registry = new MetricRegistry();
+        metrics = new CodahaleAnnotatorMetrics(registry, "adm");
+    }
+
+    private static final class Tokenizer extends AbstractAnnotator {
+        @Override
+        public AnnotatedText annotate(AnnotatedText input) {
+            ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+            tokens.add(new Token.Builder(0, 3, "Who").build());
+            tokens.add(new Token.Builder(4, 6, "is").build());
+            return new AnnotatedText.Builder(input).tokens(tokens.build()).build();
+        }
+    }
+
+    private static final class Failing extends AbstractAnnotator {
+        @Override
+        public AnnotatedText annotate(AnnotatedText input) {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    @Test
+    public void measured() throws Exception {
+        Annotator annotator = new InstrumentedAnnotator("tokens", new Tokenizer(), metrics);
+        annotator.annotate("Who is");
+        annotator.annotate(new AnnotatedText.Builder().data("Who is").build());
+        assertEquals(2, registry.timer("adm.tokens.latency").getCount());
+        assertEquals(2, registry.meter("adm.tokens.texts").getCount());
+        assertEquals(2, registry.histogram("adm.tokens.growth.token").getSnapshot().getMax());
+        assertEquals(0, registry.histogram("adm.tokens.growth.entities").getSnapshot().getMax());
+    }
+
+    @Test
+    public void deferredNotDecoded() throws Exception {
+        DeferredAttributes attributes = new DeferredAttributes.Builder().put(AttributeKey.ENTITY.key(),
+                new DeferredAttributes.Decoder() {
+                    @Override
+                    public BaseAttribute decode() {
+                        throw new AssertionError("decoded to count");
+                    }
+                }).build();
+        AnnotatedText input = new AnnotatedText.Builder().data("Who is").deferredAttributes(attributes).build();
+        new InstrumentedAnnotator("tokens", new Tokenizer(), metrics).annotate(input);
+        assertEquals(2, registry.histogram("adm.tokens.growth.token").getSnapshot().getMax());
+        assertFalse(attributes.isDecoded(AttributeKey.ENTITY.key()));
+    }
+
+    @Test
+    public void failure() throws Exception {
+        Annotator annotator = new InstrumentedAnnotator("failing", new Failing(), metrics);
+        try {
+            annotator.annotate("Who is");
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, registry.meter("adm.failing.errors").getCount());
+        assertEquals(0, registry.timer("adm.failing.latency").getCount());
+    }
+
+    @Test
+    public void composing() throws Exception {
+        Annotator annotator = new ComposingAnnotator(Lists.<Annotator>newArrayList(new Tokenizer(), new Tokenizer()), metrics);
+        annotator.annotate("Who is");
+        assertEquals(2, registry.histogram("adm.stage0-Tokenizer.growth.token").getSnapshot().getMax());
+        // the second replaces the tokens with as many.
+        assertEquals(0, registry.histogram("adm.stage1-Tokenizer.growth.token").getSnapshot().getMax());
+    }
+
+    @Test
+    public void dispatch() throws Exception {
+        Annotator annotator = new WholeDocumentLanguageDispatchAnnotatorBuilder()
+                .delegate(LanguageCode.FRENCH, new Tokenizer())
+                .metrics(metrics)
+                .build();
+        LanguageDetection.DetectionResult result = new LanguageDetection.DetectionResult.Builder(LanguageCode.FRENCH).build();
+        annotator.annotate(new AnnotatedText.Builder().data("Who is")
+                .wholeDocumentLanguageDetection(new LanguageDetection.Builder(0, 6, Lists.newArrayList(result)).build())
+                .build());
+        assertEquals(1, registry.timer("adm.dispatch.fra.latency").getCount());
+    }
+}
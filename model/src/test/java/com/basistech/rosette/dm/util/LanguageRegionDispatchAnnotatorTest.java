@@ -0,0 +1,160 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.RosetteUnsupportedLanguageException;
+import com.basistech.rosette.dm.AbstractAnnotator;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.Dependency;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.LanguageDetection;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.Sentence;
+import com.basistech.rosette.dm.Token;
+import com.basistech.util.LanguageCode;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test the region dispatcher.
+ */
+public class LanguageRegionDispatchAnnotatorTest {
+    //                                  01234567890123456789012345678
+    private static final String DATA = "Bonjour le monde. Hola mundo.";
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tokenizes on spaces, makes one sentence, chains each token to the first, and makes an
+     * entity of the first token and a linked entity without mentions,
+     * after checking the language it was given.
+     */
+    private static Annotator tokenizer(final LanguageCode language) {
+        return new AbstractAnnotator() {
+            @Override
+            public AnnotatedText annotate(AnnotatedText input) {
+                assertEquals(language, input.getWholeTextLanguageDetection().getDetectionResults().get(0).getLanguage());
+                String data = input.getData().toString();
+                ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+                ListAttribute.Builder<Dependency> dependencies = new ListAttribute.Builder<>(Dependency.class);
+                int start = 0;
+                for (String word : data.split(" ")) {
+                    if (!word.isEmpty()) {
+                        int index = data.indexOf(word, start);
+                        dependencies.add(new Dependency.Builder("dep", tokens.build().size() == 0 ? -1 : 0,
+                                tokens.build().size()).build());
+                        tokens.add(new Token.Builder(index, index + word.length(), word).build());
+                        start = index + word.length();
+                    }
+                }
+                ListAttribute.Builder<Sentence> sentences = new ListAttribute.Builder<>(Sentence.class);
+                sentences.add(new Sentence.Builder(0, data.length()).build());
+                Token first = tokens.build().get(0);
+                ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+                entities.add(new Entity.Builder().entityId("T0").type("FIRST")
+                        .mention(new Mention.Builder(first.getStartOffset(), first.getEndOffset()).build()).build());
+                entities.add(new Entity.Builder().entityId("Q42").type("LINKED").build());
+                return new AnnotatedText.Builder(input).tokens(tokens.build()).sentences(sentences.build())
+                        .dependencies(dependencies.build()).entities(entities.build()).build();
+            }
+        };
+    }
+
+    private static AnnotatedText input(LanguageCode... languages) {
+        ListAttribute.Builder<LanguageDetection> regions = new ListAttribute.Builder<>(LanguageDetection.class);
+        int[] starts = {0, 18};
+        int[] ends = {18, DATA.length()};
+        for (int x = 0; x < languages.length; x++) {
+            LanguageDetection.DetectionResult result = new LanguageDetection.DetectionResult.Builder(languages[x]).build();
+            regions.add(new LanguageDetection.Builder(starts[x], ends[x], Lists.newArrayList(result)).build());
+        }
+        return new AnnotatedText.Builder().data(DATA).languageDetectionRegions(regions.build()).build();
+    }
+
+    private LanguageRegionDispatchAnnotator annotator() {
+        return new LanguageRegionDispatchAnnotatorBuilder(executor)
+                .delegate(LanguageCode.FRENCH, tokenizer(LanguageCode.FRENCH))
+                .delegate(LanguageCode.SPANISH, tokenizer(LanguageCode.SPANISH))
+                .build();
+    }
+
+    @Test
+    public void twoLanguages() throws Exception {
+        AnnotatedText input = input(LanguageCode.FRENCH, LanguageCode.SPANISH);
+        AnnotatedText text = annotator().annotate(input);
+        assertEquals(input.getLanguageDetectionRegions(), text.getLanguageDetectionRegions());
+        assertEquals(5, text.getTokens().size());
+        for (Token token : text.getTokens()) {
+            assertEquals(DATA.substring(token.getStartOffset(), token.getEndOffset()), token.getText());
+        }
+        assertEquals(2, text.getSentences().size());
+        assertEquals(18, text.getSentences().get(1).getStartOffset());
+        assertEquals(DATA.length(), text.getSentences().get(1).getEndOffset());
+        // the root of the second segment, and a token that depends on it.
+        assertEquals(-1, text.getDependencies().get(3).getGovernorTokenIndex());
+        assertEquals(3, text.getDependencies().get(4).getGovernorTokenIndex());
+        assertEquals(4, text.getDependencies().get(4).getDependencyTokenIndex());
+    }
+
+    @Test
+    public void entities() throws Exception {
+        AnnotatedText text = annotator().annotate(input(LanguageCode.FRENCH, LanguageCode.SPANISH));
+        ListAttribute<Entity> entities = text.getEntities();
+        assertEquals(4, entities.size());
+        // in-document IDs are renumbered after the first segment; linked IDs are kept.
+        assertEquals("T0", entities.get(0).getEntityId());
+        assertEquals("Q42", entities.get(1).getEntityId());
+        assertEquals("T1", entities.get(2).getEntityId());
+        assertEquals("Q42", entities.get(3).getEntityId());
+        assertEquals("FIRST", entities.get(2).getType());
+        Mention hola = entities.get(2).getMentions().get(0);
+        assertEquals(18, hola.getStartOffset());
+        assertEquals(22, hola.getEndOffset());
+        assertEquals(0, entities.get(0).getMentions().get(0).getStartOffset());
+        assertNull(entities.get(3).getMentions());
+    }
+
+    @Test
+    public void oneLanguage() throws Exception {
+        AnnotatedText text = annotator().annotate(input(LanguageCode.FRENCH, LanguageCode.FRENCH));
+        assertEquals(1, text.getSentences().size());
+        assertEquals(5, text.getTokens().size());
+    }
+
+    @Test(expected = RosetteUnsupportedLanguageException.class)
+    public void noHandler() throws Exception {
+        annotator().annotate(input(LanguageCode.FRENCH, LanguageCode.GERMAN));
+    }
+}
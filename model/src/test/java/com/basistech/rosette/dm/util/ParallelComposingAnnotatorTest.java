@@ -0,0 +1,148 @@
+/*
+* Copyright 2016 Basis Technology Corp.
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package com.basistech.rosette.dm.util;
+
+import com.basistech.rosette.dm.AbstractAnnotator;
+import com.basistech.rosette.dm.AnnotatedText;
+import com.basistech.rosette.dm.Annotator;
+import com.basistech.rosette.dm.AttributeKey;
+import com.basistech.rosette.dm.CategorizerResult;
+import com.basistech.rosette.dm.Entity;
+import com.basistech.rosette.dm.ListAttribute;
+import com.basistech.rosette.dm.Mention;
+import com.basistech.rosette.dm.Token;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the parallel composing annotator.
+ */
+public class ParallelComposingAnnotatorTest {
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private static Annotator tokenizer() {
+        return new AbstractAnnotator() {
+            @Override
+            public AnnotatedText annotate(AnnotatedText input) {
+                ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+                tokens.add(new Token.Builder(0, 6, "George").build());
+                return new AnnotatedText.Builder(input).tokens(tokens.build()).build();
+            }
+        };
+    }
+
+    /* Both of these wait until the other has started, so they only finish if they run concurrently. */
+    private static Annotator entities(final CountDownLatch started) {
+        return new AbstractAnnotator() {
+            @Override
+            public AnnotatedText annotate(AnnotatedText input) {
+                assertNotNull(input.getTokens());
+                await(started);
+                ListAttribute.Builder<Entity> entities = new ListAttribute.Builder<>(Entity.class);
+                entities.add(new Entity.Builder().type("PERSON").mention(new Mention.Builder(0, 6).build()).build());
+                // something this annotator does not declare
+                ListAttribute.Builder<Token> tokens = new ListAttribute.Builder<>(Token.class);
+                return new AnnotatedText.Builder(input).entities(entities.build()).tokens(tokens.build()).build();
+            }
+        };
+    }
+
+    private static Annotator categorizer(final CountDownLatch started) {
+        return new AbstractAnnotator() {
+            @Override
+            public AnnotatedText annotate(AnnotatedText input) {
+                assertNotNull(input.getTokens());
+                await(started);
+                ListAttribute.Builder<CategorizerResult> results = new ListAttribute.Builder<>(CategorizerResult.class);
+                results.add(new CategorizerResult.Builder("PEOPLE", 1.0).build());
+                return new AnnotatedText.Builder(input).categorizerResults(results.build()).build();
+            }
+        };
+    }
+
+    private static void await(CountDownLatch started) {
+        started.countDown();
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void concurrentStages() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        Annotator annotator = new ParallelComposingAnnotatorBuilder(executor)
+                .annotator(tokenizer(), Collections.<AttributeKey>emptySet(), EnumSet.of(AttributeKey.TOKEN))
+                .annotator(entities(started), EnumSet.of(AttributeKey.TOKEN), EnumSet.of(AttributeKey.ENTITY))
+                .annotator(categorizer(started), EnumSet.of(AttributeKey.TOKEN), EnumSet.of(AttributeKey.CATEGORIZER_RESULTS))
+                .build();
+        AnnotatedText text = annotator.annotate("George");
+        assertEquals("George", text.getData().toString());
+        assertEquals(1, text.getTokens().size());
+        assertEquals(1, text.getEntities().size());
+        assertEquals(1, text.getCategorizerResults().size());
+    }
+
+    @Test
+    public void inputsFromText() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AnnotatedText input = tokenizer().annotate("George");
+        AnnotatedText text = new ParallelComposingAnnotatorBuilder(executor)
+                .annotator(categorizer(started), EnumSet.of(AttributeKey.TOKEN), EnumSet.of(AttributeKey.CATEGORIZER_RESULTS))
+                .build().annotate(input);
+        assertEquals(input.getTokens(), text.getTokens());
+        assertNull(text.getEntities());
+        assertEquals(1, text.getCategorizerResults().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failure() throws Exception {
+        Annotator failing = new AbstractAnnotator() {
+            @Override
+            public AnnotatedText annotate(AnnotatedText input) {
+                throw new IllegalStateException("failed");
+            }
+        };
+        new ParallelComposingAnnotatorBuilder(executor)
+                .annotator(tokenizer(), Collections.<AttributeKey>emptySet(), EnumSet.of(AttributeKey.TOKEN))
+                .annotator(failing, EnumSet.of(AttributeKey.TOKEN), EnumSet.of(AttributeKey.ENTITY))
+                .build().annotate("George");
+    }
+}
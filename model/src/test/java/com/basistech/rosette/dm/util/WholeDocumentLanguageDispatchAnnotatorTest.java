@@ -16,6 +16,7 @@
 package com.basistech.rosette.dm.util;
 
 import com.basistech.rosette.RosetteUnsupportedLanguageException;
+import com.basistech.rosette.dm.AbstractAnnotator;
 import com.basistech.rosette.dm.AnnotatedText;
 import com.basistech.rosette.dm.Annotator;
 import com.basistech.rosette.dm.LanguageDetection;
@@ -27,6 +28,11 @@ import mockit.integration.junit4.JMockit;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
 /**
  * Test the dispatcher.
  */
@@ -86,4 +92,50 @@ public class WholeDocumentLanguageDispatchAnnotatorTest {
         Annotator delegator = builder.build();
         delegator.annotate(fraText);
     }
+
+    private static AnnotatedText textIn(LanguageCode language) {
+        LanguageDetection.DetectionResult.Builder drBuilder = new LanguageDetection.DetectionResult.Builder(language);
+        LanguageDetection.Builder ldBuilder = new LanguageDetection.Builder(0, 0, Lists.newArrayList(drBuilder.build()));
+        return new AnnotatedText.Builder().wholeDocumentLanguageDetection(ldBuilder.build()).build();
+    }
+
+    /**
+     * Records the batches it receives, and returns its inputs.
+     */
+    private static class BatchRecorder extends AbstractAnnotator {
+        final List<List<AnnotatedText>> batches = Lists.newArrayList();
+
+        @Override
+        public AnnotatedText annotate(AnnotatedText input) {
+            return input;
+        }
+
+        @Override
+        public List<AnnotatedText> annotateAll(List<AnnotatedText> inputs) {
+            batches.add(inputs);
+            return inputs;
+        }
+    }
+
+    @Test
+    public void batch() throws Exception {
+        BatchRecorder fra = new BatchRecorder();
+        BatchRecorder spa = new BatchRecorder();
+        WholeDocumentLanguageDispatchAnnotator delegator = (WholeDocumentLanguageDispatchAnnotator)
+                new WholeDocumentLanguageDispatchAnnotatorBuilder()
+                .delegate(LanguageCode.FRENCH, fra)
+                .delegate(LanguageCode.SPANISH, spa)
+                .build();
+        List<AnnotatedText> inputs = Lists.newArrayList(textIn(LanguageCode.FRENCH), textIn(LanguageCode.SPANISH),
+                textIn(LanguageCode.FRENCH));
+        List<AnnotatedText> results = delegator.annotateAll(inputs);
+        assertEquals(3, results.size());
+        for (int x = 0; x < inputs.size(); x++) {
+            assertSame(inputs.get(x), results.get(x));
+        }
+        assertEquals(1, fra.batches.size());
+        assertEquals(Lists.newArrayList(inputs.get(0), inputs.get(2)), fra.batches.get(0));
+        assertEquals(1, spa.batches.size());
+        assertEquals(1, spa.batches.get(0).size());
+    }
 }